@@ -0,0 +1,87 @@
+#!/usr/bin/env bash
+# Measures time from JVM launch to the first accepted WebSocket handshake (HTTP 101 on /execute-ws).
+#
+# Usage: scripts/measure-startup.sh [runs] [modes...]
+#   modes: jar      plain java -jar
+#          aot      -Dspring.aot.enabled=true (jar must be built with -Pstartup)
+#          cds      extracted jar + AppCDS archive trained on a startup run
+#          aot-cds  both (what the Dockerfile ships)
+#
+# Build first:  mvn clean package -Pstartup -DskipTests
+# Env: JAR (default target/online-compiler-*.jar), PORT (default 7870), WORK_DIR (default target/startup-bench)
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RUNS="${1:-5}"
+shift || true
+MODES=("${@:-jar aot cds aot-cds}")
+MODES=(${MODES[@]})
+JAR="${JAR:-$(ls target/online-compiler-*.jar | grep -v plain | head -1)}"
+PORT="${PORT:-7870}"
+WORK_DIR="${WORK_DIR:-target/startup-bench}"
+export GEMINI_API_KEY="${GEMINI_API_KEY:-startup-bench}"
+
+now_ms() { date +%s%3N; }
+
+# Extracts the jar and trains a CDS archive for the given extra JVM flags
+prepare_cds() {
+  local name="$1"; shift
+  local dir="$WORK_DIR/$name"
+  rm -rf "$dir"
+  java -Djarmode=tools -jar "$JAR" extract --destination "$dir" >/dev/null
+  java -XX:ArchiveClassesAtExit="$dir/app.jsa" -Dspring.context.exit=onRefresh "$@" \
+       -jar "$dir/$(basename "$JAR")" --server.port=0 >"$dir/training.log" 2>&1 || true
+  [[ -f "$dir/app.jsa" ]] || { echo "CDS training failed, see $dir/training.log" >&2; exit 1; }
+}
+
+command_for() {
+  case "$1" in
+    jar)     echo "java -jar $JAR" ;;
+    aot)     echo "java -Dspring.aot.enabled=true -jar $JAR" ;;
+    cds)     echo "java -XX:SharedArchiveFile=$WORK_DIR/cds/app.jsa -jar $WORK_DIR/cds/$(basename "$JAR")" ;;
+    aot-cds) echo "java -XX:SharedArchiveFile=$WORK_DIR/aot-cds/app.jsa -Dspring.aot.enabled=true -jar $WORK_DIR/aot-cds/$(basename "$JAR")" ;;
+    *) echo "Unknown mode: $1" >&2; exit 1 ;;
+  esac
+}
+
+# Returns once /execute-ws answers a handshake with 101 Switching Protocols
+wait_for_websocket() {
+  local deadline=$(( $(now_ms) + 60000 ))
+  while (( $(now_ms) < deadline )); do
+    local code
+    code=$(curl -s -o /dev/null -w '%{http_code}' --http1.1 --max-time 1 \
+      -H 'Connection: Upgrade' -H 'Upgrade: websocket' -H 'Sec-WebSocket-Version: 13' \
+      -H 'Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==' "http://localhost:$PORT/execute-ws" || true)
+    [[ "$code" == "101" ]] && return 0
+    sleep 0.02
+  done
+  return 1
+}
+
+mkdir -p "$WORK_DIR"
+for mode in "${MODES[@]}"; do
+  case "$mode" in
+    cds)     prepare_cds cds ;;
+    aot-cds) prepare_cds aot-cds -Dspring.aot.enabled=true ;;
+  esac
+
+  cmd=$(command_for "$mode")
+  samples=()
+  for ((i = 1; i <= RUNS; i++)); do
+    start=$(now_ms)
+    $cmd --server.port="$PORT" >"$WORK_DIR/$mode-run.log" 2>&1 &
+    pid=$!
+    if wait_for_websocket; then
+      samples+=($(( $(now_ms) - start )))
+    else
+      echo "$mode: no WebSocket handshake within 60s, see $WORK_DIR/$mode-run.log" >&2
+    fi
+    kill "$pid" 2>/dev/null || true
+    wait "$pid" 2>/dev/null || true
+  done
+
+  sorted=($(printf '%s\n' "${samples[@]}" | sort -n))
+  count=${#sorted[@]}
+  (( count > 0 )) || continue
+  echo "$mode: median $(( sorted[count / 2] )) ms, min ${sorted[0]} ms, max ${sorted[count - 1]} ms over $count runs"
+done
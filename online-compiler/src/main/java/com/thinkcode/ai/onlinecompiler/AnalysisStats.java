@@ -0,0 +1,88 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts /gemini/analysis requests answered by the local estimator versus the model, and how
+ * often the local time complexity matched the model's (for estimates answered locally, by
+ * sampled shadow calls; for the rest, on every model answer).
+ */
+@Component
+public class AnalysisStats {
+
+    private static final Pattern MODEL_TIME = Pattern.compile("Time Complexity\\s*<code>(.*?)</code>", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static class AgreementCounters {
+        final LongAdder agree = new LongAdder();
+        final LongAdder disagree = new LongAdder();
+        final LongAdder incomparable = new LongAdder();
+
+        Map<String, Object> snapshot() {
+            long compared = agree.sum() + disagree.sum();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("agree", agree.sum());
+            result.put("disagree", disagree.sum());
+            result.put("incomparable", incomparable.sum());
+            result.put("agreementRate", compared == 0 ? 0 : (double) agree.sum() / compared);
+            return result;
+        }
+    }
+
+    private final LongAdder servedLocally = new LongAdder();
+    private final LongAdder servedByModel = new LongAdder();
+    private final LongAdder estimates = new LongAdder();
+    private final AgreementCounters simple = new AgreementCounters();
+    private final AgreementCounters complex = new AgreementCounters();
+
+    public void recordServedLocally() {
+        servedLocally.increment();
+    }
+
+    public void recordServedByModel() {
+        servedByModel.increment();
+    }
+
+    public void recordEstimate() {
+        estimates.increment();
+    }
+
+    // Compares the local time complexity with the one in the model's HTML answer
+    public void recordComparison(StaticComplexityEstimator.Estimate estimate, String modelHtml) {
+        AgreementCounters counters = estimate.simple() ? simple : complex;
+        Matcher matcher = MODEL_TIME.matcher(modelHtml == null ? "" : modelHtml);
+        String model = matcher.find() ? normalize(matcher.group(1)) : null;
+        if (model == null || !model.matches("o\\((?:[nlog^0-9]|\\(|\\))*\\)")) {
+            counters.incomparable.increment(); // No heading, or other variables (V + E, n*m, k)
+        } else if (model.equals(normalize(estimate.time()))) {
+            counters.agree.increment();
+        } else {
+            counters.disagree.increment();
+        }
+    }
+
+    // "O(N log N)", "O(n·log(n))", "O(n²)" -> "o(nlogn)", "o(nlogn)", "o(n^2)"
+    static String normalize(String complexity) {
+        return complexity.toLowerCase()
+                .replaceAll("<[^>]+>", "")
+                .replace("²", "^2").replace("³", "^3")
+                .replaceAll("[\\s*·×]", "")
+                .replaceAll("log(?:_?2|₂)?\\(n\\)|log(?:_?2|₂)n|lgn", "logn")
+                .replaceAll("\\^\\{(\\d+)}", "^$1");
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("servedLocally", servedLocally.sum());
+        result.put("servedByModel", servedByModel.sum());
+        result.put("estimates", estimates.sum());
+        result.put("agreementOnLocalAnswers", simple.snapshot());
+        result.put("agreementOnModelAnswers", complex.snapshot());
+        return result;
+    }
+}
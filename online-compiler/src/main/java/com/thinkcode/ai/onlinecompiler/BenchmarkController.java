@@ -0,0 +1,44 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Measure mode: POST /api/benchmarks runs the code on growing inputs and returns the measured
+ * curve with its complexity fits (see ComplexityBenchmark). The response's "evidence" text can be
+ * passed as "benchmark" to /gemini/analysis.
+ */
+@RestController
+@CrossOrigin(origins = "*")
+public class BenchmarkController {
+
+    private final ComplexityBenchmark benchmark;
+
+    public BenchmarkController(ComplexityBenchmark benchmark) {
+        this.benchmark = benchmark;
+    }
+
+    @PostMapping("/api/benchmarks")
+    public ResponseEntity<?> run(@RequestBody ComplexityBenchmark.Request request) {
+        try {
+            return ResponseEntity.ok(benchmark.run(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Map.of("error", e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", "Benchmark was interrupted."));
+        } catch (Exception e) {
+            // Compile errors, workspace quota
+            System.err.println("❌ Benchmark failed: " + e.getMessage());
+            return ResponseEntity.unprocessableEntity().body(Map.of("error", "Benchmark failed: " + e.getMessage()));
+        }
+    }
+}
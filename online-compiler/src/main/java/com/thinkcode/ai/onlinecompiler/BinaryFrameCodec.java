@@ -0,0 +1,103 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Compact server-to-client frame encoding used when a client negotiates the
+ * "thinkcode.binary.v1" WebSocket subprotocol.
+ *
+ * Each binary frame is:  [1 byte message type][payload as raw UTF-8 bytes]
+ * WebSocket frames are already length-delimited, so no length prefix is needed.
+ * There is no timestamp field. Types without a numeric code use TYPE_NAMED, whose payload is
+ * [1 byte name length][name UTF-8][data UTF-8].
+ * Frames of an execution started with an executionId have EXECUTION_TAG set in the type byte and
+ * carry [1 byte id length][id UTF-8][4 byte sequence number, 0 if unsequenced] right after it,
+ * before the rest of the frame. The sequence number is unsigned and big-endian; it doesn't wrap,
+ * since a number that doesn't fit is rejected. Frames of the default execution stay untagged, so
+ * binary clients that want to resume (which needs sequence numbers) should use an executionId.
+ *
+ * Client-to-server messages stay JSON text in both modes; the only client binary frames are raw
+ * chunks of a stdin upload, between stdin_upload_start and stdin_upload_end.
+ */
+public final class BinaryFrameCodec {
+
+    public static final String BINARY_SUBPROTOCOL = "thinkcode.binary.v1";
+    public static final String JSON_SUBPROTOCOL = "thinkcode.json.v1";
+
+    public static final byte TYPE_OUTPUT = 0x01;
+    public static final byte TYPE_ERROR = 0x02;
+    public static final byte TYPE_INPUT_REQUEST = 0x03;
+    public static final byte TYPE_EXECUTION_STARTED = 0x04;
+    public static final byte TYPE_EXECUTION_COMPLETE = 0x05;
+    public static final byte TYPE_PONG = 0x06;
+    public static final byte TYPE_RESOURCE_LIMIT = 0x07;
+    public static final byte TYPE_COLLAB_SESSION_CREATED = 0x10;
+    public static final byte TYPE_INITIAL_CODE_SYNC = 0x11;
+    public static final byte TYPE_CODE_SYNC = 0x12;
+    public static final byte TYPE_CHAT_MESSAGE = 0x13;
+    public static final byte TYPE_COLLAB_UPDATE = 0x14;
+    public static final byte TYPE_NAMED = 0x7F;
+    public static final int EXECUTION_TAG = 0x80;
+
+    // Largest sequence number the 4-byte field holds
+    public static final long MAX_SEQ = 0xFFFFFFFFL;
+
+    private static final Map<String, Byte> TYPE_CODES = Map.ofEntries(
+        Map.entry("output", TYPE_OUTPUT),
+        Map.entry("error", TYPE_ERROR),
+        Map.entry("input_request", TYPE_INPUT_REQUEST),
+        Map.entry("execution_started", TYPE_EXECUTION_STARTED),
+        Map.entry("execution_complete", TYPE_EXECUTION_COMPLETE),
+        Map.entry("pong", TYPE_PONG),
+        Map.entry("resource_limit", TYPE_RESOURCE_LIMIT),
+        Map.entry("collab_session_created", TYPE_COLLAB_SESSION_CREATED),
+        Map.entry("initial_code_sync", TYPE_INITIAL_CODE_SYNC),
+        Map.entry("code_sync", TYPE_CODE_SYNC),
+        Map.entry("chat_message", TYPE_CHAT_MESSAGE),
+        Map.entry("collab_update", TYPE_COLLAB_UPDATE)
+    );
+
+    private BinaryFrameCodec() {}
+
+    public static ByteBuffer encode(String type, String data) {
+        return encode(type, data, null, 0);
+    }
+
+    // executionId may be null for untagged frames; seq is only carried by tagged ones
+    public static ByteBuffer encode(String type, String data, String executionId, long seq) {
+        byte[] payload = (data != null ? data : "").getBytes(StandardCharsets.UTF_8);
+        byte[] id = executionId != null ? executionId.getBytes(StandardCharsets.UTF_8) : null;
+        if (id != null && id.length > 255) {
+            throw new IllegalArgumentException("Execution ID too long: " + executionId);
+        }
+        if (id != null && (seq < 0 || seq > MAX_SEQ)) {
+            throw new IllegalArgumentException("Sequence number out of range: " + seq);
+        }
+        int tagLength = id != null ? 1 + id.length + 4 : 0;
+        Byte code = TYPE_CODES.get(type);
+        if (code != null) {
+            ByteBuffer frame = ByteBuffer.allocate(1 + tagLength + payload.length);
+            putType(frame, code, id, seq);
+            frame.put(payload);
+            return frame.flip();
+        }
+        byte[] name = type.getBytes(StandardCharsets.UTF_8);
+        if (name.length > 255) {
+            throw new IllegalArgumentException("Message type name too long: " + type);
+        }
+        ByteBuffer frame = ByteBuffer.allocate(2 + tagLength + name.length + payload.length);
+        putType(frame, TYPE_NAMED, id, seq);
+        frame.put((byte) name.length).put(name).put(payload);
+        return frame.flip();
+    }
+
+    private static void putType(ByteBuffer frame, byte code, byte[] executionId, long seq) {
+        if (executionId == null) {
+            frame.put(code);
+        } else {
+            frame.put((byte) (code | EXECUTION_TAG)).put((byte) executionId.length).put(executionId).putInt((int) seq);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.springframework.core.env.Environment;
+
+/**
+ * C# runtime with per-assembly caching for projects. Every top-level directory becomes a library
+ * assembly named after it, and the top-level files form the program, which references all of them.
+ * Each assembly is built into build/assemblies/&lt;name&gt;/&lt;hash&gt;/, keyed by its sources (and, for the
+ * program, the library hashes), so an edit only rebuilds the assembly it touches plus the program.
+ *
+ * A library that mentions a type declared in another library references it (-r:) and is built
+ * after it; an edit to a library also rebuilds the libraries depending on it. When the libraries
+ * depend on each other in a cycle there is no order to build them in, and the whole project is
+ * compiled as one program assembly instead.
+ *
+ * Extra properties: compiler (default mcs).
+ */
+public class CSharpLanguageRuntime extends CommandLanguageRuntime {
+
+    private static final String PROGRAM = "program";
+    private static final String DONE_MARKER = ".built";
+    // Marks the output directory complete only after the compiler succeeded
+    private static final String MARK_DONE = "\"$@\" && touch \"$0/" + DONE_MARKER + "\"";
+
+    private static final Pattern TYPE_DECLARATION = Pattern.compile("\\b(?:class|struct|interface|enum|record)\\s+([A-Za-z_]\\w*)");
+    private static final Pattern DELEGATE_DECLARATION = Pattern.compile("\\bdelegate\\s+[^;(]*?([A-Za-z_]\\w*)\\s*(?:<[^>]*>)?\\s*\\(");
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_]\\w*");
+    private static final Set<String> NOT_TYPE_NAMES = Set.of("class", "struct", "interface", "enum", "record", "where");
+
+    private final String compiler;
+
+    public CSharpLanguageRuntime(String id, Environment env, ResourceLimiter resourceLimiter) {
+        super(id, env, resourceLimiter);
+        this.compiler = env.getProperty("app.runtimes." + id + ".compiler", "mcs");
+    }
+
+    @Override
+    public Build prepareProject(ProjectWorkspace project, String entry) throws IOException {
+        Path assemblies = Files.createDirectories(project.getBuildDir().resolve("assemblies"));
+        String toolchain = toolchainVersion();
+
+        // Group sources by assembly: "" is the program, anything else a library directory
+        Map<String, List<String>> groups = new TreeMap<>();
+        for (String file : project.sourceFiles("cs")) {
+            int slash = file.indexOf('/');
+            groups.computeIfAbsent(slash < 0 ? "" : file.substring(0, slash), k -> new ArrayList<>()).add(file);
+        }
+        List<String> programSources = groups.remove("");
+        if (programSources == null) {
+            throw new IOException("A C# project needs its program (with Main) as .cs files at the top level");
+        }
+
+        Map<String, Set<String>> dependencies = libraryDependencies(project, groups);
+        List<String> order = buildOrder(dependencies);
+        if (order == null) {
+            System.out.println("🔧 C# project " + project.getKey() + ": libraries depend on each other in a cycle, compiling as one assembly");
+            List<String> allSources = new ArrayList<>(programSources);
+            groups.values().forEach(allSources::addAll);
+            programSources = allSources;
+            groups.clear();
+            order = List.of();
+        }
+
+        List<List<String>> steps = new ArrayList<>();
+        Map<String, Path> current = new TreeMap<>();
+        Map<String, String> libraryKeys = new LinkedHashMap<>();
+        Map<String, Path> libraries = new LinkedHashMap<>();
+        for (String name : order) {
+            // Everything it depends on, directly or not, in build order
+            Set<String> references = new LinkedHashSet<>();
+            for (String library : order) {
+                if (!library.equals(name) && dependsOn(dependencies, name, library)) {
+                    references.add(library);
+                }
+            }
+            List<String> referenceKeys = references.stream().map(libraryKeys::get).toList();
+            String key = assemblyKey(project, toolchain, name, groups.get(name), referenceKeys);
+            Path dir = assemblies.resolve(name).resolve(key);
+            Path dll = dir.resolve(name + ".dll");
+            current.put(name, dir);
+            libraryKeys.put(name, key);
+            libraries.put(name, dll);
+            if (!Files.exists(dir.resolve(DONE_MARKER))) {
+                Files.createDirectories(dir);
+                List<String> step = new ArrayList<>(List.of("/bin/sh", "-c", MARK_DONE, dir.toString(),
+                        compiler, "-target:library", "-out:" + dll));
+                for (String reference : references) {
+                    step.add("-r:" + libraries.get(reference));
+                }
+                step.addAll(groups.get(name));
+                steps.add(step);
+            }
+        }
+
+        String programKey = assemblyKey(project, toolchain, PROGRAM, programSources, List.copyOf(libraryKeys.values()));
+        Path programDir = assemblies.resolve(PROGRAM).resolve(programKey);
+        Path exe = programDir.resolve(PROGRAM + ".exe");
+        current.put(PROGRAM, programDir);
+        if (!Files.exists(programDir.resolve(DONE_MARKER))) {
+            Files.createDirectories(programDir);
+            // Libraries are copied next to the program so mono finds them
+            if (!libraries.isEmpty()) {
+                List<String> copy = new ArrayList<>(List.of("cp"));
+                libraries.values().forEach(dll -> copy.add(dll.toString()));
+                copy.add(programDir.toString());
+                steps.add(copy);
+            }
+            List<String> step = new ArrayList<>(List.of("/bin/sh", "-c", MARK_DONE, programDir.toString(),
+                    compiler, "-out:" + exe));
+            for (Path dll : libraries.values()) {
+                step.add("-r:" + programDir.resolve(dll.getFileName()));
+            }
+            step.addAll(programSources);
+            steps.add(step);
+        }
+
+        System.out.println("🔧 C# project " + project.getKey() + ": " + (groups.size() + 1) + " assemblies, "
+                + steps.size() + " to build");
+        return new Build(steps, List.of("mono", exe.toString()), () -> prune(assemblies, current));
+    }
+
+    // For each library, the other libraries declaring a type it mentions (over-matching only adds a reference)
+    private static Map<String, Set<String>> libraryDependencies(ProjectWorkspace project, Map<String, List<String>> groups)
+            throws IOException {
+        Map<String, Set<String>> declared = new TreeMap<>();
+        Map<String, Set<String>> mentioned = new TreeMap<>();
+        for (Map.Entry<String, List<String>> group : groups.entrySet()) {
+            Set<String> types = new HashSet<>();
+            Set<String> identifiers = new HashSet<>();
+            for (String file : group.getValue()) {
+                String code = StaticComplexityEstimator.strip(Files.readString(project.getSources().resolve(file)), "csharp");
+                for (Pattern declaration : List.of(TYPE_DECLARATION, DELEGATE_DECLARATION)) {
+                    Matcher matcher = declaration.matcher(code);
+                    while (matcher.find()) {
+                        if (!NOT_TYPE_NAMES.contains(matcher.group(1))) {
+                            types.add(matcher.group(1));
+                        }
+                    }
+                }
+                Matcher matcher = IDENTIFIER.matcher(code);
+                while (matcher.find()) {
+                    identifiers.add(matcher.group());
+                }
+            }
+            declared.put(group.getKey(), types);
+            mentioned.put(group.getKey(), identifiers);
+        }
+        Map<String, Set<String>> dependencies = new TreeMap<>();
+        for (String library : groups.keySet()) {
+            Set<String> uses = new LinkedHashSet<>();
+            for (Map.Entry<String, Set<String>> other : declared.entrySet()) {
+                if (!other.getKey().equals(library) && other.getValue().stream().anyMatch(mentioned.get(library)::contains)) {
+                    uses.add(other.getKey());
+                }
+            }
+            dependencies.put(library, uses);
+        }
+        return dependencies;
+    }
+
+    // Libraries with everything they depend on first; null if they depend on each other in a cycle
+    private static List<String> buildOrder(Map<String, Set<String>> dependencies) {
+        List<String> order = new ArrayList<>();
+        Set<String> remaining = new LinkedHashSet<>(dependencies.keySet());
+        while (!remaining.isEmpty()) {
+            String next = remaining.stream().filter(library -> order.containsAll(dependencies.get(library))).findFirst().orElse(null);
+            if (next == null) {
+                return null;
+            }
+            order.add(next);
+            remaining.remove(next);
+        }
+        return order;
+    }
+
+    private static boolean dependsOn(Map<String, Set<String>> dependencies, String library, String other) {
+        Set<String> seen = new HashSet<>();
+        List<String> pending = new ArrayList<>(dependencies.get(library));
+        while (!pending.isEmpty()) {
+            String next = pending.remove(pending.size() - 1);
+            if (next.equals(other)) {
+                return true;
+            }
+            if (seen.add(next)) {
+                pending.addAll(dependencies.get(next));
+            }
+        }
+        return false;
+    }
+
+    private static String assemblyKey(ProjectWorkspace project, String toolchain, String name,
+                                      List<String> sources, List<String> references) throws IOException {
+        List<String> parts = new ArrayList<>(List.of(name, toolchain, String.valueOf(references)));
+        for (String source : sources) {
+            parts.add(source + "=" + project.hashSource(source));
+        }
+        return ProjectWorkspace.hash(parts.toArray(new String[0]));
+    }
+
+    // Keeps only the current build of each assembly
+    private static void prune(Path assemblies, Map<String, Path> current) throws IOException {
+        Set<Path> keep = Set.copyOf(current.values());
+        try (DirectoryStream<Path> names = Files.newDirectoryStream(assemblies)) {
+            for (Path name : names) {
+                try (DirectoryStream<Path> builds = Files.newDirectoryStream(name)) {
+                    for (Path build : builds) {
+                        if (!keep.contains(build)) {
+                            deleteTree(build);
+                        }
+                    }
+                }
+                if (!current.containsKey(name.getFileName().toString())) {
+                    deleteTree(name);
+                }
+            }
+        }
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
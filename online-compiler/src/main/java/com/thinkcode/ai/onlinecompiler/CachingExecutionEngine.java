@@ -0,0 +1,337 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+/**
+ * The execution engine the transports use. With app.result-cache.enabled, single-file runs the
+ * client marks cacheable are keyed by language, code hash, stdin hash and the runtime's
+ * cacheKeyInputs (toolchain version, flags); a repeat is answered by replaying the recorded event
+ * timeline instead of spawning the program. Everything else goes straight to WorkerDispatcher.
+ *
+ * A run is only recorded when it finished within its limits (no timeout, resource-limit notice or
+ * error), was not stopped, and read no stdin beyond what came with execute: no input was sent
+ * during the run and it never went quiet long enough to be asked for input. Entries are evicted
+ * least-recently-used to stay within app.result-cache.max-bytes.
+ */
+@Primary
+@Component
+public class CachingExecutionEngine implements ExecutionEngine {
+
+    private static final Pattern NORMAL_EXIT = Pattern.compile("Exit code: -?\\d+");
+
+    @Value("${app.result-cache.enabled:false}")
+    private boolean enabled;
+
+    // Total size of the recorded output kept, across all entries
+    @Value("${app.result-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    // Runs producing more output than this are not recorded
+    @Value("${app.result-cache.max-entry-bytes:1048576}")
+    private long maxEntryBytes;
+
+    // Replay with the original gaps between events instead of back-to-back
+    @Value("${app.result-cache.preserve-timing:false}")
+    private boolean preserveTiming;
+
+    private final WorkerDispatcher delegate;
+    private final LanguageRuntimeRegistry runtimes;
+
+    // Access-ordered for LRU eviction; guarded by itself
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private final LongAdder evictions = new LongAdder();
+    private final Map<String, LanguageCounters> languages = new ConcurrentHashMap<>();
+    private final Map<String, Recording> recordings = new ConcurrentHashMap<>();
+    private final Map<String, Replay> replays = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService replayer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "result-cache-replay");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public CachingExecutionEngine(WorkerDispatcher delegate, LanguageRuntimeRegistry runtimes) {
+        this.delegate = delegate;
+        this.runtimes = runtimes;
+    }
+
+    // One recorded event, at its offset from the start of the run
+    private record Event(long offsetMillis, String type, String data) {}
+
+    private record Entry(String language, List<Event> events, long bytes) {}
+
+    private static class LanguageCounters {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder stored = new LongAdder();
+        final LongAdder notCacheable = new LongAdder();
+
+        Map<String, Object> snapshot() {
+            long lookups = hits.sum() + misses.sum();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("hits", hits.sum());
+            result.put("misses", misses.sum());
+            result.put("hitRate", lookups == 0 ? 0 : (double) hits.sum() / lookups);
+            result.put("stored", stored.sum());
+            result.put("notCacheable", notCacheable.sum());
+            return result;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        replayer.shutdownNow();
+    }
+
+    // --- ExecutionEngine ---
+
+    @Override
+    public boolean execute(String key, String language, String code, ExecutionSink sink) {
+        return execute(key, language, code, RunOptions.DEFAULT, sink);
+    }
+
+    @Override
+    public boolean execute(String key, String language, String code, RunOptions options, ExecutionSink sink) {
+        LanguageRuntime runtime = runtimes.find(language);
+        if (!enabled || !options.cacheable() || runtime == null) {
+            return delegate.execute(key, language, code, options, sink);
+        }
+        if (replays.containsKey(key) || delegate.isRunning(key)) {
+            return false;
+        }
+        String stdinHash = options.stdin() != null ? options.stdin().sha256() : ProjectWorkspace.hash("");
+        String cacheKey = ProjectWorkspace.hash(language, String.valueOf(runtime.cacheKeyInputs()),
+                ProjectWorkspace.hash(code), stdinHash);
+        LanguageCounters counters = languages.computeIfAbsent(language, k -> new LanguageCounters());
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(cacheKey);
+        }
+        if (entry != null) {
+            counters.hits.increment();
+            replay(key, entry, sink);
+            return true;
+        }
+        counters.misses.increment();
+        Recording recording = new Recording(key, cacheKey, language, sink);
+        recordings.put(key, recording);
+        boolean started = delegate.execute(key, language, code, options, recording);
+        if (!started) {
+            recordings.remove(key, recording);
+        }
+        return started;
+    }
+
+    @Override
+    public boolean executeProject(String key, String projectKey, String language,
+                                  Map<String, String> files, String entry, ExecutionSink sink) {
+        return delegate.executeProject(key, projectKey, language, files, entry, sink);
+    }
+
+    @Override
+    public void sendInput(String key, String data, ExecutionSink sink) {
+        Recording recording = recordings.get(key);
+        if (recording != null) {
+            recording.cacheable.set(false);
+        }
+        if (replays.containsKey(key)) {
+            sink.send(ExecutionSink.ERROR, "Cannot send input: Process is not running.");
+            return;
+        }
+        delegate.sendInput(key, data, sink);
+    }
+
+    @Override
+    public void sendInput(String key, StdinUploads.Upload upload, ExecutionSink sink) {
+        Recording recording = recordings.get(key);
+        if (recording != null) {
+            recording.cacheable.set(false);
+        }
+        if (replays.containsKey(key)) {
+            sink.send(ExecutionSink.ERROR, "Cannot send input: Process is not running.");
+            return;
+        }
+        delegate.sendInput(key, upload, sink);
+    }
+
+    @Override
+    public void stop(String key) {
+        Recording recording = recordings.get(key);
+        if (recording != null) {
+            recording.cacheable.set(false);
+        }
+        Replay replay = replays.remove(key);
+        if (replay != null) {
+            replay.cancel();
+            replay.sink.send(ExecutionSink.EXECUTION_COMPLETE, "Execution stopped");
+        }
+        delegate.stop(key);
+    }
+
+    @Override
+    public void release(String key) {
+        Recording recording = recordings.remove(key);
+        if (recording != null) {
+            recording.cacheable.set(false);
+        }
+        Replay replay = replays.remove(key);
+        if (replay != null) {
+            replay.cancel();
+        }
+        delegate.release(key);
+    }
+
+    @Override
+    public boolean isRunning(String key) {
+        return replays.containsKey(key) || delegate.isRunning(key);
+    }
+
+    // --- Recording ---
+
+    // Passes every event on to the client and keeps a copy while the run still qualifies
+    private class Recording implements ExecutionSink {
+        private final String key;
+        private final String cacheKey;
+        private final String language;
+        private final ExecutionSink sink;
+        private final long startedAt = System.currentTimeMillis();
+        private final List<Event> events = new ArrayList<>();
+        private final AtomicBoolean cacheable = new AtomicBoolean(true);
+        private long bytes;
+
+        Recording(String key, String cacheKey, String language, ExecutionSink sink) {
+            this.key = key;
+            this.cacheKey = cacheKey;
+            this.language = language;
+            this.sink = sink;
+        }
+
+        @Override
+        public void send(String type, String data) {
+            record(type, data);
+            sink.send(type, data);
+        }
+
+        private synchronized void record(String type, String data) {
+            switch (type) {
+                case INPUT_REQUEST, ERROR, RESOURCE_LIMIT -> cacheable.set(false);
+                default -> {}
+            }
+            if (cacheable.get()) {
+                events.add(new Event(System.currentTimeMillis() - startedAt, type, data));
+                bytes += 64 + 2L * (data == null ? 0 : data.length());
+                if (bytes > maxEntryBytes) {
+                    cacheable.set(false);
+                }
+            }
+            if (!EXECUTION_COMPLETE.equals(type)) {
+                return;
+            }
+            recordings.remove(key, this);
+            LanguageCounters counters = languages.get(language);
+            if (cacheable.get() && NORMAL_EXIT.matcher(data).matches()) {
+                store(cacheKey, new Entry(language, List.copyOf(events), bytes));
+                counters.stored.increment();
+            } else {
+                counters.notCacheable.increment();
+            }
+            events.clear();
+        }
+
+        @Override
+        public long pendingBytes() {
+            return sink.pendingBytes();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return sink.isOpen();
+        }
+    }
+
+    private void store(String cacheKey, Entry entry) {
+        synchronized (entries) {
+            Entry previous = entries.put(cacheKey, entry);
+            totalBytes += entry.bytes - (previous != null ? previous.bytes : 0);
+            Iterator<Entry> oldest = entries.values().iterator();
+            while (totalBytes > maxBytes && oldest.hasNext()) {
+                totalBytes -= oldest.next().bytes;
+                oldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    // --- Replay ---
+
+    private class Replay {
+        private final ExecutionSink sink;
+        private final List<ScheduledFuture<?>> steps = new ArrayList<>();
+
+        Replay(ExecutionSink sink) {
+            this.sink = sink;
+        }
+
+        synchronized void cancel() {
+            steps.forEach(step -> step.cancel(false));
+        }
+    }
+
+    // Sends the recorded events on the replay thread, so execute() returns first as for a real run
+    private void replay(String key, Entry entry, ExecutionSink sink) {
+        System.out.println("♻️ Replaying cached " + entry.language + " result for " + key);
+        Replay replay = new Replay(sink);
+        replays.put(key, replay);
+        synchronized (replay) {
+            if (!preserveTiming) {
+                replay.steps.add(replayer.schedule(() -> entry.events.forEach(event -> send(key, replay, event)),
+                        0, TimeUnit.MILLISECONDS));
+                return;
+            }
+            for (Event event : entry.events) {
+                replay.steps.add(replayer.schedule(() -> send(key, replay, event), event.offsetMillis, TimeUnit.MILLISECONDS));
+            }
+        }
+    }
+
+    // The key is free again before the client hears the run is complete, as with a real run
+    private void send(String key, Replay replay, Event event) {
+        if (ExecutionSink.EXECUTION_COMPLETE.equals(event.type)) {
+            replays.remove(key, replay);
+        }
+        replay.sink.send(event.type, event.data);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        synchronized (entries) {
+            result.put("entries", entries.size());
+            result.put("bytes", totalBytes);
+        }
+        result.put("maxBytes", maxBytes);
+        result.put("evictions", evictions.sum());
+        Map<String, Object> perLanguage = new LinkedHashMap<>();
+        languages.forEach((language, counters) -> perLanguage.put(language, counters.snapshot()));
+        result.put("languages", perLanguage);
+        return result;
+    }
+}
@@ -0,0 +1,348 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Backplane for several instances behind one load balancer. Every node keeps a full copy of the
+ * room registry and pushes changes and events to each peer in app.collab.cluster.peers over
+ * WorkerProtocol's framing (one JSON object per line, TCP or Unix socket):
+ *
+ *   {op: "hello", token, node, listen}
+ *   {op: "room", room, data, version, node}                  full room state, newest version wins
+ *   {op: "event", room, type, data, excluded, node}
+ *   {op: "ping"}                                             on idle links, to notice dead peers
+ *
+ * Each node dials every peer and only writes on that connection; peers dial back. On (re)connect
+ * the whole registry is pushed first. A hello from a restarted node (same listen address as one in
+ * app.collab.cluster.peers, new node ID) makes the receiver redial it at once, so it catches up
+ * without waiting for the heartbeat. Events published while a peer is unreachable are not replayed; only
+ * room state is.
+ *
+ * Created by CollabBackplaneConfig when app.collab.backplane=cluster.
+ */
+public class ClusterCollabBackplane implements CollabBackplane {
+
+    private static final String OP_HELLO = "hello";
+    private static final String OP_ROOM = "room";
+    private static final String OP_EVENT = "event";
+    private static final String OP_PING = "ping";
+    // Outbox marker: drop the connection and redial, pushing the registry again
+    private static final Map<String, Object> REDIAL = Map.of("op", "redial");
+
+    private final String listenAddress;
+    private final String peerAddresses;
+    private final String token;
+    private final int outboxSize;
+    private final long reconnectIntervalMs;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final List<Peer> peers = new ArrayList<>();
+    private final LongAdder eventsPublished = new LongAdder();
+    private final LongAdder eventsReceived = new LongAdder();
+    private final LongAdder roomUpdatesReceived = new LongAdder();
+    private final ExecutorService threads = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "collab-cluster");
+        t.setDaemon(true);
+        return t;
+    });
+    private ServerSocketChannel server;
+    private volatile boolean running = true;
+
+    // Replicated room state; (version, node) orders concurrent writers
+    private record Room(Map<String, String> data, long version, String node) {
+        boolean newerThan(Room other) {
+            return other == null || version > other.version
+                    || (version == other.version && node.compareTo(other.node) > 0);
+        }
+    }
+
+    private class Peer {
+        final String address;
+        final BlockingQueue<Map<String, Object>> outbox = new LinkedBlockingQueue<>(outboxSize);
+        final LongAdder dropped = new LongAdder();
+        final LongAdder sent = new LongAdder();
+        volatile boolean connected;
+        // Node ID of the peer's current run, from its last hello
+        volatile String node;
+
+        Peer(String address) {
+            this.address = address;
+        }
+
+        void offer(Map<String, Object> message) {
+            if (connected && !outbox.offer(message)) {
+                dropped.increment();
+            }
+        }
+    }
+
+    public ClusterCollabBackplane(String listenAddress, String peerAddresses, String token, int outboxSize,
+                                  long reconnectIntervalMs) {
+        this.listenAddress = listenAddress;
+        this.peerAddresses = peerAddresses;
+        this.token = token;
+        this.outboxSize = outboxSize;
+        this.reconnectIntervalMs = reconnectIntervalMs;
+    }
+
+    void start() throws IOException {
+        server = WorkerProtocol.listen(listenAddress);
+        threads.execute(this::acceptLoop);
+        for (String address : peerAddresses.split(",")) {
+            if (!address.isBlank()) {
+                Peer peer = new Peer(address.trim());
+                peers.add(peer);
+                threads.execute(() -> pushLoop(peer));
+            }
+        }
+        System.out.println("🛰️ Collab backplane node " + nodeId + " listening on " + listenAddress
+                + " (" + peers.size() + " peers)");
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            server.close();
+        } catch (IOException e) {
+            // Shutting down anyway
+        }
+        threads.shutdownNow();
+        try {
+            // The listening socket is only released once the accept loop has left accept()
+            threads.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --- Registry ---
+
+    @Override
+    public void createRoom(String roomId, Map<String, String> data) {
+        Room room = rooms.compute(roomId, (id, current) ->
+                new Room(Map.copyOf(data), current == null ? 1 : current.version + 1, nodeId));
+        replicate(roomId, room);
+    }
+
+    @Override
+    public Map<String, String> getRoom(String roomId) {
+        Room room = rooms.get(roomId);
+        return room == null ? null : new HashMap<>(room.data);
+    }
+
+    @Override
+    public Map<String, String> updateRoom(String roomId, Map<String, String> changes) {
+        Room room = rooms.computeIfPresent(roomId, (id, current) -> {
+            Map<String, String> data = new HashMap<>(current.data);
+            data.putAll(changes);
+            return new Room(Map.copyOf(data), current.version + 1, nodeId);
+        });
+        if (room == null) {
+            return null;
+        }
+        replicate(roomId, room);
+        return new HashMap<>(room.data);
+    }
+
+    private void replicate(String roomId, Room room) {
+        Map<String, Object> message = roomMessage(roomId, room);
+        peers.forEach(peer -> peer.offer(message));
+    }
+
+    private static Map<String, Object> roomMessage(String roomId, Room room) {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("op", OP_ROOM);
+        message.put("room", roomId);
+        message.put("data", room.data);
+        message.put("version", room.version);
+        message.put("node", room.node);
+        return message;
+    }
+
+    // --- Pub/sub ---
+
+    @Override
+    public void publish(RoomEvent event) {
+        eventsPublished.increment();
+        deliver(event);
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("op", OP_EVENT);
+        message.put("room", event.roomId());
+        message.put("type", event.type());
+        message.put("data", event.data());
+        message.put("excluded", event.excludedMember());
+        message.put("node", nodeId);
+        peers.forEach(peer -> peer.offer(message));
+    }
+
+    @Override
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    private void deliver(RoomEvent event) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onEvent(event);
+            } catch (RuntimeException e) {
+                System.err.println("⚠️ Collab listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("backplane", "cluster");
+        stats.put("node", nodeId);
+        stats.put("listen", listenAddress);
+        stats.put("rooms", rooms.size());
+        stats.put("eventsPublished", eventsPublished.sum());
+        stats.put("eventsReceived", eventsReceived.sum());
+        stats.put("roomUpdatesReceived", roomUpdatesReceived.sum());
+        List<Map<String, Object>> peerStats = new ArrayList<>();
+        for (Peer peer : peers) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("address", peer.address);
+            entry.put("connected", peer.connected);
+            entry.put("sent", peer.sent.sum());
+            entry.put("queued", peer.outbox.size());
+            entry.put("dropped", peer.dropped.sum());
+            peerStats.add(entry);
+        }
+        stats.put("peers", peerStats);
+        return stats;
+    }
+
+    // --- Outbound: one writer per peer ---
+
+    private void pushLoop(Peer peer) {
+        while (running) {
+            try (WorkerProtocol.Connection connection = new WorkerProtocol.Connection(
+                    WorkerProtocol.connect(peer.address, (int) reconnectIntervalMs))) {
+                connection.write(Map.of("op", OP_HELLO, "token", token, "node", nodeId, "listen", listenAddress));
+                // Queue from here on, so nothing changed during the registry push is missed
+                peer.outbox.clear();
+                peer.connected = true;
+                System.out.println("🔗 Collab peer connected: " + peer.address);
+                for (Map.Entry<String, Room> entry : rooms.entrySet()) {
+                    connection.write(roomMessage(entry.getKey(), entry.getValue()));
+                }
+                while (running) {
+                    Map<String, Object> message = peer.outbox.poll(reconnectIntervalMs, TimeUnit.MILLISECONDS);
+                    if (message == REDIAL) {
+                        break;
+                    } else if (message != null) {
+                        connection.write(message);
+                        peer.sent.increment();
+                    } else {
+                        connection.write(Map.of("op", OP_PING));
+                    }
+                }
+            } catch (IOException e) {
+                if (peer.connected) {
+                    System.out.println("⚠️ Collab peer lost: " + peer.address + " (" + e.getMessage() + ")");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                peer.connected = false;
+            }
+            if (!running) {
+                return;
+            }
+            try {
+                Thread.sleep(reconnectIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // --- Inbound: apply what peers push ---
+
+    private void acceptLoop() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel channel = server.accept();
+                threads.execute(() -> receive(new WorkerProtocol.Connection(channel)));
+            } catch (IOException e) {
+                if (server.isOpen()) {
+                    System.err.println("⚠️ Collab accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void receive(WorkerProtocol.Connection connection) {
+        try (connection) {
+            Map<String, Object> hello = connection.read();
+            if (hello == null || !OP_HELLO.equals(hello.get("op"))) {
+                return;
+            }
+            if (!token.isEmpty() && !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                    String.valueOf(hello.get("token")).getBytes(StandardCharsets.UTF_8))) {
+                System.err.println("⚠️ Collab peer rejected: invalid token");
+                return;
+            }
+            // A restarted peer has an empty registry; our link to its previous run is dead anyway
+            for (Peer peer : peers) {
+                if (peer.address.equals(hello.get("listen"))) {
+                    String previous = peer.node;
+                    peer.node = String.valueOf(hello.get("node"));
+                    if (previous != null && !previous.equals(peer.node)) {
+                        System.out.println("🔄 Collab peer restarted: " + peer.address);
+                        peer.outbox.offer(REDIAL);
+                    }
+                }
+            }
+            Map<String, Object> message;
+            while ((message = connection.read()) != null) {
+                if (OP_ROOM.equals(message.get("op"))) {
+                    applyRoom(message);
+                } else if (OP_EVENT.equals(message.get("op"))) {
+                    eventsReceived.increment();
+                    deliver(new RoomEvent((String) message.get("room"), (String) message.get("type"),
+                            (String) message.get("data"), (String) message.get("excluded")));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Peer went away or sent garbage; it reconnects and pushes its registry again
+        }
+    }
+
+    private void applyRoom(Map<String, Object> message) {
+        if (!(message.get("room") instanceof String roomId) || !(message.get("data") instanceof Map<?, ?> raw)
+                || !(message.get("version") instanceof Number version)) {
+            return;
+        }
+        Map<String, String> data = new HashMap<>();
+        raw.forEach((key, value) -> data.put(String.valueOf(key), String.valueOf(value)));
+        Room incoming = new Room(Map.copyOf(data), version.longValue(), String.valueOf(message.get("node")));
+        rooms.merge(roomId, incoming, (current, candidate) -> candidate.newerThan(current) ? candidate : current);
+        roomUpdatesReceived.increment();
+    }
+}
@@ -0,0 +1,866 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Transport-independent execution engine.
+ * Every execution is addressed by a key (the WebSocket session ID, or the SSE execution ID)
+ * and reports its events through an {@link ExecutionSink}.
+ */
+@Service
+public class CodeExecutionService implements ExecutionEngine {
+
+    // --- Process Management Maps ---
+    // Key is ALWAYS the unique execution key for true sandboxing
+    private final Map<String, Process> processes = new ConcurrentHashMap<>();
+    private final Map<String, PrintWriter> writers = new ConcurrentHashMap<>();
+    private final Map<String, String> sessionLanguages = new ConcurrentHashMap<>();
+    private final Map<String, AtomicBoolean> inputRequestedFlags = new ConcurrentHashMap<>();
+
+    // --- Bulk stdin ---
+    // Keys whose stdin is being streamed from an upload, and keys whose stdin was closed after one
+    private final Set<String> feedingInput = ConcurrentHashMap.newKeySet();
+    private final Set<String> inputClosed = ConcurrentHashMap.newKeySet();
+
+    // --- Execution Locking ---
+    // One execution at a time per key. Each run holds its own lock object, so a stopped run's
+    // cleanup can tell whether a newer run has taken the key meanwhile.
+    private final Map<String, AtomicBoolean> executionLocks = new ConcurrentHashMap<>();
+
+    // Owner of each key, used by the reaper to find executions nobody is listening to
+    private final Map<String, ExecutionSink> sinks = new ConcurrentHashMap<>();
+
+    // --- Flight recorder state (see ExecutionEvents) ---
+    private final Map<String, ExecutionEvents.FirstOutput> firstOutputEvents = new ConcurrentHashMap<>();
+    private final Map<String, ExecutionEvents.InputWait> inputWaitEvents = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> outputBytes = new ConcurrentHashMap<>();
+
+    // --- Output backpressure ---
+    // Sandbox (for cgroup freeze) and pause bookkeeping of each running execution
+    private final Map<String, ResourceLimiter.Sandbox> sandboxes = new ConcurrentHashMap<>();
+    private final Map<String, PauseState> pauseStates = new ConcurrentHashMap<>();
+
+    // Pause the program once this many bytes are queued for its client...
+    @Value("${app.backpressure.high-watermark-bytes:262144}")
+    private long highWatermarkBytes;
+
+    // ...and resume it once the queue has drained below this
+    @Value("${app.backpressure.low-watermark-bytes:65536}")
+    private long lowWatermarkBytes;
+
+    // Wall-clock limit for a run; time spent paused for backpressure is not counted
+    @Value("${app.execution.timeout:300}")
+    private long executionTimeoutSeconds;
+
+    private final WorkspaceManager workspaceManager;
+    private final ResourceLimiter resourceLimiter;
+    private final LanguageRuntimeRegistry runtimes;
+    private final ProjectWorkspaces projects;
+    private final MeterRegistry meterRegistry;
+
+    public CodeExecutionService(WorkspaceManager workspaceManager, ResourceLimiter resourceLimiter,
+                                LanguageRuntimeRegistry runtimes, ProjectWorkspaces projects, MeterRegistry meterRegistry) {
+        this.workspaceManager = workspaceManager;
+        this.resourceLimiter = resourceLimiter;
+        this.runtimes = runtimes;
+        this.projects = projects;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // A multi-file run: the validated file map, its entry file and the persistent project to build it in
+    private record ProjectRun(String projectKey, Map<String, String> files, String entry) {}
+
+    private static class PauseState {
+        private boolean paused;
+        private long pausedSince;
+        private long totalPausedMillis;
+
+        synchronized long pausedMillis() {
+            return totalPausedMillis + (paused ? System.currentTimeMillis() - pausedSince : 0);
+        }
+    }
+
+    // --- StreamGobbler (Handles output ONLY for the originating sink) ---
+    private class StreamGobbler implements Runnable {
+        private final ExecutionSink sink; // The originating sink
+        private final InputStream inputStream;
+        private final String sessionId; // The key for this process
+        private final String language;
+        private final long inputWaitMillis; // Silence before input is assumed to be needed
+        private final String type; // "output" for stdout, "stderr" for stderr
+        private volatile boolean running = true;
+        private long lastOutputTime = System.currentTimeMillis();
+
+        public StreamGobbler(String sessionId, ExecutionSink sink, InputStream inputStream, LanguageRuntime runtime, String type) {
+            this.sink = sink;
+            this.inputStream = inputStream;
+            this.sessionId = sessionId;
+            this.language = runtime.id();
+            this.inputWaitMillis = runtime.inputWaitMillis();
+            this.type = type;
+        }
+
+        public void stopRunning() { this.running = false; }
+
+        @Override
+        public void run() {
+            // Using UTF_8 encoding for reading process output
+            try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+                char[] buffer = new char[512];
+                int bytesRead;
+                while (running) {
+                    if (reader.ready()) {
+                        bytesRead = reader.read(buffer);
+                        if (bytesRead > 0) {
+                            String output = new String(buffer, 0, bytesRead);
+                            // ALWAYS send output ONLY to the originating sink
+                            sink.send(type, output);
+                            recordOutput(this.sessionId, ExecutionEvents.utf8Length(output));
+                            if (sink.pendingBytes() > highWatermarkBytes) {
+                                pause(this.sessionId);
+                            }
+                            lastOutputTime = System.currentTimeMillis();
+                            inputRequestedFlags.computeIfPresent(this.sessionId, (k, v) -> { v.set(false); return v; });
+                        } else if (bytesRead == -1) { // End of stream
+                            break;
+                        }
+                    } else if (isPaused(this.sessionId)) {
+                        // Silence is the client lagging behind, not the program waiting for input
+                        if (sink.pendingBytes() <= lowWatermarkBytes) {
+                            resume(this.sessionId);
+                        }
+                        lastOutputTime = System.currentTimeMillis();
+                        Thread.sleep(5);
+                    } else {
+                        // Check if input might be needed
+                        Process process = processes.get(this.sessionId);
+                        AtomicBoolean inputRequested = inputRequestedFlags.get(this.sessionId);
+                        if (process != null && process.isAlive() && inputRequested != null && !inputRequested.get()
+                                && !feedingInput.contains(this.sessionId) && !inputClosed.contains(this.sessionId)) {
+                            long timeSinceLastOutput = System.currentTimeMillis() - lastOutputTime;
+                            if (timeSinceLastOutput > inputWaitMillis) {
+                                sink.send(ExecutionSink.INPUT_REQUEST, "");
+                                inputRequested.set(true);
+                                ExecutionEvents.InputWait inputWait = newEvent(new ExecutionEvents.InputWait(), this.sessionId, language);
+                                inputWait.begin();
+                                inputWaitEvents.put(this.sessionId, inputWait);
+                                System.out.println("⏳ Input requested for " + language + " on " + this.sessionId);
+                            }
+                        }
+                        Thread.sleep(5); // Prevent busy-waiting
+                    }
+                }
+                // Drain any remaining output after stopRunning() is called or stream ends
+                while (reader.ready()) {
+                    bytesRead = reader.read(buffer);
+                    if (bytesRead > 0) {
+                        String finalOutput = new String(buffer, 0, bytesRead);
+                        sink.send(type, finalOutput);
+                        recordOutput(this.sessionId, ExecutionEvents.utf8Length(finalOutput));
+                    } else {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                // Silently ignore IOExceptions, often happens when process is killed
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // Restore interrupted status
+            } catch (Exception e) {
+                 System.err.println("❌ StreamGobbler error for " + sessionId + ": " + e.getMessage());
+            } finally {
+                try { if (inputStream != null) inputStream.close(); } catch (IOException e) { /* ignore */ }
+            }
+        }
+    }
+
+    // --- Public API used by the transports ---
+
+    /**
+     * Starts an execution for the given key on a new thread.
+     * Returns false if the key already has an execution in progress.
+     */
+    public boolean execute(String sessionId, String language, String code, ExecutionSink sink) {
+        return start(sessionId, language, code, null, RunOptions.DEFAULT, sink);
+    }
+
+    @Override
+    public boolean execute(String sessionId, String language, String code, RunOptions options, ExecutionSink sink) {
+        return start(sessionId, language, code, null, options, sink);
+    }
+
+    /**
+     * Like {@link #execute}, but syncs a multi-file project (already validated by ProjectWorkspaces)
+     * into the persistent workspace projectKey and builds it incrementally before running entry.
+     */
+    public boolean executeProject(String sessionId, String projectKey, String language,
+                                  Map<String, String> files, String entry, ExecutionSink sink) {
+        return start(sessionId, language, null, new ProjectRun(projectKey, files, entry), RunOptions.DEFAULT, sink);
+    }
+
+    private boolean start(String sessionId, String language, String code, ProjectRun project, RunOptions options,
+                          ExecutionSink sink) {
+        AtomicBoolean run = new AtomicBoolean(true);
+        AtomicBoolean holder = executionLocks.compute(sessionId, (k, current) -> current != null && current.get() ? current : run);
+        if (holder != run) { // Another run still holds the key
+            return false;
+        }
+        // Kill any previous process *for this specific key*
+        killProcess(sessionId);
+        sinks.put(sessionId, sink);
+        ExecutionEvents.Queue queued = newEvent(new ExecutionEvents.Queue(), sessionId, language);
+        queued.begin();
+        // Start execution in a new thread, associated only with this key
+        new Thread(() -> {
+            queued.commit();
+            executeUniversal(sessionId, run, sink, language, code, project, options);
+        }).start();
+        return true;
+    }
+
+    // Releases the lock for this key and kills its process. The lock goes first: a run that spawns
+    // after that sees it is stopped, one that spawned before has its process killed here.
+    public void stop(String sessionId) {
+        executionLocks.computeIfPresent(sessionId, (k, v) -> {
+            v.set(false);
+            return v;
+        });
+        killProcess(sessionId);
+    }
+
+    // Removes all state associated with a key, e.g. when its transport disconnects
+    public void release(String sessionId) {
+        killProcess(sessionId);
+        inputRequestedFlags.remove(sessionId);
+        executionLocks.remove(sessionId);
+        sessionLanguages.remove(sessionId);
+        writers.remove(sessionId);
+        sinks.remove(sessionId);
+        feedingInput.remove(sessionId);
+        inputClosed.remove(sessionId);
+    }
+
+    public boolean isRunning(String sessionId) {
+        AtomicBoolean lock = executionLocks.get(sessionId);
+        return lock != null && lock.get();
+    }
+
+    // Runs action if run is still the key's latest execution, atomically with start() and stop(); returns its result
+    private boolean ifCurrent(String sessionId, AtomicBoolean run, BooleanSupplier action) {
+        boolean[] result = {false};
+        executionLocks.computeIfPresent(sessionId, (k, current) -> {
+            result[0] = current == run && action.getAsBoolean();
+            return current;
+        });
+        return result[0];
+    }
+
+    // --- SANDBOXED EXECUTION METHOD ---
+    private void executeUniversal(String sessionId, AtomicBoolean run, ExecutionSink sink, String language, String code,
+                                  ProjectRun project, RunOptions options) {
+        Path tempDir = null; // Pooled workspace of a single-file run; project workspaces are kept
+        Path workDir;
+        ProjectWorkspace runLocked = null; // Project whose run lock this thread holds
+        ResourceLimiter.Sandbox sandbox = null;
+        PauseState pauseState = null;
+        Process process = null;
+        PrintWriter writer = null;
+        ExecutionEvents.FirstOutput firstOutput = null;
+        StreamGobbler stdoutGobbler = null;
+        StreamGobbler stderrGobbler = null;
+        ExecutionEvents.Completion completion = newEvent(new ExecutionEvents.Completion(), sessionId, language);
+        completion.begin();
+        completion.exitCode = 1;
+        AtomicLong bytes = new AtomicLong();
+        outputBytes.put(sessionId, bytes);
+
+        try {
+             System.out.println("🚀 Starting execution for session: " + sessionId + " - Language: " + language);
+
+            sessionLanguages.put(sessionId, language);
+            inputRequestedFlags.put(sessionId, new AtomicBoolean(false));
+            inputClosed.remove(sessionId); // Left by a stopped predecessor whose cleanup came after this run started
+            sink.send(ExecutionSink.EXECUTION_STARTED, ""); // Send ONLY to originator
+
+            LanguageRuntime runtime = runtimes.find(language);
+            if (runtime == null) {
+                sink.send(ExecutionSink.ERROR, "Unsupported language: " + language);
+                // No need to release lock here, finally block handles it
+                return;
+            }
+            if (project != null && !runtime.supportsProjects()) {
+                sink.send(ExecutionSink.ERROR, runtime.displayName() + " does not support multi-file projects.");
+                return;
+            }
+
+            ExecutionEvents.WorkspaceSetup workspaceSetup = newEvent(new ExecutionEvents.WorkspaceSetup(), sessionId, language);
+            workspaceSetup.begin();
+            ProjectWorkspace projectWorkspace = null;
+            if (project == null) {
+                tempDir = workspaceManager.acquire(sessionId);
+                workDir = tempDir;
+            } else {
+                projectWorkspace = projects.open(project.projectKey());
+                workDir = projectWorkspace.getSources();
+            }
+            // Compile step and program share one set of resource limits
+            sandbox = resourceLimiter.open(sessionId, runtime.limits());
+            sandboxes.put(sessionId, sandbox);
+            pauseState = new PauseState();
+            pauseStates.put(sessionId, pauseState);
+            workspaceSetup.commit();
+
+            ExecutionEvents.Compile compile = newEvent(new ExecutionEvents.Compile(), sessionId, language);
+            compile.sourceBytes = project == null ? ExecutionEvents.utf8Length(code)
+                    : project.files().values().stream().mapToLong(ExecutionEvents::utf8Length).sum();
+            compile.begin();
+            LanguageRuntime.Build build;
+            try {
+                if (projectWorkspace == null) {
+                    build = runtime.prepare(code, workDir);
+                    runCompileSteps(runtime, build, workDir, sandbox);
+                } else {
+                    // Waits for other builds and for programs still running in the project (e.g. a collab room's)
+                    lockForBuild(run, projectWorkspace, sink);
+                    try {
+                        projectWorkspace.sync(project.files());
+                        build = runtime.prepareProject(projectWorkspace, project.entry());
+                        runCompileSteps(runtime, build, workDir, sandbox);
+                    } catch (Exception e) {
+                        projectWorkspace.unlockBuild();
+                        throw e;
+                    }
+                    projectWorkspace.downgradeToRun();
+                    runLocked = projectWorkspace;
+                }
+                compile.success = true;
+            } finally {
+                compile.commit();
+            }
+
+            ProcessBuilder pb = new ProcessBuilder(sandbox.wrap(build.runCommand().toArray(new String[0])));
+            pb.directory(workDir.toFile());
+
+            // Set up environment variables
+            Map<String, String> env = pb.environment();
+            env.put("PYTHONUNBUFFERED", "1");
+            env.put("NODE_NO_READLINE", "1");
+            env.put("TERM", "dumb"); // Use a basic terminal type
+            env.put("LC_ALL", "en_US.UTF-8"); // Ensure UTF-8 locale
+            env.put("LANG", "en_US.UTF-8");
+            env.putAll(runtime.environment());
+
+            ExecutionEvents.ProcessSpawn spawn = newEvent(new ExecutionEvents.ProcessSpawn(), sessionId, language);
+            spawn.begin();
+            process = pb.start();
+            spawn.pid = process.pid();
+            spawn.commit();
+
+            firstOutput = newEvent(new ExecutionEvents.FirstOutput(), sessionId, language);
+            firstOutput.begin();
+            // Create writer with UTF-8 encoding and auto-flush
+            writer = new PrintWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8), true);
+
+            // Stored only if the run hasn't been stopped: a stop during setup or compilation had no process to kill yet
+            Process spawned = process;
+            PrintWriter spawnedWriter = writer;
+            ExecutionEvents.FirstOutput spawnedFirstOutput = firstOutput;
+            boolean live = ifCurrent(sessionId, run, () -> {
+                if (!run.get()) {
+                    return false;
+                }
+                processes.put(sessionId, spawned);
+                writers.put(sessionId, spawnedWriter);
+                firstOutputEvents.put(sessionId, spawnedFirstOutput);
+                return true;
+            });
+            if (!live) {
+                destroy(sessionId, process, writer);
+                throw new InterruptedException("Stopped before the program started");
+            }
+            if (options.stdin() != null) {
+                feedInput(sessionId, process, options.stdin(), true, sink);
+            }
+
+            // Start gobblers for stdout and stderr
+            stdoutGobbler = new StreamGobbler(sessionId, sink, process.getInputStream(), runtime, ExecutionSink.OUTPUT);
+            stderrGobbler = new StreamGobbler(sessionId, sink, process.getErrorStream(), runtime, ExecutionSink.STDERR);
+            new Thread(stdoutGobbler).start();
+            new Thread(stderrGobbler).start();
+
+            // Wait for process completion with timeout (paused time doesn't count)
+            boolean finished = waitForCompletion(sessionId, process);
+
+            // Signal gobblers to stop *after* process ends or times out
+            if (stdoutGobbler != null) stdoutGobbler.stopRunning();
+            if (stderrGobbler != null) stderrGobbler.stopRunning();
+
+            // Brief pause to allow gobblers to finish reading remaining output
+            Thread.sleep(75);
+
+            if (finished) {
+                int exitCode = process.exitValue();
+                System.out.println("✅ Process for " + sessionId + " completed - Exit code: " + exitCode);
+                reportLimits(sink, sandbox, exitCode);
+                completion.exitCode = exitCode;
+                sink.send(ExecutionSink.EXECUTION_COMPLETE, "Exit code: " + exitCode);
+            } else { // Timeout occurred
+                 System.out.println("⏰ Process for " + sessionId + " timeout - Forcibly destroying.");
+                 destroy(sessionId, process, writer); // Ensure it's killed forcefully
+                 sink.send(ExecutionSink.ERROR, "Execution timed out after " + describeTimeout(executionTimeoutSeconds) + ".");
+                 completion.exitCode = 124;
+                 completion.timedOut = true;
+                 sink.send(ExecutionSink.EXECUTION_COMPLETE, "Exit code: 124 (Timeout)");
+            }
+
+        } catch (IOException e) {
+             System.err.println("❌ IOException during execution for " + sessionId + ": " + e.getMessage());
+             sink.send(ExecutionSink.ERROR, "Execution failed (IO): " + e.getMessage());
+             sink.send(ExecutionSink.EXECUTION_COMPLETE, "Exit code: 1");
+        } catch (InterruptedException e) {
+             System.err.println("❌ Execution interrupted for " + sessionId + ": " + e.getMessage());
+             Thread.currentThread().interrupt(); // Restore interrupted status
+             sink.send(ExecutionSink.ERROR, "Execution was interrupted.");
+             sink.send(ExecutionSink.EXECUTION_COMPLETE, "Exit code: 130 (Interrupted)");
+        } catch (Exception e) { // Catch broader exceptions like compilation errors
+             System.err.println("❌ General execution error for " + sessionId + ": " + e.getMessage());
+             reportLimits(sink, sandbox, 1); // e.g. the compiler was OOM-killed
+             sink.send(ExecutionSink.ERROR, "Execution failed: " + e.getMessage());
+             sink.send(ExecutionSink.EXECUTION_COMPLETE, "Exit code: 1");
+        } finally {
+            // --- CRITICAL: Always release this run's lock (after a stop, a new run may hold the key) ---
+            run.set(false);
+            System.out.println("🔓 Lock released for: " + sessionId);
+
+            outputBytes.remove(sessionId, bytes);
+            completion.outputBytes = bytes.get();
+            completion.commit();
+
+            // Clean up temporary files and ensure process is killed; state is only removed while it is this run's
+            ExecutionEvents.Cleanup cleanup = newEvent(new ExecutionEvents.Cleanup(), sessionId, language);
+            cleanup.begin();
+            sandboxes.remove(sessionId, sandbox);
+            pauseStates.remove(sessionId, pauseState);
+            firstOutputEvents.remove(sessionId, firstOutput);
+            // Kill every descendant before the workspace can go to another execution
+            processes.remove(sessionId, process);
+            writers.remove(sessionId, writer);
+            destroy(sessionId, process, writer);
+            if (sandbox != null) sandbox.close();
+            if (runLocked != null) runLocked.unlockRun();
+            cleanupUniversal(sessionId, run, tempDir);
+            cleanup.commit();
+        }
+    }
+
+    // Blocks until the project can be rebuilt; gives up if the run is stopped or released meanwhile
+    private void lockForBuild(AtomicBoolean run, ProjectWorkspace project, ExecutionSink sink) throws Exception {
+        // A previous run that just reported completion is still finishing its cleanup; only tell the client about a real wait
+        if (project.tryLockForBuild(500, TimeUnit.MILLISECONDS)) {
+            return;
+        }
+        sink.send(ExecutionSink.OUTPUT, "⏳ Waiting for another run in this project to finish...\n");
+        while (!project.tryLockForBuild(250, TimeUnit.MILLISECONDS)) {
+            if (!run.get() || !sink.isOpen()) {
+                throw new InterruptedException("Stopped while waiting for the project");
+            }
+        }
+    }
+
+    // Also used by ComplexityBenchmark, which compiles once and then runs many times
+    void runCompileSteps(LanguageRuntime runtime, LanguageRuntime.Build build, Path workDir,
+                                 ResourceLimiter.Sandbox sandbox) throws Exception {
+        for (List<String> step : build.compileSteps()) {
+            runCompileStep(runtime, step, workDir, sandbox);
+        }
+        build.onSuccess().run();
+    }
+
+    // Runs one compile step inside the sandbox; its output goes to a log file so a chatty compiler can't block on a full pipe
+    private void runCompileStep(LanguageRuntime runtime, List<String> step, Path tempDir, ResourceLimiter.Sandbox sandbox) throws Exception {
+        Path log = tempDir.resolve(".compile.log");
+        ProcessBuilder pb = new ProcessBuilder(sandbox.wrap(step.toArray(new String[0])));
+        pb.directory(tempDir.toFile());
+        pb.environment().putAll(runtime.environment());
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(log.toFile());
+        Process compile = pb.start();
+        if (!compile.waitFor(runtime.compileTimeoutSeconds(), TimeUnit.SECONDS)) {
+            destroyTree(compile.toHandle());
+            throw new Exception(runtime.displayName() + " compilation timed out after " + runtime.compileTimeoutSeconds() + " seconds");
+        }
+        if (compile.exitValue() != 0) {
+            throw new Exception(runtime.displayName() + " compilation failed:\n" + getErrorOutput(Files.newInputStream(log)));
+        }
+    }
+
+    // "5 minutes", "1 minute", "90 seconds"
+    private static String describeTimeout(long seconds) {
+        if (seconds % 60 == 0) {
+            return seconds / 60 + (seconds == 60 ? " minute" : " minutes");
+        }
+        return seconds + (seconds == 1 ? " second" : " seconds");
+    }
+
+    // --- Flight recorder helpers ---
+
+    private static <T extends ExecutionEvents.ExecutionEvent> T newEvent(T event, String sessionId, String language) {
+        event.sessionId = sessionId;
+        event.language = language;
+        return event;
+    }
+
+    private void recordOutput(String sessionId, long bytes) {
+        AtomicLong total = outputBytes.get(sessionId);
+        if (total != null) total.addAndGet(bytes);
+        ExecutionEvents.FirstOutput firstOutput = firstOutputEvents.remove(sessionId);
+        if (firstOutput != null) {
+            firstOutput.bytes = bytes;
+            firstOutput.commit();
+        }
+    }
+
+    private boolean waitForCompletion(String sessionId, Process process) throws InterruptedException {
+        long startedAt = System.currentTimeMillis();
+        long timeoutMillis = TimeUnit.SECONDS.toMillis(executionTimeoutSeconds);
+        while (true) {
+            PauseState state = pauseStates.get(sessionId);
+            long paused = state != null ? state.pausedMillis() : 0;
+            long remaining = timeoutMillis - (System.currentTimeMillis() - startedAt - paused);
+            if (remaining <= 0) {
+                return false;
+            }
+            if (process.waitFor(Math.min(remaining, 1000), TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+    }
+
+    // --- Backpressure: stop the program while its client can't keep up ---
+
+    private boolean isPaused(String sessionId) {
+        PauseState state = pauseStates.get(sessionId);
+        if (state == null) return false;
+        synchronized (state) {
+            return state.paused;
+        }
+    }
+
+    private void pause(String sessionId) {
+        PauseState state = pauseStates.get(sessionId);
+        if (state == null) return;
+        synchronized (state) {
+            if (state.paused || !signalProgram(sessionId, true)) return;
+            state.paused = true;
+            state.pausedSince = System.currentTimeMillis();
+        }
+        meterRegistry.counter("thinkcode.backpressure.pauses").increment();
+        System.out.println("⏸️ Output backlog for " + sessionId + ", pausing program");
+    }
+
+    private void resume(String sessionId) {
+        PauseState state = pauseStates.get(sessionId);
+        if (state == null) return;
+        long pausedFor;
+        synchronized (state) {
+            if (!state.paused || !signalProgram(sessionId, false)) return;
+            state.paused = false;
+            pausedFor = System.currentTimeMillis() - state.pausedSince;
+            state.totalPausedMillis += pausedFor;
+        }
+        meterRegistry.counter("thinkcode.backpressure.resumes").increment();
+        meterRegistry.timer("thinkcode.backpressure.paused").record(pausedFor, TimeUnit.MILLISECONDS);
+        System.out.println("▶️ Client caught up for " + sessionId + ", resuming program after " + pausedFor + " ms");
+    }
+
+    // Freezes/thaws the execution's cgroup if it has one, otherwise SIGSTOP/SIGCONT its process tree
+    private boolean signalProgram(String sessionId, boolean stop) {
+        ResourceLimiter.Sandbox sandbox = sandboxes.get(sessionId);
+        if (sandbox != null && sandbox.freeze(stop)) {
+            return true;
+        }
+        Process process = processes.get(sessionId);
+        if (process == null || !process.isAlive()) {
+            return false;
+        }
+        List<String> command = new ArrayList<>(List.of("kill", stop ? "-STOP" : "-CONT", String.valueOf(process.pid())));
+        process.descendants().forEach(d -> command.add(String.valueOf(d.pid())));
+        try {
+            Process kill = new ProcessBuilder(command).redirectErrorStream(true).start();
+            return kill.waitFor(2, TimeUnit.SECONDS) && kill.exitValue() == 0;
+        } catch (IOException e) {
+            System.err.println("❌ Failed to signal " + sessionId + ": " + e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Tells the user about any resource limit (OOM, CPU, pids, file size) the run ran into
+    private void reportLimits(ExecutionSink sink, ResourceLimiter.Sandbox sandbox, int exitCode) {
+        if (sandbox == null) return;
+        for (String notice : sandbox.limitEvents(exitCode)) {
+            sink.send(ExecutionSink.RESOURCE_LIMIT, notice);
+        }
+        // Not a limit event: those make the run uncacheable, and a throttled run still finished normally
+        String throttled = sandbox.throttleNotice();
+        if (throttled != null) {
+            sink.send(ExecutionSink.STDERR, "\n⚠️ " + throttled + "\n");
+        }
+    }
+
+    /**
+     * Writes a line of input to the process for this key.
+     * Problems are reported back through the sink as "error" events.
+     */
+    public void sendInput(String sessionId, String inputData, ExecutionSink sink) {
+        if (feedingInput.contains(sessionId)) {
+            sink.send(ExecutionSink.ERROR, "Cannot send input: earlier input is still being streamed.");
+            return;
+        }
+        PrintWriter writer = writers.get(sessionId);
+        if (writer != null) {
+            try {
+                // Check if the process is still alive before writing
+                Process process = processes.get(sessionId);
+                if (process != null && process.isAlive()) {
+                    writer.println(inputData);
+                    writer.flush(); // Ensure data is sent immediately
+                    ExecutionEvents.InputWait inputWait = inputWaitEvents.remove(sessionId);
+                    if (inputWait != null) {
+                        inputWait.bytes = ExecutionEvents.utf8Length(inputData) + 1; // println's newline
+                        inputWait.commit();
+                    }
+                    // No need to sleep here, StreamGobbler handles input_request logic
+                    inputRequestedFlags.computeIfPresent(sessionId, (k, v) -> { v.set(false); return v; });
+                } else {
+                     sink.send(ExecutionSink.ERROR, "Cannot send input: Process is not running.");
+                }
+            } catch (Exception e) { // Catch potential errors during write/flush
+                 System.err.println("❌ Failed to send input for " + sessionId + ": " + e.getMessage());
+                 sink.send(ExecutionSink.ERROR, "Failed to send input: " + e.getMessage());
+            }
+        } else if (inputClosed.contains(sessionId)) {
+             sink.send(ExecutionSink.ERROR, "Cannot send input: the program's input was supplied with execute and is closed.");
+        } else {
+             sink.send(ExecutionSink.ERROR, "Cannot send input: No active process found for your session.");
+        }
+    }
+
+    /**
+     * Streams an upload to the program's stdin on its own thread, a chunk at a time: a full pipe
+     * blocks the feeder, not the caller, and the input is never held in memory as a whole. Line
+     * input is refused until it's done.
+     */
+    @Override
+    public void sendInput(String sessionId, StdinUploads.Upload upload, ExecutionSink sink) {
+        Process process = processes.get(sessionId);
+        if (process == null || !process.isAlive() || !writers.containsKey(sessionId)) {
+            sink.send(ExecutionSink.ERROR, inputClosed.contains(sessionId)
+                    ? "Cannot send input: the program's input was supplied with execute and is closed."
+                    : "Cannot send input: No active process found for your session.");
+            return;
+        }
+        feedInput(sessionId, process, upload, false, sink);
+    }
+
+    // closeAfter: stdin given with execute, so the program sees end-of-input once it is consumed
+    private void feedInput(String sessionId, Process process, StdinUploads.Upload upload, boolean closeAfter,
+                           ExecutionSink sink) {
+        if (!feedingInput.add(sessionId)) {
+            sink.send(ExecutionSink.ERROR, "Cannot send input: earlier input is still being streamed.");
+            return;
+        }
+        if (closeAfter) {
+            inputClosed.add(sessionId);
+        }
+        Thread feeder = new Thread(() -> {
+            long started = System.currentTimeMillis();
+            long written = 0;
+            OutputStream stdin = process.getOutputStream();
+            try (FileChannel file = FileChannel.open(upload.path())) {
+                ByteBuffer buffer = ByteBuffer.allocate(65536);
+                while (file.read(buffer) >= 0) {
+                    buffer.flip();
+                    stdin.write(buffer.array(), 0, buffer.limit());
+                    written += buffer.limit();
+                    buffer.clear();
+                }
+                stdin.flush();
+                if (closeAfter) {
+                    PrintWriter writer = writers.remove(sessionId);
+                    if (writer != null) {
+                        writer.close();
+                    }
+                }
+                System.out.println("📥 Streamed " + written + " bytes of input to " + sessionId
+                        + " in " + (System.currentTimeMillis() - started) + " ms");
+            } catch (IOException e) {
+                // A program that exits (or is stopped) without reading everything breaks the pipe; that's not an error
+                if (process.isAlive()) {
+                    System.err.println("❌ Failed to stream input for " + sessionId + ": " + e.getMessage());
+                    sink.send(ExecutionSink.ERROR, "Failed to send input: " + e.getMessage());
+                }
+            } finally {
+                feedingInput.remove(sessionId);
+                inputRequestedFlags.computeIfPresent(sessionId, (k, v) -> { v.set(false); return v; });
+            }
+        }, "stdin-feeder");
+        feeder.setDaemon(true);
+        feeder.start();
+    }
+
+    // --- Other Helper Methods (mostly unchanged, ensure UTF-8 is used) ---
+
+    private void killProcess(String sessionId) {
+        destroy(sessionId, processes.remove(sessionId), writers.remove(sessionId));
+    }
+
+    // Kills a process tree and closes its writer; either may be null
+    private void destroy(String sessionId, Process process, PrintWriter writer) {
+        if (process != null) {
+            if (process.isAlive()) {
+                 System.out.println("🛑 Forcibly destroying process tree for session: " + sessionId);
+                 destroyTree(process.toHandle());
+                 try {
+                     // Brief wait to allow OS cleanup
+                     process.waitFor(50, TimeUnit.MILLISECONDS);
+                 } catch (InterruptedException e) {
+                     Thread.currentThread().interrupt();
+                 }
+            } else {
+                 System.out.println("ⓘ Process for session " + sessionId + " already terminated.");
+            }
+        }
+        if (writer != null) {
+            writer.close();
+        }
+    }
+    
+    // Kills a process and every descendant (go run's binary, shell-outs, mono children...).
+    // Descendants are collected first: once the parent dies they are re-parented and can't be found.
+    static void destroyTree(ProcessHandle root) {
+        List<ProcessHandle> descendants = root.descendants().collect(Collectors.toList());
+        root.destroyForcibly();
+        descendants.forEach(ProcessHandle::destroyForcibly);
+    }
+
+    // --- Reaping (called periodically by ResourceReaper) ---
+
+    /**
+     * Reclaims state that normal cleanup missed: executions whose owner went away,
+     * dead process entries, writers without a process, and OS processes spawned by this
+     * server that no execution tracks any more. Returns reclaimed counts per kind.
+     */
+    public Map<String, Integer> reap(long orphanAgeMillis) {
+        Map<String, Integer> reclaimed = new HashMap<>();
+
+        // Executions whose transport is gone
+        for (Map.Entry<String, ExecutionSink> entry : sinks.entrySet()) {
+            if (!entry.getValue().isOpen()) {
+                System.out.println("🧹 Reaping abandoned execution: " + entry.getKey());
+                release(entry.getKey());
+                reclaimed.merge("abandoned_execution", 1, Integer::sum);
+            }
+        }
+
+        // Finished executions whose state was never removed
+        for (Map.Entry<String, AtomicBoolean> entry : executionLocks.entrySet()) {
+            String key = entry.getKey();
+            if (!entry.getValue().get() && !sinks.containsKey(key)) {
+                executionLocks.remove(key, entry.getValue());
+                reclaimed.merge("stale_lock", 1, Integer::sum);
+            }
+        }
+
+        // Process entries left behind for processes that already exited
+        for (Map.Entry<String, Process> entry : processes.entrySet()) {
+            if (!entry.getValue().isAlive() && !isRunning(entry.getKey())) {
+                processes.remove(entry.getKey(), entry.getValue());
+                reclaimed.merge("leaked_process_entry", 1, Integer::sum);
+            }
+        }
+
+        // Writers with no process behind them
+        for (Map.Entry<String, PrintWriter> entry : writers.entrySet()) {
+            if (!processes.containsKey(entry.getKey()) && writers.remove(entry.getKey(), entry.getValue())) {
+                entry.getValue().close();
+                reclaimed.merge("leaked_writer", 1, Integer::sum);
+            }
+        }
+
+        // OS processes we spawned (or inherited as PID 1) that no execution tracks.
+        // Nothing legitimate outlives the execution timeout, so only old ones are killed.
+        Set<Long> tracked = new HashSet<>();
+        for (Process process : processes.values()) {
+            tracked.add(process.pid());
+            process.descendants().forEach(d -> tracked.add(d.pid()));
+        }
+        Instant cutoff = Instant.now().minusMillis(orphanAgeMillis);
+        for (ProcessHandle child : ProcessHandle.current().children().collect(Collectors.toList())) {
+            boolean old = child.info().startInstant().map(start -> start.isBefore(cutoff)).orElse(false);
+            if (!tracked.contains(child.pid()) && old) {
+                System.out.println("🧹 Killing orphaned process tree: " + child.pid() + " " + child.info().command().orElse("?"));
+                destroyTree(child);
+                reclaimed.merge("orphan_process", 1, Integer::sum);
+            }
+        }
+        return reclaimed;
+    }
+
+    // Cleanup clears the key's per-run state unless a newer run has taken it, and the workspace goes back to the pool
+    private void cleanupUniversal(String sessionId, AtomicBoolean run, Path tempDir) {
+        ifCurrent(sessionId, run, () -> {
+            sessionLanguages.remove(sessionId);
+            inputRequestedFlags.remove(sessionId);
+            inputWaitEvents.remove(sessionId);
+            inputClosed.remove(sessionId);
+            return true;
+        });
+        // Note: Lock is released in executeUniversal's finally block, not here.
+
+        // Wiping happens on the workspace reaper thread
+        workspaceManager.release(tempDir);
+    }
+
+    // Reads error stream (unchanged, uses UTF-8)
+    private String getErrorOutput(InputStream errorStream) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(errorStream, StandardCharsets.UTF_8))) {
+            // Read all lines, limit output size if necessary to prevent memory issues
+            return reader.lines().limit(100).collect(Collectors.joining("\n"));
+        } catch (IOException e) {
+             System.err.println("❌ IOException reading error stream: " + e.getMessage());
+             return "Error reading compilation/runtime output stream.";
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.util.Map;
+
+/**
+ * Room registry and pub/sub for collab rooms, so members of one room can be connected to
+ * different server instances. Room state (code, language, hostId) lives here; WebSocket sessions
+ * stay with the instance they are connected to, which delivers published events to its own members.
+ *
+ * Selected with app.collab.backplane: "in-process" (single instance) or "cluster", at startup
+ * (see CollabBackplaneConfig).
+ */
+public interface CollabBackplane extends AutoCloseable {
+
+    // code_sync, chat_message, collab_update...; excludedMember is a WebSocket session ID or null
+    record RoomEvent(String roomId, String type, String data, String excludedMember) {}
+
+    @FunctionalInterface
+    interface Listener {
+        void onEvent(RoomEvent event);
+    }
+
+    void createRoom(String roomId, Map<String, String> data);
+
+    // Copy of the room's state, or null if no such room exists
+    Map<String, String> getRoom(String roomId);
+
+    // Merges changes into the room; returns the new state, or null if no such room exists
+    Map<String, String> updateRoom(String roomId, Map<String, String> changes);
+
+    // Delivers the event to every instance's listener, this one included
+    void publish(RoomEvent event);
+
+    void subscribe(Listener listener);
+
+    // For /api/collab-stats
+    Map<String, Object> snapshot();
+
+    // Stops replication, if any
+    @Override
+    default void close() {}
+}
@@ -0,0 +1,42 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Picks the collab backplane from app.collab.backplane when the application starts. This is a
+ * factory method rather than conditional beans because the Docker image runs with Spring AOT,
+ * which evaluates bean conditions at build time.
+ */
+@Configuration
+public class CollabBackplaneConfig {
+
+    @Bean(destroyMethod = "close")
+    public CollabBackplane collabBackplane(
+            @Value("${app.collab.backplane:in-process}") String backplane,
+            // host:port or unix:/path this node accepts peer connections on
+            @Value("${app.collab.cluster.listen:127.0.0.1:7950}") String listenAddress,
+            // Comma-separated addresses of the other nodes
+            @Value("${app.collab.cluster.peers:}") String peerAddresses,
+            // Shared secret between nodes; empty accepts anyone who can reach the socket
+            @Value("${app.collab.cluster.token:}") String token,
+            // Messages queued per peer before further ones are dropped
+            @Value("${app.collab.cluster.outbox-size:10000}") int outboxSize,
+            @Value("${app.collab.cluster.reconnect-interval-ms:1000}") long reconnectIntervalMs) throws IOException {
+        switch (backplane) {
+            case "in-process":
+                return new InProcessCollabBackplane();
+            case "cluster":
+                ClusterCollabBackplane cluster = new ClusterCollabBackplane(listenAddress, peerAddresses, token,
+                        outboxSize, reconnectIntervalMs);
+                cluster.start();
+                return cluster;
+            default:
+                throw new IllegalStateException("Unknown app.collab.backplane '" + backplane
+                        + "' (expected in-process or cluster)");
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+
+/**
+ * A {@link LanguageRuntime} described entirely by app.runtimes.&lt;id&gt;.* properties:
+ *
+ *   source-file        file the code is written to (default "main")
+ *   source-header      line prepended to the code
+ *   compile            compile command; several steps are separated by " &amp;&amp; "
+ *   run                run command (required)
+ *   env.NAME           environment variables
+ *   compile-timeout-seconds, input-wait-ms
+ *   version-command    prints the toolchain version (a cache-key input)
+ *   warm-up-code       trivial program used for warm-up
+ *   warm-up            extra warm-up commands, " &amp;&amp; "-separated
+ *
+ * Commands are split on whitespace; {workspace}, {source} and {source-name} are substituted per argument.
+ * Resource limits stay under app.limits.&lt;id&gt;.* (see ResourceLimiter).
+ */
+public class CommandLanguageRuntime implements LanguageRuntime {
+
+    private static final String STEP_SEPARATOR = " && ";
+
+    private final String id;
+    private final String displayName;
+    private final String sourceFile;
+    private final String sourceHeader;
+    private final List<List<String>> compileSteps;
+    private final List<String> runCommand;
+    private final Map<String, String> environment;
+    private final long compileTimeoutSeconds;
+    private final long inputWaitMillis;
+    private final ResourceLimiter.Limits limits;
+    private final List<String> versionCommand;
+    private final String warmUpCode;
+    private final List<List<String>> warmUpCommands;
+    private volatile String toolchainVersion;
+
+    public CommandLanguageRuntime(String id, Environment env, ResourceLimiter resourceLimiter) {
+        String prefix = "app.runtimes." + id + ".";
+        this.id = id;
+        this.displayName = env.getProperty(prefix + "display-name", id);
+        this.sourceFile = env.getProperty(prefix + "source-file", "main");
+        this.sourceHeader = env.getProperty(prefix + "source-header");
+        this.compileSteps = steps(env.getProperty(prefix + "compile"));
+        this.runCommand = split(env.getRequiredProperty(prefix + "run"));
+        this.environment = Binder.get(env).bind(prefix + "env", Bindable.mapOf(String.class, String.class)).orElse(Map.of());
+        this.compileTimeoutSeconds = env.getProperty(prefix + "compile-timeout-seconds", Long.class,
+                env.getProperty("app.compilation.timeout", Long.class, 30L));
+        this.inputWaitMillis = env.getProperty(prefix + "input-wait-ms", Long.class,
+                env.getProperty("app.runtimes.default.input-wait-ms", Long.class, 450L));
+        this.limits = resourceLimiter.limitsFor(id);
+        this.versionCommand = split(env.getProperty(prefix + "version-command", ""));
+        this.warmUpCode = env.getProperty(prefix + "warm-up-code");
+        this.warmUpCommands = steps(env.getProperty(prefix + "warm-up"));
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public String displayName() {
+        return displayName;
+    }
+
+    @Override
+    public Build prepare(String code, Path workspace) throws IOException {
+        Map<String, String> variables = variables(code, workspace);
+        String fileName = substitute(sourceFile, variables);
+        Path source = workspace.resolve(fileName);
+        variables.put("source", source.toString());
+        variables.put("source-name", fileName);
+
+        String content = transformSource(code);
+        if (sourceHeader != null) {
+            content = sourceHeader + "\n" + content;
+        }
+        Files.writeString(source, content, StandardCharsets.UTF_8);
+
+        List<List<String>> compile = compileSteps.stream()
+                .map(step -> substituteAll(step, variables))
+                .collect(Collectors.toList());
+        return new Build(compile, substituteAll(runCommand, variables));
+    }
+
+    @Override
+    public boolean supportsProjects() {
+        return true;
+    }
+
+    // Full build of the synced project with the entry file as {source}; imports resolve from src/
+    @Override
+    public Build prepareProject(ProjectWorkspace project, String entry) throws IOException {
+        Path sources = project.getSources();
+        String code = Files.readString(sources.resolve(entry), StandardCharsets.UTF_8);
+        Map<String, String> variables = variables(code, sources);
+
+        // A wrapped/headed entry goes to a hidden sibling, so relative imports still work
+        Path source = sources.resolve(entry);
+        String content = transformSource(code);
+        if (sourceHeader != null) {
+            content = sourceHeader + "\n" + content;
+        }
+        if (!content.equals(code)) {
+            source = source.resolveSibling("." + source.getFileName());
+            Files.writeString(source, content, StandardCharsets.UTF_8);
+        }
+        variables.put("source", source.toString());
+        variables.put("source-name", sources.relativize(source).toString());
+
+        List<List<String>> compile = compileSteps.stream()
+                .map(step -> substituteAll(step, variables))
+                .collect(Collectors.toList());
+        return new Build(compile, substituteAll(runCommand, variables));
+    }
+
+    // Placeholders available to source-file and the commands; subclasses add their own
+    protected Map<String, String> variables(String code, Path workspace) {
+        Map<String, String> variables = new HashMap<>();
+        variables.put("workspace", workspace.toString());
+        return variables;
+    }
+
+    // Run command with the given placeholders filled in
+    protected List<String> runCommand(Map<String, String> variables) {
+        return substituteAll(runCommand, variables);
+    }
+
+    // Hook for runtimes that wrap or rewrite the user's code
+    protected String transformSource(String code) {
+        return code;
+    }
+
+    @Override
+    public Map<String, String> environment() {
+        return environment;
+    }
+
+    @Override
+    public long compileTimeoutSeconds() {
+        return compileTimeoutSeconds;
+    }
+
+    @Override
+    public long inputWaitMillis() {
+        return inputWaitMillis;
+    }
+
+    @Override
+    public ResourceLimiter.Limits limits() {
+        return limits;
+    }
+
+    @Override
+    public List<String> cacheKeyInputs() {
+        return List.of(
+            "runtime=" + id,
+            "source-file=" + sourceFile,
+            "source-header=" + (sourceHeader != null ? sourceHeader : ""),
+            "compile=" + compileSteps,
+            "run=" + runCommand,
+            "env=" + new TreeMap<>(environment),
+            "toolchain=" + toolchainVersion()
+        );
+    }
+
+    @Override
+    public String warmUpCode() {
+        return warmUpCode;
+    }
+
+    @Override
+    public List<List<String>> warmUpCommands() {
+        return warmUpCommands;
+    }
+
+    // First line of version-command's output; resolved once, on first use
+    public String toolchainVersion() {
+        String version = toolchainVersion;
+        if (version == null) {
+            version = versionCommand.isEmpty() ? "unversioned" : runVersionCommand();
+            toolchainVersion = version;
+        }
+        return version;
+    }
+
+    private String runVersionCommand() {
+        try {
+            Process process = new ProcessBuilder(versionCommand).redirectErrorStream(true).start();
+            String firstLine;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                firstLine = reader.lines().filter(line -> !line.isBlank()).findFirst().orElse("").trim();
+            }
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return "unknown";
+            }
+            return firstLine.isEmpty() ? "unknown" : firstLine;
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not determine " + id + " toolchain version: " + e.getMessage());
+            return "unavailable";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+
+    // --- Command templates ---
+
+    private static List<List<String>> steps(String value) {
+        if (value == null || value.isBlank()) {
+            return List.of();
+        }
+        List<List<String>> steps = new ArrayList<>();
+        for (String step : value.split(Pattern.quote(STEP_SEPARATOR))) {
+            if (!step.isBlank()) {
+                steps.add(split(step));
+            }
+        }
+        return List.copyOf(steps);
+    }
+
+    protected static List<String> split(String command) {
+        return command.isBlank() ? List.of() : List.of(command.trim().split("\\s+"));
+    }
+
+    private static List<String> substituteAll(List<String> command, Map<String, String> variables) {
+        return command.stream().map(arg -> substitute(arg, variables)).collect(Collectors.toList());
+    }
+
+    private static String substitute(String template, Map<String, String> variables) {
+        String result = template;
+        for (Map.Entry<String, String> variable : variables.entrySet()) {
+            result = result.replace("{" + variable.getKey() + "}", variable.getValue());
+        }
+        return result;
+    }
+}
@@ -1,10 +1,18 @@
 package com.thinkcode.ai.onlinecompiler;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
@@ -15,6 +23,35 @@ public class CompilerController {
 
     // Removed the @Autowired ContainerPoolManager as it no longer exists
 
+    private final WebSocketTrafficStats trafficStats;
+    private final WorkspaceManager workspaceManager;
+    private final FlightRecorderService flightRecorder;
+    private final AnalysisStats analysisStats;
+    private final WorkerDispatcher workerDispatcher;
+    private final ExecutionWorker executionWorker;
+    private final CollabBackplane collab;
+    private final CachingExecutionEngine resultCache;
+    private final ToolchainWarmUp warmUp;
+
+    // /api/diagnostics/jfr requires a matching X-Diagnostics-Token header; unset disables it
+    @Value("${app.jfr.dump-token:}")
+    private String dumpToken;
+
+    public CompilerController(WebSocketTrafficStats trafficStats, WorkspaceManager workspaceManager,
+                              FlightRecorderService flightRecorder, AnalysisStats analysisStats,
+                              WorkerDispatcher workerDispatcher, ExecutionWorker executionWorker,
+                              CollabBackplane collab, CachingExecutionEngine resultCache, ToolchainWarmUp warmUp) {
+        this.trafficStats = trafficStats;
+        this.workspaceManager = workspaceManager;
+        this.flightRecorder = flightRecorder;
+        this.analysisStats = analysisStats;
+        this.workerDispatcher = workerDispatcher;
+        this.executionWorker = executionWorker;
+        this.collab = collab;
+        this.resultCache = resultCache;
+        this.warmUp = warmUp;
+    }
+
     public static class CompileRequest {
         private String code;
         private String language;
@@ -60,10 +97,85 @@ public class CompilerController {
         return Map.of(
             "status", "Online",
             "mode", "Local System Execution",
-            "platform", "Hugging Face Spaces"
+            "platform", "Hugging Face Spaces",
+            "toolchains", warmUp.state()
         );
     }
 
+    // Outbound WebSocket bandwidth and encode cost, JSON vs binary protocol
+    @GetMapping("/api/ws-stats")
+    public Map<String, Object> getWebSocketStats() {
+        return trafficStats.snapshot();
+    }
+
+    // Workspace pool occupancy and disk usage
+    @GetMapping("/api/workspace-stats")
+    public Map<String, Object> getWorkspaceStats() {
+        return workspaceManager.stats();
+    }
+
+    // /gemini/analysis requests answered locally vs by the model, and how often the two agreed
+    @GetMapping("/api/analysis-stats")
+    public Map<String, Object> getAnalysisStats() {
+        return analysisStats.snapshot();
+    }
+
+    // Where executions run: worker capacity and load as last polled, plus this instance's own worker role
+    @GetMapping("/api/worker-stats")
+    public Map<String, Object> getWorkerStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(workerDispatcher.snapshot());
+        if (executionWorker.isEnabled()) {
+            stats.put("thisWorker", executionWorker.status());
+        }
+        return stats;
+    }
+
+    // Result cache: entries, bytes held, evictions and hit rate per language
+    @GetMapping("/api/result-cache-stats")
+    public Map<String, Object> getResultCacheStats() {
+        return resultCache.snapshot();
+    }
+
+    // Toolchain warm-up progress and each language's cold and warm baseline run time
+    @GetMapping("/api/warmup-stats")
+    public Map<String, Object> getWarmUpStats() {
+        return warmUp.snapshot();
+    }
+
+    // Collab backplane: rooms known to this node and, in a cluster, peer links and event counts
+    @GetMapping("/api/collab-stats")
+    public Map<String, Object> getCollabStats() {
+        return collab.snapshot();
+    }
+
+    // Dumps the always-on flight recording (open with JDK Mission Control or `jfr print`)
+    @GetMapping("/api/diagnostics/jfr")
+    public ResponseEntity<StreamingResponseBody> dumpFlightRecording(
+            @RequestHeader(value = "X-Diagnostics-Token", required = false) String token) throws IOException {
+        if (dumpToken.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (token == null || !MessageDigest.isEqual(dumpToken.getBytes(StandardCharsets.UTF_8),
+                token.getBytes(StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (!flightRecorder.isRecording()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        Path dump = flightRecorder.dump();
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(dump, out);
+            } finally {
+                Files.deleteIfExists(dump);
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"thinkcode-" + System.currentTimeMillis() + ".jfr\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+
     private String readStream(InputStream inputStream) throws IOException {
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
             return reader.lines().collect(Collectors.joining("\n"));
@@ -0,0 +1,454 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Empirical complexity measurement: compiles the program once, runs it on inputs of geometrically
+ * growing size (warm-up runs first, then repeats), and fits CPU time and peak memory per size
+ * against the usual complexity classes (see ComplexityFit).
+ *
+ * Inputs come from a template ({n}, {range}, {reversed}, {ints}, {chars}) or from a generator
+ * program that reads n on stdin and prints the input. CPU time and peak memory are read from the
+ * run's cgroup when there is one; otherwise CPU time comes from the shell's child rusage (10 ms
+ * resolution) and peak memory from sampling VmHWM of the process tree.
+ *
+ * With app.workers.addresses set, benchmarks run on an execution worker like any other user code
+ * (see WorkerDispatcher.benchmark); the web tier only runs them as the in-process fallback.
+ */
+@Service
+public class ComplexityBenchmark {
+
+    // Runs the program, then records its children's CPU time in the file named by $0
+    private static final String TIMED = "\"$@\"; status=$?; times > \"$0\"; exit $status";
+    private static final Pattern TIMES_VALUE = Pattern.compile("(\\d+)m([\\d.]+)s");
+    private static final Pattern TEMPLATE_TOKEN = Pattern.compile("\\{(n|range|reversed|ints|chars)\\}");
+
+    @Value("${app.benchmark.max-sizes:12}")
+    private int maxSizes;
+
+    @Value("${app.benchmark.max-repeats:10}")
+    private int maxRepeats;
+
+    @Value("${app.benchmark.max-input-bytes:8388608}")
+    private long maxInputBytes;
+
+    // A size whose runs get close to this stops the series
+    @Value("${app.benchmark.run-timeout-seconds:10}")
+    private long runTimeoutSeconds;
+
+    @Value("${app.benchmark.total-timeout-seconds:90}")
+    private long totalTimeoutSeconds;
+
+    private final Semaphore slots;
+    private final CodeExecutionService executionService;
+    private final WorkspaceManager workspaceManager;
+    private final ResourceLimiter resourceLimiter;
+    private final LanguageRuntimeRegistry runtimes;
+    private final MeterRegistry meterRegistry;
+    private final WorkerDispatcher dispatcher;
+
+    public ComplexityBenchmark(@Value("${app.benchmark.max-concurrent:2}") int maxConcurrent,
+                               CodeExecutionService executionService, WorkspaceManager workspaceManager,
+                               ResourceLimiter resourceLimiter, LanguageRuntimeRegistry runtimes, MeterRegistry meterRegistry,
+                               WorkerDispatcher dispatcher) {
+        this.slots = new Semaphore(maxConcurrent);
+        this.dispatcher = dispatcher;
+        this.executionService = executionService;
+        this.workspaceManager = workspaceManager;
+        this.resourceLimiter = resourceLimiter;
+        this.runtimes = runtimes;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Either input (a template) or generator; sizes, or minSize * growth^i for steps sizes
+    public record Request(String language, String code, String input, Generator generator, List<Long> sizes,
+                          Long minSize, Double growth, Integer steps, Integer warmups, Integer repeats) {}
+
+    // Reads n from stdin, prints the program's input for that size; language defaults to python
+    public record Generator(String language, String code) {}
+
+    // Medians over the repeats; peakMemoryKb is null when it could not be measured
+    public record Point(long n, double cpuMillis, double wallMillis, Long peakMemoryKb, List<Double> cpuRunsMillis) {}
+
+    public record Report(String language, int warmups, int repeats, List<Point> points,
+                         ComplexityFit.Result time, ComplexityFit.Result memory,
+                         String cpuSource, String memorySource, String stoppedEarly, String evidence) {}
+
+    // failure is set (and the rest meaningless) when the run did not complete normally
+    private record Sample(double cpuMillis, double wallMillis, long peakBytes, String cpuSource, String memorySource, String failure) {
+        static Sample failed(String failure) {
+            return new Sample(0, 0, 0, null, null, failure);
+        }
+    }
+
+    /**
+     * Runs a benchmark synchronously. Throws IllegalArgumentException for invalid requests,
+     * IllegalStateException when all benchmark slots are busy, and Exception with the compiler's
+     * output when the program (or generator) does not compile.
+     */
+    public Report run(Request request) throws Exception {
+        if (dispatcher.dispatchesRemotely()) {
+            return dispatcher.benchmark(request, () -> runHere(request));
+        }
+        return runHere(request);
+    }
+
+    // Runs the benchmark in this JVM; also how an ExecutionWorker serves one
+    Report runHere(Request request) throws Exception {
+        LanguageRuntime runtime = runtimes.find(request.language());
+        if (runtime == null) {
+            throw new IllegalArgumentException("Unsupported language: " + request.language());
+        }
+        if (request.code() == null || request.code().isBlank()) {
+            throw new IllegalArgumentException("'code' is required.");
+        }
+        if ((request.input() == null) == (request.generator() == null)) {
+            throw new IllegalArgumentException("Provide exactly one of 'input' (a template using {n}) or 'generator'.");
+        }
+        LanguageRuntime generatorRuntime = null;
+        if (request.generator() != null) {
+            String generatorLanguage = request.generator().language() != null ? request.generator().language() : "python";
+            generatorRuntime = runtimes.find(generatorLanguage);
+            if (generatorRuntime == null || request.generator().code() == null) {
+                throw new IllegalArgumentException("The generator needs 'code' in a supported language.");
+            }
+        }
+        List<Long> sizes = sizes(request);
+        int warmups = bounded(request.warmups(), 1, 0, 5, "warmups");
+        int repeats = bounded(request.repeats(), 3, 1, maxRepeats, "repeats");
+
+        if (!slots.tryAcquire()) {
+            throw new IllegalStateException("Too many benchmarks are running, please try again shortly.");
+        }
+        String key = "bench-" + UUID.randomUUID();
+        Path workDir = null;
+        Path generatorDir = null;
+        long startedAt = System.currentTimeMillis();
+        try {
+            System.out.println("📏 Benchmark " + key + " - Language: " + runtime.id() + ", sizes " + sizes);
+            workDir = workspaceManager.acquire(key);
+            LanguageRuntime.Build build = compile(runtime, request.code(), workDir, key);
+            LanguageRuntime.Build generatorBuild = null;
+            if (generatorRuntime != null) {
+                generatorDir = workspaceManager.acquire(key + "-gen");
+                generatorBuild = compile(generatorRuntime, request.generator().code(), generatorDir, key + "-gen");
+            }
+
+            long deadline = startedAt + TimeUnit.SECONDS.toMillis(totalTimeoutSeconds);
+            Path input = workDir.resolve(".bench-input");
+            List<Point> points = new ArrayList<>();
+            String cpuSource = null;
+            String memorySource = null;
+            String stoppedEarly = null;
+            for (long n : sizes) {
+                if (System.currentTimeMillis() > deadline) {
+                    stoppedEarly = "Time budget of " + totalTimeoutSeconds + " s used up before n=" + n + ".";
+                    break;
+                }
+                String failure = generatorBuild != null
+                        ? generate(generatorRuntime, generatorBuild, generatorDir, n, input, key + "-gen-" + n)
+                        : expand(request.input(), n, input);
+                if (failure == null && Files.size(input) > maxInputBytes) {
+                    failure = "the input is larger than " + maxInputBytes + " bytes";
+                }
+
+                List<Sample> samples = new ArrayList<>();
+                for (int i = 0; failure == null && i < warmups + repeats; i++) {
+                    Sample sample = measure(runtime, build, workDir, input, key + "-" + n + "-" + i);
+                    if (sample.failure() != null) {
+                        failure = sample.failure();
+                    } else if (i >= warmups) {
+                        samples.add(sample);
+                    }
+                }
+                if (failure != null) {
+                    stoppedEarly = "Stopped at n=" + n + ": " + failure + ".";
+                    break;
+                }
+                cpuSource = samples.get(0).cpuSource();
+                memorySource = samples.get(0).memorySource();
+                Point point = point(n, samples);
+                points.add(point);
+                if (point.wallMillis() > TimeUnit.SECONDS.toMillis(runTimeoutSeconds) / 2.0 && n != sizes.get(sizes.size() - 1)) {
+                    stoppedEarly = "Stopped after n=" + n + ": runs are approaching the " + runTimeoutSeconds + " s per-run limit.";
+                    break;
+                }
+            }
+
+            ComplexityFit.Result time = ComplexityFit.fit(points.stream().map(Point::n).collect(Collectors.toList()),
+                    points.stream().map(Point::cpuMillis).collect(Collectors.toList()));
+            // Sampled memory misses runs that exit within the first sampling interval
+            List<Point> withMemory = points.stream().filter(point -> point.peakMemoryKb() != null).collect(Collectors.toList());
+            ComplexityFit.Result memory = ComplexityFit.fit(withMemory.stream().map(Point::n).collect(Collectors.toList()),
+                    withMemory.stream().map(point -> (double) point.peakMemoryKb()).collect(Collectors.toList()));
+
+            meterRegistry.timer("thinkcode.benchmark.duration", "language", runtime.id())
+                    .record(System.currentTimeMillis() - startedAt, TimeUnit.MILLISECONDS);
+            System.out.println("📏 Benchmark " + key + " done: time " + time.best() + ", memory " + memory.best()
+                    + " (" + points.size() + " sizes in " + (System.currentTimeMillis() - startedAt) + " ms)");
+            return new Report(runtime.id(), warmups, repeats, points, time, memory, cpuSource, memorySource, stoppedEarly,
+                    evidence(runtime, warmups, repeats, points, time, memory, stoppedEarly));
+        } finally {
+            workspaceManager.release(workDir);
+            workspaceManager.release(generatorDir);
+            slots.release();
+        }
+    }
+
+    private LanguageRuntime.Build compile(LanguageRuntime runtime, String code, Path workDir, String id) throws Exception {
+        try (ResourceLimiter.Sandbox sandbox = resourceLimiter.open(id, runtime.limits())) {
+            LanguageRuntime.Build build = runtime.prepare(code, workDir);
+            executionService.runCompileSteps(runtime, build, workDir, sandbox);
+            return build;
+        }
+    }
+
+    // --- Sizes and inputs ---
+
+    private List<Long> sizes(Request request) {
+        TreeSet<Long> sizes = new TreeSet<>();
+        if (request.sizes() != null && !request.sizes().isEmpty()) {
+            for (Long size : request.sizes()) {
+                if (size == null || size < 1) {
+                    throw new IllegalArgumentException("Sizes must be positive.");
+                }
+                sizes.add(size);
+            }
+        } else {
+            long minSize = request.minSize() != null ? request.minSize() : 1000;
+            double growth = request.growth() != null ? request.growth() : 2;
+            int steps = bounded(request.steps(), 6, 3, maxSizes, "steps");
+            if (minSize < 1 || growth <= 1 || growth > 10) {
+                throw new IllegalArgumentException("minSize must be positive and growth between 1 and 10.");
+            }
+            double size = minSize;
+            for (int i = 0; i < steps; i++, size *= growth) {
+                sizes.add(Math.round(size));
+            }
+        }
+        if (sizes.size() < 3 || sizes.size() > maxSizes) {
+            throw new IllegalArgumentException("Between 3 and " + maxSizes + " distinct sizes are needed.");
+        }
+        return new ArrayList<>(sizes);
+    }
+
+    private static int bounded(Integer value, int fallback, int min, int max, String name) {
+        int result = value != null ? value : fallback;
+        if (result < min || result > max) {
+            throw new IllegalArgumentException("'" + name + "' must be between " + min + " and " + max + ".");
+        }
+        return result;
+    }
+
+    // Writes the template for size n; random tokens are seeded with n so every run sees the same input
+    private String expand(String template, long n, Path input) throws IOException {
+        Random random = new Random(n);
+        StringBuilder out = new StringBuilder();
+        Matcher matcher = TEMPLATE_TOKEN.matcher(template);
+        while (matcher.find()) {
+            matcher.appendReplacement(out, "");
+            String token = matcher.group(1);
+            if (token.equals("n")) {
+                out.append(n);
+                continue;
+            }
+            for (long i = 0; i < n; i++) {
+                if (out.length() > maxInputBytes) {
+                    return "the input is larger than " + maxInputBytes + " bytes";
+                }
+                switch (token) {
+                    case "range" -> out.append(i + 1).append(' ');
+                    case "reversed" -> out.append(n - i).append(' ');
+                    case "ints" -> out.append(random.nextInt(1_000_000_000)).append(' ');
+                    default -> out.append((char) ('a' + random.nextInt(26)));
+                }
+            }
+            if (!token.equals("chars")) {
+                out.setLength(out.length() - 1);
+            }
+        }
+        matcher.appendTail(out);
+        Files.writeString(input, out, StandardCharsets.UTF_8);
+        return null;
+    }
+
+    // Runs the generator with n on stdin and its stdout going to the input file; returns an error or null
+    private String generate(LanguageRuntime runtime, LanguageRuntime.Build build, Path workDir, long n, Path input, String id)
+            throws IOException, InterruptedException {
+        Path size = workDir.resolve(".bench-n");
+        Path errors = workDir.resolve(".bench-stderr");
+        Files.writeString(size, n + "\n");
+        try (ResourceLimiter.Sandbox sandbox = resourceLimiter.open(id, runtime.limits())) {
+            ProcessBuilder pb = new ProcessBuilder(sandbox.wrap(build.runCommand().toArray(new String[0])));
+            pb.directory(workDir.toFile());
+            pb.environment().putAll(runtime.environment());
+            pb.redirectInput(size.toFile());
+            pb.redirectOutput(input.toFile());
+            pb.redirectError(errors.toFile());
+            Process process = pb.start();
+            if (!process.waitFor(runTimeoutSeconds, TimeUnit.SECONDS)) {
+                CodeExecutionService.destroyTree(process.toHandle());
+                return "the input generator timed out";
+            }
+            if (process.exitValue() != 0) {
+                return "the input generator failed with exit code " + process.exitValue() + firstLine(errors);
+            }
+            return null;
+        }
+    }
+
+    // --- Measuring one run ---
+
+    private Sample measure(LanguageRuntime runtime, LanguageRuntime.Build build, Path workDir, Path input, String id)
+            throws IOException, InterruptedException {
+        Path times = workDir.resolve(".bench-times");
+        Path errors = workDir.resolve(".bench-stderr");
+        Files.deleteIfExists(times);
+        List<String> command = new ArrayList<>(List.of("/bin/sh", "-c", TIMED, times.toString()));
+        command.addAll(build.runCommand());
+
+        try (ResourceLimiter.Sandbox sandbox = resourceLimiter.open(id, runtime.limits())) {
+            ProcessBuilder pb = new ProcessBuilder(sandbox.wrap(command.toArray(new String[0])));
+            pb.directory(workDir.toFile());
+            pb.environment().putAll(runtime.environment());
+            pb.redirectInput(input.toFile());
+            pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+            pb.redirectError(errors.toFile());
+
+            long started = System.nanoTime();
+            long deadline = started + TimeUnit.SECONDS.toNanos(runTimeoutSeconds);
+            Process process = pb.start();
+            long sampledPeak = 0;
+            while (!process.waitFor(5, TimeUnit.MILLISECONDS)) {
+                sampledPeak = Math.max(sampledPeak, residentPeakBytes(process.toHandle()));
+                if (System.nanoTime() > deadline) {
+                    CodeExecutionService.destroyTree(process.toHandle());
+                    return Sample.failed("a run took longer than " + runTimeoutSeconds + " s");
+                }
+            }
+            double wallMillis = (System.nanoTime() - started) / 1e6;
+            if (process.exitValue() != 0) {
+                return Sample.failed("the program exited with code " + process.exitValue() + firstLine(errors));
+            }
+
+            long cpuMicros = sandbox.cpuUsageMicros();
+            String cpuSource = "cgroup";
+            if (cpuMicros < 0) {
+                cpuMicros = childCpuMicros(times);
+                cpuSource = "rusage";
+            }
+            long peakBytes = sandbox.memoryPeakBytes();
+            String memorySource = "cgroup";
+            if (peakBytes < 0) {
+                peakBytes = sampledPeak;
+                memorySource = "sampled";
+            }
+            return new Sample(cpuMicros / 1000.0, wallMillis, peakBytes, cpuSource, memorySource, null);
+        }
+    }
+
+    // User + system time of the shell's children, from the second line of `times`
+    private static long childCpuMicros(Path times) throws IOException {
+        if (!Files.exists(times)) {
+            return 0;
+        }
+        Matcher matcher = TIMES_VALUE.matcher(Files.readString(times));
+        double seconds = 0;
+        for (int i = 0; matcher.find(); i++) {
+            if (i >= 2) {
+                seconds += Long.parseLong(matcher.group(1)) * 60 + Double.parseDouble(matcher.group(2));
+            }
+        }
+        return Math.round(seconds * 1_000_000);
+    }
+
+    // Sum of VmHWM (peak resident set) over the process tree, sampled while it runs
+    private static long residentPeakBytes(ProcessHandle root) {
+        return Stream.concat(Stream.of(root), root.descendants()).mapToLong(process -> {
+            try {
+                for (String line : Files.readAllLines(Path.of("/proc", String.valueOf(process.pid()), "status"))) {
+                    if (line.startsWith("VmHWM:")) {
+                        return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                // Exited between listing and reading
+            }
+            return 0;
+        }).sum();
+    }
+
+    private static String firstLine(Path errors) {
+        try (Stream<String> lines = Files.lines(errors)) {
+            return lines.filter(line -> !line.isBlank()).findFirst().map(line -> " (" + line.trim() + ")").orElse("");
+        } catch (IOException | UncheckedIOException e) {
+            return "";
+        }
+    }
+
+    // --- Results ---
+
+    private static Point point(long n, List<Sample> samples) {
+        List<Double> cpu = samples.stream().map(Sample::cpuMillis).map(ComplexityBenchmark::round).collect(Collectors.toList());
+        double cpuMedian = median(cpu);
+        double wallMedian = median(samples.stream().map(Sample::wallMillis).collect(Collectors.toList()));
+        double peakMedian = median(samples.stream().map(sample -> (double) sample.peakBytes()).collect(Collectors.toList()));
+        return new Point(n, round(cpuMedian), round(wallMedian), peakMedian > 0 ? Math.round(peakMedian / 1024) : null, cpu);
+    }
+
+    private static double median(List<Double> values) {
+        List<Double> sorted = values.stream().sorted().collect(Collectors.toList());
+        int middle = sorted.size() / 2;
+        return sorted.size() % 2 == 1 ? sorted.get(middle) : (sorted.get(middle - 1) + sorted.get(middle)) / 2;
+    }
+
+    private static double round(double millis) {
+        return Math.round(millis * 1000) / 1000.0;
+    }
+
+    // Plain-text summary, suitable as the "benchmark" evidence of /gemini/analysis
+    private static String evidence(LanguageRuntime runtime, int warmups, int repeats, List<Point> points,
+                                   ComplexityFit.Result time, ComplexityFit.Result memory, String stoppedEarly) {
+        StringBuilder text = new StringBuilder();
+        text.append(runtime.displayName()).append(", median of ").append(repeats).append(" runs after ")
+                .append(warmups).append(" warm-up run(s) per size:\n");
+        for (Point point : points) {
+            text.append(String.format(Locale.ROOT, "n=%d: CPU %.1f ms, peak memory %s%n", point.n(), point.cpuMillis(),
+                    point.peakMemoryKb() != null ? point.peakMemoryKb() + " KB" : "unknown"));
+        }
+        text.append("Best fit for CPU time: ").append(describe(time)).append("; for peak memory: ").append(describe(memory)).append('.');
+        if (stoppedEarly != null) {
+            text.append('\n').append(stoppedEarly);
+        }
+        return text.toString();
+    }
+
+    private static String describe(ComplexityFit.Result result) {
+        return result.candidates().stream()
+                .filter(candidate -> candidate.complexity().equals(result.best()) && candidate.coefficient() != 0)
+                .findFirst()
+                .map(candidate -> String.format(Locale.ROOT, "%s (R²=%.3f)", result.best(), candidate.r2()))
+                .orElse(result.best());
+    }
+}
@@ -0,0 +1,123 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Least-squares fit of measurements against the usual complexity classes.
+ *
+ * Each class is fitted as y = intercept + coefficient * f(n); the intercept absorbs fixed costs
+ * such as interpreter or JVM startup. The simplest class whose R² is within R2_TOLERANCE of the
+ * best one wins (n vs n log n is rarely separable at practical sizes), and measurements varying by
+ * less than FLAT_TOLERANCE around their mean are reported as O(1).
+ */
+public final class ComplexityFit {
+
+    // Relative spread below which a curve counts as flat (noise, not growth)
+    private static final double FLAT_TOLERANCE = 0.10;
+
+    // R² difference below which the simpler of two classes is preferred
+    private static final double R2_TOLERANCE = 0.005;
+
+    private record Model(String name, DoubleUnaryOperator f) {}
+
+    private static final List<Model> MODELS = List.of(
+        new Model("O(log n)", n -> Math.log(n) / Math.log(2)),
+        new Model("O(n)", n -> n),
+        new Model("O(n log n)", n -> n * Math.log(n) / Math.log(2)),
+        new Model("O(n^2)", n -> n * n),
+        new Model("O(n^3)", n -> n * n * n),
+        new Model("O(2^n)", n -> Math.pow(2, n))
+    );
+
+    // 2^n is only worth considering (and representable) for small sizes
+    private static final double MAX_EXPONENTIAL_SIZE = 64;
+
+    private ComplexityFit() {}
+
+    public record Candidate(String complexity, double intercept, double coefficient, double r2) {}
+
+    public record Result(String best, List<Candidate> candidates) {}
+
+    // sizes and values must have the same length; needs at least 3 points to say anything
+    public static Result fit(List<Long> sizes, List<Double> values) {
+        int count = sizes.size();
+        if (count < 3) {
+            return new Result("unknown", List.of());
+        }
+        double mean = values.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        double total = 0;
+        for (double value : values) {
+            total += (value - mean) * (value - mean);
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        candidates.add(new Candidate("O(1)", mean, 0, 0));
+        long maxSize = sizes.stream().mapToLong(Long::longValue).max().orElse(0);
+        for (Model model : MODELS) {
+            if (model.name().equals("O(2^n)") && maxSize > MAX_EXPONENTIAL_SIZE) {
+                continue;
+            }
+            Candidate candidate = fitModel(model, sizes, values, total);
+            if (candidate != null) {
+                candidates.add(candidate);
+            }
+        }
+        // Candidates are in order of growth here
+        double bestR2 = candidates.stream().mapToDouble(Candidate::r2).max().orElse(0);
+        String best = candidates.stream()
+                .filter(candidate -> candidate.coefficient() != 0 && candidate.r2() >= bestR2 - R2_TOLERANCE)
+                .findFirst().map(Candidate::complexity).orElse("O(1)");
+        double spread = values.stream().mapToDouble(value -> Math.abs(value - mean)).max().orElse(0);
+        if (mean <= 0 || spread / mean < FLAT_TOLERANCE) {
+            best = "O(1)";
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::r2).reversed());
+        return new Result(best, candidates);
+    }
+
+    // Null when the model only fits with a negative slope (it decreases where the data grows)
+    private static Candidate fitModel(Model model, List<Long> sizes, List<Double> values, double total) {
+        int count = sizes.size();
+        double[] x = new double[count];
+        double sumX = 0, sumY = 0;
+        for (int i = 0; i < count; i++) {
+            x[i] = model.f().applyAsDouble(sizes.get(i));
+            sumX += x[i];
+            sumY += values.get(i);
+        }
+        double meanX = sumX / count, meanY = sumY / count;
+        double sxx = 0, sxy = 0;
+        for (int i = 0; i < count; i++) {
+            sxx += (x[i] - meanX) * (x[i] - meanX);
+            sxy += (x[i] - meanX) * (values.get(i) - meanY);
+        }
+        if (sxx == 0 || !Double.isFinite(sxx)) {
+            return null;
+        }
+        double coefficient = sxy / sxx;
+        double intercept = meanY - coefficient * meanX;
+        if (intercept < 0) {
+            // A negative fixed cost is meaningless: refit through the origin
+            double sxxOrigin = 0, sxyOrigin = 0;
+            for (int i = 0; i < count; i++) {
+                sxxOrigin += x[i] * x[i];
+                sxyOrigin += x[i] * values.get(i);
+            }
+            intercept = 0;
+            coefficient = sxyOrigin / sxxOrigin;
+        }
+        if (coefficient <= 0) {
+            return null;
+        }
+        double residual = 0;
+        for (int i = 0; i < count; i++) {
+            double error = values.get(i) - (intercept + coefficient * x[i]);
+            residual += error * error;
+        }
+        double r2 = total == 0 ? 0 : 1 - residual / total;
+        return new Candidate(model.name(), intercept, coefficient, r2);
+    }
+}
@@ -0,0 +1,45 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.util.Map;
+
+/**
+ * What the transports need from an execution backend. CodeExecutionService runs programs in this
+ * JVM; WorkerDispatcher forwards them to separate worker processes (see ExecutionWorker);
+ * CachingExecutionEngine, in front of both, answers repeated cacheable runs from recorded results.
+ *
+ * Keys identify one execution slot (e.g. a WebSocket session, or session#executionId); every event
+ * of the run is delivered to the sink passed to execute/executeProject.
+ */
+public interface ExecutionEngine {
+
+    // Per-run settings from the client; stdin, if given, is fed to the program up front and then closed
+    record RunOptions(boolean cacheable, StdinUploads.Upload stdin) {
+        public static final RunOptions DEFAULT = new RunOptions(false, null);
+    }
+
+    // Starts a run; false if the key already has an execution in progress
+    boolean execute(String key, String language, String code, ExecutionSink sink);
+
+    // Same, with the client's run settings; engines that don't use them ignore them
+    default boolean execute(String key, String language, String code, RunOptions options, ExecutionSink sink) {
+        return execute(key, language, code, sink);
+    }
+
+    // Like execute, for a multi-file project already validated by ProjectWorkspaces
+    boolean executeProject(String key, String projectKey, String language,
+                           Map<String, String> files, String entry, ExecutionSink sink);
+
+    // Writes a line to the program's stdin; problems are reported as "error" events on sink
+    void sendInput(String key, String data, ExecutionSink sink);
+
+    // Streams an upload to the program's stdin, leaving it open; problems are reported on sink
+    void sendInput(String key, StdinUploads.Upload upload, ExecutionSink sink);
+
+    // Kills the program; "execution_complete" follows once it is gone
+    void stop(String key);
+
+    // Forgets the key, killing anything still running under it
+    void release(String key);
+
+    boolean isRunning(String key);
+}
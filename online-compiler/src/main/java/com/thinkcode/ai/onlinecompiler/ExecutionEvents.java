@@ -0,0 +1,143 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for each phase of the execution lifecycle.
+ * Durations come from begin()/end(); every event carries the session ID, language and UTF-8 byte counts where relevant.
+ * Stack traces are off to keep the always-on recording cheap.
+ */
+public final class ExecutionEvents {
+
+    private ExecutionEvents() {}
+
+    // UTF-8 encoded length, without encoding
+    static long utf8Length(CharSequence text) {
+        long bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    @Category({"ThinkCode", "Execution"})
+    @StackTrace(false)
+    abstract static class ExecutionEvent extends Event {
+        @Label("Session ID")
+        String sessionId;
+
+        @Label("Language")
+        String language;
+    }
+
+    @Name("thinkcode.Queue")
+    @Label("Execution Queued")
+    @Description("From the execute request until the execution thread starts")
+    static class Queue extends ExecutionEvent {}
+
+    @Name("thinkcode.WorkspaceSetup")
+    @Label("Workspace Setup")
+    static class WorkspaceSetup extends ExecutionEvent {}
+
+    @Name("thinkcode.Compile")
+    @Label("Compile")
+    @Description("Writing sources and running the compiler (if any)")
+    static class Compile extends ExecutionEvent {
+        @Label("Source Bytes")
+        @DataAmount
+        long sourceBytes;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name("thinkcode.ProcessSpawn")
+    @Label("Process Spawn")
+    static class ProcessSpawn extends ExecutionEvent {
+        @Label("PID")
+        long pid;
+    }
+
+    @Name("thinkcode.FirstOutput")
+    @Label("First Output")
+    @Description("From process spawn until its first output reaches the sink")
+    static class FirstOutput extends ExecutionEvent {
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("thinkcode.InputWait")
+    @Label("Input Wait")
+    @Description("From input_request until the user's input is written to the process")
+    static class InputWait extends ExecutionEvent {
+        @Label("Input Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("thinkcode.Completion")
+    @Label("Execution Completed")
+    @Description("Whole execution, from the execution thread starting to the final event")
+    static class Completion extends ExecutionEvent {
+        @Label("Exit Code")
+        int exitCode;
+
+        @Label("Output Bytes")
+        @DataAmount
+        long outputBytes;
+
+        @Label("Timed Out")
+        boolean timedOut;
+    }
+
+    @Name("thinkcode.Cleanup")
+    @Label("Cleanup")
+    static class Cleanup extends ExecutionEvent {}
+
+    @Name("thinkcode.WebSocketSend")
+    @Label("WebSocket Send")
+    @Description("Writing one frame to a WebSocket session")
+    static class WebSocketSend extends ExecutionEvent {
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Binary")
+        boolean binary;
+    }
+
+    @Name("thinkcode.GeminiCall")
+    @Label("Gemini Call")
+    static class GeminiCall extends ExecutionEvent {
+        @Label("Request Type")
+        String requestType;
+
+        @Label("Prompt Bytes")
+        @DataAmount
+        long promptBytes;
+
+        @Label("Response Bytes")
+        @DataAmount
+        long responseBytes;
+
+        @Label("Status")
+        int status;
+    }
+}
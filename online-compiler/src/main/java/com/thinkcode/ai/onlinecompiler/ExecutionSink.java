@@ -0,0 +1,31 @@
+package com.thinkcode.ai.onlinecompiler;
+
+/**
+ * Destination for the events produced by a single execution.
+ * The WebSocket handler and the SSE controller each provide their own sink,
+ * so both transports share the same execution engine.
+ */
+@FunctionalInterface
+public interface ExecutionSink {
+
+    // Event types emitted by CodeExecutionService
+    String EXECUTION_STARTED = "execution_started";
+    String OUTPUT = "output";
+    String STDERR = "stderr";
+    String INPUT_REQUEST = "input_request";
+    String EXECUTION_COMPLETE = "execution_complete";
+    String ERROR = "error";
+    String RESOURCE_LIMIT = "resource_limit";
+
+    void send(String type, String data);
+
+    // Bytes accepted but not yet delivered to the client; drives output backpressure
+    default long pendingBytes() {
+        return 0;
+    }
+
+    // False once nobody can receive events any more (e.g. the WebSocket closed)
+    default boolean isOpen() {
+        return true;
+    }
+}
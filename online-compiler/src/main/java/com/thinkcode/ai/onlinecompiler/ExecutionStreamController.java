@@ -0,0 +1,379 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * HTTP alternative to /execute-ws for clients behind proxies that drop WebSockets.
+ *
+ *   POST /api/executions              {language, code} -> {executionId}
+ *                                     {language, files, entry?, projectId?} -> {executionId, projectId}
+ *   GET  /api/executions/{id}/events  text/event-stream (resumable via Last-Event-ID)
+ *   POST /api/executions/{id}/input   {data} or {uploadId}
+ *   POST /api/executions/{id}/stop
+ *   POST /api/executions/stdin        raw request body -> {uploadId, bytes}; pass it as stdinUpload
+ *                                     (or small input inline as stdin) when starting a single-file run
+ *
+ * Streams are served with servlet async (SseEmitter), so an idle stream holds no request thread.
+ * A client that reads too slowly pauses the program, as on the WebSocket transport.
+ * Multi-file runs keep their project workspace between runs: pass the returned projectId back to
+ * rebuild incrementally.
+ */
+@RestController
+@RequestMapping("/api/executions")
+@CrossOrigin(origins = "*")
+public class ExecutionStreamController {
+
+    private final ExecutionEngine executionService;
+    private final ProjectWorkspaces projects;
+    private final StdinUploads uploads;
+
+    // Events kept per execution so a reconnecting client can resume
+    @Value("${app.sse.replay-buffer-size:2000}")
+    private int replayBufferSize;
+
+    // How long a finished execution stays resumable
+    @Value("${app.sse.retention-seconds:120}")
+    private long retentionSeconds;
+
+    // Async timeout for a single stream; EventSource clients reconnect automatically
+    @Value("${app.sse.emitter-timeout-ms:330000}")
+    private long emitterTimeoutMs;
+
+    private final Map<String, StreamedExecution> executions = new ConcurrentHashMap<>();
+
+    // Sends events to clients, one task per execution at a time
+    private final ExecutorService senderPool = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "sse-sender");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ScheduledExecutorService expiryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sse-expiry");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ExecutionStreamController(ExecutionEngine executionService, ProjectWorkspaces projects, StdinUploads uploads) {
+        this.executionService = executionService;
+        this.projects = projects;
+        this.uploads = uploads;
+    }
+
+    // --- Per-execution event log, also acts as the engine's sink ---
+    // Events are logged under the lock and sent by a sender-pool task, so a client that reads slowly
+    // blocks neither the program's output thread nor a reconnect. What is queued for the attached
+    // stream is reported as pendingBytes, which pauses the program once the client falls behind.
+    private class StreamedExecution implements ExecutionSink {
+        private final String executionId;
+        private final Deque<StreamEvent> buffer = new ArrayDeque<>();
+        private long lastId = 0;
+        private boolean completed = false;
+        private SseEmitter emitter;
+        private long cursor = 0; // Last event sent to emitter
+        private long queuedBytes = 0; // Of the events after cursor
+        private boolean draining = false;
+
+        StreamedExecution(String executionId) {
+            this.executionId = executionId;
+        }
+
+        @Override
+        public void send(String type, String data) {
+            synchronized (this) {
+                StreamEvent event = new StreamEvent(++lastId, eventName(type), data);
+                buffer.addLast(event);
+                if (emitter != null) {
+                    queuedBytes += event.bytes();
+                }
+                while (buffer.size() > replayBufferSize) {
+                    StreamEvent dropped = buffer.removeFirst();
+                    if (emitter != null && dropped.id > cursor) {
+                        queuedBytes -= dropped.bytes(); // Never sent now
+                    }
+                }
+                if (ExecutionSink.EXECUTION_COMPLETE.equals(type)) {
+                    completed = true;
+                    expiryScheduler.schedule(() -> {
+                        executions.remove(executionId);
+                        executionService.release(executionId);
+                    }, retentionSeconds, TimeUnit.SECONDS);
+                }
+            }
+            scheduleDrain();
+        }
+
+        @Override
+        public synchronized long pendingBytes() {
+            return queuedBytes;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return executions.containsKey(executionId);
+        }
+
+        // Replays everything after lastEventId, then either finishes or keeps the emitter for live events
+        void attach(SseEmitter newEmitter, long lastEventId) {
+            SseEmitter replaced;
+            synchronized (this) {
+                replaced = emitter;
+                emitter = newEmitter;
+                cursor = lastEventId;
+                queuedBytes = buffer.stream().filter(event -> event.id > lastEventId).mapToLong(StreamEvent::bytes).sum();
+            }
+            if (replaced != null) {
+                senderPool.execute(replaced::complete); // Only one live stream per execution; may wait for a stuck send
+            }
+            scheduleDrain();
+        }
+
+        synchronized void detach(SseEmitter oldEmitter) {
+            if (emitter == oldEmitter) {
+                emitter = null;
+                queuedBytes = 0;
+            }
+        }
+
+        private void scheduleDrain() {
+            synchronized (this) {
+                if (draining || emitter == null) {
+                    return;
+                }
+                draining = true;
+            }
+            senderPool.execute(this::drain);
+        }
+
+        // Sends the attached emitter everything after its cursor, then ends the stream if the run is over
+        private void drain() {
+            while (true) {
+                SseEmitter target;
+                List<StreamEvent> batch = new ArrayList<>();
+                synchronized (this) {
+                    target = emitter;
+                    if (target != null) {
+                        buffer.stream().filter(event -> event.id > cursor).forEach(batch::add);
+                    }
+                    if (batch.isEmpty()) {
+                        draining = false;
+                        if (target == null || !completed) {
+                            return;
+                        }
+                        emitter = null;
+                    }
+                }
+                if (batch.isEmpty()) {
+                    target.complete();
+                    return;
+                }
+                for (StreamEvent event : batch) {
+                    boolean sent = deliver(target, event);
+                    synchronized (this) {
+                        if (emitter != target) {
+                            break; // Detached, or replaced by a stream with its own cursor
+                        }
+                        if (!sent) {
+                            emitter = null;
+                            queuedBytes = 0;
+                            break;
+                        }
+                        cursor = event.id;
+                        queuedBytes -= event.bytes();
+                    }
+                }
+            }
+        }
+
+        private boolean deliver(SseEmitter target, StreamEvent event) {
+            try {
+                target.send(SseEmitter.event()
+                        .id(String.valueOf(event.id))
+                        .name(event.name)
+                        .data(event.data));
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                // Client went away; it can resume with Last-Event-ID
+                System.out.println("⚠️ SSE client for " + executionId + " disconnected: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    private record StreamEvent(long id, String name, String data) {
+        long bytes() {
+            return data != null ? ExecutionEvents.utf8Length(data) : 0;
+        }
+    }
+
+    private static String eventName(String type) {
+        switch (type) {
+            case ExecutionSink.EXECUTION_STARTED: return "started";
+            case ExecutionSink.EXECUTION_COMPLETE: return "complete";
+            default: return type; // output, stderr, input_request, error
+        }
+    }
+
+    // --- Endpoints ---
+
+    @PostMapping
+    public ResponseEntity<Map<String, String>> start(@RequestBody Map<String, Object> payload) {
+        String language = payload.get("language") instanceof String value ? value : null;
+        Object code = payload.get("code");
+        Object files = payload.get("files");
+        if (language == null || !(code instanceof String || files instanceof Map)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "'language' and either 'code' or 'files' are required."));
+        }
+
+        String executionId = "sse-" + UUID.randomUUID();
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("executionId", executionId);
+        body.put("events", "/api/executions/" + executionId + "/events");
+
+        StreamedExecution execution = new StreamedExecution(executionId);
+        if (files instanceof Map<?, ?> fileMap) {
+            if (payload.containsKey("stdin") || payload.containsKey("stdinUpload")) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Up-front stdin is only supported for single-file runs."));
+            }
+            Map<String, String> projectFiles = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> file : fileMap.entrySet()) {
+                if (!(file.getValue() instanceof String content)) {
+                    return ResponseEntity.badRequest().body(Map.of("error", "'files' must map file paths to their contents."));
+                }
+                projectFiles.put(String.valueOf(file.getKey()), content);
+            }
+            String invalid = projects.validate(projectFiles);
+            if (invalid != null) {
+                return ResponseEntity.badRequest().body(Map.of("error", invalid));
+            }
+            String entry = ProjectWorkspaces.resolveEntry(projectFiles, payload.get("entry") instanceof String value ? value : null);
+            if (entry == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Entry file not found in the project."));
+            }
+            // Only server-issued project IDs can be reused
+            String projectId = payload.get("projectId") instanceof String value ? value : UUID.randomUUID().toString();
+            if (payload.containsKey("projectId") && !projects.contains("sse:" + projectId)) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Project not found or expired."));
+            }
+            executions.put(executionId, execution);
+            executionService.executeProject(executionId, "sse:" + projectId, language, projectFiles, entry, execution);
+            body.put("projectId", projectId);
+        } else {
+            StdinUploads.Upload stdin = null;
+            try {
+                if (payload.get("stdinUpload") instanceof String uploadId) {
+                    stdin = uploads.get(uploadId);
+                    if (stdin == null) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Input upload not found or expired."));
+                    }
+                } else if (payload.get("stdin") instanceof String inline) {
+                    stdin = uploads.create(inline);
+                }
+            } catch (IOException e) {
+                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of("error", e.getMessage()));
+            }
+            executions.put(executionId, execution);
+            ExecutionEngine.RunOptions options = new ExecutionEngine.RunOptions(Boolean.TRUE.equals(payload.get("cacheable")), stdin);
+            executionService.execute(executionId, language, (String) code, options, execution);
+        }
+
+        System.out.println("📡 SSE execution started: " + executionId + " - Language: " + language);
+        return ResponseEntity.status(HttpStatus.CREATED).body(body);
+    }
+
+    @GetMapping(path = "/{executionId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> events(
+            @PathVariable String executionId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
+
+        StreamedExecution execution = executions.get(executionId);
+        if (execution == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        emitter.onCompletion(() -> execution.detach(emitter));
+        emitter.onTimeout(() -> execution.detach(emitter));
+        emitter.onError(e -> execution.detach(emitter));
+
+        String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+        execution.attach(emitter, parseEventId(lastEventId));
+        return ResponseEntity.ok(emitter);
+    }
+
+    @PostMapping("/{executionId}/input")
+    public ResponseEntity<Map<String, String>> input(@PathVariable String executionId, @RequestBody Map<String, String> payload) {
+        StreamedExecution execution = executions.get(executionId);
+        if (execution == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (payload.get("uploadId") != null) {
+            StdinUploads.Upload upload = uploads.get(payload.get("uploadId"));
+            if (upload == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Input upload not found or expired."));
+            }
+            executionService.sendInput(executionId, upload, execution);
+            return ResponseEntity.accepted().body(Map.of("status", "streaming"));
+        }
+        String data = payload.get("data");
+        if (data == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "'data' or 'uploadId' is required."));
+        }
+        // Errors (e.g. process not running) are delivered on the event stream
+        executionService.sendInput(executionId, data, execution);
+        return ResponseEntity.accepted().body(Map.of("status", "sent"));
+    }
+
+    // Bulk stdin: the body is spooled to disk as it arrives, never held in memory as a whole
+    @PostMapping("/stdin")
+    public ResponseEntity<Map<String, Object>> uploadStdin(InputStream body) {
+        try {
+            StdinUploads.Upload upload = uploads.create(body);
+            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("uploadId", upload.id(), "bytes", upload.bytes()));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{executionId}/stop")
+    public ResponseEntity<Map<String, String>> stop(@PathVariable String executionId) {
+        if (!executions.containsKey(executionId)) {
+            return ResponseEntity.notFound().build();
+        }
+        // The engine emits the final "complete" event once the process is gone
+        executionService.stop(executionId);
+        return ResponseEntity.accepted().body(Map.of("status", "stopping"));
+    }
+
+    private static long parseEventId(String value) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
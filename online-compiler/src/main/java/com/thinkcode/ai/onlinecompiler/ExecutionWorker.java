@@ -0,0 +1,332 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Execution worker: when app.worker.enabled is set, this instance also accepts runs from
+ * WorkerDispatcher on app.worker.listen (see WorkerProtocol) and executes them on its own
+ * CodeExecutionService, sandboxes and workspaces included.
+ *
+ * At most app.worker.max-concurrent runs are accepted at once; further ones are rejected so the
+ * dispatcher can try another worker.
+ */
+@Component
+public class ExecutionWorker {
+
+    @Value("${app.worker.enabled:false}")
+    private boolean enabled;
+
+    // host:port (loopback by default) or unix:/path/to.sock
+    @Value("${app.worker.listen:127.0.0.1:7901}")
+    private String listenAddress;
+
+    @Value("${app.worker.max-concurrent:8}")
+    private int maxConcurrent;
+
+    // Shared secret expected from dispatchers; empty accepts anyone who can reach the socket
+    @Value("${app.workers.token:}")
+    private String token;
+
+    private final CodeExecutionService executionService;
+    private final ProjectWorkspaces projects;
+    private final StdinUploads uploads;
+    private final ToolchainWarmUp warmUp;
+    private final ComplexityBenchmark benchmark;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong connectionIds = new AtomicLong();
+    // Keys also name cgroup leaves, which are shared by every worker on the host
+    private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+    private final ExecutorService connections = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "worker-connection");
+        t.setDaemon(true);
+        return t;
+    });
+    private ServerSocketChannel server;
+
+    public ExecutionWorker(CodeExecutionService executionService, ProjectWorkspaces projects, StdinUploads uploads,
+                           ToolchainWarmUp warmUp, ComplexityBenchmark benchmark) {
+        this.executionService = executionService;
+        this.projects = projects;
+        this.uploads = uploads;
+        this.warmUp = warmUp;
+        this.benchmark = benchmark;
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        server = WorkerProtocol.listen(listenAddress);
+        Thread acceptor = new Thread(this::acceptLoop, "worker-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.out.println("🏭 Execution worker listening on " + listenAddress + " (capacity " + maxConcurrent + ")");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                // Shutting down anyway
+            }
+        }
+        connections.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("event", WorkerProtocol.EVENT_STATUS);
+        status.put("capacity", maxConcurrent);
+        status.put("active", active.get());
+        status.put("warm", warmUp.isReady());
+        return status;
+    }
+
+    private void acceptLoop() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel channel = server.accept();
+                connections.execute(() -> serve(new WorkerProtocol.Connection(channel)));
+            } catch (IOException e) {
+                if (server.isOpen()) {
+                    System.err.println("⚠️ Worker accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(WorkerProtocol.Connection connection) {
+        try (connection) {
+            Map<String, Object> hello = connection.read();
+            if (hello == null) {
+                return;
+            }
+            if (!token.isEmpty() && !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                    String.valueOf(hello.get("token")).getBytes(StandardCharsets.UTF_8))) {
+                connection.write(Map.of("event", WorkerProtocol.EVENT_REJECTED, "reason", "invalid token"));
+                return;
+            }
+            if (WorkerProtocol.OP_STATUS.equals(hello.get("op"))) {
+                connection.write(status());
+            } else if (WorkerProtocol.OP_EXECUTE.equals(hello.get("op"))) {
+                run(connection, hello);
+            } else if (WorkerProtocol.OP_BENCHMARK.equals(hello.get("op"))) {
+                benchmark(connection, hello);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Dispatcher went away or sent garbage; the run (if any) is released below
+        }
+    }
+
+    // --- One run per connection ---
+
+    private void run(WorkerProtocol.Connection connection, Map<String, Object> request) throws IOException {
+        if (active.incrementAndGet() > maxConcurrent) {
+            active.decrementAndGet();
+            connection.write(Map.of("event", WorkerProtocol.EVENT_REJECTED, "reason", "at capacity"));
+            return;
+        }
+        // Dispatchers choose keys independently, so they are namespaced per connection
+        String key = "worker-" + instanceId + "-" + connectionIds.incrementAndGet() + ":" + request.get("key");
+        RemoteSink sink = new RemoteSink(connection);
+        // Bulk input spooled on this side, deleted with the run
+        List<StdinUploads.Upload> spooled = new ArrayList<>();
+        try {
+            String rejection = start(key, request, sink, spooled);
+            if (rejection != null) {
+                connection.write(Map.of("event", WorkerProtocol.EVENT_REJECTED, "reason", rejection));
+                return;
+            }
+            Map<String, Object> message;
+            while ((message = connection.read()) != null) {
+                Object op = message.get("op");
+                if (WorkerProtocol.OP_STDIN.equals(op)) {
+                    AtomicBoolean stopped = new AtomicBoolean();
+                    StdinUploads.Upload upload = receiveStdin(connection, message, spooled, sink, () -> {
+                        stopped.set(true);
+                        executionService.stop(key);
+                    });
+                    if (upload == null) {
+                        break;
+                    }
+                    if (!stopped.get()) {
+                        executionService.sendInput(key, upload, sink);
+                    }
+                } else if (WorkerProtocol.OP_INPUT.equals(op)) {
+                    executionService.sendInput(key, String.valueOf(message.get("data")), sink);
+                } else if (WorkerProtocol.OP_PENDING.equals(op) && message.get("bytes") instanceof Number bytes) {
+                    sink.pendingBytes.set(bytes.longValue());
+                } else if (WorkerProtocol.OP_STOP.equals(op)) {
+                    executionService.stop(key);
+                }
+            }
+        } finally {
+            sink.open.set(false);
+            executionService.release(key);
+            active.decrementAndGet();
+            spooled.forEach(uploads::discard);
+        }
+    }
+
+    // Spools "stdin" chunks (starting with first, if given) until "stdin_end"; null if the connection ends first.
+    // Backlog reports still apply meanwhile; line input is refused, as CodeExecutionService does while streaming.
+    // A stop runs onStop and the rest of the stream is still read, or with no onStop ends it (returning null).
+    private StdinUploads.Upload receiveStdin(WorkerProtocol.Connection connection, Map<String, Object> first,
+                                             List<StdinUploads.Upload> spooled, RemoteSink sink,
+                                             Runnable onStop) throws IOException {
+        StdinUploads.Upload upload = uploads.begin();
+        spooled.add(upload);
+        Base64.Decoder decoder = Base64.getDecoder();
+        Map<String, Object> message = first != null ? first : connection.read();
+        while (message != null) {
+            Object op = message.get("op");
+            if (WorkerProtocol.OP_STDIN_END.equals(op)) {
+                return uploads.finish(upload);
+            } else if (WorkerProtocol.OP_STDIN.equals(op)) {
+                uploads.append(upload, ByteBuffer.wrap(decoder.decode(String.valueOf(message.get("data")))));
+            } else if (WorkerProtocol.OP_PENDING.equals(op) && message.get("bytes") instanceof Number bytes) {
+                sink.pendingBytes.set(bytes.longValue());
+            } else if (WorkerProtocol.OP_INPUT.equals(op)) {
+                sink.send(ExecutionSink.ERROR, "Cannot send input: earlier input is still being streamed.");
+            } else if (WorkerProtocol.OP_STOP.equals(op)) {
+                if (onStop == null) {
+                    return null;
+                }
+                onStop.run();
+            }
+            message = connection.read();
+        }
+        return null;
+    }
+
+    // --- Benchmarks: one request, one reply ---
+
+    private void benchmark(WorkerProtocol.Connection connection, Map<String, Object> message) throws IOException {
+        Map<String, Object> reply = new LinkedHashMap<>();
+        try {
+            ComplexityBenchmark.Report report = benchmark.runHere(
+                    WorkerProtocol.convert(message.get("request"), ComplexityBenchmark.Request.class));
+            reply.put("event", WorkerProtocol.EVENT_REPORT);
+            reply.put("report", report);
+        } catch (IllegalStateException e) {
+            // No free benchmark slot: the dispatcher tries another worker
+            reply.put("event", WorkerProtocol.EVENT_REJECTED);
+            reply.put("reason", e.getMessage());
+        } catch (IllegalArgumentException e) {
+            reply.put("event", WorkerProtocol.EVENT_FAILED);
+            reply.put("error", e.getMessage());
+            reply.put("invalid", true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reply.put("event", WorkerProtocol.EVENT_FAILED);
+            reply.put("error", "Benchmark was interrupted.");
+        } catch (Exception e) {
+            // Compile errors, workspace quota
+            reply.put("event", WorkerProtocol.EVENT_FAILED);
+            reply.put("error", e.getMessage());
+        }
+        connection.write(reply);
+    }
+
+    // Starts the run and acknowledges it; returns the reason when it can't be started
+    private String start(String key, Map<String, Object> request, RemoteSink sink,
+                         List<StdinUploads.Upload> spooled) throws IOException {
+        if (!(request.get("language") instanceof String language)) {
+            return "'language' is required";
+        }
+        // Acknowledge first, so "accepted" precedes the run's own events
+        if (request.get("files") instanceof Map<?, ?> fileMap) {
+            Map<String, String> files = new LinkedHashMap<>();
+            fileMap.forEach((path, content) -> files.put(String.valueOf(path), String.valueOf(content)));
+            String invalid = projects.validate(files);
+            String entry = ProjectWorkspaces.resolveEntry(files, request.get("entry") instanceof String value ? value : null);
+            if (invalid != null || entry == null) {
+                return invalid != null ? invalid : "entry file not found";
+            }
+            sink.connection.write(Map.of("event", WorkerProtocol.EVENT_ACCEPTED));
+            executionService.executeProject(key, "worker:" + request.get("projectKey"), language, files, entry, sink);
+        } else if (request.get("code") instanceof String code) {
+            sink.connection.write(Map.of("event", WorkerProtocol.EVENT_ACCEPTED));
+            // Up-front input follows the acknowledgement; the program starts once all of it is here
+            StdinUploads.Upload stdin = null;
+            if (Boolean.TRUE.equals(request.get("stdin"))) {
+                stdin = receiveStdin(sink.connection, null, spooled, sink, null);
+                if (stdin == null) {
+                    // Stopped before it started (or the dispatcher is gone, and nobody hears this)
+                    sink.send(ExecutionSink.EXECUTION_COMPLETE, "Execution stopped");
+                    return null;
+                }
+            }
+            executionService.execute(key, language, code, new ExecutionEngine.RunOptions(false, stdin), sink);
+        } else {
+            return "'code' or 'files' is required";
+        }
+        return null;
+    }
+
+    // Streams the engine's events back to the dispatcher
+    private static class RemoteSink implements ExecutionSink {
+        private final WorkerProtocol.Connection connection;
+        private final AtomicLong pendingBytes = new AtomicLong();
+        private final AtomicBoolean open = new AtomicBoolean(true);
+
+        RemoteSink(WorkerProtocol.Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void send(String type, String data) {
+            if (!open.get()) {
+                return;
+            }
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("event", type);
+            event.put("data", data);
+            try {
+                connection.write(event);
+            } catch (IOException e) {
+                open.set(false);
+            }
+        }
+
+        @Override
+        public long pendingBytes() {
+            return pendingBytes.get();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open.get() && connection.isOpen();
+        }
+    }
+}
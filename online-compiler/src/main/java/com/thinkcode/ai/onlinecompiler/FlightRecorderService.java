@@ -0,0 +1,108 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+import jakarta.annotation.PreDestroy;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps an always-on, low-overhead flight recording (JDK "default" profile plus the
+ * ExecutionEvents) in a bounded ring, and dumps it on demand.
+ * The recording starts in the background once the application is ready, so JFR
+ * initialization is not on the startup path.
+ */
+@Service
+public class FlightRecorderService {
+
+    @Value("${app.jfr.enabled:true}")
+    private boolean enabled;
+
+    // JDK settings profile: "default" (~1% overhead) or "profile" (more detail, more overhead)
+    @Value("${app.jfr.settings:default}")
+    private String settings;
+
+    @Value("${app.jfr.max-age:30m}")
+    private Duration maxAge;
+
+    @Value("${app.jfr.max-size-bytes:104857600}")
+    private long maxSizeBytes;
+
+    // WebSocket frames are high-volume; only slow sends are recorded
+    @Value("${app.jfr.websocket-send-threshold:1ms}")
+    private Duration webSocketSendThreshold;
+
+    private volatile Recording recording;
+
+    @EventListener(ApplicationReadyEvent.class)
+    void startInBackground() {
+        if (!enabled) {
+            return;
+        }
+        Thread starter = new Thread(this::start, "jfr-start");
+        starter.setDaemon(true);
+        starter.start();
+    }
+
+    private synchronized void start() {
+        try {
+            Recording recording = new Recording(Configuration.getConfiguration(settings));
+            recording.setName("thinkcode-always-on");
+            recording.setToDisk(true);
+            recording.setMaxAge(maxAge);
+            recording.setMaxSize(maxSizeBytes);
+            // These carry the environment, system properties and command lines, i.e. API keys and tokens
+            recording.disable("jdk.InitialEnvironmentVariable");
+            recording.disable("jdk.InitialSystemProperty");
+            recording.disable("jdk.JVMInformation");
+            recording.disable("jdk.SystemProcess");
+            recording.enable(ExecutionEvents.Queue.class);
+            recording.enable(ExecutionEvents.WorkspaceSetup.class);
+            recording.enable(ExecutionEvents.Compile.class);
+            recording.enable(ExecutionEvents.ProcessSpawn.class);
+            recording.enable(ExecutionEvents.FirstOutput.class);
+            recording.enable(ExecutionEvents.InputWait.class);
+            recording.enable(ExecutionEvents.Completion.class);
+            recording.enable(ExecutionEvents.Cleanup.class);
+            recording.enable(ExecutionEvents.WebSocketSend.class).withThreshold(webSocketSendThreshold);
+            recording.enable(ExecutionEvents.GeminiCall.class);
+            recording.start();
+            this.recording = recording;
+            System.out.println("🎥 Flight recording started (" + settings + ", max age " + maxAge + ")");
+        } catch (IOException | ParseException | IllegalStateException | SecurityException e) {
+            System.err.println("⚠️ Could not start flight recording: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    synchronized void stop() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    public boolean isRecording() {
+        return recording != null;
+    }
+
+    // Writes the current ring buffer to a new temporary .jfr file; the caller deletes it
+    public Path dump() throws IOException {
+        Recording recording = this.recording;
+        if (recording == null) {
+            throw new IllegalStateException("Flight recording is not running");
+        }
+        Path file = Files.createTempFile("thinkcode-", ".jfr");
+        recording.dump(file);
+        return file;
+    }
+}
@@ -3,12 +3,19 @@ package com.thinkcode.ai.onlinecompiler;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.http.HttpStatus;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ArrayBlockingQueue;
 
+// Not needed to accept executions, so it (and its HTTP client) is only created on the first /gemini request
+@Lazy
 @RestController
-
 @RequestMapping("/gemini")
 @CrossOrigin(origins = "*")
 public class GeminiController {
@@ -17,6 +24,33 @@ public class GeminiController {
     @Value("${gemini.api.key}")
     private String GEMINI_API_KEY;
 
+    // Shared across requests instead of building a client per call
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    // Answer simple, fully recognized /analysis requests from the local estimator
+    @Value("${app.analysis.local.enabled:true}")
+    private boolean localAnalysisEnabled;
+
+    // Share of locally answered requests also sent to the model in the background, to measure agreement
+    @Value("${app.analysis.local.verify-sample-rate:0.1}")
+    private double verifySampleRate;
+
+    private final StaticComplexityEstimator estimator;
+    private final AnalysisStats analysisStats;
+
+    // Shadow verifications are best-effort: a few at a time, dropped when the queue is full
+    private final ThreadPoolExecutor verifier = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(16), r -> {
+                Thread t = new Thread(r, "analysis-verifier");
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+    public GeminiController(StaticComplexityEstimator estimator, AnalysisStats analysisStats) {
+        this.estimator = estimator;
+        this.analysisStats = analysisStats;
+    }
+
     private static final String GEMINI_MODEL = "gemini-2.5-flash";
     private static final String GEMINI_URL =
         "https://generativelanguage.googleapis.com/v1beta/models/" + GEMINI_MODEL + ":generateContent?key=";
@@ -37,6 +71,7 @@ public class GeminiController {
             String code = payload.get("code");
             String language = payload.getOrDefault("language", "unknown");
             String executionContext = payload.getOrDefault("executionContext", ""); 
+            String benchmark = payload.getOrDefault("benchmark", ""); // "evidence" of /api/benchmarks
 
             if (code == null || code.isEmpty()) {
                 return ResponseEntity.badRequest()
@@ -46,27 +81,43 @@ public class GeminiController {
             String prompt;
             String codeBlock = "\n```" + language + "\n" + code + "\n```";
 
+            StaticComplexityEstimator.Estimate estimate = null;
+            if ("estimate".equalsIgnoreCase(type)) {
+                // Instant first pass, never calls upstream
+                estimate = estimator.estimate(code, language);
+                analysisStats.recordEstimate();
+                Map<String, String> body = new LinkedHashMap<>();
+                body.put("result", StaticComplexityEstimator.toHtml(estimate));
+                body.put("time", estimate.time());
+                body.put("space", estimate.space());
+                body.put("simple", String.valueOf(estimate.simple()));
+                body.put("source", "local");
+                return ResponseEntity.ok(body);
+            }
+
             if ("analysis".equalsIgnoreCase(type)) {
-                    // MODIFIED PROMPT: Now explicitly requests Big O notation immediately following the heading
-                prompt = 
-                        "As an expert software engineer and algorithm analyst, perform a precise and well-structured complexity analysis of the following " + language + " code. " +
-                        "Your output must be a **single, clean, and compact block of HTML** — ready to be injected directly into a web page container (e.g., a <div>). " +
-
-                            "Follow these exact formatting rules:\n" +
-                            "1. Use <h4> headings for each main section.\n" +
-                            "2. For 'Time Complexity' and 'Space Complexity', include the Big O notation **inside <code> tags**, placed directly beside the <h4> heading (e.g., <h4>Time Complexity <code>O(N)</code></h4>).\n" +
-                            "3. Provide clear, concise explanations in <p> tags immediately below each heading.\n" +
-                            "4. If the code is not optimal, add an additional section:\n" +
-                            "   <h4>Optimal Approach</h4>\n" +
-                            "   <p>Describe a more efficient solution in plain language and include its improved Time and Space complexities (also inside <code> tags).</p>\n" +
-                            "5. Do not include any markdown syntax, code fences, or full code snippets in your response.\n" +
-                            "6. Avoid extra line breaks, indentation, or unnecessary whitespace between HTML elements. The final output should be compact, valid HTML.\n\n" +
-
-                            "Your analysis should highlight algorithmic behavior, data structure usage, and any trade-offs clearly and professionally.\n\n" +
-
-                            "Code to analyze:\n```" + language + "\n" + code + "\n```";
-
-                        
+                estimate = estimator.estimate(code, language);
+                // Benchmark evidence and an explicit "mode": "model" always go to the model
+                boolean forceModel = "model".equalsIgnoreCase(payload.get("mode")) || !benchmark.isEmpty();
+                if (localAnalysisEnabled && estimate.simple() && !forceModel) {
+                    analysisStats.recordServedLocally();
+                    System.out.println("⚡ Analysis served locally: " + estimate.time() + " time, " + estimate.space() + " space");
+                    if (verifySampleRate > 0 && ThreadLocalRandom.current().nextDouble() < verifySampleRate) {
+                        StaticComplexityEstimator.Estimate local = estimate;
+                        String shadowPrompt = analysisPrompt(language, code, benchmark, null);
+                        verifier.execute(() -> {
+                            try {
+                                analysisStats.recordComparison(local, callGemini(shadowPrompt, language, type));
+                            } catch (Exception e) {
+                                System.err.println("⚠️ Shadow analysis failed: " + e.getMessage());
+                            }
+                        });
+                    }
+                    return ResponseEntity.ok(Map.of("result", StaticComplexityEstimator.toHtml(estimate), "source", "local"));
+                }
+                analysisStats.recordServedByModel();
+                prompt = analysisPrompt(language, code, benchmark, estimate);
+
                 } else if ("explain".equalsIgnoreCase(type)) {
                     
                     String contextSegment = "";
@@ -104,72 +155,134 @@ public class GeminiController {
                     .body(Map.of("result", "Error: Unknown Gemini request type: " + type));
             }
 
-            RestTemplate restTemplate = new RestTemplate();
-
-            Map<String, Object> request = new HashMap<>();
-            Map<String, String> textPart = new HashMap<>();
-            textPart.put("text", prompt);
-
-            Map<String, Object> content = new HashMap<>();
-            content.put("parts", List.of(textPart));
-            request.put("contents", List.of(content));
-
-            // Construct the final URL with the API key
-            String fullUrl = GEMINI_URL + GEMINI_API_KEY;
-
-            ResponseEntity<Map> response = restTemplate.postForEntity(
-                fullUrl, request, Map.class);
-
-            String output = "No response from Gemini";
-            if (response.getBody() != null && response.getStatusCode() == HttpStatus.OK) {
-                try {
-    Object candidatesObj = response.getBody().get("candidates");
-    if (candidatesObj instanceof List candidates && !candidates.isEmpty()) {
-        Object firstCandidateObj = candidates.get(0);
-        if (firstCandidateObj instanceof Map firstCandidate) {
-            Object contentObjRaw = firstCandidate.get("content");
-            if (contentObjRaw instanceof Map contentObj) {
-                Object partsObj = contentObj.get("parts");
-                if (partsObj instanceof List parts && !parts.isEmpty()) {
-                    Object firstPartObj = parts.get(0);
-                    if (firstPartObj instanceof Map firstPart) {
-                        Object textObj = firstPart.get("text");
-                        if (textObj instanceof String text) {
-                            output = text;
+            String output = callGemini(prompt, language, type);
+            if (estimate != null) {
+                analysisStats.recordComparison(estimate, output);
+                return ResponseEntity.ok(Map.of("result", output, "source", "model"));
+            }
+            return ResponseEntity.ok(Map.of("result", output));
+
+        } catch (Exception e) {
+            System.err.println("❌ Error in Gemini controller: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("result", "Error: " + e.getMessage()));
+        }
+    }
+
+    // Sends one prompt upstream and extracts the text of the first candidate
+    private String callGemini(String prompt, String language, String type) {
+        Map<String, Object> request = new HashMap<>();
+        Map<String, String> textPart = new HashMap<>();
+        textPart.put("text", prompt);
+
+        Map<String, Object> content = new HashMap<>();
+        content.put("parts", List.of(textPart));
+        request.put("contents", List.of(content));
+
+        // Construct the final URL with the API key
+        String fullUrl = GEMINI_URL + GEMINI_API_KEY;
+
+        ExecutionEvents.GeminiCall geminiCall = new ExecutionEvents.GeminiCall();
+        geminiCall.language = language;
+        geminiCall.requestType = type;
+        geminiCall.promptBytes = ExecutionEvents.utf8Length(prompt);
+        geminiCall.begin();
+
+        ResponseEntity<Map> response;
+        try {
+            response = restTemplate.postForEntity(fullUrl, request, Map.class);
+        } catch (RestClientResponseException e) {
+            geminiCall.end();
+            geminiCall.status = e.getStatusCode().value();
+            geminiCall.responseBytes = e.getResponseBodyAsByteArray().length;
+            geminiCall.commit();
+            throw e;
+        } catch (RuntimeException e) {
+            geminiCall.end();
+            geminiCall.commit(); // No response: status stays 0
+            throw e;
+        }
+        geminiCall.end();
+        geminiCall.status = response.getStatusCode().value();
+
+        String output = "No response from Gemini";
+        if (response.getBody() != null && response.getStatusCode() == HttpStatus.OK) {
+            try {
+                Object candidatesObj = response.getBody().get("candidates");
+                if (candidatesObj instanceof List candidates && !candidates.isEmpty()) {
+                    Object firstCandidateObj = candidates.get(0);
+                    if (firstCandidateObj instanceof Map firstCandidate) {
+                        Object contentObjRaw = firstCandidate.get("content");
+                        if (contentObjRaw instanceof Map contentObj) {
+                            Object partsObj = contentObj.get("parts");
+                            if (partsObj instanceof List parts && !parts.isEmpty()) {
+                                Object firstPartObj = parts.get(0);
+                                if (firstPartObj instanceof Map firstPart) {
+                                    Object textObj = firstPart.get("text");
+                                    if (textObj instanceof String text) {
+                                        output = text;
+                                    } else {
+                                        output = "Error: 'text' field missing or not a string.";
+                                    }
+                                } else {
+                                    output = "Error: 'parts' first element is not a valid Map.";
+                                }
+                            } else {
+                                output = "Error: 'parts' list is empty or not a List.";
+                            }
                         } else {
-                            output = "Error: 'text' field missing or not a string.";
+                            output = "Error: 'content' is missing or not a Map.";
                         }
                     } else {
-                        output = "Error: 'parts' first element is not a valid Map.";
+                        output = "Error: First candidate is not a Map.";
                     }
                 } else {
-                    output = "Error: 'parts' list is empty or not a List.";
+                    output = "Error: No candidates returned or list is empty.";
                 }
-            } else {
-                output = "Error: 'content' is missing or not a Map.";
+            } catch (Exception e) {
+                output = "Error parsing Gemini response: " + e.getMessage();
+                System.err.println("❌ Error parsing response: " + e.getMessage());
             }
-        } else {
-            output = "Error: First candidate is not a Map.";
+        } else if (response.getStatusCode() != HttpStatus.OK) {
+            output = "Gemini API returned status: " + response.getStatusCode();
         }
-    } else {
-        output = "Error: No candidates returned or list is empty.";
+
+        geminiCall.responseBytes = ExecutionEvents.utf8Length(output);
+        geminiCall.commit();
+        return output;
     }
-} catch (Exception e) {
-    output = "Error parsing Gemini response: " + e.getMessage();
-    System.err.println("❌ Error parsing response: " + e.getMessage());
-}
 
-            } else if (response.getStatusCode() != HttpStatus.OK) {
-                output = "Gemini API returned status: " + response.getStatusCode();
-            }
+    private static String analysisPrompt(String language, String code, String benchmark, StaticComplexityEstimator.Estimate estimate) {
+        // MODIFIED PROMPT: Now explicitly requests Big O notation immediately following the heading
+        return
+            "As an expert software engineer and algorithm analyst, perform a precise and well-structured complexity analysis of the following " + language + " code. " +
+            "Your output must be a **single, clean, and compact block of HTML** — ready to be injected directly into a web page container (e.g., a <div>). " +
 
-            return ResponseEntity.ok(Map.of("result", output));
+                "Follow these exact formatting rules:\n" +
+                "1. Use <h4> headings for each main section.\n" +
+                "2. For 'Time Complexity' and 'Space Complexity', include the Big O notation **inside <code> tags**, placed directly beside the <h4> heading (e.g., <h4>Time Complexity <code>O(N)</code></h4>).\n" +
+                "3. Provide clear, concise explanations in <p> tags immediately below each heading.\n" +
+                "4. If the code is not optimal, add an additional section:\n" +
+                "   <h4>Optimal Approach</h4>\n" +
+                "   <p>Describe a more efficient solution in plain language and include its improved Time and Space complexities (also inside <code> tags).</p>\n" +
+                "5. Do not include any markdown syntax, code fences, or full code snippets in your response.\n" +
+                "6. Avoid extra line breaks, indentation, or unnecessary whitespace between HTML elements. The final output should be compact, valid HTML.\n\n" +
 
-        } catch (Exception e) {
-            System.err.println("❌ Error in Gemini controller: " + e.getMessage());
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                .body(Map.of("result", "Error: " + e.getMessage()));
-        }
+                "Your analysis should highlight algorithmic behavior, data structure usage, and any trade-offs clearly and professionally.\n\n" +
+
+                (estimate == null ? "" :
+                    "A static pre-pass of the code (loop nesting, recursion, known library costs) estimated " + estimate.time() +
+                    " time and " + estimate.space() + " space. Its findings:\n- " + String.join("\n- ", estimate.findings()) + "\n" +
+                    (estimate.uncertainties().isEmpty() ? "" : "It was unsure about: " + String.join("; ", estimate.uncertainties()) + ".\n") +
+                    "Verify these findings rather than re-deriving everything, and correct them where they are wrong.\n\n") +
+
+                (benchmark.isEmpty() ? "" :
+                    "The code was also measured on inputs of growing size n (CPU time and peak memory, with least-squares fits):\n" +
+                    benchmark + "\n" +
+                    "Treat these measurements as evidence. If they disagree with your reading of the code, say so in a short " +
+                    "<h4>Measured Behavior</h4> section and explain why (e.g. input shape, constant factors, sizes too small).\n\n") +
+
+                "Code to analyze:\n```" + language + "\n" + code + "\n```";
     }
 }
@@ -0,0 +1,63 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Single-instance backplane: rooms in a map, events delivered on the publishing thread.
+ */
+public class InProcessCollabBackplane implements CollabBackplane {
+
+    private final Map<String, Map<String, String>> rooms = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void createRoom(String roomId, Map<String, String> data) {
+        rooms.put(roomId, new HashMap<>(data));
+    }
+
+    @Override
+    public Map<String, String> getRoom(String roomId) {
+        Map<String, String> room = rooms.get(roomId);
+        if (room == null) {
+            return null;
+        }
+        synchronized (room) {
+            return new HashMap<>(room);
+        }
+    }
+
+    @Override
+    public Map<String, String> updateRoom(String roomId, Map<String, String> changes) {
+        Map<String, String> room = rooms.get(roomId);
+        if (room == null) {
+            return null;
+        }
+        synchronized (room) {
+            room.putAll(changes);
+            return new HashMap<>(room);
+        }
+    }
+
+    @Override
+    public void publish(RoomEvent event) {
+        listeners.forEach(listener -> listener.onEvent(event));
+    }
+
+    @Override
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("backplane", "in-process");
+        stats.put("rooms", rooms.size());
+        return stats;
+    }
+}
@@ -1,131 +1,292 @@
 package com.thinkcode.ai.onlinecompiler;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.io.Reader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+/**
+ * WebSocket transport for executions and collab rooms.
+ * One connection can run several executions at once: execute/input/stop messages carry an optional
+ * executionId, and every frame of that execution echoes it. Messages without one address the
+ * connection's default execution, as before.
+ *
+ * Executions outlive their connection for websocket.resume-grace-period-ms. Their frames carry a
+ * sequence number ("seq") and are kept in a bounded replay buffer; a new connection sends
+ * {type: resume, resumeToken, lastSeq} to reattach and receive what it missed. The token is sent
+ * in a "resume_token" frame when the execution starts.
+ *
+ * Bulk stdin: {type: stdin_upload_start} opens an upload, binary frames append to it, and
+ * {type: stdin_upload_end} finishes it (reply: stdin_upload_complete {uploadId, bytes}). An execute
+ * then takes it as stdinUpload (or small input inline as stdin), and an input message as uploadId.
+ */
 @Component
 public class InteractiveCodeExecutionHandler extends TextWebSocketHandler {
 
-    // --- Process Management Maps ---
-    // Key is ALWAYS the unique WebSocket Session ID for true sandboxing
-    private static final Map<String, Process> processes = new ConcurrentHashMap<>();
-    private static final Map<String, PrintWriter> writers = new ConcurrentHashMap<>();
-    private static final Map<String, String> sessionLanguages = new ConcurrentHashMap<>();
-    private static final Map<String, AtomicBoolean> inputRequestedFlags = new ConcurrentHashMap<>();
+    // --- Collaboration: room state and events go through the backplane; these are this node's members ---
+    private final CollabBackplane collab;
+    private final Map<String, String> wsSessionToCollabId = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, WebSocketSession>> collabIdToSessions = new ConcurrentHashMap<>();
 
-    // --- Execution Locking ---
-    // Key is ALWAYS the unique WebSocket Session ID
-    private static final Map<String, AtomicBoolean> executionLocks = new ConcurrentHashMap<>();
+    // --- Connection tracking (for the idle-session reaper) ---
+    private final Map<String, WebSocketSession> activeSessions = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastActivity = new ConcurrentHashMap<>();
 
-    // --- Collaboration Session Maps (for code sync and chat ONLY) ---
-    private static final Map<String, Map<String, String>> collaborationSessions = new ConcurrentHashMap<>();
-    private static final Map<String, String> wsSessionToCollabId = new ConcurrentHashMap<>();
-    private static final Map<String, Map<String, WebSocketSession>> collabIdToSessions = new ConcurrentHashMap<>();
+    // --- Executions per connection, by executionId ("" is the default, untagged execution) ---
+    private final Map<String, Map<String, ResumableExecution>> sessionExecutions = new ConcurrentHashMap<>();
+
+    // Every execution by resume token, detached ones included until their grace period ends
+    private final Map<String, ResumableExecution> resumable = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService expiryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ws-resume-expiry");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${websocket.max-concurrent-executions:4}")
+    private int maxConcurrentExecutions;
+
+    // How long an execution keeps running after its connection drops, waiting for a resume
+    @Value("${websocket.resume-grace-period-ms:60000}")
+    private long resumeGracePeriodMs;
+
+    // Output kept per execution for replay on resume
+    @Value("${websocket.replay-buffer-bytes:1048576}")
+    private long replayBufferBytes;
+
+    // Unsent bytes a connection may hold before it is closed: the backstop for a client that stops
+    // reading while its program can't be paused. Its executions detach and can be resumed.
+    @Value("${websocket.max-queued-bytes:16777216}")
+    private long maxQueuedBytes;
+
+    // --- Outbound queues: sends never block the producer (e.g. a StreamGobbler) ---
+    private final Map<String, OutboundQueue> outboundQueues = new ConcurrentHashMap<>();
+    private final ExecutorService senderPool = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ws-sender");
+        t.setDaemon(true);
+        return t;
+    });
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    // --- StreamGobbler (Handles output ONLY for the originating session) ---
-    private class StreamGobbler implements Runnable {
-        private final WebSocketSession session; // The originating session
-        private final InputStream inputStream;
-        private final String sessionId; // The key for this process is always the session ID
-        private final String language;
-        private volatile boolean running = true;
-        private long lastOutputTime = System.currentTimeMillis();
+    private final ExecutionEngine executionService;
+    private final ProjectWorkspaces projects;
+    private final WebSocketTrafficStats trafficStats;
+    private final StdinUploads uploads;
+
+    // --- Stdin upload being received on each connection (binary frames append to it) ---
+    private final Map<String, StdinUploads.Upload> openUploads = new ConcurrentHashMap<>();
+
+    public InteractiveCodeExecutionHandler(ExecutionEngine executionService, ProjectWorkspaces projects,
+                                           WebSocketTrafficStats trafficStats, CollabBackplane collab,
+                                           StdinUploads uploads) {
+        this.executionService = executionService;
+        this.projects = projects;
+        this.trafficStats = trafficStats;
+        this.uploads = uploads;
+        this.collab = collab;
+        collab.subscribe(this::deliverToLocalMembers);
+    }
 
-        public StreamGobbler(WebSocketSession session, InputStream inputStream, String language) {
+    // The engine's sink for one execution: routes events ONLY to the attached session, tagged with the
+    // execution's ID and sequenced, and keeps them for replay. Survives its connection for the grace period.
+    // stderr is folded into "output" to keep the existing WebSocket protocol unchanged.
+    private class ResumableExecution implements ExecutionSink {
+        private final String key; // Engine key
+        private final String executionId;
+        private final String resumeToken = UUID.randomUUID().toString();
+        private volatile String projectKey; // Project workspace of a multi-file run, kept until the run is released
+        private final Deque<Frame> replay = new ArrayDeque<>();
+        private long replayBytes;
+        private long seq;
+        private WebSocketSession session; // null while detached
+        private long detachedAt;
+        private long bytesSinceDetach;
+
+        ResumableExecution(String key, String executionId, WebSocketSession session) {
+            this.key = key;
+            this.executionId = executionId;
             this.session = session;
-            this.inputStream = inputStream;
-            this.sessionId = session.getId();
-            this.language = language;
         }
 
-        public void stopRunning() { this.running = false; }
+        @Override
+        public synchronized void send(String type, String data) {
+            Frame frame = new Frame(++seq, ExecutionSink.STDERR.equals(type) ? ExecutionSink.OUTPUT : type, data);
+            replay.addLast(frame);
+            replayBytes += frame.size();
+            while (replayBytes > replayBufferBytes && replay.size() > 1) {
+                replayBytes -= replay.removeFirst().size();
+            }
+            if (session != null) {
+                sendMessage(session, tag(executionId), frame.type(), frame.data(), frame.seq());
+            } else {
+                bytesSinceDetach += frame.size();
+            }
+        }
 
         @Override
-        public void run() {
-            // Using UTF_8 encoding for reading process output
-            try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
-                char[] buffer = new char[512];
-                int bytesRead;
-                while (running) {
-                    if (reader.ready()) {
-                        bytesRead = reader.read(buffer);
-                        if (bytesRead > 0) {
-                            String output = new String(buffer, 0, bytesRead);
-                            // ALWAYS send output ONLY to the originating session
-                            sendMessage(this.session, "output", output);
-                            lastOutputTime = System.currentTimeMillis();
-                            inputRequestedFlags.computeIfPresent(this.sessionId, (k, v) -> { v.set(false); return v; });
-                        } else if (bytesRead == -1) { // End of stream
-                            break;
-                        }
-                    } else {
-                        // Check if input might be needed
-                        Process process = processes.get(this.sessionId);
-                        AtomicBoolean inputRequested = inputRequestedFlags.get(this.sessionId);
-                        if (process != null && process.isAlive() && inputRequested != null && !inputRequested.get()) {
-                            long timeSinceLastOutput = System.currentTimeMillis() - lastOutputTime;
-                            if (timeSinceLastOutput > getTimeoutForLanguage(language)) {
-                                sendMessage(this.session, "input_request", "");
-                                inputRequested.set(true);
-                                System.out.println("⏳ Input requested for " + language + " on " + this.sessionId);
-                            }
-                        }
-                        Thread.sleep(5); // Prevent busy-waiting
-                    }
+        public synchronized boolean isOpen() {
+            return session != null ? session.isOpen() : System.currentTimeMillis() - detachedAt < resumeGracePeriodMs;
+        }
+
+        // While detached, output held for a future resume counts as backlog, so a long gap pauses the program
+        @Override
+        public long pendingBytes() {
+            WebSocketSession current;
+            synchronized (this) {
+                if (session == null) {
+                    return bytesSinceDetach;
                 }
-                // Drain any remaining output after stopRunning() is called or stream ends
-                while (reader.ready()) {
-                    bytesRead = reader.read(buffer);
-                    if (bytesRead > 0) {
-                        String finalOutput = new String(buffer, 0, bytesRead);
-                        sendMessage(this.session, "output", finalOutput);
-                    } else {
-                        break;
-                    }
+                current = session;
+            }
+            OutboundQueue queue = outboundQueues.get(current.getId());
+            return queue != null ? queue.pendingBytes.get() : 0;
+        }
+
+        // Returns false if the execution is attached to another session
+        synchronized boolean detach(WebSocketSession from) {
+            if (session != from) {
+                return false;
+            }
+            session = null;
+            detachedAt = System.currentTimeMillis();
+            bytesSinceDetach = 0;
+            return true;
+        }
+
+        synchronized boolean detachedSince(long time) {
+            return session == null && detachedAt == time;
+        }
+
+        synchronized long detachedAt() {
+            return detachedAt;
+        }
+
+        // Replays everything after lastSeq to the new session and makes it the live one; returns the previous session
+        synchronized WebSocketSession attach(WebSocketSession newSession, long lastSeq) {
+            long firstKept = replay.isEmpty() ? seq + 1 : replay.getFirst().seq();
+            sendMessage(newSession, tag(executionId), "resumed",
+                    lastSeq + 1 < firstKept ? "Output before frame " + firstKept + " is no longer available." : "");
+            for (Frame frame : replay) {
+                if (frame.seq() > lastSeq) {
+                    sendMessage(newSession, tag(executionId), frame.type(), frame.data(), frame.seq());
                 }
-            } catch (IOException e) {
-                // Silently ignore IOExceptions, often happens when process is killed
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt(); // Restore interrupted status
-            } catch (Exception e) {
-                 System.err.println("❌ StreamGobbler error for " + sessionId + ": " + e.getMessage());
-            } finally {
-                try { if (inputStream != null) inputStream.close(); } catch (IOException e) { /* ignore */ }
             }
+            WebSocketSession previous = session;
+            session = newSession;
+            return previous;
         }
     }
 
-    private int getTimeoutForLanguage(String language) {
-        switch (language) {
-            case "c": case "go": case "ruby": return 300;
-            case "javascript": case "python": return 350;
-            case "java": return 500;
-            default: return 450;
+    private record Frame(long seq, String type, String data) {
+        long size() {
+            return (data != null ? data.length() : 0) + 32;
+        }
+    }
+
+    // Per-session FIFO of encoded frames, drained by one sender-pool task at a time.
+    // Its size is what the execution engine compares against the backpressure watermarks.
+    private class OutboundQueue {
+        private final WebSocketSession session;
+        private final Queue<WebSocketMessage<?>> frames = new ConcurrentLinkedQueue<>();
+        private final AtomicLong pendingBytes = new AtomicLong();
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private final AtomicBoolean overflowed = new AtomicBoolean(false);
+
+        OutboundQueue(WebSocketSession session) {
+            this.session = session;
+        }
+
+        void enqueue(WebSocketMessage<?> frame) {
+            if (overflowed.get()) {
+                return;
+            }
+            if (pendingBytes.addAndGet(frame.getPayloadLength()) > maxQueuedBytes) {
+                overflow();
+                return;
+            }
+            frames.add(frame);
+            scheduleDrain();
+        }
+
+        // Drops the backlog and the connection; closing may wait for a blocked send, so it runs on the sender pool
+        private void overflow() {
+            if (!overflowed.compareAndSet(false, true)) {
+                return;
+            }
+            frames.clear();
+            System.out.println("🚫 Over " + maxQueuedBytes + " bytes queued for " + session.getId() + ", closing the connection");
+            senderPool.execute(() -> {
+                try {
+                    session.close(CloseStatus.SESSION_NOT_RELIABLE.withReason("Output backlog too large"));
+                } catch (IOException e) {
+                    System.err.println("Error closing overflowing session: " + e.getMessage());
+                }
+                afterConnectionClosed(session, CloseStatus.SESSION_NOT_RELIABLE);
+            });
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                senderPool.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                WebSocketMessage<?> frame;
+                while ((frame = frames.poll()) != null) {
+                    ExecutionEvents.WebSocketSend sendEvent = new ExecutionEvents.WebSocketSend();
+                    sendEvent.sessionId = session.getId();
+                    sendEvent.bytes = frame.getPayloadLength();
+                    sendEvent.binary = frame instanceof BinaryMessage;
+                    sendEvent.begin();
+                    try {
+                        synchronized (session) {
+                            if (session.isOpen()) {
+                                session.sendMessage(frame);
+                            }
+                        }
+                    } catch (IOException e) {
+                        System.err.println("❌ Failed to send WebSocket message to " + session.getId() + ": " + e.getMessage());
+                    } finally {
+                        pendingBytes.addAndGet(-frame.getPayloadLength());
+                        sendEvent.end();
+                        if (sendEvent.shouldCommit()) sendEvent.commit();
+                    }
+                }
+            } finally {
+                draining.set(false);
+                if (!frames.isEmpty()) {
+                    scheduleDrain(); // Frames enqueued after the last poll
+                }
+            }
         }
     }
 
@@ -134,49 +295,135 @@ public class InteractiveCodeExecutionHandler extends TextWebSocketHandler {
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
         System.out.println("✅ WebSocket Connected: " + session.getId());
+        activeSessions.put(session.getId(), session);
+        outboundQueues.put(session.getId(), new OutboundQueue(session));
+        touch(session);
     }
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        touch(session);
         JsonNode node = objectMapper.readTree(message.getPayload());
         String type = node.get("type").asText();
         String sessionId = session.getId(); // The unique key for this user
         String collabId = wsSessionToCollabId.get(sessionId); // Check if they are in a collab room
+        String executionId = node.path("executionId").asText("");
+        if (executionId.length() > 64) {
+            sendMessage(session, "error", "executionId must be at most 64 characters.");
+            return;
+        }
+        ResumableExecution current = executionsOf(sessionId).get(executionId);
+        String executionKey = current != null ? current.key : executionKey(sessionId, executionId);
+        ExecutionSink replySink = current != null ? current : (t, d) -> sendMessage(session, tag(executionId), t, d);
 
         switch (type) {
             case "execute":
-                // Lock is now PER-SESSION, enabling concurrent execution in collab rooms
-                AtomicBoolean isLocked = executionLocks.computeIfAbsent(sessionId, k -> new AtomicBoolean(false));
-
-                if (isLocked.compareAndSet(false, true)) { // Attempt to acquire the lock
-                    String language = node.get("language").asText();
+                // Lock is PER-EXECUTION, enabling concurrent runs per connection and in collab rooms
+                String language = node.get("language").asText();
+                Map<String, ResumableExecution> running = runningExecutions(sessionId);
+                if (running.containsKey(executionId)) {
+                    sendMessage(session, tag(executionId), "error", "You already have an execution in progress.");
+                    break;
+                }
+                if (running.size() >= maxConcurrentExecutions) {
+                    sendMessage(session, tag(executionId), "error",
+                            "Too many executions running at once (limit " + maxConcurrentExecutions + "). Stop one first.");
+                    break;
+                }
+                ResumableExecution execution = new ResumableExecution(executionKey(sessionId, executionId), executionId, session);
+                boolean started;
+                StdinUploads.Upload stdin = null;
+                if (node.hasNonNull("stdinUpload") || node.hasNonNull("stdin")) {
+                    if (node.hasNonNull("files")) {
+                        sendMessage(session, tag(executionId), "error", "Up-front stdin is only supported for single-file runs.");
+                        break;
+                    }
+                    try {
+                        stdin = node.hasNonNull("stdinUpload") ? uploads.get(node.get("stdinUpload").asText())
+                                : uploads.create(node.get("stdin").asText());
+                    } catch (IOException e) {
+                        sendMessage(session, tag(executionId), "error", "Could not store the input: " + e.getMessage());
+                        break;
+                    }
+                    if (stdin == null) {
+                        sendMessage(session, tag(executionId), "error", "Input upload not found or expired.");
+                        break;
+                    }
+                }
+                if (node.hasNonNull("files")) {
+                    // Multi-file project: {files: {path: content}, entry?}, kept per session or per collab room
+                    Map<String, String> files;
+                    try {
+                        files = objectMapper.convertValue(node.get("files"), new TypeReference<Map<String, String>>() {});
+                    } catch (IllegalArgumentException e) {
+                        sendMessage(session, tag(executionId), "error", "'files' must map file paths to their contents.");
+                        break;
+                    }
+                    String invalid = projects.validate(files);
+                    String entry = invalid == null ? ProjectWorkspaces.resolveEntry(files, node.path("entry").asText(null)) : null;
+                    if (invalid != null || entry == null) {
+                        sendMessage(session, tag(executionId), "error", invalid != null ? invalid : "Entry file not found in the project.");
+                        break;
+                    }
+                    execution.projectKey = projectKey(sessionId, collabId);
+                    started = executionService.executeProject(execution.key, execution.projectKey, language, files, entry, execution);
+                } else {
                     String code = node.get("code").asText();
-                    // Kill any previous process *for this specific user*
-                    killProcess(sessionId);
-                    // Start execution in a new thread, associated only with this session
-                    new Thread(() -> executeUniversal(session, language, code)).start();
+                    ExecutionEngine.RunOptions options = new ExecutionEngine.RunOptions(node.path("cacheable").asBoolean(false), stdin);
+                    started = executionService.execute(execution.key, language, code, options, execution);
+                }
+                if (started) {
+                    running.put(executionId, execution);
+                    resumable.put(execution.resumeToken, execution);
+                    sendMessage(session, tag(executionId), "resume_token", execution.resumeToken);
                 } else {
-                    // Lock was already held by this user
-                    sendMessage(session, "error", "You already have an execution in progress.");
+                    // Lock was already held by this execution
+                    sendMessage(session, tag(executionId), "error", "You already have an execution in progress.");
                 }
                 break;
 
             case "input":
+                if (node.hasNonNull("uploadId")) {
+                    // Bulk input uploaded earlier, streamed into the running program
+                    StdinUploads.Upload upload = uploads.get(node.get("uploadId").asText());
+                    if (upload == null) {
+                        replySink.send(ExecutionSink.ERROR, "Input upload not found or expired.");
+                    } else {
+                        executionService.sendInput(executionKey, upload, replySink);
+                    }
+                    break;
+                }
                 String inputData = node.get("data").asText();
-                // Send input to the process associated with this specific session
-                handleInputUniversal(sessionId, inputData, session);
+                // Send input to the process of this specific execution
+                executionService.sendInput(executionKey, inputData, replySink);
+                break;
+
+            case "stdin_upload_start":
+                StdinUploads.Upload previousUpload = openUploads.remove(sessionId);
+                if (previousUpload != null) {
+                    uploads.discard(previousUpload); // Never finished
+                }
+                StdinUploads.Upload upload = uploads.begin();
+                openUploads.put(sessionId, upload);
+                sendMessage(session, "stdin_upload_ready", upload.id());
+                break;
+
+            case "stdin_upload_end":
+                StdinUploads.Upload finished = openUploads.remove(sessionId);
+                if (finished == null) {
+                    sendMessage(session, "error", "No input upload in progress.");
+                    break;
+                }
+                uploads.finish(finished);
+                sendMessage(session, "stdin_upload_complete",
+                        objectMapper.writeValueAsString(Map.of("uploadId", finished.id(), "bytes", finished.bytes())));
                 break;
 
             case "stop":
-                // Kill the process associated with this specific session
-                killProcess(sessionId);
+                // Kill the process and release the lock for this specific execution
+                executionService.stop(executionKey);
                 // Send completion message ONLY to this user
-                sendMessage(session, "execution_complete", "Execution stopped");
-                // Release the lock for this specific session
-                executionLocks.computeIfPresent(sessionId, (k, v) -> {
-                    v.set(false);
-                    return v;
-                });
+                sendMessage(session, tag(executionId), "execution_complete", "Execution stopped");
                 break;
 
             // --- Collaboration Handlers (Unaffected by execution changes) ---
@@ -195,6 +442,10 @@ public class InteractiveCodeExecutionHandler extends TextWebSocketHandler {
                 if (collabId != null) handleChatMessage(session, node, collabId);
                 break;
 
+            case "resume":
+                handleResume(session, node.path("resumeToken").asText(""), node.path("lastSeq").asLong(0));
+                break;
+
             case "ping":
                 sendMessage(session, "pong", "Server alive");
                 break;
@@ -205,18 +456,44 @@ public class InteractiveCodeExecutionHandler extends TextWebSocketHandler {
         }
     }
 
+    // Binary frames from the client are chunks of the connection's open stdin upload, written straight to disk
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        touch(session);
+        StdinUploads.Upload upload = openUploads.get(session.getId());
+        if (upload == null) {
+            sendMessage(session, "error", "Send stdin_upload_start before binary input chunks.");
+            return;
+        }
+        try {
+            uploads.append(upload, message.getPayload());
+        } catch (IOException e) {
+            openUploads.remove(session.getId(), upload);
+            uploads.discard(upload);
+            sendMessage(session, "error", "Input upload failed: " + e.getMessage());
+        }
+    }
+
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         String sessionId = session.getId();
         System.out.println("🔌 WebSocket Disconnected: " + sessionId + " Status: " + status);
 
         // --- Universal Cleanup for the disconnected session ---
-        killProcess(sessionId); // Kill any running process
-        // Remove all state associated with this specific session
-        inputRequestedFlags.remove(sessionId);
-        executionLocks.remove(sessionId);
-        sessionLanguages.remove(sessionId);
-        writers.remove(sessionId); // Ensure writer is removed
+        activeSessions.remove(sessionId);
+        lastActivity.remove(sessionId);
+        outboundQueues.remove(sessionId);
+        StdinUploads.Upload unfinished = openUploads.remove(sessionId);
+        if (unfinished != null) {
+            uploads.discard(unfinished);
+        }
+        // Executions keep running for the grace period, waiting for a resume
+        Map<String, ResumableExecution> executions = sessionExecutions.remove(sessionId);
+        if (executions != null) {
+            executions.values().forEach(execution -> detach(execution, session));
+        }
+        // A detached project run still needs its workspace; it goes when the run is released
+        discardProjectIfUnused(projectKey(sessionId, null));
 
         // --- Collab-specific cleanup ---
         String collabId = wsSessionToCollabId.remove(sessionId); // Remove user from collab mapping
@@ -224,15 +501,14 @@ public class InteractiveCodeExecutionHandler extends TextWebSocketHandler {
             collabIdToSessions.computeIfPresent(collabId, (k, sessions) -> {
                 sessions.remove(sessionId); // Remove session from the room's list
                 if (sessions.isEmpty()) {
-                    System.out.println("🚪 Collab session is now empty: " + collabId);
-                    // Optionally: Schedule collab session data for cleanup after inactivity
-                    // collaborationSessions.remove(collabId); // Or keep data for re-joining? Decision needed.
+                    System.out.println("🚪 Collab session is now empty on this node: " + collabId);
                     return null; // Remove the session map entry if empty
                 }
-                // Notify remaining users
-                broadcastToCollabSession(collabId, "collab_update", "A user has left the session.", sessionId);
                 return sessions; // Return updated map
             });
+            discardProjectIfUnused(projectKey(null, collabId));
+            // Notify remaining users, including those on other nodes
+            broadcastToCollabSession(collabId, "collab_update", "A user has left the session.", sessionId);
         }
     }
 
@@ -262,11 +538,11 @@ public class InteractiveCodeExecutionHandler extends TextWebSocketHandler {
         String hostId = node.get("hostId").asText();
         String wsSessionId = session.getId();
 
-        Map<String, String> sessionData = new ConcurrentHashMap<>(); // Use ConcurrentHashMap
+        Map<String, String> sessionData = new HashMap<>();
         sessionData.put("code", code);
         sessionData.put("language", language);
         sessionData.put("hostId", hostId);
-        collaborationSessions.put(collabId, sessionData);
+        collab.createRoom(collabId, sessionData);
         
         wsSessionToCollabId.put(wsSessionId, collabId);
         collabIdToSessions.computeIfAbsent(collabId, k -> new ConcurrentHashMap<>()).put(wsSessionId, session);
@@ -280,7 +556,7 @@ public class InteractiveCodeExecutionHandler extends TextWebSocketHandler {
         String wsSessionId = session.getId();
         String displayName = node.has("displayName") ? node.get("displayName").asText("User") : "User"; // Safer access
         
-        Map<String, String> sessionData = collaborationSessions.get(collabId);
+        Map<String, String> sessionData = collab.getRoom(collabId);
 
         if (sessionData != null) {
             wsSessionToCollabId.put(wsSessionId, collabId);
@@ -311,21 +587,16 @@ public class InteractiveCodeExecutionHandler extends TextWebSocketHandler {
         String newCode = node.get("code").asText();
         String newLanguage = node.get("language").asText();
 
-        Map<String, String> updatedData = collaborationSessions.computeIfPresent(collabId, (k, data) -> {
-            data.put("code", newCode);
-            data.put("language", newLanguage);
-            return data;
-        });
-        
+        Map<String, String> broadcastData = new HashMap<>();
+        broadcastData.put("code", newCode);
+        broadcastData.put("language", newLanguage);
+
+        Map<String, String> updatedData = collab.updateRoom(collabId, broadcastData);
         if (updatedData == null) {
             sendMessage(session, "error", "Collaboration session lost during sync.");
             return;
         }
 
-        Map<String, String> broadcastData = new HashMap<>();
-        broadcastData.put("code", newCode);
-        broadcastData.put("language", newLanguage);
-        
         String jsonBroadcastData = "";
         try {
             jsonBroadcastData = objectMapper.writeValueAsString(broadcastData);
@@ -348,408 +619,233 @@ public class InteractiveCodeExecutionHandler extends TextWebSocketHandler {
         broadcastToCollabSession(collabId, "chat_message", jsonChatData, null);
     }
     
-    // --- SANDBOXED EXECUTION METHOD ---
-    private void executeUniversal(WebSocketSession session, String language, String code) {
-        String sessionId = session.getId(); // Key for sandbox is always the session ID
-        Path tempDir = null;
-        Process process = null;
-        StreamGobbler stdoutGobbler = null;
-        StreamGobbler stderrGobbler = null;
-        
-        try {
-             System.out.println("🚀 Starting execution for session: " + sessionId + " - Language: " + language);
-            
-            sessionLanguages.put(sessionId, language);
-            inputRequestedFlags.put(sessionId, new AtomicBoolean(false));
-            sendMessage(session, "execution_started", ""); // Send ONLY to originator
-            
-            tempDir = Files.createTempDirectory("exec_" + sessionId + "_");
-            String[] command = getCommand(language, code, tempDir); // Fetch command array
-            
-            if (command == null) {
-                sendMessage(session, "error", "Unsupported language: " + language);
-                // No need to release lock here, finally block handles it
-                return;
-            }
-            
-            ProcessBuilder pb = new ProcessBuilder(command);
-            pb.directory(tempDir.toFile());
-            
-            // Set up environment variables
-            Map<String, String> env = pb.environment();
-            env.put("PYTHONUNBUFFERED", "1");
-            env.put("NODE_NO_READLINE", "1");
-            env.put("TERM", "dumb"); // Use a basic terminal type
-            env.put("LC_ALL", "en_US.UTF-8"); // Ensure UTF-8 locale
-            env.put("LANG", "en_US.UTF-8");
-            if ("javascript".equals(language)) {
-                env.put("NODE_NO_WARNINGS", "1");
-                env.put("NODE_OPTIONS", "--no-deprecation");
-                env.put("NODE_DISABLE_COLORS", "1");
-            }
-            if ("php".equals(language)) {
-                env.put("XDEBUG_MODE", "off"); // Disable Xdebug if present
-            }
-            if ("ruby".equals(language)) {
-                env.put("RUBYOPT", "-EUTF-8:UTF-8"); // Force UTF-8 encoding for Ruby
-            }
-            
-            process = pb.start();
-            processes.put(sessionId, process); // Store the process
-            
-            // Create writer with UTF-8 encoding and auto-flush
-            PrintWriter writer = new PrintWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8), true);
-            writers.put(sessionId, writer); // Store the writer
-            
-            // Start gobblers for stdout and stderr
-            stdoutGobbler = new StreamGobbler(session, process.getInputStream(), language);
-            stderrGobbler = new StreamGobbler(session, process.getErrorStream(), language);
-            new Thread(stdoutGobbler).start();
-            new Thread(stderrGobbler).start();
-            
-            // Wait for process completion with timeout
-            boolean finished = process.waitFor(300, TimeUnit.SECONDS); // 5-minute timeout
-            
-            // Signal gobblers to stop *after* process ends or times out
-            if (stdoutGobbler != null) stdoutGobbler.stopRunning();
-            if (stderrGobbler != null) stderrGobbler.stopRunning();
+    // Broadcasts to all except excludedSessionId, on every node
+    private void broadcastToCollabSession(String collabId, String type, String data, String excludedSessionId) {
+        collab.publish(new CollabBackplane.RoomEvent(collabId, type, data, excludedSessionId));
+    }
 
-            // Brief pause to allow gobblers to finish reading remaining output
-            Thread.sleep(75);
-            
-            if (finished) {
-                int exitCode = process.exitValue();
-                System.out.println("✅ Process for " + sessionId + " completed - Exit code: " + exitCode);
-                sendMessage(session, "execution_complete", "Exit code: " + exitCode);
-            } else { // Timeout occurred
-                 System.out.println("⏰ Process for " + sessionId + " timeout - Forcibly destroying.");
-                 killProcess(sessionId); // Ensure it's killed forcefully
-                 sendMessage(session, "error", "Execution timed out after 5 minutes.");
-                 sendMessage(session, "execution_complete", "Exit code: 124 (Timeout)");
-            }
-            
-        } catch (IOException e) {
-             System.err.println("❌ IOException during execution for " + sessionId + ": " + e.getMessage());
-             sendMessage(session, "error", "Execution failed (IO): " + e.getMessage());
-             sendMessage(session, "execution_complete", "Exit code: 1");
-        } catch (InterruptedException e) {
-             System.err.println("❌ Execution interrupted for " + sessionId + ": " + e.getMessage());
-             Thread.currentThread().interrupt(); // Restore interrupted status
-             sendMessage(session, "error", "Execution was interrupted.");
-             sendMessage(session, "execution_complete", "Exit code: 130 (Interrupted)");
-        } catch (Exception e) { // Catch broader exceptions like compilation errors
-             System.err.println("❌ General execution error for " + sessionId + ": " + e.getMessage());
-             sendMessage(session, "error", "Execution failed: " + e.getMessage());
-             sendMessage(session, "execution_complete", "Exit code: 1");
-        } finally {
-            // --- CRITICAL: Always release the lock for this specific session ---
-            executionLocks.computeIfPresent(sessionId, (k, v) -> {
-                v.set(false); // Set lock back to false
-                System.out.println("🔓 Lock released for: " + sessionId);
-                return v; // Return the updated AtomicBoolean
+    // Backplane subscriber: hands a room event to the members connected to this node
+    private void deliverToLocalMembers(CollabBackplane.RoomEvent event) {
+        Map<String, WebSocketSession> sessions = collabIdToSessions.get(event.roomId());
+        if (sessions != null) {
+            sessions.forEach((sessionId, session) -> {
+                if (event.excludedMember() == null || !sessionId.equals(event.excludedMember())) {
+                    sendMessage(session, event.type(), event.data());
+                }
             });
-            
-            // Clean up temporary files and ensure process is killed
-            cleanupUniversal(sessionId, tempDir);
         }
     }
+    
+    // Sends a message to a single session
+    private void sendMessage(WebSocketSession session, String type, String data) {
+        sendMessage(session, null, type, data);
+    }
+
+    // Same, tagged with an execution ID unless it is null
+    private void sendMessage(WebSocketSession session, String executionId, String type, String data) {
+        sendMessage(session, executionId, type, data, 0);
+    }
 
-    private void handleInputUniversal(String sessionId, String inputData, WebSocketSession session) {
-        PrintWriter writer = writers.get(sessionId);
-        if (writer != null) {
+    // Same, with the execution's frame sequence number (0 for unsequenced frames)
+    private void sendMessage(WebSocketSession session, String executionId, String type, String data, long seq) {
+        if (session != null && session.isOpen()) {
             try {
-                // Check if the process is still alive before writing
-                Process process = processes.get(sessionId);
-                if (process != null && process.isAlive()) {
-                    writer.println(inputData);
-                    writer.flush(); // Ensure data is sent immediately
-                    // No need to sleep here, StreamGobbler handles input_request logic
-                    inputRequestedFlags.computeIfPresent(sessionId, (k, v) -> { v.set(false); return v; });
-                } else {
-                     sendMessage(session, "error", "Cannot send input: Process is not running.");
+                boolean binary = isBinaryProtocol(session);
+                long encodeStart = System.nanoTime();
+                WebSocketMessage<?> wsMessage = binary
+                        ? new BinaryMessage(BinaryFrameCodec.encode(type, data, executionId, seq))
+                        : new TextMessage(toJsonMessage(type, data, executionId, seq).getBytes(StandardCharsets.UTF_8)); // Caches the encoded bytes
+                trafficStats.record(binary, wsMessage.getPayloadLength(), System.nanoTime() - encodeStart);
+
+                // No queue: the connection is closing, and a direct send could block behind a stuck one
+                OutboundQueue queue = outboundQueues.get(session.getId());
+                if (queue != null) {
+                    queue.enqueue(wsMessage); // Sent in order by the sender pool
+                    touch(session);
                 }
-            } catch (Exception e) { // Catch potential errors during write/flush
-                 System.err.println("❌ Failed to send input for " + sessionId + ": " + e.getMessage());
-                 sendMessage(session, "error", "Failed to send input: " + e.getMessage());
+            } catch (Exception e) {
+                // Catch potential JSON processing errors
+                 System.err.println("❌ Error preparing WebSocket message for " + session.getId() + ": " + e.getMessage());
             }
         } else {
-             sendMessage(session, "error", "Cannot send input: No active process found for your session.");
+             System.out.println("⚠️ Attempted to send message to closed or null session.");
         }
     }
-    
-    // --- FULL getCommand METHOD ---
-    // (Ensure this includes all 11 language cases correctly)
-    private String[] getCommand(String language, String code, Path tempDir) throws Exception {
-    Process compile = null; 
-    
-    switch (language.toLowerCase()) {
-        case "python":
-            Path pyFile = tempDir.resolve("main.py");
-            Files.writeString(pyFile, code, StandardCharsets.UTF_8);
-            // Calls the local python3 installed via the Dockerfile
-            return new String[]{"python3", "-u", pyFile.toString()};
-            
-        case "java":
-            // Detect Class Name for local compilation
-            String mainClassName = "Main";
-            java.util.regex.Matcher matcher = java.util.regex.Pattern.compile("(?:public\\s+)?class\\s+(\\w+)").matcher(code);
-            while (matcher.find()) {
-                String detected = matcher.group(1);
-                if (code.contains("public static void main")) { mainClassName = detected; break; }
+
+    // --- Idle / stale session reaping (called periodically by ResourceReaper) ---
+
+    private void touch(WebSocketSession session) {
+        lastActivity.put(session.getId(), System.currentTimeMillis());
+    }
+
+    /**
+     * Closes sessions with no traffic in either direction for longer than idleTimeoutMs and
+     * cleans up sessions that closed without afterConnectionClosed running.
+     * Returns reclaimed counts per kind.
+     */
+    public Map<String, Integer> reapSessions(long idleTimeoutMs) {
+        Map<String, Integer> reclaimed = new HashMap<>();
+        long now = System.currentTimeMillis();
+
+        for (WebSocketSession session : activeSessions.values()) {
+            if (!session.isOpen()) {
+                afterConnectionClosed(session, CloseStatus.SESSION_NOT_RELIABLE);
+                reclaimed.merge("stale_session", 1, Integer::sum);
+                continue;
             }
-            Path javaFile = tempDir.resolve(mainClassName + ".java");
-            Files.writeString(javaFile, code, StandardCharsets.UTF_8);
-            
-            // Local javac call
-            ProcessBuilder javac = new ProcessBuilder("javac", "-encoding", "UTF-8", javaFile.getFileName().toString());
-            javac.directory(tempDir.toFile()); 
-            compile = javac.start();
-            if (!compile.waitFor(15, TimeUnit.SECONDS) || compile.exitValue() != 0) {
-                throw new Exception("Java compilation failed:\n" + getErrorOutput(compile.getErrorStream()));
+            long idleFor = now - lastActivity.getOrDefault(session.getId(), now);
+            if (idleFor > idleTimeoutMs) {
+                System.out.println("💤 Closing idle WebSocket " + session.getId() + " (idle " + idleFor / 1000 + "s)");
+                try {
+                    session.close(CloseStatus.GOING_AWAY.withReason("Idle timeout"));
+                } catch (IOException e) {
+                    System.err.println("Error closing idle session: " + e.getMessage());
+                }
+                afterConnectionClosed(session, CloseStatus.GOING_AWAY);
+                reclaimed.merge("idle_session", 1, Integer::sum);
             }
-            return new String[]{"java", "-cp", tempDir.toString(), mainClassName};
-            
-        case "cpp":
-            Path cppFile = tempDir.resolve("main.cpp"); 
-            Files.writeString(cppFile, code, StandardCharsets.UTF_8);
-            // Local g++ call
-            ProcessBuilder gpp = new ProcessBuilder("g++", "-std=c++17", "-O2", cppFile.toString(), "-o", tempDir.resolve("main").toString());
-            gpp.directory(tempDir.toFile()); 
-            compile = gpp.start();
-            if (!compile.waitFor(15, TimeUnit.SECONDS) || compile.exitValue() != 0) {
-                throw new Exception("C++ compilation failed:\n" + getErrorOutput(compile.getErrorStream())); 
+        }
+
+        // Collab room members whose connection is gone
+        collabIdToSessions.forEach((collabId, sessions) -> sessions.forEach((sessionId, session) -> {
+            if (!session.isOpen() && sessions.remove(sessionId, session)) {
+                wsSessionToCollabId.remove(sessionId);
+                reclaimed.merge("stale_collab_member", 1, Integer::sum);
             }
-            return new String[]{tempDir.resolve("main").toString()};
-            
-        case "c":
-            Path cFile = tempDir.resolve("main.c"); 
-            Files.writeString(cFile, code, StandardCharsets.UTF_8);
-            ProcessBuilder gcc = new ProcessBuilder("gcc", "-std=c11", "-O2", cFile.toString(), "-o", tempDir.resolve("main").toString(), "-lm");
-            gcc.directory(tempDir.toFile()); 
-            compile = gcc.start();
-            if (!compile.waitFor(15, TimeUnit.SECONDS) || compile.exitValue() != 0) {
-                throw new Exception("C compilation failed:\n" + getErrorOutput(compile.getErrorStream()));
+        }));
+        collabIdToSessions.forEach((collabId, sessions) -> {
+            if (sessions.isEmpty() && collabIdToSessions.remove(collabId, sessions)) {
+                discardProjectIfUnused(projectKey(null, collabId));
             }
-            return new String[]{tempDir.resolve("main").toString()};
+        });
+        return reclaimed;
+    }
 
-        case "javascript":
-            Path jsFile = tempDir.resolve("main.js");
-            Files.writeString(jsFile, createEnhancedJavaScriptWrapper(code), StandardCharsets.UTF_8);
-            return new String[]{"node", jsFile.toString()};
-            
-        case "php":
-            Path phpFile = tempDir.resolve("main.php");
-            Files.writeString(phpFile, code, StandardCharsets.UTF_8);
-            return new String[]{"php", phpFile.toString()};
-
-        case "go":
-            Path goFile = tempDir.resolve("main.go");
-            Files.writeString(goFile, code, StandardCharsets.UTF_8);
-            // In Linux containers, the command is usually 'go'
-            return new String[]{"go", "run", goFile.toString()};
-            
-case "csharp":
-            Path csFile = tempDir.resolve("program.cs");
-            Files.writeString(csFile, code, StandardCharsets.UTF_8);
-            // Compile using 'mcs' (Mono Compiler)
-            ProcessBuilder mcs = new ProcessBuilder("mcs", "-out:" + tempDir.resolve("program.exe").toString(), csFile.toString());
-            mcs.directory(tempDir.toFile());
-            compile = mcs.start();
-            if (!compile.waitFor(20, TimeUnit.SECONDS) || compile.exitValue() != 0) {
-                throw new Exception("C# compilation failed");
-            }
-            // Run using 'mono'
-            return new String[]{"mono", tempDir.resolve("program.exe").toString()};
-            
-        case "ruby":
-            Path rbFile = tempDir.resolve("main.rb");
-            Files.writeString(rbFile, "# coding: utf-8\n" + code, StandardCharsets.UTF_8);
-            return new String[]{"ruby", "-W0", rbFile.toString()};
-            
-        default:
-            return null; 
+    // --- Executions of a connection ---
+
+    // The default execution keeps the plain session ID as its key
+    private static String executionKey(String sessionId, String executionId) {
+        return executionId.isEmpty() ? sessionId : sessionId + "#" + executionId;
     }
-}
-
-    // --- Other Helper Methods (mostly unchanged, ensure UTF-8 is used) ---
-
-    private void killProcess(String sessionId) {
-        Process process = processes.remove(sessionId);
-        if (process != null) {
-            if (process.isAlive()) {
-                 System.out.println("🛑 Forcibly destroying process for session: " + sessionId);
-                 process.destroyForcibly();
-                 try {
-                     // Brief wait to allow OS cleanup
-                     process.waitFor(50, TimeUnit.MILLISECONDS);
-                 } catch (InterruptedException e) {
-                     Thread.currentThread().interrupt();
-                 }
-            } else {
-                 System.out.println("ⓘ Process for session " + sessionId + " already terminated.");
+
+    // Frames of the default execution stay untagged
+    private static String tag(String executionId) {
+        return executionId.isEmpty() ? null : executionId;
+    }
+
+    private Map<String, ResumableExecution> executionsOf(String sessionId) {
+        return sessionExecutions.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>());
+    }
+
+    // Executions of the connection still running; finished ones (already delivered) are released here
+    private Map<String, ResumableExecution> runningExecutions(String sessionId) {
+        Map<String, ResumableExecution> executions = executionsOf(sessionId);
+        executions.values().removeIf(execution -> {
+            if (executionService.isRunning(execution.key)) {
+                return false;
             }
+            release(execution);
+            return true;
+        });
+        return executions;
+    }
+
+    private void release(ResumableExecution execution) {
+        resumable.remove(execution.resumeToken);
+        executionService.release(execution.key);
+        discardProjectIfUnused(execution.projectKey);
+    }
+
+    // Discards a project workspace once its session (or, for a room, every member on this node) is
+    // gone and no execution that may still be resumed runs in it
+    private void discardProjectIfUnused(String projectKey) {
+        if (projectKey == null) {
+            return;
         }
-        // Close and remove the writer associated with the session
-        PrintWriter writer = writers.remove(sessionId);
-        if (writer != null) {
-            writer.close();
+        boolean owned = projectKey.startsWith("room:")
+                ? collabIdToSessions.containsKey(projectKey.substring("room:".length()))
+                : activeSessions.containsKey(projectKey.substring("session:".length()));
+        if (!owned && resumable.values().stream().noneMatch(execution -> projectKey.equals(execution.projectKey))) {
+            projects.discard(projectKey);
         }
     }
-    
-    // Cleanup ensures process is killed and temp dir is deleted
-    private void cleanupUniversal(String sessionId, Path tempDir) {
-        killProcess(sessionId); // Ensure process and writer are handled
-        sessionLanguages.remove(sessionId);
-        inputRequestedFlags.remove(sessionId);
-        // Note: Lock is released in executeUniversal's finally block, not here.
-        
-        if (tempDir != null && Files.exists(tempDir)) {
-             System.out.println("🧹 Cleaning up temp directory: " + tempDir);
-             // Run cleanup in a separate thread to avoid blocking
-             new Thread(() -> {
-                try {
-                    // Walk the directory tree in reverse order and delete files/dirs
-                    Files.walk(tempDir)
-                        .sorted(java.util.Comparator.reverseOrder())
-                        .map(Path::toFile)
-                        .forEach(file -> {
-                            if (!file.delete()) {
-                                 System.err.println("⚠️ Failed to delete file during cleanup: " + file.getAbsolutePath());
-                            }
-                        });
-                } catch (IOException e) {
-                     System.err.println("❌ Error during temp directory cleanup for " + sessionId + ": " + e.getMessage());
-                }
-            }).start();
+
+    // --- Detach / resume ---
+
+    private void detach(ResumableExecution execution, WebSocketSession session) {
+        if (!execution.detach(session)) {
+            return; // Already resumed on another connection
         }
+        long detachedAt = execution.detachedAt();
+        System.out.println("⏸️ Execution " + execution.key + " detached, resumable for " + resumeGracePeriodMs / 1000 + "s");
+        expiryScheduler.schedule(() -> {
+            if (execution.detachedSince(detachedAt)) {
+                System.out.println("⌛ Resume grace period over for " + execution.key);
+                release(execution);
+            }
+        }, resumeGracePeriodMs, TimeUnit.MILLISECONDS);
     }
 
-    // Broadcasts to all except excludedSessionId
-    private void broadcastToCollabSession(String collabId, String type, String data, String excludedSessionId) {
-        Map<String, WebSocketSession> sessions = collabIdToSessions.get(collabId);
-        if (sessions != null) {
-            sessions.forEach((sessionId, session) -> {
-                if (excludedSessionId == null || !sessionId.equals(excludedSessionId)) {
-                    sendMessage(session, type, data);
-                }
-            });
+    private void handleResume(WebSocketSession session, String resumeToken, long lastSeq) {
+        ResumableExecution execution = resumable.get(resumeToken);
+        if (execution == null) {
+            sendMessage(session, "error", "Execution not found or no longer resumable.");
+            return;
         }
-    }
-    
-    // Sends a message to a single session
-    private void sendMessage(WebSocketSession session, String type, String data) {
-        if (session != null && session.isOpen()) {
-            try {
-                Map<String, Object> message = new HashMap<>();
-                message.put("type", type);
-                // Smartly handle data based on type (JSON or raw string)
-                if ("initial_code_sync".equals(type) || "code_sync".equals(type) || "chat_message".equals(type)) {
-                    try {
-                        message.put("data", objectMapper.readTree(data));
-                    } catch (Exception e) { // Fallback if data isn't valid JSON for these types
-                         System.err.println("⚠️ Expected JSON data for type '" + type + "' but got raw string. Sending as raw.");
-                         message.put("data", data);
-                    }
-                } else {
-                    message.put("data", data); // For output, error, etc.
-                }
-                message.put("timestamp", System.currentTimeMillis());
-                
-                String jsonMessage = objectMapper.writeValueAsString(message);
-                // Use synchronized block for thread safety when sending
-                synchronized(session) {
-                    if (session.isOpen()) { // Double-check isOpen inside synchronized block
-                        session.sendMessage(new TextMessage(jsonMessage));
-                    }
-                }
-            } catch (IOException e) {
-                 System.err.println("❌ Failed to send WebSocket message to " + session.getId() + ": " + e.getMessage());
-                 // Consider closing the session if sending fails repeatedly
-            } catch (Exception e) {
-                // Catch potential JSON processing errors
-                 System.err.println("❌ Error preparing WebSocket message for " + session.getId() + ": " + e.getMessage());
+        Map<String, ResumableExecution> executions = executionsOf(session.getId());
+        ResumableExecution existing = executions.get(execution.executionId);
+        if (existing != null && existing != execution && executionService.isRunning(existing.key)) {
+            sendMessage(session, tag(execution.executionId), "error", "Another execution with this executionId is running on this connection.");
+            return;
+        }
+        if (existing != null && existing != execution) {
+            release(existing); // Finished; the resumed execution takes its executionId
+        }
+        WebSocketSession previous = execution.attach(session, lastSeq);
+        if (previous != null && previous != session) {
+            // Taken over from a connection that is still open, e.g. another tab
+            Map<String, ResumableExecution> previousExecutions = sessionExecutions.get(previous.getId());
+            if (previousExecutions != null) {
+                previousExecutions.remove(execution.executionId, execution);
             }
-        } else {
-             System.out.println("⚠️ Attempted to send message to closed or null session.");
         }
+        executions.put(execution.executionId, execution);
+        System.out.println("▶️ Execution " + execution.key + " resumed on " + session.getId() + " after frame " + lastSeq);
     }
 
-    // JavaScript wrapper (unchanged, ensure it's correct)
-    private String createEnhancedJavaScriptWrapper(String userCode) {
-        if (userCode.contains("readline.createInterface") && userCode.contains("question")) { return userCode; }
-        return """
-// Enhanced JavaScript wrapper with proper termination & async support
-const readline = require('readline');
-const rl = readline.createInterface({ input: process.stdin, output: process.stdout });
-let isRlClosed = false; // Flag to prevent multiple closes
-
-function input(prompt) {
-    if (isRlClosed) return Promise.resolve(''); // Handle closed interface
-    return new Promise((resolve) => {
-        rl.question(prompt, (answer) => { resolve(answer); });
-    });
-}
-global.input = input; // Make input globally available
-
-function cleanup(exitCode = 0) {
-    if (!isRlClosed) {
-        try { rl.close(); } catch {}
-        isRlClosed = true;
-    }
-    // Ensure stdin is destroyed only if it's readable, preventing errors on double cleanup
-    if (process.stdin.readable && !process.stdin.destroyed) {
-        try { process.stdin.destroy(); } catch {}
-    }
-    process.exit(exitCode);
-}
-
-// Graceful exit handlers
-process.on('SIGINT', () => cleanup(130)); // Ctrl+C
-process.on('SIGTERM', () => cleanup(143)); // Kill signal
-// process.on('exit', (code) => { console.log(`Node process exited with code ${code}`); }); // Optional: Log exit code
-
-// Main execution wrapper with async support
-(async function main() {
-    let exitCode = 0;
-    try {
-""" + indentCode(userCode, "        ") + """
-    } catch (error) {
-        console.error('Execution Error:', error);
-        exitCode = 1; // Indicate an error occurred
-    } finally {
-        // Ensure cleanup happens after a short delay, allowing async operations to potentially finish
-        setTimeout(() => cleanup(exitCode), 150);
+    // Collab rooms share one project workspace; everyone else gets their own
+    private static String projectKey(String sessionId, String collabId) {
+        return collabId != null ? "room:" + collabId : "session:" + sessionId;
     }
-})();
-
-// Safety net timeout to force exit if the script hangs
-const timeoutMillis = 300000; // 5 minutes (matches waitFor timeout)
-const forceExitTimeout = setTimeout(() => {
-    console.error(`Execution timed out after ${timeoutMillis / 1000} seconds. Forcing exit.`);
-    cleanup(124); // Standard timeout exit code
-}, timeoutMillis);
-
-// Clear the timeout if the script finishes normally
-process.on('exit', () => clearTimeout(forceExitTimeout));
-""";
-    }
-    
-    // Indents code lines (unchanged)
-    private String indentCode(String code, String indent) {
-        return code.lines()
-                .map(line -> line.trim().isEmpty() ? "" : indent + line)
-                .collect(Collectors.joining("\n"));
+
+    // Sessions that negotiated the binary subprotocol get compact binary frames
+    private boolean isBinaryProtocol(WebSocketSession session) {
+        return BinaryFrameCodec.BINARY_SUBPROTOCOL.equals(session.getAcceptedProtocol());
     }
-    
-    // Reads error stream (unchanged, uses UTF-8)
-    private String getErrorOutput(InputStream errorStream) {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(errorStream, StandardCharsets.UTF_8))) {
-            // Read all lines, limit output size if necessary to prevent memory issues
-            return reader.lines().limit(100).collect(Collectors.joining("\n"));
-        } catch (IOException e) {
-             System.err.println("❌ IOException reading error stream: " + e.getMessage());
-             return "Error reading compilation/runtime output stream.";
+
+    private String toJsonMessage(String type, String data, String executionId, long seq) throws IOException {
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", type);
+        if (executionId != null) {
+            message.put("executionId", executionId);
+        }
+        if (seq > 0) {
+            message.put("seq", seq);
+        }
+        // Smartly handle data based on type (JSON or raw string)
+        if ("initial_code_sync".equals(type) || "code_sync".equals(type) || "chat_message".equals(type)
+                || "stdin_upload_complete".equals(type)) {
+            try {
+                message.put("data", objectMapper.readTree(data));
+            } catch (Exception e) { // Fallback if data isn't valid JSON for these types
+                 System.err.println("⚠️ Expected JSON data for type '" + type + "' but got raw string. Sending as raw.");
+                 message.put("data", data);
+            }
+        } else {
+            message.put("data", data); // For output, error, etc.
         }
+        message.put("timestamp", System.currentTimeMillis());
+        return objectMapper.writeValueAsString(message);
     }
 
 } // End of class InteractiveCodeExecutionHandler
\ No newline at end of file
@@ -0,0 +1,232 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.springframework.core.env.Environment;
+
+/**
+ * Java needs the file named after its public class, so this runtime adds a {main-class}
+ * placeholder (the class declaring main, "Main" if none is found) and {classpath}.
+ *
+ * Projects compile incrementally into build/classes: only sources whose content changed since
+ * the last successful build are recompiled, together with every source that depends on them,
+ * directly or through other dependents: a source mentioning a type declared in a recompiled one
+ * is recompiled too, until nothing new is added. State lives in build/java-build.properties.
+ */
+public class JavaLanguageRuntime extends CommandLanguageRuntime {
+
+    private static final Pattern CLASS_DECLARATION = Pattern.compile("(?:public\\s+)?class\\s+(\\w+)");
+    private static final Pattern TYPE_DECLARATION = Pattern.compile("\\b(?:class|interface|enum|record)\\s+([A-Za-z_$][\\w$]*)");
+    private static final Pattern PACKAGE_DECLARATION = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+    private static final List<String> JAVAC_FLAGS = List.of("-encoding", "UTF-8");
+
+    public JavaLanguageRuntime(String id, Environment env, ResourceLimiter resourceLimiter) {
+        super(id, env, resourceLimiter);
+    }
+
+    @Override
+    protected Map<String, String> variables(String code, Path workspace) {
+        Map<String, String> variables = super.variables(code, workspace);
+        variables.put("main-class", mainClassName(code));
+        variables.put("classpath", workspace.toString());
+        return variables;
+    }
+
+    static String mainClassName(String code) {
+        String mainClassName = "Main";
+        Matcher matcher = CLASS_DECLARATION.matcher(code);
+        while (matcher.find()) {
+            String detected = matcher.group(1);
+            if (code.contains("public static void main")) { mainClassName = detected; break; }
+        }
+        return mainClassName;
+    }
+
+    @Override
+    public Build prepareProject(ProjectWorkspace project, String entry) throws IOException {
+        Path sources = project.getSources();
+        Path classes = Files.createDirectories(project.getBuildDir().resolve("classes"));
+        Path stateFile = project.getBuildDir().resolve("java-build.properties");
+        Properties previous = load(stateFile);
+
+        List<String> files = project.sourceFiles("java");
+        if (!files.contains(entry)) {
+            throw new IOException("The entry file " + entry + " is not a .java file");
+        }
+        Map<String, String> contents = new HashMap<>();
+        Map<String, String> hashes = new HashMap<>();
+        Map<String, Set<String>> types = new HashMap<>();
+        for (String file : files) {
+            String content = Files.readString(sources.resolve(file), StandardCharsets.UTF_8);
+            contents.put(file, content);
+            hashes.put(file, project.hashSource(file));
+            types.put(file, declaredTypes(content));
+        }
+
+        String entryCode = contents.get(entry);
+        String mainClass = qualify(packageOf(entryCode), mainClassName(entryCode));
+        String buildKey = toolchainVersion() + " " + JAVAC_FLAGS;
+
+        Set<String> compile = new TreeSet<>();
+        Set<String> staleTypes = new LinkedHashSet<>();
+        boolean fullBuild = !buildKey.equals(previous.getProperty("build-key"))
+                || !Files.isRegularFile(classes.resolve(mainClass.replace('.', '/') + ".class"));
+        if (fullBuild) {
+            compile.addAll(files);
+        } else {
+            // Changed and removed files, and the types they declared before
+            Set<String> changedNames = new LinkedHashSet<>();
+            for (String key : previous.stringPropertyNames()) {
+                if (key.startsWith("hash.")) {
+                    String file = key.substring("hash.".length());
+                    if (!previous.getProperty(key).equals(hashes.get(file))) {
+                        for (String type : previousTypes(previous, file)) {
+                            staleTypes.add(type);
+                            changedNames.add(simpleName(type));
+                        }
+                    }
+                }
+            }
+            for (String file : files) {
+                if (!hashes.get(file).equals(previous.getProperty("hash." + file))) {
+                    compile.add(file);
+                    types.get(file).forEach(type -> changedNames.add(simpleName(type)));
+                }
+            }
+            // Dependents, transitively (C extends B extends A: a change to A recompiles B and C)
+            Set<String> names = changedNames;
+            while (!names.isEmpty()) {
+                Pattern mention = Pattern.compile("\\b(?:" + String.join("|", names.stream().map(Pattern::quote).toList()) + ")\\b");
+                Set<String> added = new LinkedHashSet<>();
+                for (String file : files) {
+                    if (!compile.contains(file) && mention.matcher(contents.get(file)).find()) {
+                        compile.add(file);
+                        types.get(file).forEach(type -> added.add(simpleName(type)));
+                    }
+                }
+                names = added;
+            }
+        }
+
+        // Class files of types that no longer exist anywhere would otherwise shadow errors
+        Set<String> liveTypes = new LinkedHashSet<>();
+        types.values().forEach(liveTypes::addAll);
+        staleTypes.removeAll(liveTypes);
+        if (fullBuild) {
+            deleteTree(classes);
+            Files.createDirectories(classes);
+        } else {
+            for (String type : staleTypes) {
+                deleteClassFiles(classes, type);
+            }
+        }
+
+        List<List<String>> steps = new ArrayList<>();
+        if (!compile.isEmpty()) {
+            List<String> javac = new ArrayList<>(List.of("javac"));
+            javac.addAll(JAVAC_FLAGS);
+            javac.addAll(List.of("-d", classes.toString(), "-cp", classes.toString(),
+                    "-sourcepath", sources.toString(), "-implicit:class"));
+            javac.addAll(compile);
+            steps.add(javac);
+        }
+        System.out.println("🔧 Java project " + project.getKey() + ": " + files.size() + " sources, "
+                + compile.size() + " to compile" + (fullBuild ? " (full build)" : ""));
+
+        Map<String, String> variables = super.variables(entryCode, sources);
+        variables.put("main-class", mainClass);
+        variables.put("classpath", classes.toString());
+        return new Build(steps, runCommand(variables), () -> {
+            Properties state = new Properties();
+            state.setProperty("build-key", buildKey);
+            for (String file : files) {
+                state.setProperty("hash." + file, hashes.get(file));
+                state.setProperty("types." + file, String.join(",", types.get(file)));
+            }
+            try (OutputStream out = Files.newOutputStream(stateFile)) {
+                state.store(out, null);
+            }
+        });
+    }
+
+    // Qualified names of the types a source declares (nested ones included; over-matching only costs a recompile)
+    private static Set<String> declaredTypes(String code) {
+        String packageName = packageOf(code);
+        Set<String> result = new LinkedHashSet<>();
+        Matcher matcher = TYPE_DECLARATION.matcher(code);
+        while (matcher.find()) {
+            result.add(qualify(packageName, matcher.group(1)));
+        }
+        return result;
+    }
+
+    private static Set<String> previousTypes(Properties state, String file) {
+        String value = state.getProperty("types." + file, "");
+        return value.isEmpty() ? Set.of() : new LinkedHashSet<>(List.of(value.split(",")));
+    }
+
+    private static String packageOf(String code) {
+        Matcher matcher = PACKAGE_DECLARATION.matcher(code);
+        return matcher.find() ? matcher.group(1) : "";
+    }
+
+    private static String qualify(String packageName, String simpleName) {
+        return packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+    }
+
+    private static String simpleName(String type) {
+        return type.substring(type.lastIndexOf('.') + 1);
+    }
+
+    private static void deleteClassFiles(Path classes, String type) throws IOException {
+        Path dir = classes.resolve(type.replace('.', '/')).getParent();
+        if (dir == null || !Files.isDirectory(dir)) {
+            return;
+        }
+        String name = simpleName(type);
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir, name + "{.class,$*.class}")) {
+            for (Path entry : entries) {
+                Files.deleteIfExists(entry);
+            }
+        }
+    }
+
+    private static Properties load(Path file) throws IOException {
+        Properties properties = new Properties();
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+        }
+        return properties;
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.util.stream.Collectors;
+
+import org.springframework.core.env.Environment;
+
+/**
+ * Node.js runtime: user code runs inside an async wrapper that provides input() and makes sure
+ * the process exits once the code (and its pending async work) is done. The run's time limit is
+ * left to the engine (app.execution.timeout), which doesn't count time the program spends paused.
+ */
+public class JavaScriptLanguageRuntime extends CommandLanguageRuntime {
+
+    public JavaScriptLanguageRuntime(String id, Environment env, ResourceLimiter resourceLimiter) {
+        super(id, env, resourceLimiter);
+    }
+
+    // Wraps the code in an async main with a global input() helper, unless it drives readline itself
+    @Override
+    protected String transformSource(String userCode) {
+        if (userCode.contains("readline.createInterface") && userCode.contains("question")) { return userCode; }
+        return """
+// Enhanced JavaScript wrapper with proper termination & async support
+const readline = require('readline');
+const rl = readline.createInterface({ input: process.stdin, output: process.stdout });
+let isRlClosed = false; // Flag to prevent multiple closes
+
+function input(prompt) {
+    if (isRlClosed) return Promise.resolve(''); // Handle closed interface
+    return new Promise((resolve) => {
+        rl.question(prompt, (answer) => { resolve(answer); });
+    });
+}
+global.input = input; // Make input globally available
+
+function cleanup(exitCode = 0) {
+    if (!isRlClosed) {
+        try { rl.close(); } catch {}
+        isRlClosed = true;
+    }
+    // Ensure stdin is destroyed only if it's readable, preventing errors on double cleanup
+    if (process.stdin.readable && !process.stdin.destroyed) {
+        try { process.stdin.destroy(); } catch {}
+    }
+    process.exit(exitCode);
+}
+
+// Graceful exit handlers
+process.on('SIGINT', () => cleanup(130)); // Ctrl+C
+process.on('SIGTERM', () => cleanup(143)); // Kill signal
+// process.on('exit', (code) => { console.log(`Node process exited with code ${code}`); }); // Optional: Log exit code
+
+// Main execution wrapper with async support
+(async function main() {
+    let exitCode = 0;
+    try {
+""" + indentCode(userCode, "        ") + """
+    } catch (error) {
+        console.error('Execution Error:', error);
+        exitCode = 1; // Indicate an error occurred
+    } finally {
+        // Ensure cleanup happens after a short delay, allowing async operations to potentially finish
+        setTimeout(() => cleanup(exitCode), 150);
+    }
+})();
+""";
+    }
+    
+    // Indents code lines (unchanged)
+    private static String indentCode(String code, String indent) {
+        return code.lines()
+                .map(line -> line.trim().isEmpty() ? "" : indent + line)
+                .collect(Collectors.joining("\n"));
+    }
+}
@@ -0,0 +1,75 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything the execution engine needs to know about one language.
+ *
+ * The engine asks the runtime to {@link #prepare} a workspace, then runs the returned compile
+ * steps and run command inside the execution's sandbox. The remaining methods are hints used
+ * for input detection, resource limits, caching and warm-up.
+ *
+ * Runtimes are configured under app.runtimes.* (see {@link LanguageRuntimeRegistry}); any Spring
+ * bean implementing this interface is registered as well.
+ */
+public interface LanguageRuntime {
+
+    // Language ID sent by clients, e.g. "cpp"
+    String id();
+
+    // Name used in messages, e.g. "C++"
+    String displayName();
+
+    // Writes the program into the workspace and returns how to build and run it
+    Build prepare(String code, Path workspace) throws IOException;
+
+    // Whether prepareProject is implemented; project runs in other languages are refused up front
+    default boolean supportsProjects() {
+        return false;
+    }
+
+    /**
+     * Multi-file projects: plans a build of the already-synced project sources, reusing what earlier
+     * successful builds left in the project's build directory. Steps run with src/ as working directory.
+     * Only called when {@link #supportsProjects} is true.
+     */
+    default Build prepareProject(ProjectWorkspace project, String entry) throws IOException {
+        throw new UnsupportedOperationException(displayName() + " does not support multi-file projects");
+    }
+
+    // Extra environment for the compile steps and the program
+    Map<String, String> environment();
+
+    // Per compile step
+    long compileTimeoutSeconds();
+
+    // Output silence after which a live program is assumed to be waiting for input
+    long inputWaitMillis();
+
+    ResourceLimiter.Limits limits();
+
+    // Everything besides the source that decides a build's result (toolchain version, flags, env)
+    List<String> cacheKeyInputs();
+
+    // Trivial program that exercises the whole toolchain, or null
+    String warmUpCode();
+
+    // Extra commands run once to warm the toolchain up (e.g. priming a build cache)
+    List<List<String>> warmUpCommands();
+
+    // Commands are unwrapped; the engine adds the sandbox prefix.
+    // onSuccess runs once every compile step has succeeded (e.g. to record incremental build state).
+    record Build(List<List<String>> compileSteps, List<String> runCommand, BuildCallback onSuccess) {
+        public Build(List<List<String>> compileSteps, List<String> runCommand) {
+            this(compileSteps, runCommand, () -> {});
+        }
+    }
+
+    @FunctionalInterface
+    interface BuildCallback {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,71 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resolves language IDs to {@link LanguageRuntime}s.
+ *
+ * Runtimes are listed in app.runtimes.languages and configured under app.runtimes.&lt;id&gt;.*;
+ * app.runtimes.&lt;id&gt;.type picks the implementation: "command" by default, or "java", "javascript",
+ * "native" (C/C++) and "csharp" for languages with code-level or incremental build handling.
+ * LanguageRuntime beans are added on top and win over configured runtimes with the same ID.
+ */
+@Component
+public class LanguageRuntimeRegistry {
+
+    private final Map<String, LanguageRuntime> runtimes = new LinkedHashMap<>();
+
+    public LanguageRuntimeRegistry(Environment env, ResourceLimiter resourceLimiter, ObjectProvider<LanguageRuntime> runtimeBeans) {
+        for (String id : env.getProperty("app.runtimes.languages", String[].class, new String[0])) {
+            id = id.trim().toLowerCase();
+            if (id.isEmpty()) {
+                continue;
+            }
+            try {
+                runtimes.put(id, create(id, env, resourceLimiter));
+            } catch (IllegalStateException e) {
+                System.err.println("⚠️ Skipping language runtime '" + id + "': " + e.getMessage());
+            }
+        }
+        runtimeBeans.orderedStream().forEach(runtime -> runtimes.put(runtime.id().toLowerCase(), runtime));
+        System.out.println("🧩 Language runtimes: " + String.join(", ", runtimes.keySet()));
+        List<String> uncapped = runtimes.values().stream()
+                .filter(runtime -> !resourceLimiter.capsMemory(runtime.limits()))
+                .map(LanguageRuntime::id)
+                .collect(Collectors.toList());
+        if (!uncapped.isEmpty()) {
+            System.out.println("⚠️ No memory limit under the rlimit fallback for: " + String.join(", ", uncapped)
+                    + " (see app.limits.<id>.address-space-mb)");
+        }
+    }
+
+    private static LanguageRuntime create(String id, Environment env, ResourceLimiter resourceLimiter) {
+        String type = env.getProperty("app.runtimes." + id + ".type", "command");
+        switch (type) {
+            case "command": return new CommandLanguageRuntime(id, env, resourceLimiter);
+            case "java": return new JavaLanguageRuntime(id, env, resourceLimiter);
+            case "javascript": return new JavaScriptLanguageRuntime(id, env, resourceLimiter);
+            case "native": return new NativeLanguageRuntime(id, env, resourceLimiter);
+            case "csharp": return new CSharpLanguageRuntime(id, env, resourceLimiter);
+            default: throw new IllegalStateException("unknown runtime type '" + type + "'");
+        }
+    }
+
+    // Null for unsupported languages
+    public LanguageRuntime find(String language) {
+        return language == null ? null : runtimes.get(language.toLowerCase());
+    }
+
+    public Collection<LanguageRuntime> all() {
+        return Collections.unmodifiableCollection(runtimes.values());
+    }
+}
@@ -0,0 +1,157 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.core.env.Environment;
+
+/**
+ * C/C++ runtime with incremental project builds. Every translation unit is compiled to
+ * build/obj/&lt;hash&gt;.o, where the hash covers the unit's content, the flags and the toolchain
+ * version. Next to it, &lt;hash&gt;.sig records the project headers the unit included (from the
+ * compiler's depfile) and their hashes; an object is reused only while both still match. The link
+ * is skipped too when the set of objects is unchanged.
+ *
+ * Extra properties: compiler, compile-flags, link-flags, translation-units (extensions).
+ */
+public class NativeLanguageRuntime extends CommandLanguageRuntime {
+
+    // Compile into a temp file and rename, so an interrupted compile never leaves a "cached" object
+    private static final String ATOMIC_OUTPUT = "\"$@\" && mv \"$0.tmp\" \"$0\"";
+
+    private final String compiler;
+    private final List<String> compileFlags;
+    private final List<String> linkFlags;
+    private final String[] translationUnits;
+
+    public NativeLanguageRuntime(String id, Environment env, ResourceLimiter resourceLimiter) {
+        super(id, env, resourceLimiter);
+        String prefix = "app.runtimes." + id + ".";
+        this.compiler = env.getRequiredProperty(prefix + "compiler");
+        this.compileFlags = split(env.getProperty(prefix + "compile-flags", ""));
+        this.linkFlags = split(env.getProperty(prefix + "link-flags", ""));
+        this.translationUnits = env.getProperty(prefix + "translation-units", String[].class, new String[] { id });
+    }
+
+    @Override
+    public Build prepareProject(ProjectWorkspace project, String entry) throws IOException {
+        Path sources = project.getSources();
+        Path objects = Files.createDirectories(project.getBuildDir().resolve("obj"));
+        Path deps = Files.createDirectories(project.getBuildDir().resolve("deps"));
+        Path binaries = Files.createDirectories(project.getBuildDir().resolve("bin"));
+
+        List<String> units = project.sourceFiles(translationUnits);
+        if (units.isEmpty()) {
+            throw new IOException("The project has no " + displayName() + " source files (." + String.join(", .", translationUnits) + ")");
+        }
+
+        String toolchain = toolchainVersion();
+        List<List<String>> steps = new ArrayList<>();
+        List<String> objectKeys = new ArrayList<>();
+        Map<String, String> compiled = new LinkedHashMap<>();
+        Set<Path> keep = new HashSet<>();
+        int reused = 0;
+        for (String unit : units) {
+            String key = ProjectWorkspace.hash(unit, String.valueOf(compileFlags), toolchain, project.hashSource(unit));
+            Path object = objects.resolve(key + ".o");
+            Path signature = objects.resolve(key + ".sig");
+            Path depFile = deps.resolve(key + ".d");
+            objectKeys.add(key);
+            keep.add(object);
+            keep.add(signature);
+            keep.add(depFile);
+
+            if (Files.isRegularFile(object) && Files.isRegularFile(signature)
+                    && Files.readString(signature).equals(dependencySignature(project, depFile, unit))) {
+                reused++;
+                continue;
+            }
+            compiled.put(unit, key);
+            List<String> step = new ArrayList<>(List.of("/bin/sh", "-c", ATOMIC_OUTPUT, object.toString(), compiler));
+            step.addAll(compileFlags);
+            step.addAll(List.of("-MMD", "-MF", depFile.toString(), "-c", unit, "-o", object + ".tmp"));
+            steps.add(step);
+        }
+
+        // Header-only edits recompile a unit under the same key, so any compile also forces the link
+        Path binary = binaries.resolve(ProjectWorkspace.hash(String.valueOf(objectKeys), String.valueOf(linkFlags), toolchain));
+        keep.add(binary);
+        if (!compiled.isEmpty() || !Files.isRegularFile(binary)) {
+            List<String> link = new ArrayList<>(List.of("/bin/sh", "-c", ATOMIC_OUTPUT, binary.toString(), compiler));
+            objectKeys.forEach(key -> link.add(objects.resolve(key + ".o").toString()));
+            link.addAll(List.of("-o", binary + ".tmp"));
+            link.addAll(linkFlags);
+            steps.add(link);
+        }
+
+        System.out.println("🔧 " + displayName() + " project " + project.getKey() + ": " + units.size() + " units, "
+                + reused + " cached, " + steps.size() + " build steps");
+        return new Build(steps, List.of(binary.toString()), () -> {
+            // Signatures are written only once the whole build succeeded
+            for (Map.Entry<String, String> unit : compiled.entrySet()) {
+                String key = unit.getValue();
+                Files.writeString(objects.resolve(key + ".sig"), dependencySignature(project, deps.resolve(key + ".d"), unit.getKey()));
+            }
+            prune(objects, keep);
+            prune(deps, keep);
+            prune(binaries, keep);
+        });
+    }
+
+    // Project headers the unit included when last compiled, with their current hashes
+    private static String dependencySignature(ProjectWorkspace project, Path depFile, String unit) throws IOException {
+        StringBuilder signature = new StringBuilder();
+        for (String header : previousDependencies(depFile, project.getSources(), unit)) {
+            signature.append(header).append('=')
+                    .append(Files.isRegularFile(project.getSources().resolve(header)) ? project.hashSource(header) : "missing")
+                    .append('\n');
+        }
+        return signature.toString();
+    }
+
+    // Project files (relative to src/) the unit depended on when it was last compiled
+    private static List<String> previousDependencies(Path depFile, Path sources, String unit) throws IOException {
+        List<String> result = new ArrayList<>();
+        if (!Files.isRegularFile(depFile)) {
+            return result;
+        }
+        String content = Files.readString(depFile).replace("\\\n", " ");
+        int colon = content.indexOf(": ");
+        if (colon < 0) {
+            return result;
+        }
+        for (String token : content.substring(colon + 1).trim().split("\\s+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            Path dependency = sources.resolve(token).normalize();
+            if (dependency.startsWith(sources)) {
+                String relative = sources.relativize(dependency).toString().replace('\\', '/');
+                if (!relative.equals(unit) && !result.contains(relative)) {
+                    result.add(relative);
+                }
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    // Removes cache entries the current build no longer uses
+    private static void prune(Path dir, Set<Path> keep) throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                if (!keep.contains(entry)) {
+                    Files.deleteIfExists(entry);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A multi-file project that outlives a single run (one per WebSocket session, collab room or SSE project).
+ *
+ *   src/    mirrors the client's file map; programs and compilers run here
+ *   build/  whatever the language runtime keeps between runs (object files, classes, assemblies)
+ *
+ * A build (sync + compile) holds the write lock and each run the read lock for as long as its
+ * program lives, so runs may overlap each other but a rebuild never rewrites sources or build
+ * output under a running program. Locks are held by the execution thread.
+ */
+public class ProjectWorkspace {
+
+    private final String key;
+    private final Path root;
+    private final Path sources;
+    private final Path buildDir;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    ProjectWorkspace(String key, Path root) throws IOException {
+        this.key = key;
+        this.root = root;
+        this.sources = Files.createDirectories(root.resolve("src"));
+        this.buildDir = Files.createDirectories(root.resolve("build"));
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public Path getSources() {
+        return sources;
+    }
+
+    public Path getBuildDir() {
+        return buildDir;
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    // For a build; false if it could not be had within the timeout
+    public boolean tryLockForBuild(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!lock.writeLock().tryLock(timeout, unit)) {
+            return false;
+        }
+        lastUsed = System.currentTimeMillis();
+        return true;
+    }
+
+    // Turns the build's lock into a run's, with no other build in between
+    public void downgradeToRun() {
+        lock.readLock().lock();
+        lock.writeLock().unlock();
+    }
+
+    // Ends a build that won't be followed by a run (e.g. it failed)
+    public void unlockBuild() {
+        lastUsed = System.currentTimeMillis();
+        lock.writeLock().unlock();
+    }
+
+    public void unlockRun() {
+        lastUsed = System.currentTimeMillis();
+        lock.readLock().unlock();
+    }
+
+    // Building, or a program is running in it
+    public boolean isInUse() {
+        return lock.isWriteLocked() || lock.getReadLockCount() > 0;
+    }
+
+    /**
+     * Makes src/ match the file map: writes files whose content differs and deletes everything else
+     * (including files a previous run created). Paths are validated by {@link ProjectWorkspaces}.
+     * Returns the number of files written.
+     */
+    public int sync(Map<String, String> files) throws IOException {
+        int written = 0;
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            Path target = sources.resolve(file.getKey());
+            byte[] content = file.getValue().getBytes(StandardCharsets.UTF_8);
+            if (!Files.isRegularFile(target) || !MessageDigest.isEqual(Files.readAllBytes(target), content)) {
+                Files.createDirectories(target.getParent());
+                Files.write(target, content);
+                written++;
+            }
+        }
+
+        Set<Path> wanted = files.keySet().stream().map(sources::resolve).collect(Collectors.toSet());
+        Files.walkFileTree(sources, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!wanted.contains(file)) {
+                    Files.deleteIfExists(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (!dir.equals(sources) && isEmpty(dir)) {
+                    Files.deleteIfExists(dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        lastUsed = System.currentTimeMillis();
+        return written;
+    }
+
+    // Source files (relative to src/, '/'-separated, sorted) with one of the given extensions
+    public List<String> sourceFiles(String... extensions) throws IOException {
+        List<String> result = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(sources)) {
+            walk.filter(Files::isRegularFile).forEach(file -> {
+                String relative = sources.relativize(file).toString().replace('\\', '/');
+                for (String extension : extensions) {
+                    if (relative.endsWith("." + extension)) {
+                        result.add(relative);
+                        break;
+                    }
+                }
+            });
+        }
+        result.sort(null);
+        return result;
+    }
+
+    // --- Content hashing for build caches ---
+
+    public static String hash(String... parts) {
+        MessageDigest digest = sha256();
+        for (String part : parts) {
+            digest.update(part.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest()).substring(0, 32);
+    }
+
+    public String hashSource(String relativePath) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(Files.readAllBytes(sources.resolve(relativePath)));
+        return HexFormat.of().formatHex(digest.digest()).substring(0, 32);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isEmpty(Path dir) throws IOException {
+        try (Stream<Path> entries = Files.list(dir)) {
+            return entries.findAny().isEmpty();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Owns the persistent {@link ProjectWorkspace}s. Each one pins a directory from the
+ * WorkspaceManager pool (so it counts against the same quota) until it is discarded,
+ * either by its owner going away or by the reaper after app.projects.idle-timeout-ms.
+ *
+ * Project keys: "session:&lt;ws id&gt;", "room:&lt;collab id&gt;" or "sse:&lt;project id&gt;".
+ */
+@Component
+public class ProjectWorkspaces {
+
+    @Value("${app.projects.max-projects:64}")
+    private int maxProjects;
+
+    @Value("${app.projects.max-files:200}")
+    private int maxFiles;
+
+    // Total source size of one file map
+    @Value("${app.projects.max-source-bytes:2000000}")
+    private long maxSourceBytes;
+
+    private final Map<String, ProjectWorkspace> projects = new ConcurrentHashMap<>();
+    private final WorkspaceManager workspaceManager;
+
+    public ProjectWorkspaces(WorkspaceManager workspaceManager) {
+        this.workspaceManager = workspaceManager;
+    }
+
+    // Existing project for the key, or a new one on a pooled directory
+    public ProjectWorkspace open(String key) throws IOException {
+        ProjectWorkspace existing = projects.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (projects) {
+            existing = projects.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            if (projects.size() >= maxProjects) {
+                throw new IOException("Too many open projects on this server, please try again shortly.");
+            }
+            Path dir = workspaceManager.acquire(key);
+            try {
+                ProjectWorkspace project = new ProjectWorkspace(key, dir);
+                projects.put(key, project);
+                System.out.println("🗂️ Project workspace opened: " + key);
+                return project;
+            } catch (IOException e) {
+                workspaceManager.release(dir);
+                throw e;
+            }
+        }
+    }
+
+    // Gives the project's directory back to the pool (wiped by the workspace reaper)
+    public void discard(String key) {
+        ProjectWorkspace project = projects.remove(key);
+        if (project != null) {
+            workspaceManager.release(project.getRoot());
+            System.out.println("🗂️ Project workspace discarded: " + key);
+        }
+    }
+
+    // Discards projects unused for longer than idleTimeoutMs and not currently building or running
+    public int reapIdle(long idleTimeoutMs) {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMs;
+        int reaped = 0;
+        for (ProjectWorkspace project : projects.values()) {
+            if (project.getLastUsed() < cutoff && !project.isInUse()) {
+                discard(project.getKey());
+                reaped++;
+            }
+        }
+        return reaped;
+    }
+
+    public boolean contains(String key) {
+        return projects.containsKey(key);
+    }
+
+    public int size() {
+        return projects.size();
+    }
+
+    /**
+     * Checks a client file map: relative paths only, no "..", no hidden files (reserved for the
+     * server), within the file count and size limits. Returns an error message, or null if valid.
+     */
+    public String validate(Map<String, String> files) {
+        if (files == null || files.isEmpty()) {
+            return "A project needs at least one file.";
+        }
+        if (files.size() > maxFiles) {
+            return "Too many files (limit " + maxFiles + ").";
+        }
+        long total = 0;
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            String path = file.getKey();
+            if (path == null || path.isBlank() || path.startsWith("/") || path.contains("\\") || path.contains("\0")) {
+                return "Invalid file path: " + path;
+            }
+            for (String segment : path.split("/")) {
+                if (segment.isEmpty() || segment.equals("..") || segment.startsWith(".")) {
+                    return "Invalid file path: " + path;
+                }
+            }
+            if (file.getValue() == null) {
+                return "Missing content for " + path;
+            }
+            total += file.getValue().getBytes(StandardCharsets.UTF_8).length;
+        }
+        if (total > maxSourceBytes) {
+            return "Project sources exceed " + maxSourceBytes + " bytes.";
+        }
+        return null;
+    }
+
+    // The client's entry file, or a main.* / Main.* / Program.* file, or the first file
+    public static String resolveEntry(Map<String, String> files, String requested) {
+        if (requested != null && !requested.isBlank()) {
+            return files.containsKey(requested) ? requested : null;
+        }
+        return files.keySet().stream().sorted()
+                .filter(path -> path.matches("(?i)(main|program)\\.[^/]+"))
+                .findFirst()
+                .orElse(files.keySet().stream().sorted().findFirst().orElse(null));
+    }
+}
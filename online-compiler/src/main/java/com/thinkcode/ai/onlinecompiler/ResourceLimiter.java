@@ -0,0 +1,406 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-execution resource isolation.
+ *
+ * Preferred mode is one cgroup v2 leaf per execution (cpu.max, memory.max, pids.max), joined by
+ * both the compile step and the program itself. Where cgroup v2 is unavailable or not writable,
+ * limits fall back to prlimit (or sh ulimit). File size is always limited with an rlimit.
+ *
+ * The rlimit fallback enforces less: CPU time is capped in total seconds but cpu-percent has no
+ * effect; memory is only capped through the address space (address-space-mb, 0 by default, and so
+ * uncapped, for JIT runtimes such as Java, JavaScript, Go and C#); and the process limit is
+ * RLIMIT_NPROC, which counts every process and thread of the server's user, so a run gets its pids
+ * on top of those (root is exempt from it). Memory, process and throttling notices need a cgroup.
+ *
+ * Limits are read from app.limits.&lt;language&gt;.&lt;key&gt; with app.limits.default.&lt;key&gt; as fallback.
+ */
+@Component
+public class ResourceLimiter {
+
+    enum Mode { CGROUP, PRLIMIT, ULIMIT, NONE }
+
+    // Exit codes of processes killed by SIGXCPU / SIGXFSZ
+    private static final int EXIT_CPU_LIMIT = 128 + 24;
+    private static final int EXIT_FILE_SIZE_LIMIT = 128 + 25;
+
+    @Value("${app.limits.enabled:true}")
+    private boolean enabled;
+
+    // cgroup v2 mount point (the container's cgroup namespace root)
+    @Value("${app.limits.cgroup-root:/sys/fs/cgroup}")
+    private String cgroupRoot;
+
+    // Only mention CPU throttling when it took at least this share of the sandbox's wall time
+    @Value("${app.limits.throttle-report-share:0.5}")
+    private double throttleReportShare;
+
+    private final Environment environment;
+    private final Map<String, Limits> limitsCache = new ConcurrentHashMap<>();
+    private Mode mode = Mode.NONE;
+    private Path executionParent;
+    // Keeps leaves unique when different keys sanitize to the same name
+    private final AtomicLong leafIds = new AtomicLong();
+    private final long pid = ProcessHandle.current().pid();
+    private boolean prlimitAvailable;
+    private final long uid = currentUid();
+
+    public ResourceLimiter(Environment environment) {
+        this.environment = environment;
+    }
+
+    public record Limits(int cpuPercent, long memoryBytes, int pids, long fileSizeBytes,
+                         long cpuSeconds, long addressSpaceBytes) {}
+
+    @PostConstruct
+    void init() {
+        prlimitAvailable = Files.isExecutable(Paths.get("/usr/bin/prlimit")) || Files.isExecutable(Paths.get("/bin/prlimit"));
+        if (!enabled) {
+            mode = Mode.NONE;
+        } else if (setUpCgroups()) {
+            mode = Mode.CGROUP;
+        } else {
+            mode = prlimitAvailable ? Mode.PRLIMIT : Mode.ULIMIT;
+        }
+        System.out.println("🛡️ Resource limits mode: " + mode + (mode == Mode.CGROUP ? " (" + executionParent + ")" : ""));
+        if (mode == Mode.PRLIMIT || mode == Mode.ULIMIT) {
+            System.out.println("⚠️ rlimit fallback: cpu-percent is not enforced, memory only through address-space-mb, "
+                    + (uid == 0 ? "and process counts not at all (running as root)" : "and process counts per user, not per run"));
+        }
+    }
+
+    // Runtimes with no address-space cap run without any memory limit under the rlimit fallback
+    public boolean capsMemory(Limits limits) {
+        return mode == Mode.CGROUP || mode == Mode.NONE || limits.addressSpaceBytes() > 0;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public Limits limitsFor(String language) {
+        return limitsCache.computeIfAbsent(language, lang -> new Limits(
+            intLimit(lang, "cpu-percent", 100),
+            longLimit(lang, "memory-mb", 256) * 1024 * 1024,
+            intLimit(lang, "pids", 128),
+            longLimit(lang, "file-size-mb", 16) * 1024 * 1024,
+            longLimit(lang, "cpu-seconds", 60),
+            longLimit(lang, "address-space-mb", 0) * 1024 * 1024
+        ));
+    }
+
+    // Creates the isolation context for one execution (compile + run)
+    public Sandbox open(String executionId, Limits limits) {
+        Path leaf = null;
+        if (mode == Mode.CGROUP) {
+            try {
+                leaf = executionParent.resolve(executionId.replaceAll("[^A-Za-z0-9_-]", "_")
+                        + "-" + pid + "-" + leafIds.incrementAndGet());
+                Files.createDirectories(leaf);
+                write(leaf.resolve("cpu.max"), (limits.cpuPercent() * 1000L) + " 100000");
+                write(leaf.resolve("memory.max"), String.valueOf(limits.memoryBytes()));
+                if (Files.exists(leaf.resolve("memory.swap.max"))) {
+                    write(leaf.resolve("memory.swap.max"), "0");
+                }
+                write(leaf.resolve("pids.max"), String.valueOf(limits.pids()));
+            } catch (IOException e) {
+                System.err.println("⚠️ Could not create cgroup for " + executionId + ", using rlimits: " + e.getMessage());
+                removeLeaf(leaf);
+                leaf = null;
+            }
+        }
+        return new Sandbox(limits, leaf);
+    }
+
+    public class Sandbox implements AutoCloseable {
+        private final Limits limits;
+        private final Path leaf; // null when running on rlimits only
+        private final long openedAt = System.currentTimeMillis();
+
+        private Sandbox(Limits limits, Path leaf) {
+            this.limits = limits;
+            this.leaf = leaf;
+        }
+
+        public Path getCgroup() {
+            return leaf;
+        }
+
+        // Prefixes a command so it starts inside this sandbox
+        public String[] wrap(String... command) {
+            List<String> wrapped = new ArrayList<>();
+            if (leaf != null) {
+                // Join the leaf before exec, so every descendant is accounted for from the start
+                wrapped.addAll(List.of("/bin/sh", "-c", "echo $$ > \"$0/cgroup.procs\" && exec \"$@\"", leaf.toString()));
+                if (prlimitAvailable) {
+                    wrapped.addAll(List.of("prlimit", "--fsize=" + limits.fileSizeBytes(), "--"));
+                }
+            } else if (mode != Mode.NONE && prlimitAvailable) {
+                wrapped.add("prlimit");
+                // Soft limit raises SIGXCPU (reportable), hard limit one second later is SIGKILL
+                wrapped.add("--cpu=" + limits.cpuSeconds() + ":" + (limits.cpuSeconds() + 1));
+                wrapped.add("--fsize=" + limits.fileSizeBytes());
+                if (limits.addressSpaceBytes() > 0) {
+                    wrapped.add("--as=" + limits.addressSpaceBytes());
+                }
+                if (uid > 0) {
+                    wrapped.add("--nproc=" + processLimit());
+                }
+                wrapped.add("--");
+            } else if (mode != Mode.NONE) {
+                // dash: -t seconds, -f 512-byte blocks, -v KiB
+                StringBuilder script = new StringBuilder();
+                script.append("ulimit -t ").append(limits.cpuSeconds()).append("; ");
+                script.append("ulimit -f ").append(limits.fileSizeBytes() / 512).append("; ");
+                if (limits.addressSpaceBytes() > 0) {
+                    script.append("ulimit -v ").append(limits.addressSpaceBytes() / 1024).append("; ");
+                }
+                if (uid > 0) {
+                    // bash spells it -u, dash -p
+                    long nproc = processLimit();
+                    script.append("{ ulimit -u ").append(nproc).append(" || ulimit -p ").append(nproc).append("; } 2>/dev/null; ");
+                }
+                script.append("exec \"$@\"");
+                wrapped.addAll(List.of("/bin/sh", "-c", script.toString(), "sh"));
+            }
+            wrapped.addAll(List.of(command));
+            return wrapped.toArray(new String[0]);
+        }
+
+        // RLIMIT_NPROC is per user: the run may add its pids to the user's current processes and threads
+        private long processLimit() {
+            return userTasks() + limits.pids();
+        }
+
+        // Human-readable notices about limits the execution ran into
+        public List<String> limitEvents(int exitCode) {
+            List<String> events = new ArrayList<>();
+            if (leaf != null) {
+                if (readCounter(leaf.resolve("memory.events"), "oom_kill") > 0) {
+                    events.add("Memory limit exceeded: the program was stopped after using more than "
+                            + limits.memoryBytes() / (1024 * 1024) + " MB.");
+                }
+                if (readCounter(leaf.resolve("pids.events"), "max") > 0) {
+                    events.add("Process limit reached: the program tried to run more than " + limits.pids() + " processes/threads.");
+                }
+            }
+            if (exitCode == EXIT_CPU_LIMIT) {
+                events.add("CPU time limit exceeded (" + limits.cpuSeconds() + " s).");
+            } else if (exitCode == EXIT_FILE_SIZE_LIMIT) {
+                events.add("File size limit exceeded (" + limits.fileSizeBytes() / (1024 * 1024) + " MB).");
+            }
+            return events;
+        }
+
+        /**
+         * Informational, unlike limitEvents: the run still finished within its limits, only slower.
+         * Null unless throttling took a material share of the wall time, which threads briefly
+         * bursting past cpu-percent (JIT, GC, a parallel compile) don't.
+         */
+        public String throttleNotice() {
+            if (leaf == null) {
+                return null;
+            }
+            long throttledMs = readCounter(leaf.resolve("cpu.stat"), "throttled_usec") / 1000;
+            long wallMs = Math.max(1, System.currentTimeMillis() - openedAt);
+            if (throttledMs < throttleReportShare * wallMs) {
+                return null;
+            }
+            return "CPU limited: the program was throttled for " + throttledMs + " ms of its " + wallMs + " ms (limit: "
+                    + limits.cpuPercent() + "% of a core).";
+        }
+
+        // CPU time used so far by everything in the leaf; -1 without a cgroup
+        public long cpuUsageMicros() {
+            return leaf != null && Files.exists(leaf.resolve("cpu.stat")) ? readCounter(leaf.resolve("cpu.stat"), "usage_usec") : -1;
+        }
+
+        // Peak memory of the leaf (memory.peak needs Linux 5.19+); -1 when unknown
+        public long memoryPeakBytes() {
+            if (leaf == null) {
+                return -1;
+            }
+            try {
+                return Long.parseLong(Files.readString(leaf.resolve("memory.peak")).trim());
+            } catch (IOException | NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        // cgroup freezer: stops/resumes every process in the leaf at once
+        public boolean freeze(boolean frozen) {
+            if (leaf == null || !Files.exists(leaf.resolve("cgroup.freeze"))) {
+                return false;
+            }
+            try {
+                write(leaf.resolve("cgroup.freeze"), frozen ? "1" : "0");
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() {
+            removeLeaf(leaf);
+        }
+    }
+
+    // --- cgroup setup ---
+
+    private boolean setUpCgroups() {
+        Path root = Paths.get(cgroupRoot);
+        try {
+            Path controllersFile = root.resolve("cgroup.controllers");
+            if (!Files.exists(controllersFile)) {
+                return false; // Not a cgroup v2 mount
+            }
+            String controllers = Files.readString(controllersFile);
+            if (!controllers.contains("cpu") || !controllers.contains("memory") || !controllers.contains("pids")) {
+                System.out.println("⚠️ cgroup v2 is missing cpu/memory/pids controllers: " + controllers.trim());
+                return false;
+            }
+
+            if (!enableControllers(root)) {
+                // "No internal processes": move everything in the root (us included) into a server leaf first
+                Path serverLeaf = root.resolve("thinkcode-server");
+                Files.createDirectories(serverLeaf);
+                for (String pid : Files.readAllLines(root.resolve("cgroup.procs"))) {
+                    if (!pid.isBlank()) {
+                        try { write(serverLeaf.resolve("cgroup.procs"), pid.trim()); } catch (IOException e) { /* kernel threads, exited pids */ }
+                    }
+                }
+                if (!enableControllers(root)) {
+                    return false;
+                }
+            }
+
+            executionParent = root.resolve("thinkcode-exec");
+            Files.createDirectories(executionParent);
+            return enableControllers(executionParent);
+        } catch (IOException | SecurityException e) {
+            System.out.println("⚠️ cgroup v2 not usable (" + e.getMessage() + "), falling back to rlimits");
+            return false;
+        }
+    }
+
+    private boolean enableControllers(Path cgroup) {
+        try {
+            for (String controller : List.of("cpu", "memory", "pids")) {
+                write(cgroup.resolve("cgroup.subtree_control"), "+" + controller);
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void removeLeaf(Path leaf) {
+        if (leaf == null || !Files.exists(leaf)) {
+            return;
+        }
+        try {
+            // Kill anything still inside (kernel 5.14+), then remove the empty leaf
+            if (Files.exists(leaf.resolve("cgroup.kill"))) {
+                write(leaf.resolve("cgroup.kill"), "1");
+            }
+            for (int attempt = 0; attempt < 20; attempt++) {
+                try {
+                    Files.delete(leaf);
+                    return;
+                } catch (IOException e) {
+                    Thread.sleep(10); // Processes may still be exiting
+                }
+            }
+            System.err.println("⚠️ Could not remove cgroup " + leaf);
+        } catch (IOException e) {
+            System.err.println("⚠️ Error removing cgroup " + leaf + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --- Helpers ---
+
+    private static long currentUid() {
+        try {
+            return ((Number) Files.getAttribute(Paths.get("/proc/self"), "unix:uid")).longValue();
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return -1; // No procfs: the process limit is skipped
+        }
+    }
+
+    // Processes and threads of this server's user, as RLIMIT_NPROC counts them
+    private long userTasks() {
+        long tasks = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(Paths.get("/proc"), "[0-9]*")) {
+            for (Path entry : entries) {
+                long owner = -1;
+                long threads = 0;
+                try {
+                    for (String line : Files.readAllLines(entry.resolve("status"))) {
+                        if (line.startsWith("Uid:")) {
+                            owner = Long.parseLong(line.substring(4).trim().split("\\s+")[0]); // Real UID
+                        } else if (line.startsWith("Threads:")) {
+                            threads = Long.parseLong(line.substring(8).trim());
+                        }
+                    }
+                } catch (IOException | NumberFormatException e) {
+                    continue; // Exited meanwhile
+                }
+                if (owner == uid) {
+                    tasks += threads;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not count processes for the process limit: " + e.getMessage());
+        }
+        return tasks;
+    }
+
+    private static void write(Path file, String value) throws IOException {
+        Files.writeString(file, value);
+    }
+
+    // Reads "key value" lines as found in memory.events, pids.events and cpu.stat
+    private static long readCounter(Path file, String key) {
+        try {
+            for (String line : Files.readAllLines(file)) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts.length == 2 && parts[0].equals(key)) {
+                    return Long.parseLong(parts[1]);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Counter not available on this kernel
+        }
+        return 0;
+    }
+
+    private int intLimit(String language, String key, int fallback) {
+        return environment.getProperty("app.limits." + language + "." + key, Integer.class,
+                environment.getProperty("app.limits.default." + key, Integer.class, fallback));
+    }
+
+    private long longLimit(String language, String key, long fallback) {
+        return environment.getProperty("app.limits." + language + "." + key, Long.class,
+                environment.getProperty("app.limits.default." + key, Long.class, fallback));
+    }
+}
@@ -0,0 +1,72 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Periodically reclaims what normal cleanup missed: orphaned process trees, leaked
+ * process/writer entries, WebSocket sessions idle past websocket.max-session-idle-timeout and
+ * project workspaces idle past app.projects.idle-timeout-ms, and stdin uploads unused past
+ * app.stdin.upload-ttl-ms.
+ *
+ * Reclaimed counts are published as the "thinkcode.reaper.reclaimed" counter, tagged by kind.
+ */
+@Component
+public class ResourceReaper {
+
+    private final CodeExecutionService executionService;
+    private final InteractiveCodeExecutionHandler webSocketHandler;
+    private final ProjectWorkspaces projects;
+    private final StdinUploads uploads;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${websocket.max-session-idle-timeout:600000}")
+    private long sessionIdleTimeoutMs;
+
+    // Untracked child processes older than this are killed (must exceed execution + compile timeouts)
+    @Value("${app.reaper.orphan-age-ms:360000}")
+    private long orphanAgeMs;
+
+    // Project workspaces (multi-file runs) unused for this long are discarded
+    @Value("${app.projects.idle-timeout-ms:1800000}")
+    private long projectIdleTimeoutMs;
+
+    public ResourceReaper(CodeExecutionService executionService, InteractiveCodeExecutionHandler webSocketHandler,
+                          ProjectWorkspaces projects, StdinUploads uploads, MeterRegistry meterRegistry) {
+        this.executionService = executionService;
+        this.webSocketHandler = webSocketHandler;
+        this.projects = projects;
+        this.uploads = uploads;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Scheduled(fixedDelayString = "${app.reaper.interval-ms:30000}", initialDelayString = "${app.reaper.interval-ms:30000}")
+    public void reap() {
+        try {
+            record(webSocketHandler.reapSessions(sessionIdleTimeoutMs));
+            record(executionService.reap(orphanAgeMs));
+            int idleProjects = projects.reapIdle(projectIdleTimeoutMs);
+            if (idleProjects > 0) {
+                record(Map.of("idle_project", idleProjects));
+            }
+            int expiredUploads = uploads.reapExpired();
+            if (expiredUploads > 0) {
+                record(Map.of("expired_stdin_upload", expiredUploads));
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Reaper run failed: " + e.getMessage());
+        }
+    }
+
+    private void record(Map<String, Integer> reclaimed) {
+        reclaimed.forEach((kind, count) -> {
+            meterRegistry.counter("thinkcode.reaper.reclaimed", "kind", kind).increment(count);
+            System.out.println("🧹 Reaper reclaimed " + count + " x " + kind);
+        });
+    }
+}
@@ -0,0 +1,733 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Instant, local first-pass complexity estimate. Comments and string literals are stripped, then
+ * loops are found (braces, or indentation for Python and Ruby) and classified as constant,
+ * logarithmic or linear from their headers and bodies. Nesting multiplies, library calls with
+ * known costs (sorting, linear scans, binary search) and calls to the program's own functions are
+ * costed in place, and self-recursion is classified by call count and argument shape.
+ *
+ * An estimate is "simple" when nothing in it was a guess: no recursion, no ambiguous operations
+ * (e.g. contains() on an unknown collection) and only loops with a recognized shape.
+ */
+@Component
+public class StaticComplexityEstimator {
+
+    private static final int MAX_SIMPLE_LINES = 150;
+    private static final int MAX_FINDINGS = 12;
+
+    // --- Complexity classes ---
+
+    public record Cost(int poly, int log, boolean exponential) implements Comparable<Cost> {
+        static final Cost CONSTANT = new Cost(0, 0, false);
+        static final Cost LOG = new Cost(0, 1, false);
+        static final Cost LINEAR = new Cost(1, 0, false);
+        static final Cost N_LOG_N = new Cost(1, 1, false);
+        static final Cost EXPONENTIAL = new Cost(0, 0, true);
+
+        Cost times(Cost other) {
+            return exponential || other.exponential ? EXPONENTIAL : new Cost(poly + other.poly, log + other.log, false);
+        }
+
+        Cost max(Cost other) {
+            return compareTo(other) >= 0 ? this : other;
+        }
+
+        @Override
+        public int compareTo(Cost other) {
+            if (exponential != other.exponential) return exponential ? 1 : -1;
+            if (poly != other.poly) return Integer.compare(poly, other.poly);
+            return Integer.compare(log, other.log);
+        }
+
+        @Override
+        public String toString() {
+            if (exponential) return "O(2^n)";
+            List<String> parts = new ArrayList<>();
+            if (poly > 0) parts.add(poly == 1 ? "n" : "n^" + poly);
+            if (log > 0) parts.add(log == 1 ? "log n" : "log^" + log + " n");
+            return parts.isEmpty() ? "O(1)" : "O(" + String.join(" ", parts) + ")";
+        }
+    }
+
+    public record Estimate(String time, String space, boolean simple, List<String> findings, List<String> uncertainties) {}
+
+    // --- Patterns ---
+
+    private static final Set<String> KEYWORDS = Set.of("if", "for", "foreach", "while", "switch", "catch", "return", "sizeof",
+            "new", "else", "do", "try", "synchronized", "using", "lock", "fixed", "elif", "function", "func", "typeof", "await",
+            "throw", "delete", "case", "print", "echo", "and", "or", "not", "in", "is", "def", "class", "struct", "select");
+
+    private static final Pattern BRACE_LOOP = Pattern.compile("(?<![\\w.$])(for|foreach|while|do)\\b|\\.(forEach|map|filter|reduce|some|every|flatMap)\\s*(?=\\()");
+    private static final Pattern PY_LOOP = Pattern.compile("^\\s*(?:async\\s+)?(for|while)\\b");
+    private static final Pattern RUBY_LOOP = Pattern.compile("^\\s*(for|while|until|loop)\\b|(\\S+)\\.(each\\w*|times|upto|downto|step|map|select|reject|sum|count)\\b");
+    private static final Pattern CALL = Pattern.compile("(?<![\\w.$])(?:(?:this|self)\\.)?([A-Za-z_]\\w*)\\s*\\(");
+    private static final Pattern NAMED_HEADER = Pattern.compile("([A-Za-z_]\\w*)\\s*\\(");
+    private static final Pattern ARROW_FUNCTION = Pattern.compile("\\b([A-Za-z_$][\\w$]*)\\s*=\\s*(?:async\\s*)?(?:\\([^()]*\\)|[A-Za-z_$][\\w$]*)\\s*=>\\s*");
+    private static final Pattern INDENTED_DEF = Pattern.compile("^(\\s*)def\\s+(?:self\\.)?([A-Za-z_]\\w*[?!]?)");
+    private static final Pattern NUMBER = Pattern.compile("^\\s*-?\\d+\\s*$");
+    private static final Pattern SCALING_UPDATE = Pattern.compile("(?:\\*=|/=|//=|<<=|>>=)|\\b(\\w+)\\s*=\\s*\\1\\s*(?:[*/]|//|<<|>>)");
+    private static final Pattern STEP_UPDATE = Pattern.compile("\\+\\+|--|\\+=|-=|\\b(\\w+)\\s*=\\s*\\1\\s*[+-]");
+    private static final Pattern MIDPOINT = Pattern.compile("\\(\\s*\\w+\\s*\\+\\s*\\w+\\s*\\)\\s*(?:/|//|>>)\\s*[12]|\\w+\\s*\\+\\s*\\(\\s*\\w+\\s*-\\s*\\w+\\s*\\)\\s*(?:/|//|>>)\\s*[12]");
+    private static final Pattern SQRT_BOUND = Pattern.compile("\\b(\\w+)\\s*\\*\\s*\\1\\s*<=?|sqrt\\s*\\(");
+    private static final Pattern HALVING_ARGUMENT = Pattern.compile("(?:/|//|>>)\\s*[12]\\b|\\bmid\\b|\\bhalf\\b");
+    private static final Pattern TREE_ARGUMENT = Pattern.compile("(?:\\.|->)(?:left|right|next|children|child)\\b|\\b(?:adj|graph|neighbou?rs?|edges)\\b");
+    private static final Pattern MEMO = Pattern.compile("\\b(?:memo\\w*|cache|lru_cache|dp|visited|seen)\\b");
+
+    private record Operation(Pattern pattern, Cost cost, String label, boolean ambiguous) {}
+
+    private static final List<Operation> OPERATIONS = List.of(
+        new Operation(Pattern.compile("\\bsorted\\s*\\(|\\.sort\\s*\\(|(?<![\\w.])sort\\s*\\(|\\bsort\\.\\w+\\s*\\(|\\b(?:Arrays|Collections|Array)\\.sort\\b|\\.Order(?:By|ByDescending)\\s*\\(|\\b[uk]?r?sort\\s*\\("),
+                Cost.N_LOG_N, "sorting", false),
+        new Operation(Pattern.compile("\\b(?:lower_bound|upper_bound|binary_search|binarySearch|bisect\\w*)\\s*\\("),
+                Cost.LOG, "binary search", false),
+        new Operation(Pattern.compile("\\.(?:indexOf|lastIndexOf|includes|index|insert\\s*\\(\\s*0|pop\\s*\\(\\s*0|remove|reverse|copy|concat|splice|shift|unshift|join|toList|toArray)\\s*\\(|\\b(?:sum|min|max|any|all|list|set|len\\s*\\(\\s*set)\\s*\\(\\s*[\\w.]+\\s*\\)|\\bstd::(?:find|count|accumulate|reverse|min_element|max_element)\\s*\\(|\\b(?:in_array|array_search|array_sum|array_reverse)\\s*\\("),
+                Cost.LINEAR, "linear scan or copy", false),
+        new Operation(Pattern.compile("\\.(?:contains|find|count|erase)\\s*\\(|(?<!\\bfor\\s{1,4}[\\w, ()]{1,40}\\s)\\bin\\s+[A-Za-z_]\\w*\\s*[:)]"),
+                Cost.CONSTANT, "lookup whose cost depends on the collection (O(1) hashed, O(log n) tree, O(n) list)", true)
+    );
+
+    // Allocations sized by a variable; the number of sized dimensions is the space exponent
+    private static final Pattern ALLOCATION = Pattern.compile(
+        "new\\s+[\\w.<>]+\\s*((?:\\[\\s*[A-Za-z_][^\\]]*\\]\\s*)+)"
+        + "|\\b(?!(?:return|if|elif|else|case|while|delete|throw|yield|and|or|not|in|print|echo)\\b)\\w+\\s+\\w+\\s*((?:\\[\\s*[A-Za-z_][^\\]]*\\]\\s*)+)\\s*[;={]"
+        + "|vector\\s*<\\s*(vector\\s*<)?[^;(]*>\\s*\\w+\\s*\\(\\s*[A-Za-z_]"
+        + "|(?<![\\w\\])])\\[[^\\[\\]]*\\]\\s*\\*\\s*[A-Za-z_(]"
+        + "|\\bmake\\s*\\(\\s*\\[\\](\\[\\])?[^,]*,\\s*[A-Za-z_]"
+        + "|\\b(?:new\\s+Array|Array|Array\\.new|array_fill|malloc|calloc)\\s*\\(\\s*[A-Za-z_]");
+    private static final Pattern GROWTH = Pattern.compile("\\.(?:append|push|push_back|emplace_back|add|put|offer|insert|Add)\\s*\\(|\\$\\w+\\[\\]\\s*=|\\bappend\\s*\\(");
+
+    // --- Analysis state ---
+
+    private enum Style { BRACES, INDENTATION }
+
+    private record Function(String name, int start, int end, int line) {}
+
+    private record Result(Cost time, Cost space) {
+        static final Result NONE = new Result(Cost.CONSTANT, Cost.CONSTANT);
+
+        Result max(Result other) {
+            return new Result(time.max(other.time), space.max(other.space));
+        }
+    }
+
+    private static class Context {
+        final String language;
+        final String text;
+        final Style style;
+        final int[] lineStarts;
+        final Map<String, Function> functions = new LinkedHashMap<>();
+        final Map<String, Result> functionResults = new HashMap<>();
+        final Set<String> inProgress = new HashSet<>();
+        final Set<String> findings = new LinkedHashSet<>();
+        final Set<String> uncertainties = new LinkedHashSet<>();
+
+        Context(String language, String text, Style style) {
+            this.language = language;
+            this.text = text;
+            this.style = style;
+            List<Integer> starts = new ArrayList<>(List.of(0));
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '\n') starts.add(i + 1);
+            }
+            this.lineStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        int lineOf(int offset) {
+            int low = 0, high = lineStarts.length - 1;
+            while (low < high) {
+                int mid = (low + high + 1) / 2;
+                if (lineStarts[mid] <= offset) low = mid; else high = mid - 1;
+            }
+            return low + 1;
+        }
+
+        int lineEnd(int line) {
+            return line + 1 < lineStarts.length ? lineStarts[line + 1] : text.length();
+        }
+
+        String line(int line) {
+            return text.substring(lineStarts[line], lineEnd(line));
+        }
+    }
+
+    // --- Entry point ---
+
+    public Estimate estimate(String code, String language) {
+        String id = language == null ? "" : language.toLowerCase();
+        Style style = id.equals("python") || id.equals("ruby") ? Style.INDENTATION : Style.BRACES;
+        Context ctx = new Context(id, strip(code, id), style);
+        if (!Set.of("python", "ruby", "java", "c", "cpp", "csharp", "javascript", "go", "php").contains(id)) {
+            ctx.uncertainties.add("no local analyzer for " + language);
+        }
+
+        if (style == Style.BRACES) {
+            findBraceFunctions(ctx);
+        } else {
+            findIndentedFunctions(ctx);
+        }
+        Result program = analyzeRegion(ctx, topLevel(ctx), 0, ctx.text.length(), Cost.CONSTANT, null);
+        for (Function function : ctx.functions.values()) {
+            program = program.max(analyzeFunction(ctx, function));
+        }
+
+        if (ctx.lineStarts.length > MAX_SIMPLE_LINES) {
+            ctx.uncertainties.add("long program (" + ctx.lineStarts.length + " lines)");
+        }
+        List<String> findings = ctx.findings.stream().limit(MAX_FINDINGS).toList();
+        return new Estimate(program.time().toString(), program.space().toString(), ctx.uncertainties.isEmpty(),
+                findings, List.copyOf(ctx.uncertainties));
+    }
+
+    // Compact HTML in the same shape as the model's analysis
+    public static String toHtml(Estimate estimate) {
+        StringBuilder html = new StringBuilder();
+        html.append("<h4>Time Complexity <code>").append(estimate.time()).append("</code></h4>");
+        html.append("<p>").append(estimate.findings().isEmpty() ? "No loops or recursion: every statement runs a fixed number of times."
+                : escape(String.join("; ", estimate.findings())) + ".").append("</p>");
+        html.append("<h4>Space Complexity <code>").append(estimate.space()).append("</code></h4>");
+        html.append("<p>").append(estimate.space().equals("O(1)") ? "Only a fixed number of scalar variables is used."
+                : "Dominated by storage sized by the input (arrays, collections grown in loops or recursion depth).").append("</p>");
+        html.append("<p><em>Instant estimate from static analysis of loop nesting and known library costs.</em></p>");
+        return html.toString();
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    // --- Functions and recursion ---
+
+    private Result analyzeFunction(Context ctx, Function function) {
+        Result cached = ctx.functionResults.get(function.name());
+        if (cached != null) {
+            return cached;
+        }
+        if (!ctx.inProgress.add(function.name())) {
+            ctx.uncertainties.add("mutual recursion involving " + function.name() + "()");
+            return new Result(Cost.LINEAR, Cost.LINEAR);
+        }
+        Result work = analyzeRegion(ctx, ctx.text, function.start(), function.end(), Cost.CONSTANT, function.name());
+
+        // Self-calls and their arguments
+        List<String> arguments = new ArrayList<>();
+        Matcher call = Pattern.compile("(?<![\\w.$])(?:(?:this|self)\\.)?" + Pattern.quote(function.name()) + "\\s*\\(").matcher(ctx.text);
+        call.region(function.start(), function.end());
+        while (call.find()) {
+            int close = matching(ctx.text, call.end() - 1, '(', ')');
+            arguments.add(ctx.text.substring(call.end(), Math.max(call.end(), close)));
+        }
+        Result result = work;
+        if (!arguments.isEmpty()) {
+            String args = String.join(" ", arguments);
+            String body = ctx.text.substring(function.start(), function.end());
+            boolean halving = HALVING_ARGUMENT.matcher(args).find();
+            boolean structural = TREE_ARGUMENT.matcher(args + " " + body).find();
+            boolean memoized = MEMO.matcher(body).find();
+            Cost depth;
+            Cost time;
+            String shape;
+            if (structural) {
+                depth = Cost.LINEAR;
+                time = Cost.LINEAR.times(work.time());
+                shape = "visits each node of a tree/graph once";
+            } else if (arguments.size() == 1) {
+                depth = halving ? Cost.LOG : Cost.LINEAR;
+                time = depth.times(work.time());
+                shape = halving ? "halves its input on each call" : "reduces its input step by step";
+            } else if (halving) {
+                depth = Cost.LOG;
+                time = work.time().compareTo(Cost.LINEAR) >= 0 ? work.time().times(Cost.LOG) : Cost.LINEAR;
+                shape = "splits its input in halves (divide and conquer)";
+            } else if (memoized) {
+                depth = Cost.LINEAR;
+                time = Cost.LINEAR.times(work.time());
+                shape = "branches " + arguments.size() + " ways but caches results";
+            } else {
+                depth = Cost.LINEAR;
+                time = Cost.EXPONENTIAL;
+                shape = "branches " + arguments.size() + " ways on a slightly smaller input";
+            }
+            result = new Result(time, work.space().max(depth));
+            ctx.findings.add(function.name() + "() is recursive and " + shape + ": " + time + " time, " + depth + " stack depth");
+            ctx.uncertainties.add("recursion in " + function.name() + "()");
+        }
+        ctx.inProgress.remove(function.name());
+        ctx.functionResults.put(function.name(), result);
+        return result;
+    }
+
+    private static void findBraceFunctions(Context ctx) {
+        String text = ctx.text;
+        Matcher header = NAMED_HEADER.matcher(text);
+        while (header.find()) {
+            String name = header.group(1);
+            if (KEYWORDS.contains(name) || precededBy(text, header.start(), ".") || precededByWord(text, header.start(), "new")) {
+                continue;
+            }
+            int close = matching(text, header.end() - 1, '(', ')');
+            int open = close < 0 ? -1 : bodyStart(text, close + 1, ctx.language.equals("go"));
+            if (open < 0) {
+                continue;
+            }
+            int end = matching(text, open, '{', '}');
+            if (end > open) {
+                ctx.functions.putIfAbsent(name, new Function(name, open + 1, end, ctx.lineOf(header.start())));
+            }
+        }
+        Matcher arrow = ARROW_FUNCTION.matcher(text);
+        while (arrow.find()) {
+            int start = arrow.end();
+            int end = start < text.length() && text.charAt(start) == '{' ? matching(text, start, '{', '}') : ctx.lineEnd(ctx.lineOf(start) - 1);
+            if (end > start) {
+                ctx.functions.putIfAbsent(arrow.group(1), new Function(arrow.group(1), start, end, ctx.lineOf(arrow.start())));
+            }
+        }
+    }
+
+    // Index of the '{' opening a definition body after a parameter list, or -1 if this was a call
+    private static int bodyStart(String text, int from, boolean allowParens) {
+        for (int i = from; i < text.length() && i < from + 160; i++) {
+            char c = text.charAt(i);
+            if (c == '{') return i;
+            if (c == ';' || c == '}' || c == '=' || c == ',' || c == '.' || c == '?' || (c == '(' && !allowParens)
+                    || c == '+' || c == '&' && text.startsWith("&&", i) || c == '|' || c == '<' && !allowParens) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static void findIndentedFunctions(Context ctx) {
+        for (int line = 0; line < ctx.lineStarts.length; line++) {
+            Matcher def = INDENTED_DEF.matcher(ctx.line(line));
+            if (def.find()) {
+                int end = blockEnd(ctx, line, def.group(1).length());
+                ctx.functions.putIfAbsent(def.group(2), new Function(def.group(2), ctx.lineEnd(line), ctx.lineStarts[end], line + 1));
+            }
+        }
+    }
+
+    // Code outside every function body, which scripts run at top level
+    private static String topLevel(Context ctx) {
+        char[] chars = ctx.text.toCharArray();
+        for (Function function : ctx.functions.values()) {
+            for (int i = function.start(); i < function.end(); i++) {
+                if (chars[i] != '\n') chars[i] = ' ';
+            }
+        }
+        return new String(chars);
+    }
+
+    // --- Loops ---
+
+    // Worst cost of any statement in [from, to), with outer the product of the enclosing loops' iteration counts
+    private Result analyzeRegion(Context ctx, String text, int from, int to, Cost outer, String currentFunction) {
+        return ctx.style == Style.BRACES
+                ? analyzeBraces(ctx, text, from, to, outer, currentFunction)
+                : analyzeIndented(ctx, text, ctx.lineOf(from) - 1, from, to, outer, currentFunction);
+    }
+
+    private Result analyzeBraces(Context ctx, String text, int from, int to, Cost outer, String currentFunction) {
+        Result result = new Result(outer, Cost.CONSTANT);
+        Matcher loop = BRACE_LOOP.matcher(text);
+        int cursor = from;
+        while (cursor < to && loop.find(cursor) && loop.start() < to) {
+            result = result.max(operations(ctx, text, cursor, loop.start(), outer, false, currentFunction));
+            int headerStart = loop.end();
+            int headerEnd;
+            String header;
+            if (loop.group(2) != null) {
+                // Callback iteration: the argument list is the body
+                int close = matching(text, headerStart, '(', ')');
+                if (close < 0) break;
+                int line = ctx.lineOf(loop.start());
+                ctx.findings.add("line " + line + ": ." + loop.group(2) + "() visits every element, ~n iterations");
+                result = result.max(analyzeBraces(ctx, text, headerStart + 1, close, outer.times(Cost.LINEAR), currentFunction));
+                cursor = close + 1;
+                continue;
+            }
+            boolean isDo = loop.group(1).equals("do");
+            int next = skipSpaces(text, headerStart);
+            if (isDo) {
+                header = "";
+                headerEnd = next;
+            } else if (next < to && text.charAt(next) == '(') {
+                int close = matching(text, next, '(', ')');
+                if (close < 0) break;
+                header = text.substring(next + 1, close);
+                headerEnd = close + 1;
+            } else {
+                // Go-style header without parentheses
+                int brace = text.indexOf('{', headerStart);
+                if (brace < 0 || brace > to) break;
+                header = text.substring(headerStart, brace);
+                headerEnd = brace;
+            }
+            int bodyStart = skipSpaces(text, headerEnd);
+            int bodyEnd;
+            if (bodyStart < to && text.charAt(bodyStart) == '{') {
+                bodyEnd = matching(text, bodyStart, '{', '}');
+                if (bodyEnd < 0) break;
+                bodyStart++;
+            } else if (!isDo && bodyStart < to && text.charAt(bodyStart) == ';') {
+                bodyEnd = bodyStart; // while (...);  e.g. the tail of a do-while
+            } else {
+                bodyEnd = statementEnd(text, bodyStart, to);
+            }
+            String body = text.substring(bodyStart, Math.min(bodyEnd, text.length()));
+            if (!isDo && header.isEmpty() && body.isEmpty()) {
+                cursor = bodyEnd + 1;
+                continue;
+            }
+            Cost factor = classifyLoop(ctx, isDo ? "do" : loop.group(1), isDo ? doWhileCondition(text, bodyEnd + 1) : header, body, ctx.lineOf(loop.start()));
+            Cost inner = outer.times(factor);
+            result = result.max(operations(ctx, header, 0, header.length(), inner, false, currentFunction));
+            result = result.max(analyzeBraces(ctx, text, bodyStart, bodyEnd, inner, currentFunction));
+            cursor = bodyEnd + 1;
+            if (isDo) {
+                // Skip the trailing while (...);
+                Matcher tail = Pattern.compile("\\G\\s*while\\s*\\(").matcher(text);
+                if (tail.find(cursor)) {
+                    int close = matching(text, tail.end() - 1, '(', ')');
+                    cursor = close < 0 ? cursor : close + 1;
+                }
+            }
+        }
+        return result.max(operations(ctx, text, Math.min(cursor, to), to, outer, false, currentFunction));
+    }
+
+    private Result analyzeIndented(Context ctx, String text, int firstLine, int from, int to, Cost outer, String currentFunction) {
+        Result result = new Result(outer, Cost.CONSTANT);
+        int line = firstLine;
+        while (line < ctx.lineStarts.length && ctx.lineStarts[line] < to) {
+            int start = Math.max(ctx.lineStarts[line], from);
+            int end = Math.min(ctx.lineEnd(line), to);
+            String content = text.substring(start, end);
+            int indent = indentation(ctx.line(line));
+            boolean python = ctx.language.equals("python");
+            Matcher loop = (python ? PY_LOOP : RUBY_LOOP).matcher(content);
+            boolean isLoop = loop.find() && (python || loop.group(1) != null || content.matches("(?s).*\\b(do|\\{)\\b?.*"));
+            if (content.isBlank() || !isLoop) {
+                if (!content.isBlank()) {
+                    result = result.max(operations(ctx, text, start, end, outer, python, currentFunction));
+                }
+                line++;
+                continue;
+            }
+            int last = blockEnd(ctx, line, indent);
+            int bodyEnd = Math.min(ctx.lineStarts[last], to);
+            String header = content;
+            String body = text.substring(end, Math.max(end, bodyEnd));
+            Cost factor = classifyLoop(ctx, python ? loop.group(1) : (loop.group(1) != null ? loop.group(1) : loop.group(3)),
+                    python ? header : header + " " + (loop.group(2) != null ? loop.group(2) : ""), body, line + 1);
+            Cost inner = outer.times(factor);
+            // One-line loops (for x in a: y / a.each { |x| y }) keep their body on the header line
+            result = result.max(operations(ctx, text, start, end, inner, python, currentFunction));
+            if (end < bodyEnd) {
+                result = result.max(analyzeIndented(ctx, text, line + 1, end, bodyEnd, inner, currentFunction));
+            }
+            line = Math.max(last, line + 1);
+        }
+        return result;
+    }
+
+    // Iteration count of one loop
+    private static Cost classifyLoop(Context ctx, String keyword, String header, String body, int line) {
+        String kind = keyword.equals("do") ? "do-while" : keyword;
+        if (ctx.language.equals("ruby") && kind.equals("times") && NUMBER.matcher(header.replaceAll(".*\\s", "")).matches()
+                || ctx.language.equals("ruby") && header.matches("(?s)\\s*\\d+\\.times.*")) {
+            ctx.findings.add("line " + line + ": fixed-count loop, O(1)");
+            return Cost.CONSTANT;
+        }
+        if (ctx.language.equals("python") && kind.equals("for")) {
+            Matcher range = Pattern.compile("\\bin\\s+range\\s*\\(([^)]*)\\)").matcher(header);
+            if (range.find()) {
+                String[] args = range.group(1).split(",");
+                boolean constant = true;
+                for (String arg : args) constant &= NUMBER.matcher(arg).matches();
+                if (constant) {
+                    ctx.findings.add("line " + line + ": loop over a fixed range, O(1)");
+                    return Cost.CONSTANT;
+                }
+                if (SCALING_UPDATE.matcher(range.group(1)).find()) {
+                    ctx.uncertainties.add("unusual range() on line " + line);
+                }
+            }
+            // Comprehension-like headers over other iterables still visit n elements
+            ctx.findings.add("line " + line + ": for loop, ~n iterations");
+            return Cost.LINEAR;
+        }
+
+        String[] parts = header.split(";", -1);
+        if (parts.length == 3 && (kind.equals("for"))) {
+            String condition = parts[1];
+            String update = parts[2];
+            if (SQRT_BOUND.matcher(condition).find()) {
+                ctx.findings.add("line " + line + ": loop runs while i*i <= n, ~sqrt(n) iterations (counted as n)");
+                ctx.uncertainties.add("square-root bound on line " + line);
+                return Cost.LINEAR;
+            }
+            if (SCALING_UPDATE.matcher(update).find()) {
+                ctx.findings.add("line " + line + ": loop variable is multiplied/divided each step, ~log n iterations");
+                return Cost.LOG;
+            }
+            Matcher bound = Pattern.compile("[<>]=?\\s*(-?\\d+)\\s*$|^\\s*(-?\\d+)\\s*[<>]").matcher(condition.trim());
+            boolean numericStart = parts[0].matches("(?s).*=\\s*-?\\d+\\s*") || parts[0].isBlank();
+            if (bound.find() && numericStart) {
+                ctx.findings.add("line " + line + ": loop with a constant bound, O(1)");
+                return Cost.CONSTANT;
+            }
+            if (condition.isBlank()) {
+                ctx.uncertainties.add("loop without a condition on line " + line);
+            } else if (!STEP_UPDATE.matcher(update).find()) {
+                ctx.uncertainties.add("loop with an unusual update on line " + line);
+            }
+            ctx.findings.add("line " + line + ": for loop, ~n iterations");
+            return Cost.LINEAR;
+        }
+        if (kind.equals("for") || kind.equals("foreach") || kind.startsWith("each") || Set.of("map", "select", "reject", "sum", "count", "upto", "downto", "step", "times").contains(kind)) {
+            if (kind.equals("for") && ctx.language.equals("go") && header.isBlank()) {
+                ctx.uncertainties.add("infinite for loop on line " + line);
+            }
+            ctx.findings.add("line " + line + ": loop over a collection or range, ~n iterations");
+            return Cost.LINEAR;
+        }
+
+        // while / until / do-while / loop: decided by what the body does to the condition
+        if (MIDPOINT.matcher(body).find()) {
+            ctx.findings.add("line " + line + ": binary-search style loop (midpoint), ~log n iterations");
+            return Cost.LOG;
+        }
+        Matcher scaling = SCALING_UPDATE.matcher(body);
+        while (scaling.find()) {
+            String variable = scaling.group(1) != null ? scaling.group(1) : lastWord(body.substring(0, scaling.start()));
+            if (variable != null && Pattern.compile("\\b" + Pattern.quote(variable) + "\\b").matcher(header).find()) {
+                ctx.findings.add("line " + line + ": loop variable " + variable + " is multiplied/divided each step, ~log n iterations");
+                return Cost.LOG;
+            }
+        }
+        if (!STEP_UPDATE.matcher(body).find() || header.isBlank() || header.matches("\\s*(?:true|True|1)\\s*")) {
+            ctx.uncertainties.add("while loop on line " + line + " without an obvious counter");
+        }
+        ctx.findings.add("line " + line + ": " + kind + " loop, ~n iterations");
+        return Cost.LINEAR;
+    }
+
+    // --- Operations inside a statement ---
+
+    private Result operations(Context ctx, String text, int from, int to, Cost outer, boolean comprehensions, String currentFunction) {
+        if (from >= to) {
+            return Result.NONE;
+        }
+        String segment = text.substring(from, to);
+        Cost time = outer;
+        Cost space = Cost.CONSTANT;
+        for (Operation operation : OPERATIONS) {
+            Matcher matcher = operation.pattern().matcher(segment);
+            if (matcher.find()) {
+                int line = ctx.lineOf(from + matcher.start());
+                if (operation.ambiguous()) {
+                    // Outside loops even an O(n) lookup rarely dominates reading the input
+                    if (!outer.equals(Cost.CONSTANT)) {
+                        ctx.uncertainties.add(operation.label() + " on line " + line);
+                    }
+                } else {
+                    time = time.max(outer.times(operation.cost()));
+                    ctx.findings.add("line " + line + ": " + operation.label() + ", " + operation.cost()
+                            + (outer.equals(Cost.CONSTANT) ? "" : " per iteration"));
+                }
+            }
+        }
+        if (comprehensions) {
+            Matcher comprehension = Pattern.compile("\\bfor\\b").matcher(segment);
+            // A loop header's own "for" is not a comprehension
+            int count = segment.stripLeading().matches("(?s)(?:async\\s+)?for\\b.*") ? -1 : 0;
+            while (comprehension.find()) count++;
+            if (count > 0) {
+                Cost size = Cost.CONSTANT;
+                for (int i = 0; i < count; i++) size = size.times(Cost.LINEAR);
+                time = time.max(outer.times(size));
+                space = space.max(size);
+                ctx.findings.add("line " + ctx.lineOf(from) + ": comprehension, " + size);
+            }
+        }
+        Matcher allocation = ALLOCATION.matcher(segment);
+        while (allocation.find()) {
+            String dims = allocation.group(1) != null ? allocation.group(1) : allocation.group(2);
+            // int[n][m], and C#'s int[n, m]
+            boolean twoDimensional = dims != null ? dims.chars().filter(c -> c == '[' || c == ',').count() > 1
+                    : allocation.group(3) != null || allocation.group(4) != null
+                      || segment.startsWith("[", Math.max(0, allocation.start() - 1)) && segment.contains("for");
+            Cost size = twoDimensional ? Cost.LINEAR.times(Cost.LINEAR) : Cost.LINEAR;
+            // Filling the allocation costs as much time as it takes space
+            time = time.max(outer.times(size));
+            space = space.max(size);
+            ctx.findings.add("line " + ctx.lineOf(from + allocation.start()) + ": allocates " + size + " memory");
+        }
+        // Ruby appends with <<, which is a stream or shift everywhere else
+        if (!outer.equals(Cost.CONSTANT) && (GROWTH.matcher(segment).find() || ctx.language.equals("ruby") && segment.contains("<<"))) {
+            space = space.max(outer);
+            ctx.findings.add("line " + ctx.lineOf(from) + ": collection grows inside a loop, " + outer + " memory");
+        }
+        Matcher call = CALL.matcher(segment);
+        while (call.find()) {
+            Function callee = ctx.functions.get(call.group(1));
+            if (callee != null && !callee.name().equals(currentFunction) && !segmentDefines(ctx, from + call.start(), callee)) {
+                Result calleeResult = analyzeFunction(ctx, callee);
+                time = time.max(outer.times(calleeResult.time()));
+                space = space.max(calleeResult.space());
+                if (!outer.equals(Cost.CONSTANT) && !calleeResult.time().equals(Cost.CONSTANT)) {
+                    ctx.findings.add("line " + ctx.lineOf(from + call.start()) + ": calls " + callee.name() + "() ("
+                            + calleeResult.time() + ") inside a loop");
+                }
+            }
+        }
+        return new Result(time, space);
+    }
+
+    // The definition's own header is not a call
+    private static boolean segmentDefines(Context ctx, int offset, Function function) {
+        return ctx.lineOf(offset) == function.line();
+    }
+
+    // --- Text helpers ---
+
+    // Removes comments and the contents of string literals, keeping line structure
+    static String strip(String code, String language) {
+        boolean hashComments = Set.of("python", "ruby", "php").contains(language);
+        boolean slashComments = !language.equals("python") && !language.equals("ruby");
+        StringBuilder out = new StringBuilder(code.length());
+        int i = 0;
+        int n = code.length();
+        while (i < n) {
+            char c = code.charAt(i);
+            char next = i + 1 < n ? code.charAt(i + 1) : 0;
+            if (slashComments && c == '/' && next == '/' || hashComments && c == '#') {
+                while (i < n && code.charAt(i) != '\n') i++;
+            } else if (slashComments && c == '/' && next == '*') {
+                int end = code.indexOf("*/", i + 2);
+                end = end < 0 ? n : end + 2;
+                appendNewlines(out, code, i, end);
+                i = end;
+            } else if (language.equals("python") && (code.startsWith("\"\"\"", i) || code.startsWith("'''", i))) {
+                int end = code.indexOf(code.substring(i, i + 3), i + 3);
+                end = end < 0 ? n : end + 3;
+                out.append("\"\"");
+                appendNewlines(out, code, i, end);
+                i = end;
+            } else if (c == '"' || c == '\'' || c == '`') {
+                int j = i + 1;
+                while (j < n && code.charAt(j) != c && (c == '`' || code.charAt(j) != '\n')) {
+                    j += code.charAt(j) == '\\' ? 2 : 1;
+                }
+                int end = Math.min(j + 1, n);
+                out.append(c).append(c);
+                appendNewlines(out, code, i, end);
+                i = end;
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    private static void appendNewlines(StringBuilder out, String code, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (code.charAt(i) == '\n') out.append('\n');
+        }
+    }
+
+    // Index of the bracket closing the one at open, or -1
+    private static int matching(String text, int open, char opening, char closing) {
+        int depth = 0;
+        for (int i = open; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == opening) depth++;
+            else if (c == closing && --depth == 0) return i;
+        }
+        return -1;
+    }
+
+    private static int statementEnd(String text, int from, int to) {
+        int depth = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == '(' || c == '[' || c == '{') depth++;
+            else if (c == ')' || c == ']' || c == '}') depth--;
+            else if (c == ';' && depth == 0) return i;
+            if (depth < 0) return i;
+        }
+        return to;
+    }
+
+    private static String doWhileCondition(String text, int from) {
+        Matcher tail = Pattern.compile("\\G\\s*while\\s*\\(").matcher(text);
+        if (from < text.length() && tail.find(from)) {
+            int close = matching(text, tail.end() - 1, '(', ')');
+            return close < 0 ? "" : text.substring(tail.end(), close);
+        }
+        return "";
+    }
+
+    private static int skipSpaces(String text, int from) {
+        int i = from;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) i++;
+        return i;
+    }
+
+    private static boolean precededBy(String text, int index, String token) {
+        int i = index - 1;
+        while (i >= 0 && Character.isWhitespace(text.charAt(i))) i--;
+        return i >= 0 && text.startsWith(token, i - token.length() + 1);
+    }
+
+    private static boolean precededByWord(String text, int index, String word) {
+        String before = text.substring(Math.max(0, index - word.length() - 2), index).trim();
+        return before.endsWith(word);
+    }
+
+    private static String lastWord(String text) {
+        Matcher word = Pattern.compile("([A-Za-z_]\\w*)\\s*$").matcher(text);
+        return word.find() ? word.group(1) : null;
+    }
+
+    private static int indentation(String line) {
+        int count = 0;
+        for (char c : line.toCharArray()) {
+            if (c == ' ') count++;
+            else if (c == '\t') count += 4;
+            else break;
+        }
+        return count;
+    }
+
+    // First line after the block opened on line (deeper-indented lines, blanks included)
+    private static int blockEnd(Context ctx, int line, int indent) {
+        int end = line + 1;
+        int lastContent = line;
+        while (end < ctx.lineStarts.length) {
+            String content = ctx.line(end);
+            if (!content.isBlank()) {
+                if (indentation(content) <= indent) break;
+                lastContent = end;
+            }
+            end++;
+        }
+        return lastContent + 1;
+    }
+}
@@ -0,0 +1,231 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bulk stdin, spooled to disk instead of held in memory. Clients upload input once (WebSocket
+ * binary frames, or the body of POST /api/executions/stdin) and then refer to it by ID: as a run's
+ * stdin up front, or streamed into a running program. Uploads expire app.stdin.upload-ttl-ms
+ * after they were last used.
+ */
+@Component
+public class StdinUploads {
+
+    // Spool directory; empty uses a fresh temp directory per instance
+    @Value("${app.stdin.upload-dir:}")
+    private String uploadDir;
+
+    @Value("${app.stdin.max-upload-bytes:67108864}")
+    private long maxUploadBytes;
+
+    // All uploads together, finished or still being received
+    @Value("${app.stdin.max-total-bytes:536870912}")
+    private long maxTotalBytes;
+
+    @Value("${app.stdin.upload-ttl-ms:600000}")
+    private long ttlMs;
+
+    private Path directory;
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    /**
+     * One upload. Written through append() until finish(); after that it is read-only and can be
+     * looked up by ID.
+     */
+    public static class Upload {
+        private final String id;
+        private final Path path;
+        private final MessageDigest digest;
+        private FileChannel channel;
+        private long bytes;
+        private String sha256;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        Upload(String id, Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public String id() {
+            return id;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        public synchronized long bytes() {
+            return bytes;
+        }
+
+        // Content hash, once finished
+        public synchronized String sha256() {
+            return sha256;
+        }
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        if (uploadDir.isBlank()) {
+            directory = Files.createTempDirectory("thinkcode-stdin");
+        } else {
+            directory = Files.createDirectories(Path.of(uploadDir));
+            try (Stream<Path> leftovers = Files.list(directory)) {
+                for (Path leftover : leftovers.toList()) {
+                    Files.deleteIfExists(leftover); // From a previous run; nobody can refer to them any more
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        uploads.values().forEach(this::discard);
+        try {
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            // Shutting down anyway
+        }
+    }
+
+    // Starts an upload; it can't be looked up until finished
+    public Upload begin() throws IOException {
+        String id = UUID.randomUUID().toString();
+        Upload upload = new Upload(id, directory.resolve(id));
+        uploads.put(id, upload);
+        return upload;
+    }
+
+    // Appends a chunk; over a size limit the upload is discarded and the IOException says why
+    public void append(Upload upload, ByteBuffer chunk) throws IOException {
+        int length = chunk.remaining();
+        synchronized (upload) {
+            if (upload.channel == null) {
+                throw new IOException("Upload " + upload.id + " is no longer open.");
+            }
+            if (upload.bytes + length > maxUploadBytes || totalBytes.addAndGet(length) > maxTotalBytes) {
+                if (upload.bytes + length <= maxUploadBytes) {
+                    totalBytes.addAndGet(-length);
+                }
+                discard(upload);
+                throw new IOException(upload.bytes + length > maxUploadBytes
+                        ? "Input is larger than the " + maxUploadBytes + " byte limit."
+                        : "Too much input is stored on the server right now. Please try again later.");
+            }
+            upload.bytes += length;
+            upload.lastUsed = System.currentTimeMillis();
+            upload.digest.update(chunk.duplicate());
+            while (chunk.hasRemaining()) {
+                upload.channel.write(chunk);
+            }
+        }
+    }
+
+    public Upload finish(Upload upload) throws IOException {
+        synchronized (upload) {
+            if (upload.channel != null) {
+                upload.channel.close();
+                upload.channel = null;
+                upload.sha256 = HexFormat.of().formatHex(upload.digest.digest());
+            }
+            upload.lastUsed = System.currentTimeMillis();
+        }
+        return upload;
+    }
+
+    // Whole upload from a stream, read in fixed-size chunks
+    public Upload create(InputStream in) throws IOException {
+        Upload upload = begin();
+        try {
+            byte[] buffer = new byte[65536];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                append(upload, ByteBuffer.wrap(buffer, 0, read));
+            }
+            return finish(upload);
+        } catch (IOException | RuntimeException e) {
+            discard(upload);
+            throw e;
+        }
+    }
+
+    // Small inline input (the "stdin" field of an execute request)
+    public Upload create(String content) throws IOException {
+        Upload upload = begin();
+        try {
+            append(upload, ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)));
+            return finish(upload);
+        } catch (IOException | RuntimeException e) {
+            discard(upload);
+            throw e;
+        }
+    }
+
+    // A finished upload, or null if unknown, unfinished or expired; counts as a use
+    public Upload get(String id) {
+        Upload upload = id == null ? null : uploads.get(id);
+        if (upload == null || upload.sha256() == null) {
+            return null;
+        }
+        upload.lastUsed = System.currentTimeMillis();
+        return upload;
+    }
+
+    public void discard(Upload upload) {
+        if (uploads.remove(upload.id, upload)) {
+            synchronized (upload) {
+                totalBytes.addAndGet(-upload.bytes);
+                try {
+                    if (upload.channel != null) {
+                        upload.channel.close();
+                        upload.channel = null;
+                    }
+                    Files.deleteIfExists(upload.path); // Programs already reading it keep their handle
+                } catch (IOException e) {
+                    System.err.println("⚠️ Could not delete stdin upload " + upload.id + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Deletes uploads unused for the TTL (unfinished ones too); returns how many
+    public int reapExpired() {
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        int reaped = 0;
+        for (Upload upload : uploads.values()) {
+            if (upload.lastUsed < cutoff) {
+                discard(upload);
+                reaped++;
+            }
+        }
+        return reaped;
+    }
+}
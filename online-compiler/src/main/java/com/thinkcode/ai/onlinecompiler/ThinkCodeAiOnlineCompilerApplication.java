@@ -3,11 +3,13 @@ package com.thinkcode.ai.onlinecompiler;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 
 @SpringBootApplication
 @EnableWebSocket  // Add this annotation here as well
 @ComponentScan(basePackages = "com.thinkcode.ai.onlinecompiler")  // Explicit component scanning
+@EnableScheduling  // Periodic reapers
 public class ThinkCodeAiOnlineCompilerApplication {
     
     public static void main(String[] args) {
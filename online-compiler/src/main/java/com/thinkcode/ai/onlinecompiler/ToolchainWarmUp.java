@@ -0,0 +1,234 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Warms each language's toolchain once the application is ready: runs its warm-up commands, then
+ * its warm-up program through the normal execution path (workspace, sandbox, compile, run) twice.
+ * The first run pays for cold page cache, first JIT and empty build caches; both timings are kept
+ * as the language's cold and warm baselines.
+ *
+ * Also the "toolchainWarmUp" health indicator, part of the readiness group: OUT_OF_SERVICE while
+ * warming, DOWN if a configured language failed to warm up, UP once all of them are warm. A web
+ * tier that sends every run to execution workers has nothing to warm and is ready at once.
+ */
+@Component
+public class ToolchainWarmUp implements HealthIndicator {
+
+    @Value("${app.warmup.enabled:true}")
+    private boolean enabled;
+
+    // Comma-separated language IDs; empty warms every registered runtime
+    @Value("${app.warmup.languages:}")
+    private String languages;
+
+    // Per warm-up run, including compilation
+    @Value("${app.warmup.timeout-seconds:60}")
+    private long timeoutSeconds;
+
+    private final CodeExecutionService executionService;
+    private final LanguageRuntimeRegistry runtimes;
+    private final WorkerDispatcher workerDispatcher;
+
+    private final Map<String, Baseline> baselines = new ConcurrentHashMap<>();
+    private volatile List<String> pending = List.of();
+    private volatile boolean finished;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+
+    public ToolchainWarmUp(CodeExecutionService executionService, LanguageRuntimeRegistry runtimes,
+                           WorkerDispatcher workerDispatcher) {
+        this.executionService = executionService;
+        this.runtimes = runtimes;
+        this.workerDispatcher = workerDispatcher;
+    }
+
+    // Outcome for one language; error is null when it warmed up
+    public record Baseline(long coldMillis, long warmMillis, String error) {}
+
+    @EventListener(ApplicationReadyEvent.class)
+    void startInBackground() {
+        if (!enabled || workerDispatcher.dispatchesRemotely()) {
+            finished = true;
+            return;
+        }
+        List<String> targets = new ArrayList<>();
+        if (languages.isBlank()) {
+            runtimes.all().forEach(runtime -> targets.add(runtime.id()));
+        } else {
+            for (String language : languages.split(",")) {
+                if (!language.isBlank()) {
+                    targets.add(language.trim());
+                }
+            }
+        }
+        pending = List.copyOf(targets);
+        startedAt = System.currentTimeMillis();
+        Thread warmer = new Thread(() -> warmUp(targets), "toolchain-warmup");
+        warmer.setDaemon(true);
+        warmer.start();
+    }
+
+    // One language at a time, so the baselines aren't skewed by each other
+    private void warmUp(List<String> targets) {
+        System.out.println("🔥 Warming up toolchains: " + String.join(", ", targets));
+        for (String language : targets) {
+            Baseline baseline = warmUp(language);
+            baselines.put(language, baseline);
+            if (baseline.error() == null) {
+                System.out.println("🔥 " + language + " warm: cold " + baseline.coldMillis() + " ms, warm "
+                        + baseline.warmMillis() + " ms");
+            } else {
+                System.err.println("⚠️ " + language + " failed to warm up: " + baseline.error());
+            }
+        }
+        finishedAt = System.currentTimeMillis();
+        finished = true;
+        System.out.println("🔥 Toolchain warm-up finished in " + (finishedAt - startedAt) + " ms");
+    }
+
+    private Baseline warmUp(String language) {
+        LanguageRuntime runtime = runtimes.find(language);
+        if (runtime == null) {
+            return new Baseline(-1, -1, "Unknown language");
+        }
+        if (runtime.warmUpCode() == null) {
+            return new Baseline(-1, -1, "No warm-up code configured");
+        }
+        try {
+            for (List<String> command : runtime.warmUpCommands()) {
+                runCommand(runtime, command);
+            }
+            long cold = runOnce(runtime, 1);
+            long warm = runOnce(runtime, 2);
+            return new Baseline(cold, warm, null);
+        } catch (IOException e) {
+            return new Baseline(-1, -1, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Baseline(-1, -1, "Interrupted");
+        }
+    }
+
+    private void runCommand(LanguageRuntime runtime, List<String> command) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        builder.environment().putAll(runtime.environment());
+        Process process = builder.start();
+        if (!process.waitFor(runtime.compileTimeoutSeconds(), TimeUnit.SECONDS)) {
+            CodeExecutionService.destroyTree(process.toHandle());
+            throw new IOException("Warm-up command timed out: " + String.join(" ", command));
+        }
+        if (process.exitValue() != 0) {
+            throw new IOException("Warm-up command exited with " + process.exitValue() + ": " + String.join(" ", command));
+        }
+    }
+
+    // Runs the warm-up program; returns how long it took from submission to completion
+    private long runOnce(LanguageRuntime runtime, int attempt) throws IOException, InterruptedException {
+        String key = "warmup-" + runtime.id() + "-" + attempt;
+        CountDownLatch done = new CountDownLatch(1);
+        StringBuilder errors = new StringBuilder();
+        String[] exit = new String[1];
+        ExecutionSink sink = new ExecutionSink() {
+            @Override
+            public synchronized void send(String type, String data) {
+                if (ERROR.equals(type)) {
+                    errors.append(data).append('\n');
+                } else if (EXECUTION_COMPLETE.equals(type)) {
+                    exit[0] = data;
+                    done.countDown();
+                }
+            }
+
+            @Override
+            public long pendingBytes() {
+                return 0;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+        };
+        long start = System.nanoTime();
+        try {
+            if (!executionService.execute(key, runtime.id(), runtime.warmUpCode(), sink)) {
+                throw new IOException("Could not start the warm-up run");
+            }
+            if (!done.await(timeoutSeconds, TimeUnit.SECONDS)) {
+                throw new IOException("Warm-up run timed out after " + timeoutSeconds + " s");
+            }
+        } finally {
+            executionService.release(key);
+        }
+        synchronized (sink) {
+            if (errors.length() > 0 || !"Exit code: 0".equals(exit[0])) {
+                throw new IOException(errors.length() > 0 ? errors.toString().strip() : "Warm-up run ended with " + exit[0]);
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    // Ready once every configured language warmed up
+    public boolean isReady() {
+        return finished && baselines.values().stream().allMatch(baseline -> baseline.error() == null);
+    }
+
+    public String state() {
+        if (!finished) {
+            return "warming";
+        }
+        return isReady() ? "ready" : "failed";
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = !finished ? Health.outOfService() : isReady() ? Health.up() : Health.down();
+        return health.withDetails(snapshot()).build();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("state", state());
+        if (workerDispatcher.dispatchesRemotely()) {
+            result.put("skipped", "executions run on workers");
+        }
+        if (startedAt > 0) {
+            result.put("durationMillis", (finished ? finishedAt : System.currentTimeMillis()) - startedAt);
+        }
+        Map<String, Object> perLanguage = new LinkedHashMap<>();
+        for (String language : pending) {
+            Baseline baseline = baselines.get(language);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            if (baseline == null) {
+                entry.put("state", "pending");
+            } else if (baseline.error() != null) {
+                entry.put("state", "failed");
+                entry.put("error", baseline.error());
+            } else {
+                entry.put("state", "warm");
+                entry.put("coldMillis", baseline.coldMillis());
+                entry.put("warmMillis", baseline.warmMillis());
+            }
+            perLanguage.put(language, entry);
+        }
+        result.put("languages", perLanguage);
+        return result;
+    }
+}
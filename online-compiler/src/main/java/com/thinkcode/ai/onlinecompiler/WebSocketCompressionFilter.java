@@ -0,0 +1,111 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Controls permessage-deflate on /execute-ws.
+ *
+ * Tomcat negotiates the extension straight from the client's Sec-WebSocket-Extensions header,
+ * so the handshake request is rewritten before it reaches the upgrade: the offer is dropped when
+ * compression is disabled, and the configured context-takeover parameters are added otherwise.
+ * (Tomcat only supports 15 window bits, so window sizes are not tunable.)
+ */
+public class WebSocketCompressionFilter extends OncePerRequestFilter {
+
+    static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    private final boolean enabled;
+    private final boolean serverNoContextTakeover;
+    private final boolean clientNoContextTakeover;
+
+    public WebSocketCompressionFilter(boolean enabled, boolean serverNoContextTakeover, boolean clientNoContextTakeover) {
+        this.enabled = enabled;
+        this.serverNoContextTakeover = serverNoContextTakeover;
+        this.clientNoContextTakeover = clientNoContextTakeover;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (request.getHeader(EXTENSIONS_HEADER) == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        List<String> rewritten = new ArrayList<>();
+        for (String header : Collections.list(request.getHeaders(EXTENSIONS_HEADER))) {
+            for (String offer : header.split(",")) {
+                String rewrittenOffer = rewriteOffer(offer.trim());
+                if (rewrittenOffer != null) {
+                    rewritten.add(rewrittenOffer);
+                }
+            }
+        }
+        chain.doFilter(new ExtensionsRewritingRequest(request, rewritten), response);
+    }
+
+    // Returns the offer to forward, or null to drop it
+    String rewriteOffer(String offer) {
+        if (offer.isEmpty()) {
+            return null;
+        }
+        String name = offer.split(";", 2)[0].trim();
+        if (!PERMESSAGE_DEFLATE.equalsIgnoreCase(name)) {
+            return offer;
+        }
+        if (!enabled) {
+            return null;
+        }
+        StringBuilder result = new StringBuilder();
+        for (String param : offer.split(";")) {
+            String trimmed = param.trim();
+            // Window bits other than 15 make Tomcat decline the whole offer
+            if (trimmed.startsWith("server_max_window_bits") || trimmed.startsWith("client_max_window_bits")
+                    || trimmed.equals("server_no_context_takeover") || trimmed.equals("client_no_context_takeover")) {
+                continue;
+            }
+            if (result.length() > 0) result.append("; ");
+            result.append(trimmed);
+        }
+        if (serverNoContextTakeover) result.append("; server_no_context_takeover");
+        if (clientNoContextTakeover || offer.contains("client_no_context_takeover")) result.append("; client_no_context_takeover");
+        return result.toString();
+    }
+
+    private static class ExtensionsRewritingRequest extends HttpServletRequestWrapper {
+        private final List<String> extensions;
+
+        ExtensionsRewritingRequest(HttpServletRequest request, List<String> extensions) {
+            super(request);
+            this.extensions = extensions;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            if (EXTENSIONS_HEADER.equalsIgnoreCase(name)) {
+                return extensions.isEmpty() ? null : String.join(", ", extensions);
+            }
+            return super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if (EXTENSIONS_HEADER.equalsIgnoreCase(name)) {
+                return Collections.enumeration(extensions);
+            }
+            return super.getHeaders(name);
+        }
+    }
+}
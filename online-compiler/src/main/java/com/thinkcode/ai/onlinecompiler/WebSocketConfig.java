@@ -1,9 +1,15 @@
 package com.thinkcode.ai.onlinecompiler;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
 
 @Configuration
 @EnableWebSocket
@@ -17,7 +23,36 @@ public class WebSocketConfig implements WebSocketConfigurer {
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // Clients opt into the compact binary protocol via the WebSocket subprotocol;
+        // clients that request none keep the JSON protocol.
+        DefaultHandshakeHandler handshakeHandler = new DefaultHandshakeHandler();
+        handshakeHandler.setSupportedProtocols(BinaryFrameCodec.BINARY_SUBPROTOCOL, BinaryFrameCodec.JSON_SUBPROTOCOL);
+
         registry.addHandler(interactiveCodeExecutionHandler, "/execute-ws")
+                .setHandshakeHandler(handshakeHandler)
                 .setAllowedOrigins("*");
     }
+
+    // Largest single message Tomcat accepts; bigger stdin goes up as several binary chunks. Set as
+    // context parameters so they are in place before Tomcat creates its WebSocket container.
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> webSocketBufferSizes(
+            @Value("${websocket.max-text-message-buffer-size:65536}") int maxTextMessageBufferSize,
+            @Value("${websocket.max-binary-message-buffer-size:65536}") int maxBinaryMessageBufferSize) {
+        return factory -> factory.addContextCustomizers(context -> {
+            context.addParameter("org.apache.tomcat.websocket.textBufferSize", String.valueOf(maxTextMessageBufferSize));
+            context.addParameter("org.apache.tomcat.websocket.binaryBufferSize", String.valueOf(maxBinaryMessageBufferSize));
+        });
+    }
+
+    @Bean
+    public FilterRegistrationBean<WebSocketCompressionFilter> webSocketCompressionFilter(
+            @Value("${websocket.compression.enabled:true}") boolean enabled,
+            @Value("${websocket.compression.server-no-context-takeover:false}") boolean serverNoContextTakeover,
+            @Value("${websocket.compression.client-no-context-takeover:false}") boolean clientNoContextTakeover) {
+        FilterRegistrationBean<WebSocketCompressionFilter> registration = new FilterRegistrationBean<>(
+            new WebSocketCompressionFilter(enabled, serverNoContextTakeover, clientNoContextTakeover));
+        registration.addUrlPatterns("/execute-ws");
+        return registration;
+    }
 }
@@ -0,0 +1,51 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts outbound WebSocket frames, payload bytes and encoding CPU time per protocol mode, so
+ * JSON and binary clients can be compared. Bytes are counted before permessage-deflate, which
+ * Tomcat applies after the handler, and the time covers encoding only; WireFormatSizeTests
+ * measures the compressed sizes.
+ */
+@Component
+public class WebSocketTrafficStats {
+
+    private static class ModeCounters {
+        final LongAdder frames = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder encodeNanos = new LongAdder();
+
+        Map<String, Object> snapshot() {
+            long frameCount = frames.sum();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("frames", frameCount);
+            result.put("payloadBytes", bytes.sum()); // Uncompressed
+            result.put("encodeMicros", encodeNanos.sum() / 1000);
+            result.put("avgBytesPerFrame", frameCount == 0 ? 0 : bytes.sum() / frameCount);
+            result.put("avgEncodeNanosPerFrame", frameCount == 0 ? 0 : encodeNanos.sum() / frameCount);
+            return result;
+        }
+    }
+
+    private final ModeCounters json = new ModeCounters();
+    private final ModeCounters binary = new ModeCounters();
+
+    public void record(boolean binaryMode, int payloadBytes, long encodeNanos) {
+        ModeCounters counters = binaryMode ? binary : json;
+        counters.frames.increment();
+        counters.bytes.add(payloadBytes);
+        counters.encodeNanos.add(encodeNanos);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("json", json.snapshot());
+        result.put("binary", binary.snapshot());
+        return result;
+    }
+}
@@ -0,0 +1,520 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides where runs execute (behind CachingExecutionEngine). Without app.workers.addresses every
+ * run stays in this JVM (CodeExecutionService). With it, runs go to the least-loaded reachable
+ * worker, by the capacity each reports when polled; a worker that refuses or can't be reached is
+ * skipped for the next one. A run whose worker dies midway is ended with an error, not re-run: its
+ * program may already have consumed input.
+ *
+ * Multi-file projects prefer the worker that built them last, which still has their build cache.
+ * Workers still warming their toolchains up are only used when no warm one has room.
+ * Complexity benchmarks are user code too and go to workers the same way (see benchmark()).
+ */
+@Component
+public class WorkerDispatcher implements ExecutionEngine {
+
+    // Comma-separated host:port or unix:/path worker addresses; empty runs everything in-process
+    @Value("${app.workers.addresses:}")
+    private String addresses;
+
+    // Run in-process when no worker can take a run
+    @Value("${app.workers.local-fallback:true}")
+    private boolean localFallback;
+
+    @Value("${app.workers.connect-timeout-ms:1000}")
+    private int connectTimeoutMs;
+
+    @Value("${app.workers.token:}")
+    private String token;
+
+    // How often the client backlog of each remote run is forwarded for backpressure
+    @Value("${app.workers.pending-report-interval-ms:100}")
+    private long pendingReportIntervalMs;
+
+    private final CodeExecutionService local;
+    private final List<Worker> workers = new ArrayList<>();
+    private final Map<String, RemoteRun> runs = new ConcurrentHashMap<>();
+    private final Set<String> localKeys = ConcurrentHashMap.newKeySet();
+    private final Map<String, Worker> projectAffinity = new ConcurrentHashMap<>();
+    private final LongAdder localFallbacks = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+
+    private final ScheduledExecutorService pendingReporter = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "worker-pending");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public WorkerDispatcher(CodeExecutionService local) {
+        this.local = local;
+    }
+
+    private static class Worker {
+        final String address;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final LongAdder dispatched = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        volatile boolean up = true;
+        volatile boolean warm = true;
+        volatile int capacity = 1;
+        volatile int reportedActive;
+        volatile long lastSeen;
+
+        Worker(String address) {
+            this.address = address;
+        }
+
+        // Share of capacity in use, counting runs other web tiers sent too
+        double load() {
+            return (double) Math.max(reportedActive, inFlight.get()) / Math.max(1, capacity);
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("address", address);
+            result.put("up", up);
+            result.put("warm", warm);
+            result.put("capacity", capacity);
+            result.put("active", Math.max(reportedActive, inFlight.get()));
+            result.put("inFlightFromHere", inFlight.get());
+            result.put("dispatched", dispatched.sum());
+            result.put("failures", failures.sum());
+            result.put("lastSeenMillisAgo", lastSeen == 0 ? -1 : System.currentTimeMillis() - lastSeen);
+            return result;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        for (String address : addresses.split(",")) {
+            if (!address.isBlank()) {
+                workers.add(new Worker(address.trim()));
+            }
+        }
+        if (workers.isEmpty()) {
+            return;
+        }
+        pollWorkers();
+        pendingReporter.scheduleWithFixedDelay(this::reportPending, pendingReportIntervalMs, pendingReportIntervalMs, TimeUnit.MILLISECONDS);
+        System.out.println("🏭 Dispatching executions to " + workers.size() + " worker(s): " + addresses
+                + (localFallback ? " (in-process fallback)" : ""));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pendingReporter.shutdownNow();
+        runs.values().forEach(RemoteRun::close);
+    }
+
+    // --- ExecutionEngine ---
+
+    @Override
+    public boolean execute(String key, String language, String code, ExecutionSink sink) {
+        return execute(key, language, code, RunOptions.DEFAULT, sink);
+    }
+
+    @Override
+    public boolean execute(String key, String language, String code, RunOptions options, ExecutionSink sink) {
+        Map<String, Object> request = request(key, language);
+        request.put("code", code);
+        if (options.stdin() != null) {
+            request.put("stdin", true);
+        }
+        return dispatch(key, request, null, options.stdin(), sink, () -> local.execute(key, language, code, options, sink));
+    }
+
+    @Override
+    public boolean executeProject(String key, String projectKey, String language,
+                                  Map<String, String> files, String entry, ExecutionSink sink) {
+        Map<String, Object> request = request(key, language);
+        request.put("projectKey", projectKey);
+        request.put("files", files);
+        request.put("entry", entry);
+        return dispatch(key, request, projectKey, null, sink, () -> local.executeProject(key, projectKey, language, files, entry, sink));
+    }
+
+    @Override
+    public void sendInput(String key, String data, ExecutionSink sink) {
+        RemoteRun run = runs.get(key);
+        if (localKeys.contains(key) || workers.isEmpty()) {
+            local.sendInput(key, data, sink);
+        } else if (run != null && run.streaming.get()) {
+            sink.send(ExecutionSink.ERROR, "Cannot send input: earlier input is still being streamed.");
+        } else if (run != null && !run.finished) {
+            run.send(Map.of("op", WorkerProtocol.OP_INPUT, "data", data));
+        } else {
+            sink.send(ExecutionSink.ERROR, "Cannot send input: No active process found for your session.");
+        }
+    }
+
+    @Override
+    public void sendInput(String key, StdinUploads.Upload upload, ExecutionSink sink) {
+        RemoteRun run = runs.get(key);
+        if (localKeys.contains(key) || workers.isEmpty()) {
+            local.sendInput(key, upload, sink);
+        } else if (run != null && !run.finished) {
+            // One stream at a time: chunks of two uploads would interleave on the connection
+            if (!run.streaming.compareAndSet(false, true)) {
+                sink.send(ExecutionSink.ERROR, "Cannot send input: earlier input is still being streamed.");
+                return;
+            }
+            Thread streamer = new Thread(() -> run.streamStdin(upload), "worker-stdin-" + key);
+            streamer.setDaemon(true);
+            streamer.start();
+        } else {
+            sink.send(ExecutionSink.ERROR, "Cannot send input: No active process found for your session.");
+        }
+    }
+
+    @Override
+    public void stop(String key) {
+        RemoteRun run = runs.get(key);
+        if (run != null) {
+            run.send(Map.of("op", WorkerProtocol.OP_STOP));
+        } else {
+            local.stop(key);
+        }
+    }
+
+    @Override
+    public void release(String key) {
+        RemoteRun run = runs.remove(key);
+        if (run != null) {
+            run.close();
+        }
+        if (localKeys.remove(key) || workers.isEmpty()) {
+            local.release(key);
+        }
+    }
+
+    @Override
+    public boolean isRunning(String key) {
+        RemoteRun run = runs.get(key);
+        return run != null ? !run.finished : local.isRunning(key);
+    }
+
+    // --- Dispatch ---
+
+    private Map<String, Object> request(String key, String language) {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("op", WorkerProtocol.OP_EXECUTE);
+        request.put("token", token);
+        request.put("key", key);
+        request.put("language", language);
+        return request;
+    }
+
+    private boolean dispatch(String key, Map<String, Object> request, String projectKey, StdinUploads.Upload stdin,
+                             ExecutionSink sink, BooleanSupplier runLocally) {
+        if (workers.isEmpty()) {
+            return runLocally.getAsBoolean();
+        }
+        if (isRunning(key)) {
+            return false;
+        }
+        RemoteRun previous = runs.remove(key);
+        if (previous != null) {
+            previous.close();
+        }
+        localKeys.remove(key);
+
+        for (Worker worker : candidates(projectKey)) {
+            RemoteRun run = tryStart(worker, key, request, sink);
+            if (run != null) {
+                runs.put(key, run);
+                if (projectKey != null) {
+                    projectAffinity.put(projectKey, worker);
+                }
+                run.startReading(stdin);
+                return true;
+            }
+        }
+
+        if (localFallback) {
+            localFallbacks.increment();
+            localKeys.add(key);
+            return runLocally.getAsBoolean();
+        }
+        unavailable.increment();
+        sink.send(ExecutionSink.ERROR, "No execution worker is available right now. Please try again shortly.");
+        sink.send(ExecutionSink.EXECUTION_COMPLETE, "Exit code: 1");
+        return true;
+    }
+
+    // Reachable workers with spare capacity, least loaded first
+    private List<Worker> candidates(String projectKey) {
+        Worker preferred = projectKey == null ? null : projectAffinity.get(projectKey);
+        List<Worker> candidates = new ArrayList<>();
+        for (Worker worker : workers) {
+            if (worker.up && worker.load() < 1) {
+                candidates.add(worker);
+            }
+        }
+        if (candidates.stream().anyMatch(worker -> worker.warm)) {
+            candidates.removeIf(worker -> !worker.warm);
+        }
+        candidates.sort(Comparator.comparingDouble(Worker::load));
+        if (preferred != null && candidates.remove(preferred)) {
+            candidates.add(0, preferred); // Its warm build cache beats a slightly lower load
+        }
+        return candidates;
+    }
+
+    private RemoteRun tryStart(Worker worker, String key, Map<String, Object> request, ExecutionSink sink) {
+        WorkerProtocol.Connection connection = null;
+        try {
+            connection = new WorkerProtocol.Connection(WorkerProtocol.connect(worker.address, connectTimeoutMs));
+            connection.write(request);
+            Map<String, Object> reply = connection.read();
+            if (reply != null && WorkerProtocol.EVENT_ACCEPTED.equals(reply.get("event"))) {
+                worker.inFlight.incrementAndGet();
+                worker.dispatched.increment();
+                return new RemoteRun(key, worker, connection, sink);
+            }
+            // Full (another web tier got there first) or refused: treat as full until the next poll
+            worker.reportedActive = worker.capacity;
+            System.out.println("⚠️ Worker " + worker.address + " rejected " + key + ": "
+                    + (reply == null ? "connection closed" : reply.get("reason")));
+        } catch (IOException | RuntimeException e) {
+            worker.up = false;
+            worker.failures.increment();
+            System.err.println("⚠️ Worker " + worker.address + " unreachable, trying the next one: " + e.getMessage());
+        }
+        if (connection != null) {
+            connection.close();
+        }
+        return null;
+    }
+
+    // Capacity reports; also how a worker that was down comes back
+    @Scheduled(fixedDelayString = "${app.workers.poll-interval-ms:2000}", initialDelayString = "${app.workers.poll-interval-ms:2000}")
+    public void pollWorkers() {
+        for (Worker worker : workers) {
+            try (WorkerProtocol.Connection connection = new WorkerProtocol.Connection(WorkerProtocol.connect(worker.address, connectTimeoutMs))) {
+                connection.write(Map.of("op", WorkerProtocol.OP_STATUS, "token", token));
+                Map<String, Object> status = connection.read();
+                if (status == null || !WorkerProtocol.EVENT_STATUS.equals(status.get("event"))) {
+                    throw new IOException(status == null ? "no status" : String.valueOf(status.get("reason")));
+                }
+                worker.capacity = ((Number) status.get("capacity")).intValue();
+                worker.reportedActive = ((Number) status.get("active")).intValue();
+                worker.warm = !Boolean.FALSE.equals(status.get("warm")); // Absent from older workers
+                worker.lastSeen = System.currentTimeMillis();
+                if (!worker.up) {
+                    System.out.println("✅ Worker " + worker.address + " is back");
+                }
+                worker.up = true;
+            } catch (IOException | RuntimeException e) {
+                if (worker.up) {
+                    System.err.println("⚠️ Worker " + worker.address + " is down: " + e.getMessage());
+                }
+                worker.up = false;
+            }
+        }
+    }
+
+    // Whether runs go to remote workers rather than this JVM
+    public boolean dispatchesRemotely() {
+        return !workers.isEmpty();
+    }
+
+    // --- Benchmarks ---
+
+    /**
+     * Runs a benchmark on the least-loaded worker with a free benchmark slot. Benchmarks keep no
+     * state, so one whose worker goes away is simply tried on the next. runLocally is the
+     * in-process fallback (app.workers.local-fallback).
+     */
+    public ComplexityBenchmark.Report benchmark(ComplexityBenchmark.Request request,
+                                                Callable<ComplexityBenchmark.Report> runLocally) throws Exception {
+        boolean rejected = false;
+        for (Worker worker : candidates(null)) {
+            Map<String, Object> reply;
+            worker.inFlight.incrementAndGet();
+            try (WorkerProtocol.Connection connection = new WorkerProtocol.Connection(WorkerProtocol.connect(worker.address, connectTimeoutMs))) {
+                connection.write(Map.of("op", WorkerProtocol.OP_BENCHMARK, "token", token, "request", request));
+                reply = connection.read();
+            } catch (IOException | RuntimeException e) {
+                worker.up = false;
+                worker.failures.increment();
+                System.err.println("⚠️ Worker " + worker.address + " failed a benchmark, trying the next one: " + e.getMessage());
+                continue;
+            } finally {
+                worker.inFlight.decrementAndGet();
+            }
+            if (reply != null && WorkerProtocol.EVENT_REPORT.equals(reply.get("event"))) {
+                worker.dispatched.increment();
+                return WorkerProtocol.convert(reply.get("report"), ComplexityBenchmark.Report.class);
+            }
+            if (reply != null && WorkerProtocol.EVENT_FAILED.equals(reply.get("event"))) {
+                String error = String.valueOf(reply.get("error"));
+                throw Boolean.TRUE.equals(reply.get("invalid")) ? new IllegalArgumentException(error) : new Exception(error);
+            }
+            rejected = true;
+            System.out.println("⚠️ Worker " + worker.address + " rejected a benchmark: "
+                    + (reply == null ? "connection closed" : reply.get("reason")));
+        }
+
+        if (localFallback) {
+            localFallbacks.increment();
+            return runLocally.call();
+        }
+        unavailable.increment();
+        throw new IllegalStateException(rejected ? "Too many benchmarks are running, please try again shortly."
+                : "No execution worker is available right now. Please try again shortly.");
+    }
+
+    private void reportPending() {
+        for (RemoteRun run : runs.values()) {
+            run.reportPending();
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("mode", workers.isEmpty() ? "in-process" : "workers");
+        result.put("workers", workers.stream().map(Worker::snapshot).toList());
+        result.put("remoteRuns", runs.values().stream().filter(run -> !run.finished).count());
+        result.put("localFallbacks", localFallbacks.sum());
+        result.put("unavailable", unavailable.sum());
+        return result;
+    }
+
+    // --- One run on one worker ---
+
+    private class RemoteRun {
+        private final String key;
+        private final Worker worker;
+        private final WorkerProtocol.Connection connection;
+        private final ExecutionSink sink;
+        private volatile boolean finished;
+        private volatile boolean closed;
+        private final AtomicBoolean streaming = new AtomicBoolean();
+        private long lastPending;
+
+        RemoteRun(String key, Worker worker, WorkerProtocol.Connection connection, ExecutionSink sink) {
+            this.key = key;
+            this.worker = worker;
+            this.connection = connection;
+            this.sink = sink;
+        }
+
+        // Sends the run's up-front stdin first (the worker starts the program once it has all of it)
+        void startReading(StdinUploads.Upload stdin) {
+            if (stdin != null) {
+                streaming.set(true);
+            }
+            Thread reader = new Thread(() -> {
+                if (stdin != null) {
+                    streamStdin(stdin);
+                }
+                read();
+            }, "worker-run-" + key);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        // Base64 chunks read straight from the spooled upload, then the end marker
+        void streamStdin(StdinUploads.Upload upload) {
+            try (FileChannel file = FileChannel.open(upload.path())) {
+                ByteBuffer buffer = ByteBuffer.allocate(WorkerProtocol.STDIN_CHUNK_BYTES);
+                Base64.Encoder encoder = Base64.getEncoder();
+                while (file.read(buffer) >= 0) {
+                    if (buffer.position() == buffer.capacity()) {
+                        buffer.flip();
+                        connection.write(Map.of("op", WorkerProtocol.OP_STDIN, "data", encoder.encodeToString(buffer.array())));
+                        buffer.clear();
+                    }
+                }
+                if (buffer.position() > 0) {
+                    connection.write(Map.of("op", WorkerProtocol.OP_STDIN,
+                            "data", encoder.encodeToString(Arrays.copyOf(buffer.array(), buffer.position()))));
+                }
+                connection.write(Map.of("op", WorkerProtocol.OP_STDIN_END));
+            } catch (IOException e) {
+                // A broken connection is noticed by the reader, which ends the run
+                System.err.println("⚠️ Could not stream input to worker " + worker.address + " for " + key + ": " + e.getMessage());
+            } finally {
+                streaming.set(false);
+            }
+        }
+
+        // Forwards the worker's events until the run completes or the connection drops
+        private void read() {
+            try {
+                Map<String, Object> event;
+                while ((event = connection.read()) != null) {
+                    String type = String.valueOf(event.get("event"));
+                    sink.send(type, event.get("data") == null ? "" : String.valueOf(event.get("data")));
+                    if (ExecutionSink.EXECUTION_COMPLETE.equals(type)) {
+                        finished = true;
+                        break;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // Handled below
+            }
+            if (!finished && !closed) {
+                worker.failures.increment();
+                System.err.println("⚠️ Lost worker " + worker.address + " during " + key);
+                sink.send(ExecutionSink.ERROR, "The execution worker running this program went away; the run was stopped.");
+                sink.send(ExecutionSink.EXECUTION_COMPLETE, "Exit code: 1");
+            }
+            finished = true;
+            close();
+        }
+
+        void send(Map<String, ?> message) {
+            try {
+                connection.write(message);
+            } catch (IOException e) {
+                // The reader notices the broken connection and ends the run
+            }
+        }
+
+        synchronized void reportPending() {
+            long pending = sink.pendingBytes();
+            if (!finished && pending != lastPending) {
+                lastPending = pending;
+                send(Map.of("op", WorkerProtocol.OP_PENDING, "bytes", pending));
+            }
+        }
+
+        synchronized void close() {
+            if (!closed) {
+                closed = true;
+                connection.close(); // The worker releases the run when its connection closes
+                worker.inFlight.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Wire format between WorkerDispatcher (web tier) and ExecutionWorker: one JSON object per line,
+ * over TCP ("host:port") or a Unix domain socket ("unix:/path/to.sock"). One connection per run.
+ *
+ *   dispatcher -> worker                        worker -> dispatcher
+ *   {op: "status", token}                       {event: "status", capacity, active, warm}
+ *   {op: "execute", token, key, language,       {event: "accepted"} or {event: "rejected", reason}
+ *        code | files + entry + projectKey,     {event: <ExecutionSink type>, data}...
+ *        stdin?}
+ *   {op: "stdin", data} ... {op: "stdin_end"}  (bulk input, base64 chunks: right after "accepted" when
+ *                                               execute had stdin: true, otherwise streamed into the run;
+ *                                               "input" in between is answered with an error event)
+ *   {op: "input", data}
+ *   {op: "pending", bytes}    (client backlog, drives the worker's output backpressure)
+ *   {op: "stop"}
+ *
+ *   {op: "benchmark", token, request}           {event: "report", report}, {event: "rejected", reason} when its
+ *                                               benchmark slots are full, or {event: "failed", error, invalid}
+ *
+ * Closing the connection releases the run on the worker.
+ */
+public final class WorkerProtocol {
+
+    public static final String OP_STATUS = "status";
+    public static final String OP_EXECUTE = "execute";
+    public static final String OP_INPUT = "input";
+    public static final String OP_PENDING = "pending";
+    public static final String OP_STOP = "stop";
+    public static final String OP_STDIN = "stdin";
+    public static final String OP_STDIN_END = "stdin_end";
+    public static final String OP_BENCHMARK = "benchmark";
+
+    // Raw bytes per "stdin" message (64 KB once base64-encoded)
+    public static final int STDIN_CHUNK_BYTES = 49152;
+
+    public static final String EVENT_STATUS = "status";
+    public static final String EVENT_ACCEPTED = "accepted";
+    public static final String EVENT_REJECTED = "rejected";
+    public static final String EVENT_REPORT = "report";
+    public static final String EVENT_FAILED = "failed";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private WorkerProtocol() {}
+
+    // Typed view of a nested message field, e.g. a benchmark request or report
+    public static <T> T convert(Object value, Class<T> type) {
+        return MAPPER.convertValue(value, type);
+    }
+
+    public static SocketChannel connect(String address, int timeoutMs) throws IOException {
+        if (address.startsWith("unix:")) {
+            return SocketChannel.open(UnixDomainSocketAddress.of(address.substring("unix:".length())));
+        }
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.socket().connect(inet(address), timeoutMs);
+            channel.socket().setTcpNoDelay(true);
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static ServerSocketChannel listen(String address) throws IOException {
+        if (address.startsWith("unix:")) {
+            Path path = Path.of(address.substring("unix:".length()));
+            Files.deleteIfExists(path); // Left behind by a previous run
+            ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(path));
+            return server;
+        }
+        return ServerSocketChannel.open().bind(inet(address));
+    }
+
+    private static InetSocketAddress inet(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Worker address must be host:port or unix:/path, got " + address);
+        }
+        return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    /**
+     * One end of a connection. Reads and writes go straight to the channel: the streams from
+     * Channels.newInputStream/newOutputStream share a lock, so a blocked read would stall writes.
+     */
+    public static class Connection implements Closeable {
+        private final SocketChannel channel;
+        private final BufferedReader reader;
+
+        public Connection(SocketChannel channel) {
+            this.channel = channel;
+            InputStream in = new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    return channel.read(ByteBuffer.wrap(buffer, offset, length));
+                }
+            };
+            this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+
+        // Next message, or null at end of stream
+        public Map<String, Object> read() throws IOException {
+            String line = reader.readLine();
+            return line == null ? null : MAPPER.readValue(line, new TypeReference<Map<String, Object>>() {});
+        }
+
+        public synchronized void write(Map<String, ?> message) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap((MAPPER.writeValueAsString(message) + "\n").getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+        }
+    }
+}
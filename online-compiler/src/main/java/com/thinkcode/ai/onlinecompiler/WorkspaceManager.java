@@ -0,0 +1,280 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out execution workspaces from a pool of pre-created directories, preferably on a
+ * RAM-backed filesystem (/dev/shm). Released workspaces are wiped by a single background
+ * reaper thread and returned to the pool, instead of a new temp dir and cleanup thread per run.
+ *
+ * The workspace root is owned by this server: anything left under it at startup is an orphan
+ * from a previous run and is recovered into the pool.
+ */
+@Component
+public class WorkspaceManager {
+
+    private static final String WORKSPACE_PREFIX = "ws-";
+
+    // Preferred root; falls back to java.io.tmpdir if missing, unwritable or mounted noexec
+    @Value("${app.workspace.root:/dev/shm/thinkcode-workspaces}")
+    private String configuredRoot;
+
+    // Idle workspaces kept ready for reuse
+    @Value("${app.workspace.pool-size:16}")
+    private int poolSize;
+
+    // Released workspaces waiting to be wiped; when full, the releasing thread wipes inline
+    @Value("${app.workspace.reaper-backlog:256}")
+    private int reaperBacklog;
+
+    // Total bytes allowed across in-use workspaces; new runs are refused above this
+    @Value("${app.workspace.max-total-bytes:50000000}")
+    private long maxTotalBytes;
+
+    // How often the reaper re-measures in-use workspaces when it has nothing to wipe
+    @Value("${app.workspace.usage-scan-interval-ms:2000}")
+    private long usageScanIntervalMs;
+
+    private Path root;
+    private final ConcurrentLinkedDeque<Path> idle = new ConcurrentLinkedDeque<>();
+    private final Set<Path> inUse = ConcurrentHashMap.newKeySet();
+    private BlockingQueue<Path> releaseQueue;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong wipedCount = new AtomicLong();
+    private final AtomicLong inlineWipeCount = new AtomicLong();
+    private volatile boolean running = true;
+    private Thread reaper;
+
+    @PostConstruct
+    void init() throws IOException {
+        root = selectRoot();
+        releaseQueue = new ArrayBlockingQueue<>(reaperBacklog);
+        recoverOrphans();
+        while (idle.size() < poolSize) {
+            idle.add(createWorkspaceDir());
+        }
+
+        reaper = new Thread(this::reapLoop, "workspace-reaper");
+        reaper.setDaemon(true);
+        reaper.start();
+
+        System.out.println("📁 Workspace pool ready at " + root + " (" + Files.getFileStore(root).type()
+                + ", " + idle.size() + " idle, quota " + maxTotalBytes + " bytes)");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        if (reaper != null) {
+            reaper.interrupt();
+        }
+    }
+
+    /**
+     * Takes a clean workspace for one execution.
+     * Throws IOException if the total disk quota is currently exhausted.
+     */
+    public Path acquire(String owner) throws IOException {
+        if (usedBytes.get() >= maxTotalBytes) {
+            throw new IOException("Server workspace quota exceeded, please try again shortly.");
+        }
+        Path workspace = idle.pollFirst();
+        if (workspace == null || !Files.isDirectory(workspace)) {
+            workspace = createWorkspaceDir();
+        }
+        inUse.add(workspace);
+        System.out.println("📁 Workspace " + workspace.getFileName() + " assigned to " + owner);
+        return workspace;
+    }
+
+    // Returns a workspace to the pool; wiping happens on the reaper thread
+    public void release(Path workspace) {
+        if (workspace == null || !inUse.remove(workspace)) {
+            return;
+        }
+        if (!releaseQueue.offer(workspace)) {
+            // Backlog is full: apply backpressure by wiping on the caller's thread
+            inlineWipeCount.incrementAndGet();
+            recycle(workspace);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("root", root.toString());
+        result.put("idle", idle.size());
+        result.put("inUse", inUse.size());
+        result.put("pendingWipe", releaseQueue.size());
+        result.put("usedBytes", usedBytes.get());
+        result.put("maxTotalBytes", maxTotalBytes);
+        result.put("wiped", wipedCount.get());
+        result.put("inlineWipes", inlineWipeCount.get());
+        return result;
+    }
+
+    // --- Reaper ---
+
+    private void reapLoop() {
+        long lastScan = System.currentTimeMillis();
+        while (running) {
+            try {
+                long untilScan = lastScan + usageScanIntervalMs - System.currentTimeMillis();
+                Path workspace = untilScan > 0 ? releaseQueue.poll(untilScan, TimeUnit.MILLISECONDS) : null;
+                if (workspace != null) {
+                    recycle(workspace);
+                }
+                // On schedule even when releases keep coming, so the quota never works from a stale figure
+                if (System.currentTimeMillis() - lastScan >= usageScanIntervalMs) {
+                    measureUsage();
+                    lastScan = System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("❌ Workspace reaper error: " + e.getMessage());
+            }
+        }
+    }
+
+    // Wipes a workspace and puts it back in the pool, or deletes it if the pool is full
+    private void recycle(Path workspace) {
+        try {
+            wipeContents(workspace);
+            wipedCount.incrementAndGet();
+            if (idle.size() < poolSize) {
+                idle.addLast(workspace);
+            } else {
+                Files.deleteIfExists(workspace);
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Failed to recycle workspace " + workspace + ": " + e.getMessage());
+        }
+    }
+
+    private void measureUsage() {
+        long total = 0;
+        for (Path workspace : inUse) {
+            total += sizeOf(workspace);
+        }
+        usedBytes.set(total);
+    }
+
+    private long sizeOf(Path dir) {
+        AtomicLong size = new AtomicLong();
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    size.addAndGet(attrs.size());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE; // Files may vanish while the program runs
+                }
+            });
+        } catch (IOException e) {
+            // Workspace released while measuring
+        }
+        return size.get();
+    }
+
+    // Deletes everything inside dir but keeps dir itself
+    private void wipeContents(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.deleteIfExists(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+                if (!d.equals(dir)) {
+                    Files.deleteIfExists(d);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    // --- Startup ---
+
+    private void recoverOrphans() throws IOException {
+        List<Path> orphans = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(root, WORKSPACE_PREFIX + "*")) {
+            for (Path entry : entries) {
+                if (Files.isDirectory(entry)) {
+                    orphans.add(entry);
+                }
+            }
+        }
+        for (Path orphan : orphans) {
+            recycle(orphan);
+        }
+        if (!orphans.isEmpty()) {
+            System.out.println("🧹 Recovered " + orphans.size() + " orphaned workspaces from a previous run");
+        }
+    }
+
+    private Path createWorkspaceDir() throws IOException {
+        Path dir;
+        do {
+            dir = root.resolve(WORKSPACE_PREFIX + sequence.incrementAndGet());
+        } while (Files.exists(dir));
+        return Files.createDirectory(dir);
+    }
+
+    private Path selectRoot() throws IOException {
+        Path preferred = Paths.get(configuredRoot);
+        if (isUsableRoot(preferred)) {
+            return preferred;
+        }
+        Path fallback = Paths.get(System.getProperty("java.io.tmpdir"), "thinkcode-workspaces");
+        System.out.println("⚠️ Workspace root " + preferred + " is not usable (missing, read-only or noexec), using " + fallback);
+        Files.createDirectories(fallback);
+        return fallback;
+    }
+
+    // Compiled binaries run from the workspace, so the filesystem must allow exec
+    private boolean isUsableRoot(Path candidate) {
+        try {
+            Files.createDirectories(candidate);
+            Path probe = Files.createTempFile(candidate, "probe", ".sh");
+            try {
+                return probe.toFile().setExecutable(true) && Files.isExecutable(probe);
+            } finally {
+                Files.deleteIfExists(probe);
+            }
+        } catch (IOException | SecurityException e) {
+            return false;
+        }
+    }
+}
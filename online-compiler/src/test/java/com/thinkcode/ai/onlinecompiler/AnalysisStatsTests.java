@@ -0,0 +1,44 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class AnalysisStatsTests {
+
+	@Test
+	void normalizesNotationVariants() {
+		assertThat(AnalysisStats.normalize("O(N log N)")).isEqualTo("o(nlogn)");
+		assertThat(AnalysisStats.normalize("O(n·log(n))")).isEqualTo("o(nlogn)");
+		assertThat(AnalysisStats.normalize("O(n * log₂n)")).isEqualTo("o(nlogn)");
+		assertThat(AnalysisStats.normalize("O(n lg n)")).isEqualTo("o(nlogn)");
+		assertThat(AnalysisStats.normalize("O(n²)")).isEqualTo("o(n^2)");
+		assertThat(AnalysisStats.normalize("O(<i>n</i> log <i>n</i>)")).isEqualTo("o(nlogn)");
+		assertThat(AnalysisStats.normalize("O(n^{2})")).isEqualTo("o(n^2)");
+	}
+
+	@Test
+	void localAndModelNotationCompareEqual() {
+		for (String local : List.of("O(1)", "O(log n)", "O(n)", "O(n log n)", "O(n^2)", "O(2^n)")) {
+			assertThat(AnalysisStats.normalize(local)).as(local).isEqualTo(AnalysisStats.normalize(local.toUpperCase()));
+		}
+	}
+
+	@Test
+	void comparesEstimateWithTheModelsHeading() {
+		AnalysisStats stats = new AnalysisStats();
+		StaticComplexityEstimator.Estimate linear = new StaticComplexityEstimator.Estimate("O(n)", "O(1)", true, List.of(), List.of());
+
+		stats.recordComparison(linear, "<h4>Time Complexity <code>O(N)</code></h4>");
+		stats.recordComparison(linear, "<h4>Time Complexity <code>O(n²)</code></h4>");
+		stats.recordComparison(linear, "<h4>Time Complexity <code>O(V + E)</code></h4>");
+		stats.recordComparison(linear, null);
+
+		assertThat(stats.snapshot().get("agreementOnLocalAnswers")).isInstanceOfSatisfying(Map.class, agreement -> {
+			assertThat(agreement).containsEntry("agree", 1L).containsEntry("disagree", 1L).containsEntry("incomparable", 2L);
+		});
+	}
+}
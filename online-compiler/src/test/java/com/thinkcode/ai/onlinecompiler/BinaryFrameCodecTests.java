@@ -0,0 +1,85 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class BinaryFrameCodecTests {
+
+	// Mirrors what a binary client does with a frame
+	private record Frame(int type, String executionId, int seq, String name, String data) {
+
+		static Frame decode(ByteBuffer buffer) {
+			int type = buffer.get() & 0xFF;
+			String executionId = null;
+			int seq = 0;
+			if ((type & BinaryFrameCodec.EXECUTION_TAG) != 0) {
+				type &= ~BinaryFrameCodec.EXECUTION_TAG;
+				executionId = string(buffer, buffer.get() & 0xFF);
+				seq = buffer.getInt();
+			}
+			String name = type == BinaryFrameCodec.TYPE_NAMED ? string(buffer, buffer.get() & 0xFF) : null;
+			return new Frame(type, executionId, seq, name, string(buffer, buffer.remaining()));
+		}
+
+		private static String string(ByteBuffer buffer, int length) {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	void knownTypesUseTheirCode() {
+		ByteBuffer buffer = BinaryFrameCodec.encode("output", "héllo ✓\n");
+
+		assertThat(buffer.remaining()).isEqualTo(1 + "héllo ✓\n".getBytes(StandardCharsets.UTF_8).length);
+		assertThat(Frame.decode(buffer)).isEqualTo(new Frame(BinaryFrameCodec.TYPE_OUTPUT, null, 0, null, "héllo ✓\n"));
+	}
+
+	@Test
+	void unknownTypesAreSentByName() {
+		Frame frame = Frame.decode(BinaryFrameCodec.encode("stdin_upload_ready", "{\"uploadId\":\"u1\"}"));
+
+		assertThat(frame).isEqualTo(new Frame(BinaryFrameCodec.TYPE_NAMED, null, 0, "stdin_upload_ready", "{\"uploadId\":\"u1\"}"));
+	}
+
+	@Test
+	void taggedFramesCarryExecutionIdAndSequence() {
+		assertThat(Frame.decode(BinaryFrameCodec.encode("execution_complete", "Exit code: 0", "run-2", 42)))
+				.isEqualTo(new Frame(BinaryFrameCodec.TYPE_EXECUTION_COMPLETE, "run-2", 42, null, "Exit code: 0"));
+		assertThat(Frame.decode(BinaryFrameCodec.encode("custom", "x", "run-2", 7)))
+				.isEqualTo(new Frame(BinaryFrameCodec.TYPE_NAMED, "run-2", 7, "custom", "x"));
+	}
+
+	@Test
+	void sequenceNumbersUseAllFourBytesUnsigned() {
+		Frame frame = Frame.decode(BinaryFrameCodec.encode("output", "x", "run-3", BinaryFrameCodec.MAX_SEQ));
+
+		assertThat(Integer.toUnsignedLong(frame.seq())).isEqualTo(BinaryFrameCodec.MAX_SEQ);
+		assertThatThrownBy(() -> BinaryFrameCodec.encode("output", "x", "run-3", BinaryFrameCodec.MAX_SEQ + 1))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> BinaryFrameCodec.encode("output", "x", "run-3", -1))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void nullDataIsEmpty() {
+		ByteBuffer buffer = BinaryFrameCodec.encode("pong", null);
+
+		assertThat(buffer.remaining()).isEqualTo(1);
+		assertThat(Frame.decode(buffer).data()).isEmpty();
+	}
+
+	@Test
+	void rejectsIdsThatDoNotFitTheLengthByte() {
+		assertThatThrownBy(() -> BinaryFrameCodec.encode("output", "x", "e".repeat(256), 1))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> BinaryFrameCodec.encode("t".repeat(256), "x"))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
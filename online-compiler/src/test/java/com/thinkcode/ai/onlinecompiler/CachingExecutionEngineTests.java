@@ -0,0 +1,199 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class CachingExecutionEngineTests {
+
+	private static final ExecutionEngine.RunOptions CACHEABLE = new ExecutionEngine.RunOptions(true, null);
+
+	private final WorkerDispatcher delegate = mock(WorkerDispatcher.class);
+	private final LanguageRuntimeRegistry runtimes = mock(LanguageRuntimeRegistry.class);
+	private final CachingExecutionEngine engine = new CachingExecutionEngine(delegate, runtimes);
+
+	// Events the fake program sends for a given source; default is its source as output, then exit 0
+	private final Map<String, List<String[]>> programs = new HashMap<>();
+	private ExecutionSink runningSink;
+
+	private static class CollectingSink implements ExecutionSink {
+		final List<String> events = new ArrayList<>();
+		final CountDownLatch complete = new CountDownLatch(1);
+
+		@Override
+		public synchronized void send(String type, String data) {
+			events.add(type + ":" + data);
+			if (EXECUTION_COMPLETE.equals(type)) {
+				complete.countDown();
+			}
+		}
+
+		@Override
+		public long pendingBytes() {
+			return 0;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		List<String> await() throws InterruptedException {
+			assertThat(complete.await(5, TimeUnit.SECONDS)).isTrue();
+			synchronized (this) {
+				return List.copyOf(events);
+			}
+		}
+	}
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(engine, "enabled", true);
+		ReflectionTestUtils.setField(engine, "maxBytes", 1_000_000L);
+		ReflectionTestUtils.setField(engine, "maxEntryBytes", 100_000L);
+		LanguageRuntime python = mock(LanguageRuntime.class);
+		when(python.cacheKeyInputs()).thenReturn(List.of("python 3"));
+		when(runtimes.find("python")).thenReturn(python);
+		when(delegate.execute(anyString(), eq("python"), anyString(), any(), any())).thenAnswer(call -> {
+			String code = call.getArgument(2);
+			ExecutionSink sink = call.getArgument(4);
+			runningSink = sink;
+			List<String[]> events = programs.getOrDefault(code,
+					List.of(new String[] {ExecutionSink.OUTPUT, code}, new String[] {ExecutionSink.EXECUTION_COMPLETE, "Exit code: 0"}));
+			events.forEach(event -> sink.send(event[0], event[1]));
+			return true;
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		engine.shutdown();
+	}
+
+	private List<String> run(String code, ExecutionEngine.RunOptions options) throws InterruptedException {
+		CollectingSink sink = new CollectingSink();
+		assertThat(engine.execute("key", "python", code, options, sink)).isTrue();
+		return sink.await();
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> counters() {
+		return (Map<String, Object>) ((Map<String, Object>) engine.snapshot().get("languages")).get("python");
+	}
+
+	@Test
+	void repeatedCacheableRunIsReplayed() throws Exception {
+		List<String> first = run("print(1)", CACHEABLE);
+		List<String> second = run("print(1)", CACHEABLE);
+
+		assertThat(second).isEqualTo(first).containsExactly("output:print(1)", "execution_complete:Exit code: 0");
+		verify(delegate, times(1)).execute(anyString(), anyString(), anyString(), any(), any());
+		assertThat(counters()).containsEntry("hits", 1L).containsEntry("misses", 1L).containsEntry("stored", 1L);
+	}
+
+	@Test
+	void runsNotMarkedCacheableBypassTheCache() throws Exception {
+		run("print(1)", ExecutionEngine.RunOptions.DEFAULT);
+		run("print(1)", ExecutionEngine.RunOptions.DEFAULT);
+
+		verify(delegate, times(2)).execute(anyString(), anyString(), anyString(), any(), any());
+		assertThat(engine.snapshot()).containsEntry("entries", 0);
+	}
+
+	@Test
+	void disabledCacheBypassesEvenCacheableRuns() throws Exception {
+		ReflectionTestUtils.setField(engine, "enabled", false);
+
+		run("print(1)", CACHEABLE);
+		run("print(1)", CACHEABLE);
+
+		verify(delegate, times(2)).execute(anyString(), anyString(), anyString(), any(), any());
+	}
+
+	@Test
+	void failedOrInteractiveRunsAreNotStored() throws Exception {
+		programs.put("error", List.of(new String[] {ExecutionSink.ERROR, "boom"}, new String[] {ExecutionSink.EXECUTION_COMPLETE, "Exit code: 1"}));
+		programs.put("timeout", List.<String[]>of(new String[] {ExecutionSink.EXECUTION_COMPLETE, "Exit code: 124 (Timeout)"}));
+		programs.put("prompt", List.of(new String[] {ExecutionSink.INPUT_REQUEST, ""}, new String[] {ExecutionSink.EXECUTION_COMPLETE, "Exit code: 0"}));
+
+		for (String code : List.of("error", "timeout", "prompt")) {
+			run(code, CACHEABLE);
+			run(code, CACHEABLE);
+		}
+
+		verify(delegate, times(6)).execute(anyString(), anyString(), anyString(), any(), any());
+		assertThat(counters()).containsEntry("stored", 0L).containsEntry("notCacheable", 6L);
+	}
+
+	@Test
+	void inputSentDuringTheRunMakesItUncacheable() throws Exception {
+		programs.put("echo", List.of());
+		CollectingSink sink = new CollectingSink();
+		engine.execute("key", "python", "echo", CACHEABLE, sink);
+
+		engine.sendInput("key", "hello", sink);
+		runningSink.send(ExecutionSink.OUTPUT, "hello");
+		runningSink.send(ExecutionSink.EXECUTION_COMPLETE, "Exit code: 0");
+
+		verify(delegate).sendInput("key", "hello", sink);
+		assertThat(counters()).containsEntry("stored", 0L);
+	}
+
+	@Test
+	void stdinIsPartOfTheKey() throws Exception {
+		StdinUploads.Upload one = mock(StdinUploads.Upload.class);
+		StdinUploads.Upload two = mock(StdinUploads.Upload.class);
+		when(one.sha256()).thenReturn("1".repeat(64));
+		when(two.sha256()).thenReturn("2".repeat(64));
+
+		run("print(input())", new ExecutionEngine.RunOptions(true, one));
+		run("print(input())", new ExecutionEngine.RunOptions(true, two));
+		run("print(input())", new ExecutionEngine.RunOptions(true, one));
+
+		verify(delegate, times(2)).execute(anyString(), anyString(), anyString(), any(), any());
+	}
+
+	@Test
+	void leastRecentlyUsedEntryIsEvicted() throws Exception {
+		// Each entry here is 64 + 2 * 8 for the output plus 64 + 2 * 12 for the exit: 168 bytes
+		ReflectionTestUtils.setField(engine, "maxBytes", 400L);
+		run("print(1)", CACHEABLE);
+		run("print(2)", CACHEABLE);
+		run("print(1)", CACHEABLE); // Hit; print(2) is now the oldest
+
+		run("print(3)", CACHEABLE);
+
+		assertThat(engine.snapshot()).containsEntry("entries", 2).containsEntry("bytes", 336L).containsEntry("evictions", 1L);
+		run("print(1)", CACHEABLE);
+		verify(delegate, times(1)).execute(anyString(), anyString(), eq("print(1)"), any(), any());
+		run("print(2)", CACHEABLE);
+		verify(delegate, times(2)).execute(anyString(), anyString(), eq("print(2)"), any(), any());
+	}
+
+	@Test
+	void oversizedRunsAreNotStored() throws Exception {
+		ReflectionTestUtils.setField(engine, "maxEntryBytes", 100L);
+
+		run("print(1)", CACHEABLE);
+
+		assertThat(engine.snapshot()).containsEntry("entries", 0);
+		assertThat(counters()).containsEntry("notCacheable", 1L);
+	}
+}
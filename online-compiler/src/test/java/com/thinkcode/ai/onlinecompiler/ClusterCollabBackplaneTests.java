@@ -0,0 +1,150 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * Two backplane nodes on loopback ports, each the other's peer, as two instances behind a load
+ * balancer would be. Members are mock WebSocket sessions on a handler per node.
+ */
+class ClusterCollabBackplaneTests {
+
+	private final List<ClusterCollabBackplane> nodes = new ArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		nodes.forEach(ClusterCollabBackplane::close);
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	private ClusterCollabBackplane node(int port, int peerPort) throws IOException {
+		ClusterCollabBackplane node = new ClusterCollabBackplane("127.0.0.1:" + port, "127.0.0.1:" + peerPort,
+				"secret", 1000, 100);
+		node.start();
+		nodes.add(node);
+		return node;
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		for (int i = 0; i < 100 && !condition.getAsBoolean(); i++) {
+			Thread.sleep(50);
+		}
+		assertThat(condition.getAsBoolean()).isTrue();
+	}
+
+	private static InteractiveCodeExecutionHandler handler(CollabBackplane backplane) {
+		InteractiveCodeExecutionHandler handler = new InteractiveCodeExecutionHandler(mock(ExecutionEngine.class),
+				mock(ProjectWorkspaces.class), new WebSocketTrafficStats(), backplane, mock(StdinUploads.class));
+		ReflectionTestUtils.setField(handler, "maxQueuedBytes", 1_000_000L);
+		return handler;
+	}
+
+	// Mock member; the frames it is sent are collected in received
+	private static WebSocketSession member(String id, List<String> received) throws IOException {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn(id);
+		when(session.isOpen()).thenReturn(true);
+		doAnswer(invocation -> {
+			received.add(((TextMessage) invocation.getArgument(0)).getPayload());
+			return null;
+		}).when(session).sendMessage(any());
+		return session;
+	}
+
+	private static boolean hasType(List<String> received, String type) {
+		return received.stream().anyMatch(frame -> frame.contains("\"type\":\"" + type + "\""));
+	}
+
+	@Test
+	void roomStateReplicatesBothWays() throws Exception {
+		int portA = freePort();
+		int portB = freePort();
+		ClusterCollabBackplane a = node(portA, portB);
+		ClusterCollabBackplane b = node(portB, portA);
+
+		a.createRoom("room-1", Map.of("code", "print(1)", "language", "python", "hostId", "host"));
+		await(() -> b.getRoom("room-1") != null);
+		assertThat(b.getRoom("room-1")).containsEntry("code", "print(1)").containsEntry("hostId", "host");
+
+		assertThat(b.updateRoom("room-1", Map.of("code", "print(2)"))).containsEntry("language", "python");
+		await(() -> "print(2)".equals(a.getRoom("room-1").get("code")));
+		assertThat(a.getRoom("room-1")).containsEntry("hostId", "host");
+		assertThat(a.updateRoom("missing", Map.of("code", ""))).isNull();
+	}
+
+	@Test
+	void eventsReachMembersOnOtherNodesExceptTheExcludedOne() throws Exception {
+		int portA = freePort();
+		int portB = freePort();
+		ClusterCollabBackplane a = node(portA, portB);
+		ClusterCollabBackplane b = node(portB, portA);
+		InteractiveCodeExecutionHandler handlerA = handler(a);
+		InteractiveCodeExecutionHandler handlerB = handler(b);
+		List<String> hostFrames = new CopyOnWriteArrayList<>();
+		List<String> guestFrames = new CopyOnWriteArrayList<>();
+		WebSocketSession host = member("host", hostFrames);
+		WebSocketSession guest = member("guest", guestFrames);
+		handlerA.afterConnectionEstablished(host);
+		handlerB.afterConnectionEstablished(guest);
+
+		handlerA.handleTextMessage(host, new TextMessage(
+				"{\"type\":\"create_collab_session\",\"sessionId\":\"room-2\",\"code\":\"x = 1\",\"language\":\"python\",\"hostId\":\"host\"}"));
+		await(() -> b.getRoom("room-2") != null);
+		handlerB.handleTextMessage(guest, new TextMessage(
+				"{\"type\":\"join_collab_session\",\"sessionId\":\"room-2\",\"displayName\":\"Guest\"}"));
+		await(() -> hasType(guestFrames, "initial_code_sync"));
+		await(() -> hasType(hostFrames, "collab_update"));
+		assertThat(hasType(guestFrames, "collab_update")).isFalse();
+
+		// The sender's own node skips it before forwarding, so the host seeing it settles the guest's side
+		handlerB.handleTextMessage(guest, new TextMessage("{\"type\":\"sync_code\",\"code\":\"x = 2\",\"language\":\"python\"}"));
+		await(() -> hasType(hostFrames, "code_sync"));
+		assertThat(hasType(guestFrames, "code_sync")).isFalse();
+		await(() -> "x = 2".equals(a.getRoom("room-2").get("code")));
+
+		// Chat has no excluded member
+		handlerA.handleTextMessage(host, new TextMessage("{\"type\":\"chat_message\",\"data\":{\"text\":\"hi\"}}"));
+		await(() -> hasType(guestFrames, "chat_message"));
+		await(() -> hasType(hostFrames, "chat_message"));
+	}
+
+	@Test
+	void registryIsPushedAgainToARestartedPeer() throws Exception {
+		int portA = freePort();
+		int portB = freePort();
+		ClusterCollabBackplane a = node(portA, portB);
+		ClusterCollabBackplane b = node(portB, portA);
+		a.createRoom("room-3", Map.of("code", "", "language", "java", "hostId", "host"));
+		await(() -> b.getRoom("room-3") != null);
+
+		b.close();
+		a.createRoom("room-4", Map.of("code", "", "language", "go", "hostId", "host"));
+		ClusterCollabBackplane restarted = node(portB, portA);
+		assertThat(restarted.getRoom("room-3")).isNull();
+
+		await(() -> restarted.getRoom("room-3") != null && restarted.getRoom("room-4") != null);
+		assertThat(restarted.getRoom("room-4")).containsEntry("language", "go");
+	}
+}
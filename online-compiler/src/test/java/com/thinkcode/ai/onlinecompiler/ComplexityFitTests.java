@@ -0,0 +1,55 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.function.LongToDoubleFunction;
+
+import org.assertj.core.data.Offset;
+import org.junit.jupiter.api.Test;
+
+class ComplexityFitTests {
+
+	private static final List<Long> SIZES = List.of(1000L, 2000L, 4000L, 8000L, 16000L, 32000L);
+
+	private static ComplexityFit.Result fit(List<Long> sizes, LongToDoubleFunction cost) {
+		return ComplexityFit.fit(sizes, sizes.stream().map(cost::applyAsDouble).toList());
+	}
+
+	@Test
+	void recognizesPolynomialGrowthOnTopOfStartupCost() {
+		assertThat(fit(SIZES, n -> 40 + 0.002 * n).best()).isEqualTo("O(n)");
+		assertThat(fit(SIZES, n -> 40 + 0.00001 * n * n).best()).isEqualTo("O(n^2)");
+		assertThat(fit(List.of(100L, 200L, 400L, 800L, 1600L), n -> 5 + 1e-6 * n * n * n).best()).isEqualTo("O(n^3)");
+	}
+
+	@Test
+	void recognizesLogarithmicAndExponentialGrowth() {
+		assertThat(fit(List.of(1L << 10, 1L << 14, 1L << 18, 1L << 22, 1L << 26), n -> 10 + 3 * Math.log(n)).best())
+				.isEqualTo("O(log n)");
+		assertThat(fit(List.of(10L, 12L, 14L, 16L, 18L, 20L), n -> 30 + 0.001 * Math.pow(2, n)).best()).isEqualTo("O(2^n)");
+	}
+
+	@Test
+	void smallVariationIsFlat() {
+		assertThat(fit(SIZES, n -> 50 + (n % 3000) / 1000.0).best()).isEqualTo("O(1)");
+	}
+
+	@Test
+	void needsThreePoints() {
+		ComplexityFit.Result result = fit(List.of(10L, 20L), n -> n);
+
+		assertThat(result.best()).isEqualTo("unknown");
+		assertThat(result.candidates()).isEmpty();
+	}
+
+	@Test
+	void candidatesAreOrderedByFit() {
+		List<ComplexityFit.Candidate> candidates = fit(SIZES, n -> 40 + 0.002 * n).candidates();
+
+		assertThat(candidates).extracting(ComplexityFit.Candidate::r2).isSortedAccordingTo((a, b) -> Double.compare(b, a));
+		assertThat(candidates.get(0).coefficient()).isCloseTo(0.002, Offset.offset(1e-9));
+		// Exponential isn't tried at sizes where 2^n is meaningless
+		assertThat(candidates).extracting(ComplexityFit.Candidate::complexity).doesNotContain("O(2^n)");
+	}
+}
@@ -0,0 +1,71 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+class OutboundQueueTests {
+
+	private final CountDownLatch unblock = new CountDownLatch(1);
+	private final InteractiveCodeExecutionHandler handler = new InteractiveCodeExecutionHandler(mock(ExecutionEngine.class),
+			mock(ProjectWorkspaces.class), new WebSocketTrafficStats(), new InProcessCollabBackplane(), mock(StdinUploads.class));
+
+	@AfterEach
+	void tearDown() {
+		unblock.countDown();
+	}
+
+	@Test
+	void aClientThatStopsReadingIsDisconnectedPastTheCap() throws Exception {
+		ReflectionTestUtils.setField(handler, "maxQueuedBytes", 1000L);
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn("stuck");
+		when(session.isOpen()).thenReturn(true);
+		doAnswer(invocation -> {
+			unblock.await(10, TimeUnit.SECONDS); // The client's receive window is full
+			return null;
+		}).when(session).sendMessage(any());
+		handler.afterConnectionEstablished(session);
+
+		// ~40 bytes per pong: the first is being sent, the rest queue up until the cap
+		for (int i = 0; i < 100; i++) {
+			handler.handleTextMessage(session, new TextMessage("{\"type\":\"ping\"}"));
+		}
+
+		verify(session, timeout(5000)).close(any(CloseStatus.class));
+		verify(session, atMost(1)).sendMessage(any());
+	}
+
+	@Test
+	void aClientThatKeepsReadingIsNeverDisconnected() throws Exception {
+		ReflectionTestUtils.setField(handler, "maxQueuedBytes", 1000L);
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn("reading");
+		when(session.isOpen()).thenReturn(true);
+		handler.afterConnectionEstablished(session);
+
+		// Ten times the cap in total, in bursts that each fit under it
+		for (int burst = 1; burst <= 25; burst++) {
+			for (int i = 0; i < 10; i++) {
+				handler.handleTextMessage(session, new TextMessage("{\"type\":\"ping\"}"));
+			}
+			verify(session, timeout(5000).times(burst * 10)).sendMessage(any());
+		}
+		verify(session, never()).close(any(CloseStatus.class));
+	}
+}
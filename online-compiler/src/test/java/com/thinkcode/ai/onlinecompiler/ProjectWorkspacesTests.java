@@ -0,0 +1,60 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ProjectWorkspacesTests {
+
+	private final ProjectWorkspaces projects = new ProjectWorkspaces(null);
+
+	ProjectWorkspacesTests() {
+		ReflectionTestUtils.setField(projects, "maxFiles", 3);
+		ReflectionTestUtils.setField(projects, "maxSourceBytes", 10L);
+	}
+
+	@Test
+	void acceptsNestedRelativePaths() {
+		assertThat(projects.validate(Map.of("main.py", "import a", "pkg/a.py", ""))).isNull();
+	}
+
+	@Test
+	void rejectsPathsThatCouldEscapeTheWorkspace() {
+		for (String path : new String[] {"/etc/passwd", "../x.py", "a/../../x.py", "a//b.py", "a\\b.py", ".hidden", "a/.git/config", " ", "a\0b"}) {
+			assertThat(projects.validate(Map.of(path, ""))).as(path).startsWith("Invalid file path");
+		}
+	}
+
+	@Test
+	void enforcesFileAndSizeLimits() {
+		assertThat(projects.validate(Map.of())).isEqualTo("A project needs at least one file.");
+		assertThat(projects.validate(Map.of("a", "", "b", "", "c", "", "d", ""))).isEqualTo("Too many files (limit 3).");
+		// Counted in UTF-8 bytes: 4 x 3 bytes
+		assertThat(projects.validate(Map.of("a", "€€€€"))).isEqualTo("Project sources exceed 10 bytes.");
+		assertThat(projects.validate(Map.of("a", "€€€"))).isNull();
+
+		Map<String, String> missing = new LinkedHashMap<>();
+		missing.put("a", null);
+		assertThat(projects.validate(missing)).isEqualTo("Missing content for a");
+	}
+
+	@Test
+	void requestedEntryMustExist() {
+		Map<String, String> files = Map.of("src/App.java", "", "Main.java", "");
+
+		assertThat(ProjectWorkspaces.resolveEntry(files, "src/App.java")).isEqualTo("src/App.java");
+		assertThat(ProjectWorkspaces.resolveEntry(files, "App.java")).isNull();
+	}
+
+	@Test
+	void defaultsToATopLevelMainFile() {
+		assertThat(ProjectWorkspaces.resolveEntry(Map.of("util.py", "", "main.py", ""), null)).isEqualTo("main.py");
+		assertThat(ProjectWorkspaces.resolveEntry(Map.of("Program.cs", "", "Util.cs", ""), " ")).isEqualTo("Program.cs");
+		// Not in a subdirectory
+		assertThat(ProjectWorkspaces.resolveEntry(Map.of("lib/main.c", "", "b.c", "", "a.c", ""), null)).isEqualTo("a.c");
+	}
+}
@@ -0,0 +1,81 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ResourceLimiterTests {
+
+	// An unused UID, so the user's current process count is zero and the limit is exactly pids
+	private static final long UNUSED_UID = 64999;
+
+	private final MockEnvironment environment = new MockEnvironment()
+			.withProperty("app.limits.default.pids", "40")
+			.withProperty("app.limits.python.address-space-mb", "512");
+
+	private ResourceLimiter limiter(ResourceLimiter.Mode mode, boolean prlimit, long uid) {
+		ResourceLimiter limiter = new ResourceLimiter(environment);
+		ReflectionTestUtils.setField(limiter, "mode", mode);
+		ReflectionTestUtils.setField(limiter, "prlimitAvailable", prlimit);
+		ReflectionTestUtils.setField(limiter, "uid", uid);
+		return limiter;
+	}
+
+	private static String wrapped(ResourceLimiter limiter, String language) {
+		return String.join(" ", limiter.open("limits-test", limiter.limitsFor(language)).wrap("python3", "main.py"));
+	}
+
+	@Test
+	void prlimitFallbackLimitsProcesses() {
+		String command = wrapped(limiter(ResourceLimiter.Mode.PRLIMIT, true, UNUSED_UID), "python");
+
+		assertThat(command).startsWith("prlimit ").contains("--nproc=40", "--as=" + 512L * 1024 * 1024).endsWith("-- python3 main.py");
+	}
+
+	@Test
+	void ulimitFallbackLimitsProcessesInEitherShell() {
+		String command = wrapped(limiter(ResourceLimiter.Mode.ULIMIT, false, UNUSED_UID), "java");
+
+		assertThat(command).contains("{ ulimit -u 40 || ulimit -p 40; } 2>/dev/null;").doesNotContain("ulimit -v");
+	}
+
+	@Test
+	void rootIsNotGivenAProcessLimitItIsExemptFrom() {
+		String command = wrapped(limiter(ResourceLimiter.Mode.PRLIMIT, true, 0), "python");
+
+		assertThat(command).doesNotContain("--nproc");
+	}
+
+	@Test
+	void memoryIsUncappedUnderTheFallbackWithoutAnAddressSpaceLimit() {
+		ResourceLimiter fallback = limiter(ResourceLimiter.Mode.PRLIMIT, true, UNUSED_UID);
+		ResourceLimiter cgroups = limiter(ResourceLimiter.Mode.CGROUP, true, UNUSED_UID);
+
+		assertThat(fallback.capsMemory(fallback.limitsFor("python"))).isTrue();
+		assertThat(fallback.capsMemory(fallback.limitsFor("java"))).isFalse();
+		assertThat(cgroups.capsMemory(cgroups.limitsFor("java"))).isTrue();
+	}
+
+	@Test
+	void throttlingIsOnlyMentionedWhenItSlowedTheRunMaterially(@TempDir Path cgroups) throws Exception {
+		ResourceLimiter limiter = limiter(ResourceLimiter.Mode.CGROUP, true, UNUSED_UID);
+		ReflectionTestUtils.setField(limiter, "executionParent", cgroups);
+		ReflectionTestUtils.setField(limiter, "throttleReportShare", 0.5);
+		ResourceLimiter.Sandbox sandbox = limiter.open("throttle-test", limiter.limitsFor("java"));
+		Files.writeString(sandbox.getCgroup().resolve("cpu.stat"), "usage_usec 4000000\nthrottled_usec 3000000\n");
+
+		// 3 s throttled during a 10 s run, e.g. GC and JIT threads bursting past one core
+		ReflectionTestUtils.setField(sandbox, "openedAt", System.currentTimeMillis() - 10_000);
+		assertThat(sandbox.throttleNotice()).isNull();
+
+		ReflectionTestUtils.setField(sandbox, "openedAt", System.currentTimeMillis() - 4_000);
+		assertThat(sandbox.throttleNotice()).startsWith("CPU limited: the program was throttled for 3000 ms of its 4");
+		assertThat(sandbox.limitEvents(0)).isEmpty();
+	}
+}
@@ -0,0 +1,218 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest(properties = {
+		"app.warmup.enabled=false",
+		"app.reaper.interval-ms=3600000", // Only the reaps the tests trigger
+		"app.reaper.orphan-age-ms=200"
+})
+class ResourceReaperTests {
+
+	@Autowired
+	private CodeExecutionService executionService;
+
+	@Autowired
+	private InteractiveCodeExecutionHandler webSocketHandler;
+
+	@Autowired
+	private ResourceReaper reaper;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private Process stray;
+
+	@AfterEach
+	void tearDown() {
+		if (stray != null) {
+			stray.destroyForcibly();
+		}
+	}
+
+	private static void awaitDeath(ProcessHandle process) throws InterruptedException {
+		for (int i = 0; i < 100 && process.isAlive(); i++) {
+			Thread.sleep(50);
+		}
+		assertThat(process.isAlive()).as("pid " + process.pid() + " alive").isFalse();
+	}
+
+	@Test
+	void destroyTreeKillsDescendantsThatWouldOutliveTheParent() throws Exception {
+		Process shell = new ProcessBuilder("sh", "-c", "sleep 60 & (sleep 60 & wait) & wait").start();
+		for (int i = 0; i < 100 && shell.descendants().count() < 3; i++) {
+			Thread.sleep(20);
+		}
+		List<ProcessHandle> descendants = shell.descendants().toList();
+		assertThat(descendants).hasSizeGreaterThanOrEqualTo(3);
+
+		CodeExecutionService.destroyTree(shell.toHandle());
+
+		awaitDeath(shell.toHandle());
+		for (ProcessHandle descendant : descendants) {
+			awaitDeath(descendant);
+		}
+	}
+
+	@Test
+	void abandonedExecutionIsReleasedWithItsWholeTree() throws Exception {
+		BlockingQueue<String> events = new LinkedBlockingQueue<>();
+		boolean[] open = {true};
+		ExecutionSink sink = new ExecutionSink() {
+			@Override
+			public void send(String type, String data) {
+				events.add(type + ":" + data);
+			}
+
+			@Override
+			public boolean isOpen() {
+				return open[0];
+			}
+		};
+		String code = """
+				import subprocess, time
+				child = subprocess.Popen(["sleep", "60"])
+				print("child", child.pid, flush=True)
+				time.sleep(60)
+				""";
+		assertThat(executionService.execute("reaper-test", "python", code, sink)).isTrue();
+		ProcessHandle child = null;
+		Pattern pid = Pattern.compile("child (\\d+)");
+		for (String event; child == null && (event = events.poll(20, TimeUnit.SECONDS)) != null; ) {
+			Matcher matcher = pid.matcher(event);
+			if (matcher.find()) {
+				child = ProcessHandle.of(Long.parseLong(matcher.group(1))).orElseThrow();
+			}
+		}
+		assertThat(child).as("program started its child").isNotNull();
+
+		// A fresh run with an open transport is left alone
+		assertThat(executionService.reap(Long.MAX_VALUE)).doesNotContainKey("abandoned_execution");
+		open[0] = false;
+		assertThat(executionService.reap(Long.MAX_VALUE)).containsEntry("abandoned_execution", 1);
+
+		awaitDeath(child);
+		assertThat(executionService.isRunning("reaper-test")).isFalse();
+	}
+
+	// Events of one run; its completion is held until release counts down, so the run's cleanup can be delayed
+	private static ExecutionSink recording(BlockingQueue<String> events, CountDownLatch release) {
+		return new ExecutionSink() {
+			@Override
+			public void send(String type, String data) {
+				if (type.equals(ExecutionSink.EXECUTION_COMPLETE)) {
+					try {
+						release.await(20, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				events.add(type + ":" + data);
+			}
+
+			@Override
+			public boolean isOpen() {
+				return true;
+			}
+		};
+	}
+
+	private static void awaitEvent(BlockingQueue<String> events, String expected) throws InterruptedException {
+		for (String event; (event = events.poll(20, TimeUnit.SECONDS)) != null; ) {
+			if (event.contains(expected)) {
+				return;
+			}
+		}
+		throw new AssertionError("No event containing " + expected);
+	}
+
+	@Test
+	void aStoppedRunsCleanupLeavesTheNextRunAlone() throws Exception {
+		BlockingQueue<String> first = new LinkedBlockingQueue<>();
+		BlockingQueue<String> second = new LinkedBlockingQueue<>();
+		CountDownLatch firstCleanup = new CountDownLatch(1);
+		assertThat(executionService.execute("restart-test", "python", "import time\nprint('first', flush=True)\ntime.sleep(60)",
+				recording(first, firstCleanup))).isTrue();
+		awaitEvent(first, "first");
+
+		// The stop frees the key at once; the stopped run only cleans up after the next one is running
+		executionService.stop("restart-test");
+		assertThat(executionService.execute("restart-test", "python", "print('second', flush=True)\nprint('got', input())",
+				recording(second, new CountDownLatch(0)))).isTrue();
+		awaitEvent(second, "second");
+		firstCleanup.countDown();
+		awaitEvent(first, ExecutionSink.EXECUTION_COMPLETE);
+		Thread.sleep(500);
+
+		assertThat(executionService.isRunning("restart-test")).isTrue();
+		executionService.sendInput("restart-test", "still here", recording(second, new CountDownLatch(0)));
+		awaitEvent(second, "got still here");
+		awaitEvent(second, ExecutionSink.EXECUTION_COMPLETE + ":Exit code: 0");
+		executionService.release("restart-test");
+	}
+
+	@Test
+	void oldUntrackedChildProcessesAreKilled() throws Exception {
+		stray = new ProcessBuilder("sleep", "60").start();
+
+		assertThat(executionService.reap(60_000)).doesNotContainKey("orphan_process");
+		assertThat(stray.isAlive()).isTrue();
+
+		Thread.sleep(1100); // Start times have a resolution of 10 ms to 1 s depending on the platform
+		double before = meterRegistry.counter("thinkcode.reaper.reclaimed", "kind", "orphan_process").count();
+		reaper.reap();
+
+		awaitDeath(stray.toHandle());
+		assertThat(meterRegistry.counter("thinkcode.reaper.reclaimed", "kind", "orphan_process").count()).isGreaterThan(before);
+	}
+
+	@Test
+	void idleSessionsAreClosed() throws Exception {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn("idle-test");
+		when(session.isOpen()).thenReturn(true);
+		webSocketHandler.afterConnectionEstablished(session);
+
+		assertThat(webSocketHandler.reapSessions(60_000)).doesNotContainKey("idle_session");
+		verify(session, never()).close(any(CloseStatus.class));
+
+		Thread.sleep(50);
+		assertThat(webSocketHandler.reapSessions(20)).containsEntry("idle_session", 1);
+		verify(session).close(any(CloseStatus.class));
+		assertThat(webSocketHandler.reapSessions(20)).doesNotContainKey("idle_session");
+	}
+
+	@Test
+	void sessionsClosedWithoutACallbackAreCleanedUp() {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn("stale-test");
+		when(session.isOpen()).thenReturn(true);
+		webSocketHandler.afterConnectionEstablished(session);
+		when(session.isOpen()).thenReturn(false);
+
+		assertThat(webSocketHandler.reapSessions(60_000)).containsEntry("stale_session", 1);
+		assertThat(webSocketHandler.reapSessions(60_000)).doesNotContainKey("stale_session");
+	}
+}
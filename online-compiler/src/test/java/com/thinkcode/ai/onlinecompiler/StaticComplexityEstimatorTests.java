@@ -0,0 +1,97 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class StaticComplexityEstimatorTests {
+
+	private final StaticComplexityEstimator estimator = new StaticComplexityEstimator();
+
+	@Test
+	void nestedLoopsMultiply() {
+		StaticComplexityEstimator.Estimate estimate = estimator.estimate("""
+				public class Main {
+				    public static void main(String[] args) {
+				        int n = Integer.parseInt(args[0]);
+				        long sum = 0;
+				        for (int i = 0; i < n; i++) {
+				            for (int j = 0; j < n; j++) {
+				                sum += i * j;
+				            }
+				        }
+				        System.out.println(sum);
+				    }
+				}
+				""", "java");
+
+		assertThat(estimate.time()).isEqualTo("O(n^2)");
+		assertThat(estimate.space()).isEqualTo("O(1)");
+		assertThat(estimate.simple()).isTrue();
+	}
+
+	@Test
+	void halvingLoopIsLogarithmic() {
+		StaticComplexityEstimator.Estimate estimate = estimator.estimate("""
+				n = int(input())
+				steps = 0
+				while n > 1:
+				    n //= 2
+				    steps += 1
+				print(steps)
+				""", "python");
+
+		assertThat(estimate.time()).isEqualTo("O(log n)");
+		assertThat(estimate.simple()).isTrue();
+	}
+
+	@Test
+	void sortingInsideALoopIsCostedInPlace() {
+		StaticComplexityEstimator.Estimate estimate = estimator.estimate("""
+				n = int(input())
+				values = []
+				for i in range(n):
+				    values.append(i)
+				values.sort()
+				print(values)
+				""", "python");
+
+		assertThat(estimate.time()).isEqualTo("O(n log n)");
+		assertThat(estimate.space()).isEqualTo("O(n)");
+	}
+
+	@Test
+	void loopsInCommentsAndStringsAreIgnored() {
+		StaticComplexityEstimator.Estimate estimate = estimator.estimate("""
+				#include <stdio.h>
+				int main() {
+				    // for (int i = 0; i < n; i++)
+				    /* while (1) { } */
+				    printf("for (;;) {}\\n");
+				    return 0;
+				}
+				""", "c");
+
+		assertThat(estimate.time()).isEqualTo("O(1)");
+		assertThat(estimate.findings()).isEmpty();
+	}
+
+	@Test
+	void recursionIsNeverSimple() {
+		StaticComplexityEstimator.Estimate estimate = estimator.estimate("""
+				function fib(n) {
+				    if (n < 2) return n;
+				    return fib(n - 1) + fib(n - 2);
+				}
+				console.log(fib(30));
+				""", "javascript");
+
+		assertThat(estimate.time()).isEqualTo("O(2^n)");
+		assertThat(estimate.simple()).isFalse();
+	}
+
+	@Test
+	void unsupportedLanguagesAreNotSimple() {
+		assertThat(estimator.estimate("print 1", "cobol").uncertainties()).containsExactly("no local analyzer for cobol");
+	}
+}
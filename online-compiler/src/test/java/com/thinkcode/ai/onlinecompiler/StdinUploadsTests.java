@@ -0,0 +1,128 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class StdinUploadsTests {
+
+	@TempDir
+	Path directory;
+
+	private final StdinUploads uploads = new StdinUploads();
+
+	@BeforeEach
+	void setUp() throws IOException {
+		ReflectionTestUtils.setField(uploads, "uploadDir", directory.toString());
+		ReflectionTestUtils.setField(uploads, "maxUploadBytes", 100L);
+		ReflectionTestUtils.setField(uploads, "maxTotalBytes", 150L);
+		ReflectionTestUtils.setField(uploads, "ttlMs", 600_000L);
+		uploads.init();
+	}
+
+	@AfterEach
+	void tearDown() {
+		uploads.shutdown();
+	}
+
+	private long totalBytes() {
+		return ((AtomicLong) ReflectionTestUtils.getField(uploads, "totalBytes")).get();
+	}
+
+	private static ByteBuffer bytes(int count) {
+		return ByteBuffer.wrap(new byte[count]);
+	}
+
+	@Test
+	void finishedUploadIsSpooledAndHashed() throws Exception {
+		StdinUploads.Upload upload = uploads.create(new ByteArrayInputStream("1 2 3\n".getBytes()));
+
+		assertThat(upload.bytes()).isEqualTo(6);
+		assertThat(Files.readString(upload.path())).isEqualTo("1 2 3\n");
+		assertThat(upload.sha256()).isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest("1 2 3\n".getBytes())));
+		assertThat(uploads.get(upload.id())).isSameAs(upload);
+		assertThat(totalBytes()).isEqualTo(6);
+	}
+
+	@Test
+	void unfinishedUploadCannotBeLookedUp() throws Exception {
+		StdinUploads.Upload upload = uploads.begin();
+		uploads.append(upload, bytes(10));
+
+		assertThat(uploads.get(upload.id())).isNull();
+		assertThat(uploads.get(uploads.finish(upload).id())).isSameAs(upload);
+	}
+
+	@Test
+	void discardReleasesItsBytes() throws Exception {
+		StdinUploads.Upload upload = uploads.create("x".repeat(40));
+
+		uploads.discard(upload);
+		uploads.discard(upload); // Only counted once
+
+		assertThat(totalBytes()).isZero();
+		assertThat(uploads.get(upload.id())).isNull();
+		assertThat(upload.path()).doesNotExist();
+	}
+
+	@Test
+	void uploadOverItsLimitIsDiscardedWithoutLeakingBytes() throws Exception {
+		StdinUploads.Upload upload = uploads.begin();
+		uploads.append(upload, bytes(60));
+
+		assertThatThrownBy(() -> uploads.append(upload, bytes(41))).isInstanceOf(IOException.class)
+				.hasMessage("Input is larger than the 100 byte limit.");
+		assertThat(totalBytes()).isZero();
+		assertThat(upload.path()).doesNotExist();
+		assertThatThrownBy(() -> uploads.append(upload, bytes(1))).isInstanceOf(IOException.class);
+	}
+
+	@Test
+	void totalLimitCountsUnfinishedUploads() throws Exception {
+		StdinUploads.Upload first = uploads.begin();
+		uploads.append(first, bytes(100));
+		StdinUploads.Upload second = uploads.begin();
+		uploads.append(second, bytes(40));
+
+		assertThatThrownBy(() -> uploads.append(second, bytes(20))).isInstanceOf(IOException.class)
+				.hasMessageStartingWith("Too much input is stored on the server");
+		assertThat(totalBytes()).isEqualTo(100);
+
+		uploads.discard(first);
+		assertThat(uploads.create("y".repeat(100)).bytes()).isEqualTo(100);
+		assertThat(totalBytes()).isEqualTo(100);
+	}
+
+	@Test
+	void failedStreamUploadIsDiscarded() {
+		assertThatThrownBy(() -> uploads.create(new ByteArrayInputStream(new byte[101]))).isInstanceOf(IOException.class);
+
+		assertThat(totalBytes()).isZero();
+		assertThat(directory).isEmptyDirectory();
+	}
+
+	@Test
+	void expiredUploadsAreReaped() throws Exception {
+		StdinUploads.Upload upload = uploads.create("z".repeat(30));
+		ReflectionTestUtils.setField(uploads, "ttlMs", 0L);
+		Thread.sleep(5);
+
+		assertThat(uploads.reapExpired()).isEqualTo(1);
+		assertThat(totalBytes()).isZero();
+		assertThat(upload.path()).doesNotExist();
+	}
+}
@@ -0,0 +1,63 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class WebSocketCompressionFilterTests {
+
+	@Test
+	void otherExtensionsPassThrough() {
+		WebSocketCompressionFilter filter = new WebSocketCompressionFilter(false, false, false);
+
+		assertThat(filter.rewriteOffer("x-webkit-deflate-frame; max_window_bits=10")).isEqualTo("x-webkit-deflate-frame; max_window_bits=10");
+		assertThat(filter.rewriteOffer("")).isNull();
+	}
+
+	@Test
+	void deflateIsDroppedWhenDisabled() {
+		assertThat(new WebSocketCompressionFilter(false, false, false).rewriteOffer("permessage-deflate; client_max_window_bits"))
+				.isNull();
+	}
+
+	@Test
+	void windowBitsAreStrippedSoTomcatAcceptsTheOffer() {
+		WebSocketCompressionFilter filter = new WebSocketCompressionFilter(true, false, false);
+
+		assertThat(filter.rewriteOffer("permessage-deflate; client_max_window_bits")).isEqualTo("permessage-deflate");
+		assertThat(filter.rewriteOffer("permessage-deflate; server_max_window_bits=10; client_max_window_bits=12"))
+				.isEqualTo("permessage-deflate");
+	}
+
+	@Test
+	void configuredContextTakeoverIsAdded() {
+		assertThat(new WebSocketCompressionFilter(true, true, false).rewriteOffer("permessage-deflate"))
+				.isEqualTo("permessage-deflate; server_no_context_takeover");
+		assertThat(new WebSocketCompressionFilter(true, false, true).rewriteOffer("permessage-deflate; server_no_context_takeover"))
+				.isEqualTo("permessage-deflate; client_no_context_takeover");
+	}
+
+	@Test
+	void clientRequestedNoContextTakeoverIsKept() {
+		assertThat(new WebSocketCompressionFilter(true, false, false).rewriteOffer("permessage-deflate; client_no_context_takeover"))
+				.isEqualTo("permessage-deflate; client_no_context_takeover");
+	}
+
+	@Test
+	void handshakeHeaderIsRewrittenOfferByOffer() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/execute-ws");
+		request.addHeader(WebSocketCompressionFilter.EXTENSIONS_HEADER,
+				"permessage-deflate; client_max_window_bits, x-custom");
+		MockFilterChain chain = new MockFilterChain();
+
+		new WebSocketCompressionFilter(true, true, false).doFilter(request, new MockHttpServletResponse(), chain);
+
+		assertThat(((HttpServletRequest) chain.getRequest()).getHeader(WebSocketCompressionFilter.EXTENSIONS_HEADER))
+				.isEqualTo("permessage-deflate; server_no_context_takeover, x-custom");
+	}
+}
@@ -0,0 +1,54 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "app.warmup.enabled=false")
+class WebSocketSubprotocolTests {
+
+	@LocalServerPort
+	private int port;
+
+	private String negotiate(String... requested) throws Exception {
+		WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+		if (requested.length > 0) {
+			headers.setSecWebSocketProtocol(List.of(requested));
+		}
+		WebSocketSession session = new StandardWebSocketClient()
+				.execute(new TextWebSocketHandler(), headers, URI.create("ws://localhost:" + port + "/execute-ws"))
+				.get(10, TimeUnit.SECONDS);
+		try {
+			return session.getAcceptedProtocol();
+		} finally {
+			session.close();
+		}
+	}
+
+	@Test
+	void binaryClientsGetTheBinaryProtocol() throws Exception {
+		assertThat(negotiate(BinaryFrameCodec.BINARY_SUBPROTOCOL)).isEqualTo(BinaryFrameCodec.BINARY_SUBPROTOCOL);
+	}
+
+	@Test
+	void firstSupportedProtocolInTheClientsOrderWins() throws Exception {
+		assertThat(negotiate("thinkcode.binary.v9", BinaryFrameCodec.JSON_SUBPROTOCOL, BinaryFrameCodec.BINARY_SUBPROTOCOL))
+				.isEqualTo(BinaryFrameCodec.JSON_SUBPROTOCOL);
+	}
+
+	@Test
+	void clientsWithoutAProtocolKeepJson() throws Exception {
+		assertThat(negotiate()).isNullOrEmpty();
+		assertThat(negotiate("thinkcode.binary.v9")).isNullOrEmpty();
+	}
+}
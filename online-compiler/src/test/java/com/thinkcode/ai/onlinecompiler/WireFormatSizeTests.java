@@ -0,0 +1,99 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Wire size of one execution's frames in the JSON and binary protocols, with and without
+ * permessage-deflate. WebSocketTrafficStats only sees frames before Tomcat compresses them, so
+ * this is where the compressed sizes are measured.
+ */
+class WireFormatSizeTests {
+
+	private final InteractiveCodeExecutionHandler handler = new InteractiveCodeExecutionHandler(mock(ExecutionEngine.class),
+			mock(ProjectWorkspaces.class), new WebSocketTrafficStats(), new InProcessCollabBackplane(), mock(StdinUploads.class));
+
+	// A run that prints a line at a time, asks for input once and exits
+	private static List<String[]> transcript() {
+		List<String[]> frames = new ArrayList<>();
+		frames.add(new String[] {"execution_started", ""});
+		for (int i = 0; i < 2000; i++) {
+			frames.add(new String[] {"output", "step " + i + ": total=" + (i * 37L % 1009) + "\n"});
+		}
+		frames.add(new String[] {"input_request", "Waiting for input..."});
+		frames.add(new String[] {"output", "Enter a number: 42\n"});
+		frames.add(new String[] {"execution_complete", "Exit code: 0"});
+		return frames;
+	}
+
+	private List<byte[]> encode(boolean binary) {
+		List<byte[]> encoded = new ArrayList<>();
+		long seq = 0;
+		for (String[] frame : transcript()) {
+			seq++;
+			if (binary) {
+				ByteBuffer buffer = BinaryFrameCodec.encode(frame[0], frame[1], "run-1", seq);
+				byte[] bytes = new byte[buffer.remaining()];
+				buffer.get(bytes);
+				encoded.add(bytes);
+			} else {
+				String json = ReflectionTestUtils.invokeMethod(handler, "toJsonMessage", frame[0], frame[1], "run-1", seq);
+				encoded.add(json.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		return encoded;
+	}
+
+	private static long raw(List<byte[]> frames) {
+		return frames.stream().mapToLong(frame -> frame.length).sum();
+	}
+
+	// permessage-deflate: raw deflate per message, sync-flushed, without the trailing 00 00 FF FF
+	private static long deflated(List<byte[]> frames, boolean contextTakeover) {
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		byte[] out = new byte[64 * 1024];
+		long total = 0;
+		for (byte[] frame : frames) {
+			deflater.setInput(frame);
+			int written;
+			do {
+				written = deflater.deflate(out, 0, out.length, Deflater.SYNC_FLUSH);
+				total += written;
+			} while (written == out.length);
+			total -= 4;
+			if (!contextTakeover) {
+				deflater.reset();
+			}
+		}
+		deflater.end();
+		return total;
+	}
+
+	@Test
+	void binaryFramesStaySmallerWithAndWithoutCompression() {
+		List<byte[]> json = encode(false);
+		List<byte[]> binary = encode(true);
+		long[] jsonSizes = {raw(json), deflated(json, false), deflated(json, true)};
+		long[] binarySizes = {raw(binary), deflated(binary, false), deflated(binary, true)};
+		System.out.println("📊 Bytes for " + json.size() + " frames (raw / deflate / deflate with context takeover): json "
+				+ jsonSizes[0] + " / " + jsonSizes[1] + " / " + jsonSizes[2] + ", binary "
+				+ binarySizes[0] + " / " + binarySizes[1] + " / " + binarySizes[2]);
+
+		for (int i = 0; i < jsonSizes.length; i++) {
+			assertThat(binarySizes[i]).isLessThan(jsonSizes[i]);
+		}
+		// Context takeover is what makes deflate pay off for small frames; without it, binary ones grow
+		assertThat(jsonSizes[2]).isLessThan(jsonSizes[1]);
+		assertThat(binarySizes[2]).isLessThan(binarySizes[1]);
+		assertThat(binarySizes[1]).isGreaterThan(binarySizes[0]);
+	}
+}
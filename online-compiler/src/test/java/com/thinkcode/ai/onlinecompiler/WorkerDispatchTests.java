@@ -0,0 +1,237 @@
+package com.thinkcode.ai.onlinecompiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Two execution workers on loopback ports behind a dispatcher, all in this JVM (the workers share
+ * the context's CodeExecutionService, with keys namespaced per worker as on separate hosts).
+ */
+@SpringBootTest(properties = "app.warmup.enabled=false")
+class WorkerDispatchTests {
+
+	@Autowired
+	private CodeExecutionService executionService;
+
+	@Autowired
+	private ProjectWorkspaces projects;
+
+	@Autowired
+	private StdinUploads uploads;
+
+	@Autowired
+	private ToolchainWarmUp warmUp;
+
+	@Autowired
+	private ComplexityBenchmark benchmark;
+
+	private final List<ExecutionWorker> workers = new ArrayList<>();
+	private final List<WorkerDispatcher> dispatchers = new ArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		dispatchers.forEach(WorkerDispatcher::shutdown);
+		workers.forEach(ExecutionWorker::shutdown);
+	}
+
+	private String startWorker(int capacity) throws IOException {
+		ExecutionWorker worker = new ExecutionWorker(executionService, projects, uploads, warmUp, benchmark);
+		ReflectionTestUtils.setField(worker, "enabled", true);
+		ReflectionTestUtils.setField(worker, "listenAddress", "127.0.0.1:0");
+		ReflectionTestUtils.setField(worker, "maxConcurrent", capacity);
+		ReflectionTestUtils.setField(worker, "token", "secret");
+		worker.start();
+		workers.add(worker);
+		ServerSocketChannel server = (ServerSocketChannel) ReflectionTestUtils.getField(worker, "server");
+		return "127.0.0.1:" + ((InetSocketAddress) server.getLocalAddress()).getPort();
+	}
+
+	private static String deadAddress() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return "127.0.0.1:" + socket.getLocalPort(); // Nothing listens here once closed
+		}
+	}
+
+	private WorkerDispatcher dispatcher(boolean localFallback, String... addresses) {
+		WorkerDispatcher dispatcher = new WorkerDispatcher(executionService);
+		ReflectionTestUtils.setField(dispatcher, "addresses", String.join(",", addresses));
+		ReflectionTestUtils.setField(dispatcher, "localFallback", localFallback);
+		ReflectionTestUtils.setField(dispatcher, "connectTimeoutMs", 1000);
+		ReflectionTestUtils.setField(dispatcher, "token", "secret");
+		ReflectionTestUtils.setField(dispatcher, "pendingReportIntervalMs", 100L);
+		dispatcher.init();
+		dispatchers.add(dispatcher);
+		return dispatcher;
+	}
+
+	private static class QueueSink implements ExecutionSink {
+		final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+		@Override
+		public void send(String type, String data) {
+			events.add(type + ":" + data);
+		}
+
+		// Next event starting with prefix, skipping others
+		String await(String prefix) throws InterruptedException {
+			for (String event; (event = events.poll(20, TimeUnit.SECONDS)) != null; ) {
+				if (event.startsWith(prefix)) {
+					return event;
+				}
+			}
+			throw new AssertionError("No " + prefix + " event");
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Map<String, Object>> workerStats(WorkerDispatcher dispatcher) {
+		return (List<Map<String, Object>>) dispatcher.snapshot().get("workers");
+	}
+
+	@Test
+	void runsGoToTheLeastLoadedWorker() throws Exception {
+		WorkerDispatcher dispatcher = dispatcher(false, startWorker(2), startWorker(2));
+		QueueSink first = new QueueSink();
+		QueueSink second = new QueueSink();
+		QueueSink third = new QueueSink();
+		String waitForLine = "input()\nprint('done')";
+
+		dispatcher.execute("first", "python", waitForLine, first);
+		dispatcher.execute("second", "python", waitForLine, second);
+		dispatcher.execute("third", "python", waitForLine, third);
+
+		assertThat(workerStats(dispatcher)).extracting(stats -> stats.get("dispatched")).containsExactly(2L, 1L);
+		first.await("input_request:");
+		third.await("input_request:");
+		dispatcher.sendInput("first", "go", first);
+		dispatcher.sendInput("third", "go", third);
+		assertThat(first.await("output:")).isEqualTo("output:done\n");
+		assertThat(third.await("execution_complete:")).isEqualTo("execution_complete:Exit code: 0");
+	}
+
+	@Test
+	void unreachableWorkerIsSkipped() throws Exception {
+		WorkerDispatcher dispatcher = dispatcher(false, deadAddress(), startWorker(2));
+		QueueSink sink = new QueueSink();
+
+		assertThat(dispatcher.execute("failover", "python", "print('hi')", sink)).isTrue();
+
+		assertThat(sink.await("output:")).isEqualTo("output:hi\n");
+		List<Map<String, Object>> stats = workerStats(dispatcher);
+		assertThat(stats.get(0)).containsEntry("up", false);
+		assertThat(stats.get(1)).containsEntry("dispatched", 1L);
+	}
+
+	@Test
+	void noWorkerLeftEndsTheRunWithAnError() throws Exception {
+		WorkerDispatcher dispatcher = dispatcher(false, deadAddress());
+		QueueSink sink = new QueueSink();
+
+		dispatcher.execute("nowhere", "python", "print('hi')", sink);
+
+		assertThat(sink.await("error:")).contains("No execution worker is available");
+		assertThat(sink.await("execution_complete:")).isEqualTo("execution_complete:Exit code: 1");
+	}
+
+	@Test
+	void inputAndBulkStdinAreRelayed() throws Exception {
+		WorkerDispatcher dispatcher = dispatcher(false, startWorker(2));
+		QueueSink sink = new QueueSink();
+		String code = "print(input()[::-1], flush=True)\nprint(sum(int(input()) for _ in range(3)))";
+
+		dispatcher.execute("stdin", "python", code, sink);
+		sink.await("input_request:");
+		dispatcher.sendInput("stdin", "hello", sink);
+		assertThat(sink.await("output:")).isEqualTo("output:olleh\n");
+
+		StdinUploads.Upload upload = uploads.create("1\n2\n3\n");
+		dispatcher.sendInput("stdin", upload, sink);
+		assertThat(sink.await("output:")).isEqualTo("output:6\n");
+		assertThat(sink.await("execution_complete:")).isEqualTo("execution_complete:Exit code: 0");
+		uploads.discard(upload);
+
+		QueueSink upFront = new QueueSink();
+		StdinUploads.Upload numbers = uploads.create("4\n5\n6\n");
+		dispatcher.execute("upfront", "python", "import sys\nprint(sum(int(line) for line in sys.stdin))",
+				new ExecutionEngine.RunOptions(false, numbers), upFront);
+		assertThat(upFront.await("output:")).isEqualTo("output:15\n");
+		uploads.discard(numbers);
+	}
+
+	@Test
+	void inputDuringAStreamIsRefused() throws Exception {
+		WorkerDispatcher dispatcher = dispatcher(false, startWorker(2));
+		QueueSink sink = new QueueSink();
+		StdinUploads.Upload large = uploads.create("7\n".repeat(4 << 20));
+
+		dispatcher.execute("busy", "python", "import sys\nprint(sum(int(line) for line in sys.stdin))", sink);
+		sink.await("input_request:");
+		dispatcher.sendInput("busy", large, sink);
+		dispatcher.sendInput("busy", "8", sink);
+		dispatcher.sendInput("busy", large, sink);
+
+		assertThat(sink.await("error:")).isEqualTo("error:Cannot send input: earlier input is still being streamed.");
+		assertThat(sink.await("error:")).isEqualTo("error:Cannot send input: earlier input is still being streamed.");
+		dispatcher.stop("busy");
+		sink.await("execution_complete:");
+		uploads.discard(large);
+	}
+
+	@Test
+	void stopIsRelayed() throws Exception {
+		WorkerDispatcher dispatcher = dispatcher(false, startWorker(1));
+		QueueSink sink = new QueueSink();
+
+		dispatcher.execute("sleeper", "python", "import time\nprint('started', flush=True)\ntime.sleep(60)", sink);
+		sink.await("output:started");
+		long stoppedAt = System.nanoTime();
+		dispatcher.stop("sleeper");
+
+		sink.await("execution_complete:");
+		assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - stoppedAt)).isLessThan(10);
+		dispatcher.release("sleeper");
+		// The worker's only slot is free again
+		QueueSink next = new QueueSink();
+		dispatcher.pollWorkers();
+		dispatcher.execute("next", "python", "print('again')", next);
+		assertThat(next.await("output:")).isEqualTo("output:again\n");
+	}
+
+	@Test
+	void benchmarksRunOnAWorker() throws Exception {
+		WorkerDispatcher dispatcher = dispatcher(false, deadAddress(), startWorker(1));
+		ComplexityBenchmark.Request request = new ComplexityBenchmark.Request("python",
+				"n = int(input())\nprint(sum(range(n)))", "{n}\n", null, List.of(1000L, 2000L, 4000L),
+				null, null, null, 0, 1);
+
+		ComplexityBenchmark.Report report = dispatcher.benchmark(request, () -> {
+			throw new AssertionError("ran in-process");
+		});
+		assertThat(report.points()).extracting(ComplexityBenchmark.Point::n).containsExactly(1000L, 2000L, 4000L);
+		assertThat(report.time().best()).isNotNull();
+		assertThat(workerStats(dispatcher)).extracting(stats -> stats.get("dispatched")).containsExactly(0L, 1L);
+
+		ComplexityBenchmark.Request invalid = new ComplexityBenchmark.Request("python", "print(1)", null, null,
+				List.of(1L), null, null, null, null, null);
+		assertThatThrownBy(() -> dispatcher.benchmark(invalid, () -> null))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("exactly one of");
+	}
+}